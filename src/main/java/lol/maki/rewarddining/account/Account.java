@@ -1,7 +1,8 @@
 package lol.maki.rewarddining.account;
 
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.Comparator;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -14,7 +15,6 @@ import am.ik.yavi.arguments.LongValidator;
 import am.ik.yavi.builder.StringValidatorBuilder;
 import am.ik.yavi.builder.ValidatorBuilder;
 import am.ik.yavi.core.ConstraintGroup;
-import am.ik.yavi.core.ConstraintViolationsException;
 import am.ik.yavi.core.Validated;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lol.maki.rewarddining.account.AccountContribution.Distribution;
@@ -35,8 +35,14 @@ public class Account {
 
 	private final String name;
 
+	private Long version;
+
 	private final Set<Beneficiary> beneficiaries = Collections.newSetFromMap(new ConcurrentHashMap<>());
 
+	private final Set<String> removedBeneficiaryNames = ConcurrentHashMap.newKeySet();
+
+	private static final Comparator<Beneficiary> BY_NAME = Comparator.comparing(Beneficiary::getName);
+
 	static final ConstraintGroup UPDATE = ConstraintGroup.of("UPDATE");
 
 	public static final Arguments3Validator<Long, String, String, Account> accountValidator = ArgumentsValidators.split(
@@ -82,6 +88,18 @@ public class Account {
 		this.id = id;
 	}
 
+	/**
+	 * Returns the version of this account when it was loaded or last stored, or <code>null</code> if it is not known.
+	 * The version is incremented whenever the account, or the allocation or set of its beneficiaries, is stored.
+	 */
+	public Long getVersion() {
+		return version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+
 	/**
 	 * Returns the number used to uniquely identify this account.
 	 */
@@ -120,7 +138,11 @@ public class Account {
 	 *            the name of the beneficiary (should be unique)
 	 */
 	public void removeBeneficiary(String beneficiaryName) {
-		beneficiaries.remove(getBeneficiary(beneficiaryName));
+		final Beneficiary beneficiary = getBeneficiary(beneficiaryName);
+		beneficiaries.remove(beneficiary);
+		if (!beneficiary.isNew()) {
+			removedBeneficiaryNames.add(beneficiaryName);
+		}
 	}
 
 	/**
@@ -128,22 +150,11 @@ public class Account {
 	 */
 	@JsonIgnore
 	public boolean isValid() {
-		Percentage totalPercentage = Percentage.zero();
+		int totalBasisPoints = 0;
 		for (Beneficiary b : beneficiaries) {
-			try {
-				totalPercentage = totalPercentage.add(b.getAllocationPercentage());
-			}
-			catch (ConstraintViolationsException e) {
-				// total would have been over 100% - return invalid
-				return false;
-			}
-		}
-		if (totalPercentage.equals(Percentage.oneHundred())) {
-			return true;
-		}
-		else {
-			return false;
+			totalBasisPoints += b.getAllocationPercentage().asBasisPoints();
 		}
+		return totalBasisPoints == Percentage.ONE_HUNDRED_BASIS_POINTS;
 	}
 
 	/**
@@ -162,20 +173,41 @@ public class Account {
 	}
 
 	/**
-	 * Distribute the contribution amount among this account's beneficiaries.
+	 * Take back a contribution made by {@link #makeContribution(MonetaryAmount)} that was not recorded after all, say
+	 * because its dining had been rewarded already.
+	 * @param contribution the contribution to take back
+	 */
+	public void revertContribution(AccountContribution contribution) {
+		for (Distribution distribution : contribution.getDistributions()) {
+			getBeneficiary(distribution.getBeneficiary()).credit(distribution.getAmount().negate());
+		}
+	}
+
+	/**
+	 * Distribute the contribution amount among this account's beneficiaries, in whole cents that add up to the amount
+	 * rounded to the cent.
 	 * @param amount the total contribution amount
 	 * @return the individual beneficiary distributions
 	 */
 	private Set<Distribution> distribute(MonetaryAmount amount) {
-		Set<Distribution> distributions = new HashSet<>(beneficiaries.size());
-		for (Beneficiary beneficiary : beneficiaries) {
-			MonetaryAmount distributionAmount = amount.multiply(beneficiary.getAllocationPercentage().asBigDecimal());
+		final Beneficiary[] ordered = beneficiaries.toArray(new Beneficiary[0]);
+		// the cents left over by rounding go to the first names on a tie, whatever the order of the set
+		Arrays.sort(ordered, BY_NAME);
+		final int[] basisPoints = new int[ordered.length];
+		for (int i = 0; i < ordered.length; i++) {
+			basisPoints[i] = ordered[i].getAllocationPercentage().asBasisPoints();
+		}
+		final long[] shares = new long[ordered.length];
+		RewardArithmetic.allocate(USD.toCents(amount), basisPoints, shares);
+		final Distribution[] distributions = new Distribution[ordered.length];
+		for (int i = 0; i < ordered.length; i++) {
+			final Beneficiary beneficiary = ordered[i];
+			final MonetaryAmount distributionAmount = USD.ofCents(shares[i]);
 			beneficiary.credit(distributionAmount);
-			Distribution distribution = new Distribution(beneficiary.getName(), distributionAmount, beneficiary
-					.getAllocationPercentage(), beneficiary.getSavings());
-			distributions.add(distribution);
+			distributions[i] = new Distribution(beneficiary.getName(), distributionAmount,
+					beneficiary.getAllocationPercentage(), beneficiary.getSavings());
 		}
-		return distributions;
+		return Set.of(distributions);
 	}
 
 	/**
@@ -202,6 +234,42 @@ public class Account {
 		throw new IllegalArgumentException("No such beneficiary with name '" + name + "'");
 	}
 
+	/**
+	 * Returns the names of the stored beneficiaries removed since this account was loaded or last stored.
+	 */
+	@JsonIgnore
+	public Set<String> getRemovedBeneficiaryNames() {
+		return Collections.unmodifiableSet(removedBeneficiaryNames);
+	}
+
+	/**
+	 * Returns whether beneficiaries were added or removed, or had their allocation percentage changed, since this
+	 * account was loaded or last stored. Changes of savings alone do not count.
+	 */
+	@JsonIgnore
+	public boolean isAllocationChanged() {
+		if (!removedBeneficiaryNames.isEmpty()) {
+			return true;
+		}
+		for (Beneficiary b : beneficiaries) {
+			if (b.isNew() || b.isAllocationPercentageChanged()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Marks this account as stored with all the changes of its beneficiaries. Should only be called by the repository
+	 * responsible for storing this account.
+	 */
+	public void markPersisted() {
+		removedBeneficiaryNames.clear();
+		for (Beneficiary b : beneficiaries) {
+			b.markPersisted();
+		}
+	}
+
 	/**
 	 * Used to restore an allocated beneficiary. Should only be called by the repository responsible for reconstituting
 	 * this account.
@@ -1,5 +1,6 @@
 package lol.maki.rewarddining.account;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -10,12 +11,40 @@ import java.util.Map;
 public interface AccountManager {
 
 	/**
-	 * Get all accounts in the system
+	 * Get all accounts in the system. Loads every account with all its
+	 * beneficiaries, so prefer {@link #getAccounts(Long, int)} unless the
+	 * number of accounts is known to be small.
 	 *
 	 * @return all accounts
 	 */
 	List<Account> getAllAccounts();
 
+	/**
+	 * Get a page of accounts, ordered by id.
+	 *
+	 * @param after
+	 *            the <code>next</code> id of the previous page, or
+	 *            <code>null</code> for the first page
+	 * @param limit
+	 *            the maximum number of accounts on the page
+	 * @return the page of accounts
+	 */
+	AccountPage<Account> getAccounts(Long after, int limit);
+
+	/**
+	 * Get a page of account summaries, ordered by id. Cheaper than
+	 * {@link #getAccounts(Long, int)} as beneficiaries are counted rather than
+	 * loaded.
+	 *
+	 * @param after
+	 *            the <code>next</code> id of the previous page, or
+	 *            <code>null</code> for the first page
+	 * @param limit
+	 *            the maximum number of summaries on the page
+	 * @return the page of summaries
+	 */
+	AccountPage<AccountSummary> getAccountSummaries(Long after, int limit);
+
 	/**
 	 * Find an account by its number.
 	 *
@@ -25,6 +54,16 @@ public interface AccountManager {
 	 */
 	Account getAccount(Long id);
 
+	/**
+	 * Find many accounts by their ids at once.
+	 *
+	 * @param ids
+	 *            the account ids
+	 * @return the accounts found, ordered by id. Ids of no account are
+	 *         skipped.
+	 */
+	List<Account> getAccounts(Collection<Long> ids);
+
 	/**
 	 * Takes a transient account and persists it.
 	 *
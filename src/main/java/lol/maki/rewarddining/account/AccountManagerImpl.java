@@ -1,19 +1,49 @@
 package lol.maki.rewarddining.account;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lol.maki.rewarddining.util.OptimisticRetry;
 
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+/**
+ * Changes of the beneficiaries of an account read the account and store it in one transaction, which fails if the
+ * account was changed since it was read. They are then run again, up to <code>account.retry.max-attempts</code>
+ * times, unless they were called in a transaction of the caller.
+ */
 @Service
 public class AccountManagerImpl implements AccountManager {
 	private final AccountRepository accountRepository;
 
-	public AccountManagerImpl(AccountRepository accountRepository) {
+	private final TransactionTemplate transactionTemplate;
+
+	private final OptimisticRetry retry;
+
+	public AccountManagerImpl(AccountRepository accountRepository, TransactionTemplate transactionTemplate,
+			AccountProperties properties, MeterRegistry meterRegistry) {
 		this.accountRepository = accountRepository;
+		this.transactionTemplate = transactionTemplate;
+		final AccountProperties.Retry retry = properties.getRetry();
+		this.retry = new OptimisticRetry(retry.getMaxAttempts(), retry.getInitialBackoff(), retry.getMaxBackoff());
+		FunctionCounter.builder("account.update.conflicts", this.retry, OptimisticRetry::conflicts)
+				.description("Account changes that failed as the account was changed concurrently")
+				.register(meterRegistry);
+		FunctionCounter.builder("account.update.retries", this.retry, OptimisticRetry::retries)
+				.description("Account changes run again after a conflict")
+				.register(meterRegistry);
+		FunctionCounter.builder("account.update.exhausted", this.retry, OptimisticRetry::exhausted)
+				.description("Account changes that still conflicted on their last attempt")
+				.register(meterRegistry);
 	}
 
 	@Override
@@ -21,6 +51,17 @@ public class AccountManagerImpl implements AccountManager {
 		return this.accountRepository.findAll();
 	}
 
+	@Override
+	public AccountPage<Account> getAccounts(Long after, int limit) {
+		// one extra account tells whether there is a next page without another query
+		return page(this.accountRepository.findAll(after, limit + 1), limit, Account::getId);
+	}
+
+	@Override
+	public AccountPage<AccountSummary> getAccountSummaries(Long after, int limit) {
+		return page(this.accountRepository.findSummaries(after, limit + 1), limit, AccountSummary::id);
+	}
+
 	@Override
 	public Account getAccount(Long id) {
 		try {
@@ -31,12 +72,20 @@ public class AccountManagerImpl implements AccountManager {
 		}
 	}
 
+	@Override
+	public List<Account> getAccounts(Collection<Long> ids) {
+		return this.accountRepository.findAllById(ids);
+	}
+
 	@Override
 	@Transactional
 	public Account save(Account account) {
 		return this.accountRepository.insert(account);
 	}
 
+	/**
+	 * Stores the account of the caller, which is not retried on a conflict, as it would conflict again.
+	 */
 	@Override
 	@Transactional
 	public void update(Account account) {
@@ -44,31 +93,47 @@ public class AccountManagerImpl implements AccountManager {
 	}
 
 	@Override
-	@Transactional
 	public void updateBeneficiaryAllocationPercentages(Long accountId, Map<String, Percentage> allocationPercentages) {
-		final Account account = this.getAccount(accountId);
-		for (Entry<String, Percentage> entry : allocationPercentages.entrySet()) {
-			account.getBeneficiary(entry.getKey()).setAllocationPercentage(entry.getValue());
-		}
-		this.accountRepository.updateBeneficiaries(account);
+		this.change(accountId, account -> setAllocationPercentages(account, allocationPercentages));
 	}
 
 	@Override
-	@Transactional
 	public void addBeneficiary(Long accountId, String beneficiaryName) {
-		final Account account = this.getAccount(accountId);
-		account.addBeneficiary(beneficiaryName, Percentage.zero());
-		this.accountRepository.updateBeneficiaries(account);
+		this.change(accountId, account -> account.addBeneficiary(beneficiaryName, Percentage.zero()));
 	}
 
 	@Override
-	@Transactional
 	public void removeBeneficiary(Long accountId, String beneficiaryName, Map<String, Percentage> allocationPercentages) {
-		final Account account = this.getAccount(accountId);
-		account.removeBeneficiary(beneficiaryName);
-		this.accountRepository.updateBeneficiaries(account);
-		if (allocationPercentages != null) {
-			this.updateBeneficiaryAllocationPercentages(accountId, allocationPercentages);
+		this.change(accountId, account -> {
+			account.removeBeneficiary(beneficiaryName);
+			if (allocationPercentages != null) {
+				setAllocationPercentages(account, allocationPercentages);
+			}
+		});
+	}
+
+	/**
+	 * Reads an account, changes its beneficiaries and stores them, again as long as the account was changed meanwhile.
+	 */
+	private void change(Long accountId, Consumer<Account> change) {
+		this.retry.run(() -> this.transactionTemplate.executeWithoutResult(status -> {
+			final Account account = this.getAccount(accountId);
+			change.accept(account);
+			this.accountRepository.updateBeneficiaries(account);
+		}));
+	}
+
+	private static void setAllocationPercentages(Account account, Map<String, Percentage> allocationPercentages) {
+		for (Entry<String, Percentage> entry : allocationPercentages.entrySet()) {
+			account.getBeneficiary(entry.getKey()).setAllocationPercentage(entry.getValue());
+		}
+	}
+
+	private static <T> AccountPage<T> page(List<T> accounts, int limit, Function<T, Long> id) {
+		if (accounts.size() <= limit) {
+			return new AccountPage<>(accounts, null);
 		}
+		final List<T> page = accounts.subList(0, limit);
+		return new AccountPage<>(List.copyOf(page), id.apply(page.get(limit - 1)));
 	}
 }
@@ -0,0 +1,11 @@
+package lol.maki.rewarddining.account;
+
+import java.util.List;
+
+/**
+ * A page of accounts ordered by id.
+ * @param accounts the accounts of the page, either {@link Account}s or {@link AccountSummary summaries}
+ * @param next the id to pass as <code>after</code> to fetch the next page, or <code>null</code> on the last page
+ */
+public record AccountPage<T>(List<T> accounts, Long next) {
+}
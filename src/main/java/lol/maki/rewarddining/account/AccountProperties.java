@@ -0,0 +1,95 @@
+package lol.maki.rewarddining.account;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Tunables of account management, bound from the <code>account.*</code> properties.
+ */
+@ConfigurationProperties(prefix = "account")
+public class AccountProperties {
+
+	private final Cache cache = new Cache();
+
+	private final Retry retry = new Retry();
+
+	public Cache getCache() {
+		return cache;
+	}
+
+	public Retry getRetry() {
+		return retry;
+	}
+
+	public static class Cache {
+
+		/**
+		 * Whether accounts found by id are cached.
+		 */
+		private boolean enabled = true;
+
+		/**
+		 * Maximum number of accounts in the cache. The least recently used account is evicted to make room.
+		 */
+		private int size = 10_000;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+		public void setSize(int size) {
+			this.size = size;
+		}
+	}
+
+	public static class Retry {
+
+		/**
+		 * Maximum number of times a change of an account is attempted when the account was changed concurrently.
+		 */
+		private int maxAttempts = 5;
+
+		/**
+		 * Maximum wait before the first retry, doubled for every further retry. The actual wait is random up to it.
+		 */
+		private Duration initialBackoff = Duration.ofMillis(10);
+
+		/**
+		 * Maximum wait before any retry.
+		 */
+		private Duration maxBackoff = Duration.ofMillis(200);
+
+		public int getMaxAttempts() {
+			return maxAttempts;
+		}
+
+		public void setMaxAttempts(int maxAttempts) {
+			this.maxAttempts = maxAttempts;
+		}
+
+		public Duration getInitialBackoff() {
+			return initialBackoff;
+		}
+
+		public void setInitialBackoff(Duration initialBackoff) {
+			this.initialBackoff = initialBackoff;
+		}
+
+		public Duration getMaxBackoff() {
+			return maxBackoff;
+		}
+
+		public void setMaxBackoff(Duration maxBackoff) {
+			this.maxBackoff = maxBackoff;
+		}
+	}
+}
@@ -1,6 +1,10 @@
 package lol.maki.rewarddining.account;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+
+import javax.money.MonetaryAmount;
 
 /**
  * Loads account aggregates. Called by the reward network to find and reconstitute Account entities from an external
@@ -16,6 +20,23 @@ public interface AccountRepository {
 	 */
 	List<Account> findAll();
 
+	/**
+	 * Get the accounts following an account, ordered by id. Pages are found by key rather than offset, so a deep page
+	 * costs the same as the first one.
+	 * @param afterId the id of the last account of the previous page, or <code>null</code> for the first page
+	 * @param limit the maximum number of accounts returned
+	 * @return the accounts with a greater id
+	 */
+	List<Account> findAll(Long afterId, int limit);
+
+	/**
+	 * Get summaries of the accounts following an account, ordered by id, without loading their beneficiaries.
+	 * @param afterId the id of the last account of the previous page, or <code>null</code> for the first page
+	 * @param limit the maximum number of summaries returned
+	 * @return the summaries of the accounts with a greater id
+	 */
+	List<AccountSummary> findSummaries(Long afterId, int limit);
+
 	/**
 	 * Find an account by its number.
 	 *
@@ -25,6 +46,13 @@ public interface AccountRepository {
 	 */
 	Account findById(Long id);
 
+	/**
+	 * Find many accounts by their ids at once, with one query per batch of ids instead of one per account.
+	 * @param ids the account ids
+	 * @return the accounts found, ordered by id. Ids that do not belong to any account are skipped.
+	 */
+	List<Account> findAllById(Collection<Long> ids);
+
 	/**
 	 * Load an account by its credit card.
 	 * @param creditCardNumber the credit card number
@@ -32,6 +60,21 @@ public interface AccountRepository {
 	 */
 	Account findByCreditCard(String creditCardNumber);
 
+	/**
+	 * Load the accounts of many credit cards at once. Used by the reward network to resolve a whole batch of dinings
+	 * with a single query instead of one query per dining.
+	 * @param creditCardNumbers the credit card numbers
+	 * @return the account objects keyed by credit card number. Cards that do not belong to any account are absent.
+	 */
+	Map<String, Account> findByCreditCards(Collection<String> creditCardNumbers);
+
+	/**
+	 * Find the ids of the accounts of many credit cards without loading the accounts.
+	 * @param creditCardNumbers the credit card numbers
+	 * @return the account ids keyed by credit card number. Cards that do not belong to any account are absent.
+	 */
+	Map<String, Long> findAccountIdsByCreditCards(Collection<String> creditCardNumbers);
+
 	Account insert(Account account);
 
 	void update(Account account);
@@ -46,4 +89,19 @@ public interface AccountRepository {
 	 * @param account the account whose beneficiary savings have changed
 	 */
 	void updateBeneficiaries(Account account);
+
+	/**
+	 * Updates the 'savings' of each beneficiary of the given accounts in a single batch. Unlike
+	 * {@link #updateBeneficiaries(Account)} beneficiaries are neither inserted nor removed, which is all a reward
+	 * transaction needs.
+	 * @param accounts the accounts whose beneficiary savings have changed
+	 */
+	void updateBeneficiarySavings(Collection<Account> accounts);
+
+	/**
+	 * Adds amounts to the 'savings' of beneficiaries in a single batch. Each beneficiary is incremented in the database
+	 * rather than overwritten, so amounts added by different callers never replace each other.
+	 * @param savingsByAccountId the amount to add to each beneficiary, keyed by account id and beneficiary name
+	 */
+	void addBeneficiarySavings(Map<Long, Map<String, MonetaryAmount>> savingsByAccountId);
 }
\ No newline at end of file
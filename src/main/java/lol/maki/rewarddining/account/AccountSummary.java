@@ -0,0 +1,11 @@
+package lol.maki.rewarddining.account;
+
+/**
+ * The columns of an account shown in lists of accounts, read without loading its beneficiaries.
+ * @param id the account id
+ * @param number the account number
+ * @param name the name on the account
+ * @param beneficiaryCount the number of beneficiaries of the account
+ */
+public record AccountSummary(Long id, String number, String name, int beneficiaryCount) {
+}
@@ -0,0 +1,14 @@
+package lol.maki.rewarddining.account;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+
+/**
+ * Thrown when an account is stored that was changed by someone else since it was loaded. Loading the account again and
+ * reapplying the change usually succeeds.
+ */
+public class AccountVersionConflictException extends OptimisticLockingFailureException {
+
+	public AccountVersionConflictException(Account account) {
+		super("Account " + account.getId() + " was changed since version " + account.getVersion() + " was loaded");
+	}
+}
@@ -3,6 +3,7 @@ package lol.maki.rewarddining.account;
 import javax.money.MonetaryAmount;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 /**
  * A single beneficiary allocated to an account. Each beneficiary has a name (e.g. Annabelle) and a savings balance
@@ -18,13 +19,19 @@ public class Beneficiary {
 
 	private MonetaryAmount savings;
 
+	private boolean persisted;
+
+	private boolean allocationPercentageChanged;
+
+	private boolean savingsChanged;
+
 	/**
 	 * Creates a new account beneficiary.
 	 * @param name the name of the beneficiary
 	 * @param allocationPercentage the beneficiary's allocation percentage within its account
 	 */
 	public Beneficiary(String name, Percentage allocationPercentage) {
-		this(name, allocationPercentage, USD.valueOf("0.00"));
+		this(name, allocationPercentage, USD.zero());
 	}
 
 	/**
@@ -71,6 +78,9 @@ public class Beneficiary {
 	 *            The new allocation percentage
 	 */
 	public void setAllocationPercentage(Percentage allocationPercentage) {
+		if (!allocationPercentage.equals(this.allocationPercentage)) {
+			this.allocationPercentageChanged = true;
+		}
 		this.allocationPercentage = allocationPercentage;
 	}
 
@@ -86,9 +96,47 @@ public class Beneficiary {
 	 * @param amount the amount to credit
 	 */
 	public void credit(MonetaryAmount amount) {
+		if (!amount.isZero()) {
+			savingsChanged = true;
+		}
 		savings = savings.add(amount);
 	}
 
+	/**
+	 * Returns whether this beneficiary is not stored yet: it has neither been loaded nor been stored since it was
+	 * created.
+	 */
+	@JsonIgnore
+	public boolean isNew() {
+		return id == null && !persisted;
+	}
+
+	/**
+	 * Returns whether the allocation percentage changed since this beneficiary was loaded or last stored.
+	 */
+	@JsonIgnore
+	public boolean isAllocationPercentageChanged() {
+		return allocationPercentageChanged;
+	}
+
+	/**
+	 * Returns whether the savings changed since this beneficiary was loaded or last stored.
+	 */
+	@JsonIgnore
+	public boolean isSavingsChanged() {
+		return savingsChanged;
+	}
+
+	/**
+	 * Marks this beneficiary as stored with all its changes. Should only be called by the repository responsible for
+	 * storing the account of this beneficiary.
+	 */
+	public void markPersisted() {
+		persisted = true;
+		allocationPercentageChanged = false;
+		savingsChanged = false;
+	}
+
 	public String toString() {
 		return "name = '" + name + "', allocationPercentage = " + allocationPercentage + ", savings = " + savings + ")";
 	}
@@ -18,7 +18,19 @@ public class Percentage implements Serializable {
 
 	private static final long serialVersionUID = 8077279865855620752L;
 
-	private BigDecimal value;
+	/**
+	 * One hundred percent in basis points.
+	 */
+	public static final int ONE_HUNDRED_BASIS_POINTS = 10_000;
+
+	private static final Percentage ZERO = new Percentage(BigDecimal.ZERO.setScale(2), 0);
+
+	private static final Percentage ONE_HUNDRED = new Percentage(BigDecimal.ONE.setScale(2), ONE_HUNDRED_BASIS_POINTS);
+
+	private final BigDecimal value;
+
+	// derived from the value, so that the serialized form stays the value alone
+	private final transient int basisPoints;
 
 	static BigDecimalValidator<BigDecimal> validator = BigDecimalValidatorBuilder
 			.of("value", c -> c.greaterThanOrEqual(BigDecimal.ZERO).lessThanOrEqual(BigDecimal.ONE))
@@ -34,6 +46,7 @@ public class Percentage implements Serializable {
 	@JsonCreator
 	public Percentage(BigDecimal value) {
 		this.value = validator.validated(value);
+		this.basisPoints = toBasisPoints(this.value);
 	}
 
 	/**
@@ -45,10 +58,18 @@ public class Percentage implements Serializable {
 	 */
 	public Percentage(double value) {
 		this.value = validator.validated(BigDecimal.valueOf(value));
+		this.basisPoints = toBasisPoints(this.value);
+	}
+
+	// for values known to be valid, without the cost of validating them
+	private Percentage(BigDecimal value, int basisPoints) {
+		this.value = value;
+		this.basisPoints = basisPoints;
 	}
 
 	@SuppressWarnings("unused")
 	private Percentage() {
+		this(BigDecimal.ZERO.setScale(2), 0);
 	}
 
 	/**
@@ -76,14 +97,14 @@ public class Percentage implements Serializable {
 	 * Returns zero percent.
 	 */
 	public static Percentage zero() {
-		return new Percentage(0);
+		return ZERO;
 	}
 
 	/**
 	 * Returns one hundred percent.
 	 */
 	public static Percentage oneHundred() {
-		return new Percentage(1);
+		return ONE_HUNDRED;
 	}
 
 	/**
@@ -104,6 +125,14 @@ public class Percentage implements Serializable {
 		return value.doubleValue();
 	}
 
+	/**
+	 * Return this percentage in basis points, hundredths of a percent. For example, 45% is 4500 basis points.
+	 * @return this percentage in basis points, between 0 and {@value #ONE_HUNDRED_BASIS_POINTS}
+	 */
+	public int asBasisPoints() {
+		return basisPoints;
+	}
+
 	/**
 	 * Return this percentage as a big decimal. Useful for when a big decimal type is needed by an external API or
 	 * system.
@@ -125,6 +154,17 @@ public class Percentage implements Serializable {
 		return value.hashCode();
 	}
 
+	/**
+	 * Replaces a deserialized percentage, which has no basis points, with one computed from its value.
+	 */
+	private Object readResolve() {
+		return new Percentage(value);
+	}
+
+	private static int toBasisPoints(BigDecimal value) {
+		return value.movePointRight(4).intValueExact();
+	}
+
 	public String toString() {
 		return value.multiply(new BigDecimal("100")).setScale(0) + "%";
 	}
@@ -0,0 +1,75 @@
+package lol.maki.rewarddining.account;
+
+/**
+ * The arithmetic of rewards on amounts in whole cents and percentages in basis points, as plain <code>long</code> and
+ * <code>int</code> values. Rewards are computed without creating a single {@link java.math.BigDecimal} or
+ * {@link javax.money.MonetaryAmount}, which are only converted from and to at the boundaries, with
+ * {@link USD#toCents(javax.money.MonetaryAmount)} and {@link USD#ofCents(long)}.
+ *
+ * Results are exact: a percentage of an amount is rounded half up to the cent, and an amount allocated by percentages
+ * adding up to 100% is split with the largest remainder method, so the shares always add up to the amount.
+ */
+public final class RewardArithmetic {
+
+	private RewardArithmetic() {
+	}
+
+	/**
+	 * Returns a percentage of an amount, rounded half up to the cent.
+	 * @param cents the amount in cents
+	 * @param basisPoints the percentage in basis points
+	 * @throws ArithmeticException if the amount is too large to be multiplied by the percentage
+	 */
+	public static long percentOf(long cents, int basisPoints) {
+		final long product = Math.multiplyExact(cents, basisPoints);
+		final long half = Percentage.ONE_HUNDRED_BASIS_POINTS / 2;
+		return product >= 0 ? (product + half) / Percentage.ONE_HUNDRED_BASIS_POINTS
+				: -((-product + half) / Percentage.ONE_HUNDRED_BASIS_POINTS);
+	}
+
+	/**
+	 * Splits an amount into shares by percentages adding up to 100%. Every share is first rounded down to the cent,
+	 * and the cents left over go one each to the shares that lost the largest fractions of a cent; shares that lost as
+	 * much get them in the order of the percentages.
+	 * @param cents the amount in cents, not negative
+	 * @param basisPoints the percentage of each share in basis points
+	 * @param shares the array the shares are written to, in the order of the percentages
+	 * @throws IllegalArgumentException if the amount is negative or the percentages do not add up to 100%
+	 * @throws ArithmeticException if the amount is too large to be multiplied by the percentages
+	 */
+	public static void allocate(long cents, int[] basisPoints, long[] shares) {
+		if (cents < 0) {
+			throw new IllegalArgumentException("cents must not be negative but was " + cents);
+		}
+		if (shares.length < basisPoints.length) {
+			throw new IllegalArgumentException("shares has room for " + shares.length + " shares but "
+					+ basisPoints.length + " are allocated");
+		}
+		long total = 0;
+		long allocated = 0;
+		for (int i = 0; i < basisPoints.length; i++) {
+			total += basisPoints[i];
+			shares[i] = Math.multiplyExact(cents, basisPoints[i]) / Percentage.ONE_HUNDRED_BASIS_POINTS;
+			allocated += shares[i];
+		}
+		if (total != Percentage.ONE_HUNDRED_BASIS_POINTS) {
+			throw new IllegalArgumentException("basisPoints must add up to " + Percentage.ONE_HUNDRED_BASIS_POINTS
+					+ " but add up to " + total);
+		}
+		// fewer cents are left over than there are shares, as each share lost less than a cent
+		for (long leftover = cents - allocated; leftover > 0; leftover--) {
+			int largest = -1;
+			long largestRemainder = -1;
+			for (int i = 0; i < basisPoints.length; i++) {
+				final long product = cents * basisPoints[i];
+				// a share that already got a cent left over no longer equals its rounded down share
+				if (shares[i] == product / Percentage.ONE_HUNDRED_BASIS_POINTS
+						&& product % Percentage.ONE_HUNDRED_BASIS_POINTS > largestRemainder) {
+					largest = i;
+					largestRemainder = product % Percentage.ONE_HUNDRED_BASIS_POINTS;
+				}
+			}
+			shares[largest]++;
+		}
+	}
+}
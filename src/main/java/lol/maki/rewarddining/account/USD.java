@@ -1,7 +1,10 @@
 package lol.maki.rewarddining.account;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 
+import javax.money.CurrencyUnit;
+import javax.money.Monetary;
 import javax.money.MonetaryAmount;
 
 import am.ik.yavi.builder.BigDecimalValidatorBuilder;
@@ -10,6 +13,10 @@ import am.ik.yavi.core.ValueValidator;
 import org.javamoney.moneta.Money;
 
 public class USD {
+	static final CurrencyUnit CURRENCY = Monetary.getCurrency("USD");
+
+	private static final MonetaryAmount ZERO = Money.of(BigDecimal.ZERO.setScale(2), CURRENCY);
+
 	static ValueValidator<String, MonetaryAmount> validator = StringValidatorBuilder
 			.of("number", c -> c.notBlank().isBigDecimal())
 			.build(BigDecimal::new)
@@ -20,4 +27,30 @@ public class USD {
 	public static MonetaryAmount valueOf(String number) {
 		return validator.validated(number);
 	}
+
+	/**
+	 * Returns zero dollars.
+	 */
+	public static MonetaryAmount zero() {
+		return ZERO;
+	}
+
+	/**
+	 * Returns an amount of whole cents.
+	 */
+	public static MonetaryAmount ofCents(long cents) {
+		return cents == 0 ? ZERO : Money.of(BigDecimal.valueOf(cents, 2), CURRENCY);
+	}
+
+	/**
+	 * Returns an amount in whole cents, rounding half a cent up.
+	 * @throws ArithmeticException if the amount does not fit in a <code>long</code>
+	 */
+	public static long toCents(MonetaryAmount amount) {
+		final BigDecimal number = amount.getNumber().numberValue(BigDecimal.class);
+		if (number.scale() == 2) {
+			return number.unscaledValue().longValueExact();
+		}
+		return number.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+	}
 }
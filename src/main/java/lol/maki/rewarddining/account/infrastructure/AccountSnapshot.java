@@ -0,0 +1,44 @@
+package lol.maki.rewarddining.account.infrastructure;
+
+import java.util.List;
+
+import javax.money.MonetaryAmount;
+
+import lol.maki.rewarddining.account.Account;
+import lol.maki.rewarddining.account.Beneficiary;
+import lol.maki.rewarddining.account.Percentage;
+
+/**
+ * The state of an account aggregate at the time it was cached. Immutable, so one snapshot can be read by many threads
+ * at once; each of them gets its own {@link Account} from {@link #toAccount()}.
+ * @param version the version of the cache stripe of the account when it was loaded
+ * @param accountVersion the version of the account itself
+ */
+record AccountSnapshot(long version, Long id, Long accountVersion, String number, String name,
+		List<BeneficiarySnapshot> beneficiaries) {
+
+	static AccountSnapshot of(long version, Account account) {
+		return new AccountSnapshot(version, account.getId(), account.getVersion(), account.getNumber(), account.getName(),
+				account.getBeneficiaries().stream()
+						.map(b -> new BeneficiarySnapshot(b.getId(), b.getName(), b.getAllocationPercentage(), b.getSavings()))
+						.toList());
+	}
+
+	/**
+	 * Returns a new account with the state of the snapshot.
+	 */
+	Account toAccount() {
+		final Account account = new Account(id, number, name);
+		account.setVersion(accountVersion);
+		for (BeneficiarySnapshot snapshot : beneficiaries) {
+			final Beneficiary beneficiary = new Beneficiary(snapshot.name(), snapshot.allocationPercentage(),
+					snapshot.savings());
+			beneficiary.setId(snapshot.id());
+			account.restoreBeneficiary(beneficiary);
+		}
+		return account;
+	}
+
+	record BeneficiarySnapshot(Long id, String name, Percentage allocationPercentage, MonetaryAmount savings) {
+	}
+}
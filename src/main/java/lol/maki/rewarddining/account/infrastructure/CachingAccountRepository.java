@@ -0,0 +1,243 @@
+package lol.maki.rewarddining.account.infrastructure;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.money.MonetaryAmount;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lol.maki.rewarddining.account.Account;
+import lol.maki.rewarddining.account.AccountRepository;
+import lol.maki.rewarddining.account.AccountSummary;
+import lol.maki.rewarddining.util.LruCache;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Account repository that answers {@link #findById(Long)} from a cache of the most recently found accounts, and passes
+ * everything else to another repository.
+ *
+ * The cache holds immutable {@link AccountSnapshot snapshots}, and every caller gets an account of its own, so a
+ * caller changing its account changes neither the cache nor the account of another caller. Every write through this
+ * repository evicts the accounts it changes, once when it is made and again when its transaction completes, so that an
+ * account read by another transaction in between is not cached either.
+ *
+ * A load racing a write could still read the account as it was before the write, and cache it after the eviction. To
+ * prevent that, each account id maps to one of {@value #STRIPES} versions, which every eviction increments; a loaded
+ * account is only cached if the version of its id did not change while it was loaded, and a cached account is only
+ * returned if the version did not change since. Accounts found within a transaction that is not read-only are not
+ * cached, as they may have changes that are not committed yet. Accounts changed with SQL that does not go through
+ * this repository, such as savings corrected by the savings replay, must be evicted with {@link #evict(Collection)} or
+ * {@link #evictAll()}, as cached accounts do not expire.
+ */
+public class CachingAccountRepository implements AccountRepository {
+
+	private static final int STRIPES = 1024;
+
+	private final AccountRepository delegate;
+
+	private final LruCache<Long, AccountSnapshot> cache;
+
+	private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+
+	/**
+	 * @param delegate the repository accounts are loaded from and written to
+	 * @param cacheSize the maximum number of accounts in the cache
+	 */
+	public CachingAccountRepository(AccountRepository delegate, int cacheSize, MeterRegistry meterRegistry) {
+		this.delegate = delegate;
+		this.cache = new LruCache<>(cacheSize);
+		Gauge.builder("account.cache.size", this.cache, LruCache::size)
+				.description("Accounts in the cache")
+				.register(meterRegistry);
+		FunctionCounter.builder("account.cache.hits", this.cache, LruCache::hits)
+				.description("Accounts found in the cache")
+				.register(meterRegistry);
+		FunctionCounter.builder("account.cache.misses", this.cache, LruCache::misses)
+				.description("Accounts loaded from the database")
+				.register(meterRegistry);
+		FunctionCounter.builder("account.cache.evictions", this.cache, LruCache::evictions)
+				.description("Accounts evicted to make room for others")
+				.register(meterRegistry);
+		Gauge.builder("account.cache.hit-rate", this.cache, LruCache::hitRate)
+				.description("Share of accounts found in the cache")
+				.register(meterRegistry);
+	}
+
+	@Override
+	public Account findById(Long id) {
+		final long version = versions.get(stripe(id));
+		final AccountSnapshot cached = cache.get(id);
+		// a snapshot put right after the eviction of a write is older than the version
+		if (cached != null && cached.version() == version) {
+			return cached.toAccount();
+		}
+		final Account account = delegate.findById(id);
+		// a transaction that may write could have read its own changes, which others must not see before it commits
+		final boolean writing = TransactionSynchronizationManager.isActualTransactionActive()
+				&& !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+		if (!writing && versions.get(stripe(id)) == version) {
+			cache.put(id, AccountSnapshot.of(version, account));
+		}
+		return account;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Accounts in the cache are taken from it, and only the others are loaded, all at once, and cached.
+	 */
+	@Override
+	public List<Account> findAllById(Collection<Long> ids) {
+		final Map<Long, Account> found = new TreeMap<>();
+		final Map<Long, Long> missed = new HashMap<>();
+		for (Long id : ids) {
+			final long version = versions.get(stripe(id));
+			final AccountSnapshot cached = cache.get(id);
+			if (cached != null && cached.version() == version) {
+				found.put(id, cached.toAccount());
+			}
+			else {
+				missed.put(id, version);
+			}
+		}
+		if (!missed.isEmpty()) {
+			final boolean writing = TransactionSynchronizationManager.isActualTransactionActive()
+					&& !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+			for (Account account : delegate.findAllById(missed.keySet())) {
+				final long version = missed.get(account.getId());
+				if (!writing && versions.get(stripe(account.getId())) == version) {
+					cache.put(account.getId(), AccountSnapshot.of(version, account));
+				}
+				found.put(account.getId(), account);
+			}
+		}
+		return new ArrayList<>(found.values());
+	}
+
+	@Override
+	public List<Account> findAll() {
+		return delegate.findAll();
+	}
+
+	@Override
+	public List<Account> findAll(Long afterId, int limit) {
+		return delegate.findAll(afterId, limit);
+	}
+
+	@Override
+	public List<AccountSummary> findSummaries(Long afterId, int limit) {
+		return delegate.findSummaries(afterId, limit);
+	}
+
+	@Override
+	public Account findByCreditCard(String creditCardNumber) {
+		return delegate.findByCreditCard(creditCardNumber);
+	}
+
+	@Override
+	public Map<String, Account> findByCreditCards(Collection<String> creditCardNumbers) {
+		return delegate.findByCreditCards(creditCardNumbers);
+	}
+
+	@Override
+	public Map<String, Long> findAccountIdsByCreditCards(Collection<String> creditCardNumbers) {
+		return delegate.findAccountIdsByCreditCards(creditCardNumbers);
+	}
+
+	@Override
+	public Account insert(Account account) {
+		final Account inserted = delegate.insert(account);
+		evict(List.of(inserted.getId()));
+		return inserted;
+	}
+
+	@Override
+	public void update(Account account) {
+		delegate.update(account);
+		evict(List.of(account.getId()));
+	}
+
+	@Override
+	public void updateBeneficiaries(Account account) {
+		delegate.updateBeneficiaries(account);
+		evict(List.of(account.getId()));
+	}
+
+	@Override
+	public void updateBeneficiarySavings(Collection<Account> accounts) {
+		delegate.updateBeneficiarySavings(accounts);
+		evict(accounts.stream().map(Account::getId).toList());
+	}
+
+	@Override
+	public void addBeneficiarySavings(Map<Long, Map<String, MonetaryAmount>> savingsByAccountId) {
+		delegate.addBeneficiarySavings(savingsByAccountId);
+		evict(List.copyOf(savingsByAccountId.keySet()));
+	}
+
+	/**
+	 * Returns the number of cached accounts.
+	 */
+	public int size() {
+		return cache.size();
+	}
+
+	/**
+	 * Returns the share of accounts found in the cache.
+	 */
+	public double hitRate() {
+		return cache.hitRate();
+	}
+
+	/**
+	 * Evicts accounts, such as those changed without this repository. Within a transaction, they are evicted again
+	 * when it completes.
+	 * @param changedAccountIds the ids of the changed accounts
+	 */
+	public void evict(Collection<Long> changedAccountIds) {
+		final List<Long> accountIds = List.copyOf(changedAccountIds);
+		evictNow(accountIds);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					evictNow(accountIds);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Evicts all accounts, for changes to accounts that are not known one by one.
+	 */
+	public void evictAll() {
+		// the versions first, so that a load finishing in between does not cache its account again
+		for (int i = 0; i < STRIPES; i++) {
+			versions.incrementAndGet(i);
+		}
+		cache.clear();
+	}
+
+	private void evictNow(List<Long> accountIds) {
+		for (Long id : accountIds) {
+			// the version first, so that a load finishing in between does not cache the account again
+			versions.incrementAndGet(stripe(id));
+			cache.remove(id);
+		}
+	}
+
+	private static int stripe(Long id) {
+		final int h = id.hashCode();
+		// spread the high bits, as consecutive ids differ mostly in the low ones
+		return (h ^ (h >>> 16)) & (STRIPES - 1);
+	}
+}
@@ -0,0 +1,210 @@
+package lol.maki.rewarddining.account.infrastructure;
+
+import java.util.concurrent.locks.StampedLock;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lol.maki.rewarddining.util.FileLoader;
+import lol.maki.rewarddining.util.LongLongHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maps credit card numbers to the ids of their accounts in memory, so that finding the account of a card is a primary
+ * key lookup instead of a join on T_ACCOUNT_CREDIT_CARD, which has no index on the card number alone.
+ *
+ * Card numbers of up to 18 digits are encoded as a <code>long</code> and kept in a {@link LongLongHashMap}, at 16 bytes
+ * per slot; other card numbers are not indexed. The index is loaded from T_ACCOUNT_CREDIT_CARD on start, and kept
+ * current by the repository: cards found in the database are added, and cards the database no longer has for their
+ * indexed account are removed. Lookups are lock-free unless they race a change of the index.
+ */
+@Component
+public class CreditCardIndex implements InitializingBean, MeterBinder {
+
+	/**
+	 * The account id returned for cards that are not indexed.
+	 */
+	public static final long ABSENT = -1;
+
+	private final Logger log = LoggerFactory.getLogger(CreditCardIndex.class);
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final StampedLock lock = new StampedLock();
+
+	private LongLongHashMap accountIds = new LongLongHashMap(0);
+
+	public CreditCardIndex(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		reload();
+	}
+
+	/**
+	 * Replaces the index with the cards in T_ACCOUNT_CREDIT_CARD. Cards added or removed while it is loaded may be
+	 * missed, and are then corrected by the next lookup of the card.
+	 */
+	public void reload() {
+		final Integer cards = jdbcTemplate.queryForObject(
+				FileLoader.load("lol/maki/rewarddining/account/CreditCardIndex/countCreditCards.sql"), Integer.class);
+		final LongLongHashMap loaded = new LongLongHashMap(cards);
+		jdbcTemplate.query(FileLoader.load("lol/maki/rewarddining/account/CreditCardIndex/findAllCreditCards.sql"),
+				rs -> {
+					final long key = encode(rs.getString("CREDIT_CARD_NUMBER"));
+					if (key != 0) {
+						loaded.put(key, rs.getLong("ACCOUNT_ID"));
+					}
+				});
+		final long stamp = lock.writeLock();
+		try {
+			accountIds = loaded;
+		}
+		finally {
+			lock.unlockWrite(stamp);
+		}
+		log.info("Indexed {} credit cards in {} KiB ({} bytes per card)", loaded.size(), loaded.sizeInBytes() / 1024,
+				Math.round(bytesPerCard()));
+	}
+
+	/**
+	 * Returns the id of the account of a card, or {@link #ABSENT} if the card is not indexed.
+	 */
+	public long find(String creditCardNumber) {
+		final long key = encode(creditCardNumber);
+		if (key == 0) {
+			return ABSENT;
+		}
+		long stamp = lock.tryOptimisticRead();
+		long accountId = accountIds.get(key, ABSENT);
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				accountId = accountIds.get(key, ABSENT);
+			}
+			finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return accountId;
+	}
+
+	/**
+	 * Indexes a card, replacing the account it was indexed for.
+	 */
+	public void put(String creditCardNumber, long accountId) {
+		final long key = encode(creditCardNumber);
+		if (key == 0) {
+			return;
+		}
+		final long stamp = lock.writeLock();
+		try {
+			accountIds.put(key, accountId);
+		}
+		finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Removes a card from the index.
+	 */
+	public void remove(String creditCardNumber) {
+		final long key = encode(creditCardNumber);
+		if (key == 0) {
+			return;
+		}
+		final long stamp = lock.writeLock();
+		try {
+			accountIds.remove(key);
+		}
+		finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Returns the number of indexed cards.
+	 */
+	public int size() {
+		final long stamp = lock.readLock();
+		try {
+			return accountIds.size();
+		}
+		finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Returns the memory used by the index in bytes.
+	 */
+	public long sizeInBytes() {
+		final long stamp = lock.readLock();
+		try {
+			return accountIds.sizeInBytes();
+		}
+		finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Returns the memory used by the index per indexed card, between 21 and 43 bytes once the index is large.
+	 */
+	public double bytesPerCard() {
+		final long stamp = lock.readLock();
+		try {
+			return accountIds.size() == 0 ? 0 : (double) accountIds.sizeInBytes() / accountIds.size();
+		}
+		finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("account.credit-card-index.cards", this, CreditCardIndex::size)
+				.description("Credit cards in the index")
+				.register(registry);
+		Gauge.builder("account.credit-card-index.size", this, CreditCardIndex::sizeInBytes)
+				.description("Memory used by the index")
+				.baseUnit("bytes")
+				.register(registry);
+		Gauge.builder("account.credit-card-index.bytes-per-card", this, CreditCardIndex::bytesPerCard)
+				.description("Memory used by the index per credit card")
+				.baseUnit("bytes")
+				.register(registry);
+	}
+
+	/**
+	 * Encodes a card number of 1 to 18 digits as a positive <code>long</code>, keeping its leading zeros by prefixing
+	 * it with a 1.
+	 * @return the encoded number, or 0 if the card number is null or cannot be encoded
+	 */
+	static long encode(String creditCardNumber) {
+		if (creditCardNumber == null) {
+			return 0;
+		}
+		final int length = creditCardNumber.length();
+		if (length == 0 || length > 18) {
+			return 0;
+		}
+		long key = 1;
+		for (int i = 0; i < length; i++) {
+			final char c = creditCardNumber.charAt(i);
+			if (c < '0' || c > '9') {
+				return 0;
+			}
+			key = key * 10 + (c - '0');
+		}
+		return key;
+	}
+}
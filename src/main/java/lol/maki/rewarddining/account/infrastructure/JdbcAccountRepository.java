@@ -5,9 +5,12 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.TreeSet;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -15,6 +18,8 @@ import javax.money.MonetaryAmount;
 
 import lol.maki.rewarddining.account.Account;
 import lol.maki.rewarddining.account.AccountRepository;
+import lol.maki.rewarddining.account.AccountSummary;
+import lol.maki.rewarddining.account.AccountVersionConflictException;
 import lol.maki.rewarddining.account.Beneficiary;
 import lol.maki.rewarddining.account.Percentage;
 import lol.maki.rewarddining.account.USD;
@@ -24,6 +29,7 @@ import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
@@ -33,47 +39,206 @@ import org.springframework.util.CollectionUtils;
 
 /**
  * Loads accounts from a data source using the JDBC API.
+ *
+ * Aggregates are loaded in two phases: first the account rows, then the beneficiaries of all of them with one
+ * <code>IN</code> query per {@value #IN_CLAUSE_SIZE} accounts. Joining beneficiaries and credit cards in one statement
+ * would return a row per beneficiary and card of every account, each mapped again.
+ *
+ * Accounts are found by credit card through the {@link CreditCardIndex}: an indexed card costs a primary key lookup of
+ * its account that also checks the card still belongs to it. Cards that are not indexed, or no longer belong to the
+ * indexed account, fall back to a join on the card number, and the index is corrected with what it finds.
  */
 @Repository
 public class JdbcAccountRepository implements AccountRepository {
 
+	/**
+	 * The maximum number of bind values put into a single <code>IN</code> list.
+	 */
+	private static final int IN_CLAUSE_SIZE = 500;
+
 	private final JdbcTemplate jdbcTemplate;
 
 	private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 
-	public JdbcAccountRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+	private final CreditCardIndex creditCardIndex;
+
+	public JdbcAccountRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+			CreditCardIndex creditCardIndex) {
 		this.jdbcTemplate = jdbcTemplate;
 		this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+		this.creditCardIndex = creditCardIndex;
 	}
 
-	private final ResultSetExtractor<List<Account>> accountsExtractor = new AccountsExtractor();
+	private final RowMapper<Account> accountMapper = (rs, rowNum) -> mapAccount(rs);
 
 	@Override
 	public List<Account> findAll() {
 		final String sql = FileLoader.load("lol/maki/rewarddining/account/AccountRepository/findAll.sql");
-		return this.jdbcTemplate.query(sql, this.accountsExtractor);
+		final List<Account> accounts = this.jdbcTemplate.query(sql, this.accountMapper);
+		// all beneficiaries at once, as an IN list must be compared with every row it finds
+		final Map<Long, Account> accountsById = accountsById(accounts);
+		this.jdbcTemplate.query(FileLoader.load("lol/maki/rewarddining/account/AccountRepository/findAllBeneficiaries.sql"),
+				rs -> {
+					restoreBeneficiary(accountsById, rs);
+				});
+		return accounts;
+	}
+
+	@Override
+	public List<Account> findAll(Long afterId, int limit) {
+		final String sql = FileLoader.load("lol/maki/rewarddining/account/AccountRepository/findAllAfter.sql");
+		final List<Account> accounts = this.jdbcTemplate.query(sql, this.accountMapper,
+				afterId == null ? Long.MIN_VALUE : afterId, limit);
+		if (!accounts.isEmpty()) {
+			// a page is a range of ids, which the index on the account id finds without an IN list
+			final Map<Long, Account> accountsById = accountsById(accounts);
+			this.jdbcTemplate.query(
+					FileLoader.load("lol/maki/rewarddining/account/AccountRepository/findBeneficiariesBetween.sql"),
+					rs -> {
+						restoreBeneficiary(accountsById, rs);
+					}, accounts.get(0).getId(), accounts.get(accounts.size() - 1).getId());
+		}
+		return accounts;
+	}
+
+	@Override
+	public List<AccountSummary> findSummaries(Long afterId, int limit) {
+		final String sql = FileLoader.load("lol/maki/rewarddining/account/AccountRepository/findSummariesAfter.sql");
+		return this.jdbcTemplate.query(sql, (rs, rowNum) -> new AccountSummary(rs.getLong("ID"),
+				rs.getString("ACCOUNT_NUMBER"), rs.getString("ACCOUNT_NAME"), rs.getInt("BENEFICIARY_COUNT")),
+				afterId == null ? Long.MIN_VALUE : afterId, limit);
 	}
 
 	@Override
 	public Account findById(Long id) {
 		final String sql = FileLoader.load("lol/maki/rewarddining/account/AccountRepository/findById.sql");
-		final List<Account> accounts = this.jdbcTemplate.query(sql, this.accountsExtractor, id);
+		final List<Account> accounts = this.jdbcTemplate.query(sql, this.accountMapper, id);
 		if (accounts.isEmpty()) {
 			throw new EmptyResultDataAccessException(1);
 		}
+		restoreBeneficiaries(accounts.subList(0, 1));
 		return accounts.get(0);
 	}
 
+	@Override
+	public List<Account> findAllById(Collection<Long> ids) {
+		final String sql = FileLoader.load("lol/maki/rewarddining/account/AccountRepository/findByIds.sql");
+		// sorted, so that the accounts of all chunks come out ordered by id
+		final List<Long> accountIds = new ArrayList<>(new TreeSet<>(ids));
+		final List<Account> accounts = new ArrayList<>(accountIds.size());
+		for (int i = 0; i < accountIds.size(); i += IN_CLAUSE_SIZE) {
+			final List<Long> chunk = accountIds.subList(i, Math.min(i + IN_CLAUSE_SIZE, accountIds.size()));
+			accounts.addAll(this.namedParameterJdbcTemplate.query(sql, Map.of("accountIds", chunk), this.accountMapper));
+		}
+		restoreBeneficiaries(accounts);
+		return accounts;
+	}
+
 	@Override
 	public Account findByCreditCard(String creditCardNumber) {
+		final long accountId = this.creditCardIndex.find(creditCardNumber);
+		if (accountId != CreditCardIndex.ABSENT) {
+			final String sql = FileLoader.load("lol/maki/rewarddining/account/AccountRepository/findByIdAndCreditCard.sql");
+			final List<Account> accounts = this.jdbcTemplate.query(sql, this.accountMapper, accountId, creditCardNumber);
+			if (!accounts.isEmpty()) {
+				restoreBeneficiaries(accounts.subList(0, 1));
+				return accounts.get(0);
+			}
+			// the card was removed, or moved to another account, behind the index's back
+			this.creditCardIndex.remove(creditCardNumber);
+		}
 		final String sql = FileLoader.load("lol/maki/rewarddining/account/AccountRepository/findByCreditCard.sql");
-		final List<Account> accounts = this.jdbcTemplate.query(sql, this.accountsExtractor, creditCardNumber);
+		final List<Account> accounts = this.jdbcTemplate.query(sql, this.accountMapper, creditCardNumber);
 		if (accounts.isEmpty()) {
 			throw new EmptyResultDataAccessException(1);
 		}
+		restoreBeneficiaries(accounts.subList(0, 1));
+		this.creditCardIndex.put(creditCardNumber, accounts.get(0).getId());
 		return accounts.get(0);
 	}
 
+	@Override
+	public Map<String, Account> findByCreditCards(Collection<String> creditCardNumbers) {
+		final Map<String, Long> indexed = new HashMap<>();
+		final List<String> unindexed = new ArrayList<>();
+		for (String number : new HashSet<>(creditCardNumbers)) {
+			final long accountId = this.creditCardIndex.find(number);
+			if (accountId == CreditCardIndex.ABSENT) {
+				unindexed.add(number);
+			}
+			else {
+				indexed.put(number, accountId);
+			}
+		}
+		final CreditCardAccountsExtractor extractor = new CreditCardAccountsExtractor();
+		if (!indexed.isEmpty()) {
+			final String sql = FileLoader.load("lol/maki/rewarddining/account/AccountRepository/findByIdsAndCreditCards.sql");
+			final List<String> numbers = new ArrayList<>(indexed.keySet());
+			for (int i = 0; i < numbers.size(); i += IN_CLAUSE_SIZE) {
+				final List<String> chunk = numbers.subList(i, Math.min(i + IN_CLAUSE_SIZE, numbers.size()));
+				final Set<Long> accountIds = chunk.stream().map(indexed::get).collect(Collectors.toSet());
+				this.namedParameterJdbcTemplate.query(sql, Map.of("accountIds", accountIds, "creditCardNumbers", chunk),
+						extractor);
+			}
+			for (String number : numbers) {
+				if (!extractor.accountsByCreditCard.containsKey(number)) {
+					// removed, or moved to another account, behind the index's back
+					this.creditCardIndex.remove(number);
+					unindexed.add(number);
+				}
+			}
+		}
+		if (!unindexed.isEmpty()) {
+			final String sql = FileLoader.load("lol/maki/rewarddining/account/AccountRepository/findByCreditCards.sql");
+			for (int i = 0; i < unindexed.size(); i += IN_CLAUSE_SIZE) {
+				final List<String> chunk = unindexed.subList(i, Math.min(i + IN_CLAUSE_SIZE, unindexed.size()));
+				this.namedParameterJdbcTemplate.query(sql, Map.of("creditCardNumbers", chunk), extractor);
+			}
+			for (String number : unindexed) {
+				final Account account = extractor.accountsByCreditCard.get(number);
+				if (account != null) {
+					this.creditCardIndex.put(number, account.getId());
+				}
+			}
+		}
+		restoreBeneficiaries(extractor.accountsById.values());
+		return extractor.accountsByCreditCard;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The ids of indexed cards are not checked against the database, so a card removed behind the index's back may
+	 * still be found until it is looked up by {@link #findByCreditCard(String)} or
+	 * {@link #findByCreditCards(Collection)}.
+	 */
+	@Override
+	public Map<String, Long> findAccountIdsByCreditCards(Collection<String> creditCardNumbers) {
+		final Map<String, Long> accountIds = new HashMap<>();
+		final List<String> unindexed = new ArrayList<>();
+		for (String number : new HashSet<>(creditCardNumbers)) {
+			final long accountId = this.creditCardIndex.find(number);
+			if (accountId == CreditCardIndex.ABSENT) {
+				unindexed.add(number);
+			}
+			else {
+				accountIds.put(number, accountId);
+			}
+		}
+		final String sql = FileLoader.load("lol/maki/rewarddining/account/AccountRepository/findAccountIdsByCreditCards.sql");
+		for (int i = 0; i < unindexed.size(); i += IN_CLAUSE_SIZE) {
+			final List<String> chunk = unindexed.subList(i, Math.min(i + IN_CLAUSE_SIZE, unindexed.size()));
+			this.namedParameterJdbcTemplate.query(sql, Map.of("creditCardNumbers", chunk),
+					rs -> {
+						final String number = rs.getString("CREDIT_CARD_NUMBER");
+						final long accountId = rs.getLong("ACCOUNT_ID");
+						accountIds.put(number, accountId);
+						this.creditCardIndex.put(number, accountId);
+					});
+		}
+		return accountIds;
+	}
+
 	@Override
 	@Transactional
 	public Account insert(Account account) {
@@ -87,6 +252,7 @@ public class JdbcAccountRepository implements AccountRepository {
 		}, keyHolder);
 		final long accountId = keyHolder.getKey().longValue();
 		account.setId(accountId);
+		account.setVersion(0L);
 		final Set<Beneficiary> beneficiaries = account.getBeneficiaries();
 		if (!CollectionUtils.isEmpty(beneficiaries)) {
 			final String insertBeneficiarySql = FileLoader.load("lol/maki/rewarddining/account/AccountRepository/insertBeneficiaries.sql");
@@ -95,9 +261,17 @@ public class JdbcAccountRepository implements AccountRepository {
 					.collect(Collectors.toList());
 			this.jdbcTemplate.batchUpdate(insertBeneficiarySql, args);
 		}
+		account.markPersisted();
 		return account;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * If the account has a version, it is only updated if its version in the database is still the same, and a
+	 * {@link AccountVersionConflictException} is thrown otherwise. An account without a version, such as one built from
+	 * a form, is updated whatever its version.
+	 */
 	@Override
 	@Transactional
 	public void update(Account account) {
@@ -105,34 +279,173 @@ public class JdbcAccountRepository implements AccountRepository {
 			this.insert(account);
 			return;
 		}
-		final String updateAccountSql = FileLoader.load("lol/maki/rewarddining/account/AccountRepository/updateAccount.sql");
-		this.jdbcTemplate.update(updateAccountSql, account.getNumber(), account.getName(), account.getId());
-		this.updateBeneficiaries(account);
+		if (account.getVersion() == null) {
+			final String sql = FileLoader.load("lol/maki/rewarddining/account/AccountRepository/updateAccount.sql");
+			this.jdbcTemplate.update(sql, account.getNumber(), account.getName(), account.getId());
+		}
+		else {
+			final String sql = FileLoader.load("lol/maki/rewarddining/account/AccountRepository/updateAccountVersioned.sql");
+			if (this.jdbcTemplate.update(sql, account.getNumber(), account.getName(), account.getId(),
+					account.getVersion()) == 0) {
+				throw new AccountVersionConflictException(account);
+			}
+			account.setVersion(account.getVersion() + 1);
+		}
+		this.writeBeneficiaryChanges(account);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Only the changes tracked by the account are written: removed beneficiaries are deleted, new ones inserted, and
+	 * changed allocation percentages and savings updated, so an unchanged account costs no statement at all. Unless
+	 * only savings changed, the version of the account is checked and incremented first, and a
+	 * {@link AccountVersionConflictException} is thrown if it changed since the account was loaded. Savings alone are
+	 * written without, as they are never written by anything that also writes allocations, and rewards of the same
+	 * account are serialized anyway.
+	 */
 	@Override
 	@Transactional
 	public void updateBeneficiaries(Account account) {
-		final Set<Beneficiary> beneficiaries = account.getBeneficiaries();
-		final List<Beneficiary> beneficiariesToUpdate = beneficiaries.stream().filter(x -> x.getId() != null).collect(Collectors.toList());
-		final List<Beneficiary> beneficiariesToInsert = beneficiaries.stream().filter(x -> x.getId() == null).collect(Collectors.toList());
-		if (!CollectionUtils.isEmpty(beneficiariesToUpdate)) {
-			final String sql = FileLoader.load("lol/maki/rewarddining/account/AccountRepository/updateBeneficiaries.sql");
-			final List<Object[]> args = beneficiariesToUpdate.stream()
-					.map(b -> new Object[] { b.getSavings().getNumber().numberValue(BigDecimal.class), account.getId(), b.getName() })
-					.collect(Collectors.toList());
+		if (account.isAllocationChanged()) {
+			if (account.getVersion() == null) {
+				throw new IllegalArgumentException("Account " + account.getId() + " has no version");
+			}
+			final String sql = FileLoader.load("lol/maki/rewarddining/account/AccountRepository/incrementVersion.sql");
+			if (this.jdbcTemplate.update(sql, account.getId(), account.getVersion()) == 0) {
+				throw new AccountVersionConflictException(account);
+			}
+			account.setVersion(account.getVersion() + 1);
+		}
+		this.writeBeneficiaryChanges(account);
+	}
+
+	@Override
+	@Transactional
+	public void updateBeneficiarySavings(Collection<Account> accounts) {
+		final String sql = FileLoader.load("lol/maki/rewarddining/account/AccountRepository/updateBeneficiaries.sql");
+		final List<Object[]> args = new ArrayList<>();
+		final List<Beneficiary> written = new ArrayList<>();
+		for (Account account : accounts) {
+			for (Beneficiary b : account.getBeneficiaries()) {
+				if (b.isSavingsChanged() && !b.isNew()) {
+					args.add(new Object[] { b.getSavings().getNumber().numberValue(BigDecimal.class), account.getId(), b.getName() });
+					written.add(b);
+				}
+			}
+		}
+		if (!args.isEmpty()) {
 			this.jdbcTemplate.batchUpdate(sql, args);
 		}
-		if (!CollectionUtils.isEmpty(beneficiariesToInsert)) {
-			final String sql = FileLoader.load("lol/maki/rewarddining/account/AccountRepository/insertBeneficiaries.sql");
-			final List<Object[]> args = beneficiariesToInsert.stream()
-					.map(b -> new Object[] { account.getId(), b.getName(), b.getAllocationPercentage().asBigDecimal(), b.getSavings().getNumber().numberValue(BigDecimal.class) })
-					.collect(Collectors.toList());
+		for (Beneficiary b : written) {
+			// a changed allocation is left to updateBeneficiaries
+			if (!b.isAllocationPercentageChanged()) {
+				b.markPersisted();
+			}
+		}
+	}
+
+	@Override
+	@Transactional
+	public void addBeneficiarySavings(Map<Long, Map<String, MonetaryAmount>> savingsByAccountId) {
+		final String sql = FileLoader.load("lol/maki/rewarddining/account/AccountRepository/addBeneficiarySavings.sql");
+		final List<Object[]> args = new ArrayList<>();
+		savingsByAccountId.forEach((accountId, savings) -> savings.forEach((name, amount) ->
+				args.add(new Object[] { amount.getNumber().numberValue(BigDecimal.class), accountId, name })));
+		if (!args.isEmpty()) {
 			this.jdbcTemplate.batchUpdate(sql, args);
 		}
-		final List<String> beneficiaryNames = beneficiaries.stream().map(Beneficiary::getName).collect(Collectors.toList());
-		final String sql = FileLoader.load("lol/maki/rewarddining/account/AccountRepository/deleteBeneficiaries.sql");
-		this.namedParameterJdbcTemplate.update(sql, Map.of("accountId", account.getId(), "beneficiaryNames", beneficiaryNames));
+	}
+
+	/**
+	 * Writes the changes the account tracked since it was loaded or last stored, with one batch per kind of change.
+	 * Removed beneficiaries are deleted first, so that a beneficiary removed and added again under the same name is
+	 * inserted afresh.
+	 */
+	private void writeBeneficiaryChanges(Account account) {
+		final Long accountId = account.getId();
+		final List<Object[]> deletes = new ArrayList<>();
+		for (String name : account.getRemovedBeneficiaryNames()) {
+			deletes.add(new Object[] { accountId, name });
+		}
+		final List<Object[]> allocationUpdates = new ArrayList<>();
+		final List<Object[]> savingsUpdates = new ArrayList<>();
+		final List<Object[]> inserts = new ArrayList<>();
+		for (Beneficiary b : account.getBeneficiaries()) {
+			if (b.isNew()) {
+				inserts.add(new Object[] { accountId, b.getName(), b.getAllocationPercentage().asBigDecimal(), b.getSavings().getNumber().numberValue(BigDecimal.class) });
+				continue;
+			}
+			if (b.isAllocationPercentageChanged()) {
+				allocationUpdates.add(new Object[] { b.getAllocationPercentage().asBigDecimal(), accountId, b.getName() });
+			}
+			if (b.isSavingsChanged()) {
+				savingsUpdates.add(new Object[] { b.getSavings().getNumber().numberValue(BigDecimal.class), accountId, b.getName() });
+			}
+		}
+		batchUpdate("deleteBeneficiaries", deletes);
+		batchUpdate("updateBeneficiaryAllocationPercentages", allocationUpdates);
+		batchUpdate("updateBeneficiaries", savingsUpdates);
+		batchUpdate("insertBeneficiaries", inserts);
+		account.markPersisted();
+	}
+
+	private void batchUpdate(String statement, List<Object[]> args) {
+		if (args.isEmpty()) {
+			return;
+		}
+		this.jdbcTemplate.batchUpdate(FileLoader.load("lol/maki/rewarddining/account/AccountRepository/" + statement + ".sql"),
+				args);
+	}
+
+	/**
+	 * Loads the beneficiaries of accounts that were loaded without them, in one query per {@value #IN_CLAUSE_SIZE}
+	 * accounts.
+	 * @param accounts the accounts, all with distinct ids
+	 */
+	private void restoreBeneficiaries(Collection<Account> accounts) {
+		if (accounts.isEmpty()) {
+			return;
+		}
+		final String sql = FileLoader.load("lol/maki/rewarddining/account/AccountRepository/findBeneficiaries.sql");
+		final Map<Long, Account> accountsById = accountsById(accounts);
+		final List<Long> accountIds = new ArrayList<>(accountsById.keySet());
+		for (int i = 0; i < accountIds.size(); i += IN_CLAUSE_SIZE) {
+			final List<Long> chunk = accountIds.subList(i, Math.min(i + IN_CLAUSE_SIZE, accountIds.size()));
+			this.namedParameterJdbcTemplate.query(sql, Map.of("accountIds", chunk),
+					rs -> {
+						restoreBeneficiary(accountsById, rs);
+					});
+		}
+	}
+
+	private static Map<Long, Account> accountsById(Collection<Account> accounts) {
+		final Map<Long, Account> accountsById = new HashMap<>(accounts.size() * 2);
+		for (Account account : accounts) {
+			accountsById.put(account.getId(), account);
+		}
+		return accountsById;
+	}
+
+	/**
+	 * Restores the beneficiary in a single row to its account, unless the account was inserted after the accounts were
+	 * loaded.
+	 */
+	private void restoreBeneficiary(Map<Long, Account> accountsById, ResultSet rs) throws SQLException {
+		final Account account = accountsById.get(rs.getLong("ACCOUNT_ID"));
+		if (account != null) {
+			account.restoreBeneficiary(mapBeneficiary(rs));
+		}
+	}
+
+	/**
+	 * Maps the account columns in a single row to an Account object without beneficiaries.
+	 */
+	private static Account mapAccount(ResultSet rs) throws SQLException {
+		final Account account = new Account(rs.getLong("ID"), rs.getString("ACCOUNT_NUMBER"),
+				rs.getString("ACCOUNT_NAME"));
+		account.setVersion(rs.getLong("ACCOUNT_VERSION"));
+		return account;
 	}
 
 	/**
@@ -151,32 +464,28 @@ public class JdbcAccountRepository implements AccountRepository {
 		return beneficiary;
 	}
 
-	private class AccountsExtractor implements ResultSetExtractor<List<Account>> {
+	/**
+	 * Maps account rows that are not ordered by account and may repeat an account once per matching credit card. Every
+	 * account is reconstituted only once and shared by all of its credit cards.
+	 */
+	private class CreditCardAccountsExtractor implements ResultSetExtractor<Void> {
+
+		private final Map<String, Account> accountsByCreditCard = new HashMap<>();
+
+		private final Map<Long, Account> accountsById = new HashMap<>();
 
 		@Override
-		public List<Account> extractData(ResultSet rs) throws SQLException, DataAccessException {
-			final List<Account> accounts = new ArrayList<>();
-			Account lastAccount = null;
-			Long lastAccountId = null;
+		public Void extractData(ResultSet rs) throws SQLException, DataAccessException {
 			while (rs.next()) {
 				final Long accountId = rs.getLong("ID");
-				if (lastAccount == null || !Objects.equals(lastAccountId, accountId)) {
-					if (lastAccount != null) {
-						accounts.add(lastAccount);
-					}
-					final String number = rs.getString("ACCOUNT_NUMBER");
-					final String name = rs.getString("ACCOUNT_NAME");
-					lastAccount = new Account(accountId, number, name);
-				}
-				if (rs.getString("BENEFICIARY_NAME") != null) {
-					lastAccount.restoreBeneficiary(mapBeneficiary(rs));
+				Account account = this.accountsById.get(accountId);
+				if (account == null) {
+					account = mapAccount(rs);
+					this.accountsById.put(accountId, account);
 				}
-				lastAccountId = accountId;
-			}
-			if (lastAccount != null) {
-				accounts.add(lastAccount);
+				this.accountsByCreditCard.put(rs.getString("CREDIT_CARD_NUMBER"), account);
 			}
-			return accounts;
+			return null;
 		}
 	}
-}
\ No newline at end of file
+}
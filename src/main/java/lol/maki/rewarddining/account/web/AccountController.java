@@ -6,6 +6,8 @@ import am.ik.yavi.core.ConstraintViolations;
 import am.ik.yavi.core.Validated;
 import lol.maki.rewarddining.account.Account;
 import lol.maki.rewarddining.account.AccountManager;
+import lol.maki.rewarddining.account.AccountPage;
+import lol.maki.rewarddining.account.AccountSummary;
 import lol.maki.rewarddining.account.Beneficiary;
 
 import org.springframework.stereotype.Controller;
@@ -35,6 +37,11 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 @SessionAttributes("account")
 public class AccountController {
 
+	/**
+	 * The number of accounts on a page of the account List page.
+	 */
+	static final int PAGE_SIZE = 50;
+
 	private final AccountManager accountManager;
 
 	/**
@@ -57,13 +64,16 @@ public class AccountController {
 	}
 
 	/**
-	 * <p>Provide a model with a list of all accounts for the account List page.</p>
+	 * <p>Provide a model with a page of account summaries for the account List page.</p>
 	 *
+	 * @param after the id of the last account of the previous page, if any
 	 * @param model the "implicit" model created by Spring MVC
 	 */
 	@GetMapping("/accountList")
-	public String getAccountList(Model model) {
-		model.addAttribute("accounts", this.accountManager.getAllAccounts());
+	public String getAccountList(@RequestParam(name = "after", required = false) Long after, Model model) {
+		final AccountPage<AccountSummary> page = this.accountManager.getAccountSummaries(after, PAGE_SIZE);
+		model.addAttribute("accounts", page.accounts());
+		model.addAttribute("next", page.next());
 		return "accountList";
 	}
 
@@ -1,9 +1,12 @@
 package lol.maki.rewarddining.account.web;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import am.ik.yavi.core.ConstraintGroup;
 import am.ik.yavi.core.ConstraintViolations;
@@ -11,12 +14,14 @@ import am.ik.yavi.core.ConstraintViolationsException;
 import am.ik.yavi.core.Validated;
 import lol.maki.rewarddining.account.Account;
 import lol.maki.rewarddining.account.AccountManager;
+import lol.maki.rewarddining.account.AccountPage;
 import lol.maki.rewarddining.account.Beneficiary;
 import lol.maki.rewarddining.account.Percentage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -25,6 +30,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
@@ -37,6 +43,16 @@ import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 @RestController
 public class AccountRestController {
 
+	/**
+	 * The number of accounts on a page when the request does not say.
+	 */
+	static final int DEFAULT_PAGE_SIZE = 100;
+
+	/**
+	 * The maximum number of accounts on a page.
+	 */
+	static final int MAX_PAGE_SIZE = 1000;
+
 	private final Logger log = LoggerFactory.getLogger(AccountRestController.class);
 
 	private final AccountManager accountManager;
@@ -49,11 +65,56 @@ public class AccountRestController {
 	}
 
 	/**
-	 * Provide a list of all accounts.
+	 * Provide a page of accounts, ordered by id. Unless this is the last page,
+	 * the URL of the next page is set as the <code>Link</code> header of the
+	 * response, with relation type "next".
 	 */
 	@GetMapping(value = "/accounts")
-	public List<Account> accountSummary() {
-		return accountManager.getAllAccounts();
+	public ResponseEntity<List<Account>> accountSummary(@RequestParam(required = false) Long after,
+			@RequestParam(required = false) Integer limit) {
+		final int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+		if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_SIZE);
+		}
+		final AccountPage<Account> page = accountManager.getAccounts(after, pageSize);
+		if (page.next() == null) {
+			return ResponseEntity.ok(page.accounts());
+		}
+		final URI next = ServletUriComponentsBuilder.fromCurrentRequestUri()
+				.queryParam("after", page.next())
+				.queryParam("limit", pageSize)
+				.build()
+				.toUri();
+		return ResponseEntity.ok().header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"").body(page.accounts());
+	}
+
+	/**
+	 * Provide the accounts with the given ids, in one response and with one
+	 * query per batch of ids. Ids without an account are listed as missing
+	 * rather than failing the request.
+	 */
+	@GetMapping(value = "/accounts", params = "ids")
+	public AccountsResponse accountsById(@RequestParam List<Long> ids) {
+		final Set<Long> requested = new LinkedHashSet<>(ids);
+		if (requested.size() > MAX_PAGE_SIZE) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ids must not be more than " + MAX_PAGE_SIZE);
+		}
+		final Map<Long, Account> found = new HashMap<>();
+		for (Account account : accountManager.getAccounts(requested)) {
+			found.put(account.getId(), account);
+		}
+		final List<Account> accounts = new ArrayList<>(found.size());
+		final List<Long> missing = new ArrayList<>();
+		for (Long id : requested) {
+			final Account account = found.get(id);
+			if (account == null) {
+				missing.add(id);
+			}
+			else {
+				accounts.add(account);
+			}
+		}
+		return new AccountsResponse(accounts, missing);
 	}
 
 	/**
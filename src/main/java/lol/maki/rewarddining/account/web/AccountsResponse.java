@@ -0,0 +1,11 @@
+package lol.maki.rewarddining.account.web;
+
+import java.util.List;
+
+import lol.maki.rewarddining.account.Account;
+
+/**
+ * The accounts found for a list of ids, and the ids for which none was found.
+ */
+public record AccountsResponse(List<Account> accounts, List<Long> missing) {
+}
@@ -0,0 +1,24 @@
+package lol.maki.rewarddining.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lol.maki.rewarddining.account.AccountProperties;
+import lol.maki.rewarddining.account.infrastructure.CachingAccountRepository;
+import lol.maki.rewarddining.account.infrastructure.JdbcAccountRepository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+@Configuration
+@EnableConfigurationProperties(AccountProperties.class)
+public class AccountConfig {
+	@Bean
+	@Primary
+	@ConditionalOnProperty(name = "account.cache.enabled", havingValue = "true", matchIfMissing = true)
+	public CachingAccountRepository cachingAccountRepository(JdbcAccountRepository jdbcAccountRepository,
+			AccountProperties properties, MeterRegistry meterRegistry) {
+		return new CachingAccountRepository(jdbcAccountRepository, properties.getCache().getSize(), meterRegistry);
+	}
+}
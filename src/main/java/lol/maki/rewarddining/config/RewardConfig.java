@@ -0,0 +1,82 @@
+package lol.maki.rewarddining.config;
+
+import java.io.IOException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lol.maki.rewarddining.account.AccountRepository;
+import lol.maki.rewarddining.reward.BeneficiarySavingsWriteBehind;
+import lol.maki.rewarddining.reward.ConfirmationNumberGenerator;
+import lol.maki.rewarddining.reward.DiningDeduplicator;
+import lol.maki.rewarddining.reward.RewardProperties;
+import lol.maki.rewarddining.reward.infrastructure.JdbcRewardRepository;
+import lol.maki.rewarddining.reward.infrastructure.SequenceConfirmationNumberGenerator;
+import lol.maki.rewarddining.reward.infrastructure.SnowflakeConfirmationNumberGenerator;
+import lol.maki.rewarddining.reward.journal.JournalingRewardRepository;
+import lol.maki.rewarddining.reward.journal.RewardJournal;
+import lol.maki.rewarddining.reward.journal.RewardJournalDrainer;
+import lol.maki.rewarddining.reward.rollup.RewardRollups;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Configuration
+@EnableConfigurationProperties(RewardProperties.class)
+public class RewardConfig {
+	@Bean
+	@ConditionalOnProperty(name = "reward.confirmation-number.generator", havingValue = "snowflake")
+	public ConfirmationNumberGenerator snowflakeConfirmationNumberGenerator(RewardProperties properties) {
+		final Long nodeId = properties.getConfirmationNumber().getNodeId();
+		if (nodeId == null) {
+			// two instances falling back to the same node id would issue the same confirmation numbers
+			throw new IllegalStateException("reward.confirmation-number.node-id must be set to an id unique among all "
+					+ "running instances to use the snowflake confirmation number generator");
+		}
+		return new SnowflakeConfirmationNumberGenerator(nodeId);
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "reward.confirmation-number.generator", havingValue = "sequence", matchIfMissing = true)
+	public ConfirmationNumberGenerator sequenceConfirmationNumberGenerator(JdbcTemplate jdbcTemplate) {
+		return new SequenceConfirmationNumberGenerator(jdbcTemplate);
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "reward.write-behind.enabled", havingValue = "true")
+	public BeneficiarySavingsWriteBehind beneficiarySavingsWriteBehind(AccountRepository accountRepository,
+			RewardProperties properties, MeterRegistry meterRegistry) {
+		return new BeneficiarySavingsWriteBehind(accountRepository, properties, meterRegistry);
+	}
+
+	@Configuration
+	@ConditionalOnProperty(name = "reward.journal.enabled", havingValue = "true")
+	static class JournalConfig {
+		@Bean
+		public RewardJournal rewardJournal(RewardProperties properties, MeterRegistry meterRegistry) throws IOException {
+			final RewardProperties.Journal journal = properties.getJournal();
+			return new RewardJournal(journal.getDirectory(), journal.getSegmentSize(), journal.getMaxGroupSize(), meterRegistry);
+		}
+
+		@Bean
+		@Primary
+		public JournalingRewardRepository journalingRewardRepository(RewardJournal rewardJournal,
+				ConfirmationNumberGenerator confirmationNumberGenerator, JdbcRewardRepository jdbcRewardRepository,
+				DiningDeduplicator diningDeduplicator) {
+			return new JournalingRewardRepository(rewardJournal, confirmationNumberGenerator, jdbcRewardRepository,
+					diningDeduplicator);
+		}
+
+		@Bean
+		public RewardJournalDrainer rewardJournalDrainer(RewardJournal rewardJournal, JdbcTemplate jdbcTemplate,
+				TransactionTemplate transactionTemplate, RewardRollups rewardRollups, DiningDeduplicator diningDeduplicator,
+				RewardProperties properties, MeterRegistry meterRegistry) {
+			final RewardProperties.Journal journal = properties.getJournal();
+			return new RewardJournalDrainer(rewardJournal, jdbcTemplate, transactionTemplate, rewardRollups,
+					diningDeduplicator, journal.getDrainBatchSize(), journal.getDrainInterval(), meterRegistry);
+		}
+	}
+}
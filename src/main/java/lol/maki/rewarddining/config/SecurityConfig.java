@@ -2,18 +2,25 @@ package lol.maki.rewarddining.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityCustomizer;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.AccessDeniedHandlerImpl;
 import org.springframework.security.web.csrf.CsrfFilter;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.AnyRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
 import org.springframework.web.filter.CommonsRequestLoggingFilter;
 
 @Configuration
 public class SecurityConfig {
 	@Bean
 	public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+		final AccessDeniedHandlerImpl deniedPage = new AccessDeniedHandlerImpl();
+		deniedPage.setErrorPage("/denied");
 		http
 				.addFilterBefore(commonsRequestLoggingFilter(), CsrfFilter.class)
 				.formLogin()
@@ -22,16 +29,25 @@ public class SecurityConfig {
 				.permitAll()
 				.and()
 				.exceptionHandling()
-				.accessDeniedPage("/denied")
+				// clients of the reward API get a plain 403 rather than the page
+				.defaultAccessDeniedHandlerFor(new AccessDeniedHandlerImpl(),
+						new OrRequestMatcher(new AntPathRequestMatcher("/rewards*"), new AntPathRequestMatcher("/rewards/**")))
+				.defaultAccessDeniedHandlerFor(deniedPage, AnyRequestMatcher.INSTANCE)
 				.and()
 				.authorizeRequests()
 				.mvcMatchers("/edit*").hasRole("EDITOR")
 				.mvcMatchers("/accountDetails", "/accountList").hasAnyRole("VIEWER", "EDITOR")
 				.mvcMatchers("/accounts/**").permitAll() // TODO
+				.mvcMatchers("/merchants/**").hasAnyRole("VIEWER", "EDITOR")
+				.mvcMatchers(HttpMethod.POST, "/rewards", "/rewards:bulk").hasRole("EDITOR")
+				.mvcMatchers("/rewards:export", "/rewards/**").hasAnyRole("VIEWER", "EDITOR")
 				.mvcMatchers("/actuator/**").permitAll() // TODO
 				.mvcMatchers("/**").authenticated()
 				.and()
-				.csrf().ignoringAntMatchers("/accounts/**") // TODO
+				.httpBasic()
+				.and()
+				// the reward endpoints take JSON bodies only, which a page of another site cannot post without CORS
+				.csrf().ignoringAntMatchers("/accounts/**", "/rewards", "/rewards:bulk")
 				.and()
 				.logout()
 				.permitAll()
@@ -0,0 +1,48 @@
+package lol.maki.rewarddining.config;
+
+import javax.sql.DataSource;
+
+import lol.maki.rewarddining.sql.MeteredDataSource;
+import lol.maki.rewarddining.sql.SqlProperties;
+import lol.maki.rewarddining.sql.SqlStatementMetrics;
+import lol.maki.rewarddining.sql.SqlStatementsEndpoint;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(SqlProperties.class)
+@ConditionalOnProperty(name = "sql.metrics.enabled", havingValue = "true", matchIfMissing = true)
+public class SqlConfig {
+	@Bean
+	public SqlStatementMetrics sqlStatementMetrics(SqlProperties properties) {
+		final SqlProperties.SlowQuery slowQuery = properties.getSlowQuery();
+		return new SqlStatementMetrics(slowQuery.getThreshold(), slowQuery.getLogInterval());
+	}
+
+	@Bean
+	public SqlStatementsEndpoint sqlStatementsEndpoint(SqlStatementMetrics sqlStatementMetrics) {
+		return new SqlStatementsEndpoint(sqlStatementMetrics);
+	}
+
+	/**
+	 * Wraps the data source in a {@link MeteredDataSource}. Static, and with the metrics looked up only when the data
+	 * source is created, as post-processors are created before other beans.
+	 */
+	@Bean
+	public static BeanPostProcessor meteredDataSourcePostProcessor(ObjectProvider<SqlStatementMetrics> metrics) {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				if (bean instanceof DataSource dataSource && !(bean instanceof MeteredDataSource)) {
+					return new MeteredDataSource(dataSource, metrics.getObject());
+				}
+				return bean;
+			}
+		};
+	}
+}
@@ -1,6 +1,12 @@
 package lol.maki.rewarddining.restaurant;
 
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
+import java.util.HexFormat;
+import java.util.Objects;
 
 import javax.money.MonetaryAmount;
 
@@ -24,6 +30,11 @@ public class Dining {
 
 	private final LocalDate date;
 
+	private final String transactionId;
+
+	// computed on first use; threads racing for it compute the same value
+	private String idempotencyKey;
+
 	/**
 	 * Creates a new dining, reflecting an amount that was charged to a card by a merchant on the date specified.
 	 * @param amount the total amount of the dining bill
@@ -32,10 +43,24 @@ public class Dining {
 	 * @param date the date of the dining event
 	 */
 	public Dining(MonetaryAmount amount, String creditCardNumber, String merchantNumber, LocalDate date) {
+		this(amount, creditCardNumber, merchantNumber, date, null);
+	}
+
+	/**
+	 * Creates a new dining identified by the card network.
+	 * @param amount the total amount of the dining bill
+	 * @param creditCardNumber the number of the credit card used to pay for the dining bill
+	 * @param merchantNumber the merchant number of the restaurant where the dining occurred
+	 * @param date the date of the dining event
+	 * @param transactionId the id the card network assigned to the charge, or <code>null</code> if unknown
+	 */
+	public Dining(MonetaryAmount amount, String creditCardNumber, String merchantNumber, LocalDate date,
+			String transactionId) {
 		this.amount = amount;
 		this.creditCardNumber = creditCardNumber;
 		this.merchantNumber = merchantNumber;
 		this.date = date;
+		this.transactionId = transactionId;
 	}
 
 	/**
@@ -96,6 +121,39 @@ public class Dining {
 		return date;
 	}
 
+	/**
+	 * Returns the id the card network assigned to this charge, or <code>null</code> if unknown.
+	 */
+	public String getTransactionId() {
+		return transactionId;
+	}
+
+	/**
+	 * Returns the key identifying this dining when the card network sends it again: the hex SHA-256 of the credit card
+	 * number, merchant number, date, amount and transaction id. The credit card number cannot be recovered from it.
+	 */
+	public String getIdempotencyKey() {
+		String key = idempotencyKey;
+		if (key == null) {
+			key = computeIdempotencyKey();
+			idempotencyKey = key;
+		}
+		return key;
+	}
+
+	private String computeIdempotencyKey() {
+		final String value = creditCardNumber + '|' + merchantNumber + '|' + date + '|'
+				+ amount.getNumber().numberValue(BigDecimal.class).stripTrailingZeros().toPlainString() + '|'
+				+ amount.getCurrency().getCurrencyCode() + '|' + (transactionId == null ? "" : transactionId);
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	public boolean equals(Object o) {
 		if (!(o instanceof Dining)) {
 			return false;
@@ -103,11 +161,13 @@ public class Dining {
 		Dining other = (Dining) o;
 		// value objects are equal if their attributes are equal
 		return amount.equals(other.amount) && creditCardNumber.equals(other.creditCardNumber)
-				&& merchantNumber.equals(other.merchantNumber) && date.equals(other.date);
+				&& merchantNumber.equals(other.merchantNumber) && date.equals(other.date)
+				&& Objects.equals(transactionId, other.transactionId);
 	}
 
 	public int hashCode() {
-		return amount.hashCode() + creditCardNumber.hashCode() + merchantNumber.hashCode() + date.hashCode();
+		return amount.hashCode() + creditCardNumber.hashCode() + merchantNumber.hashCode() + date.hashCode()
+				+ Objects.hashCode(transactionId);
 	}
 
 	public String toString() {
@@ -1,12 +1,11 @@
 package lol.maki.rewarddining.restaurant;
 
-import java.math.BigDecimal;
-
 import javax.money.MonetaryAmount;
 
 import lol.maki.rewarddining.account.Account;
 import lol.maki.rewarddining.account.Percentage;
-import org.javamoney.moneta.Money;
+import lol.maki.rewarddining.account.RewardArithmetic;
+import lol.maki.rewarddining.account.USD;
 
 /**
  * A restaurant establishment in the network. Like AppleBee's.
@@ -91,14 +90,14 @@ public class Restaurant {
 	 * Calculate the benefit eligible to this account for dining at this restaurant.
 	 * @param account the account that dined at this restaurant
 	 * @param dining a dining event that occurred
-	 * @return the benefit amount eligible for reward
+	 * @return the benefit amount eligible for reward, rounded half up to the cent
 	 */
 	public MonetaryAmount calculateBenefitFor(Account account, Dining dining) {
 		if (benefitAvailabilityPolicy.isBenefitAvailableFor(account, dining)) {
-			return dining.getAmount().multiply(benefitPercentage.asBigDecimal());
+			return USD.ofCents(RewardArithmetic.percentOf(USD.toCents(dining.getAmount()), benefitPercentage.asBasisPoints()));
 		}
 		else {
-			return Money.of(BigDecimal.ZERO, "USD");
+			return USD.zero();
 		}
 	}
 
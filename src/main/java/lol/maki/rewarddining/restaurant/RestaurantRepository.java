@@ -1,5 +1,8 @@
 package lol.maki.rewarddining.restaurant;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * Loads restaurant aggregates. Called by the reward network to find and reconstitute Restaurant entities from an
  * external form such as a set of RDMS rows.
@@ -14,4 +17,11 @@ public interface RestaurantRepository {
 	 * @return the restaurant
 	 */
 	Restaurant findByMerchantNumber(String merchantNumber);
+
+	/**
+	 * Load many Restaurant entities by their merchant numbers at once.
+	 * @param merchantNumbers the merchant numbers
+	 * @return the restaurants keyed by merchant number. Unknown merchant numbers are absent.
+	 */
+	Map<String, Restaurant> findByMerchantNumbers(Collection<String> merchantNumbers);
 }
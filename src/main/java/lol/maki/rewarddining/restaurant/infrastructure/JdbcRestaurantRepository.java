@@ -2,6 +2,12 @@ package lol.maki.rewarddining.restaurant.infrastructure;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
 import lol.maki.rewarddining.account.Percentage;
 import lol.maki.rewarddining.restaurant.AlwaysAvailable;
@@ -13,6 +19,7 @@ import lol.maki.rewarddining.util.FileLoader;
 
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -21,10 +28,18 @@ import org.springframework.stereotype.Repository;
 @Repository
 public class JdbcRestaurantRepository implements RestaurantRepository {
 
+	/**
+	 * The maximum number of bind values put into a single <code>IN</code> list.
+	 */
+	private static final int IN_CLAUSE_SIZE = 500;
+
 	private final JdbcTemplate jdbcTemplate;
 
-	public JdbcRestaurantRepository(JdbcTemplate jdbcTemplate) {
+	private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+	public JdbcRestaurantRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
 		this.jdbcTemplate = jdbcTemplate;
+		this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
 	}
 
 	/**
@@ -37,6 +52,20 @@ public class JdbcRestaurantRepository implements RestaurantRepository {
 		return jdbcTemplate.queryForObject(sql, rowMapper, merchantNumber);
 	}
 
+	public Map<String, Restaurant> findByMerchantNumbers(Collection<String> merchantNumbers) {
+		final String sql = FileLoader.load("lol/maki/rewarddining/restaurant/JdbcRestaurantRepository/findByMerchantNumbers.sql");
+		final List<String> numbers = new ArrayList<>(new HashSet<>(merchantNumbers));
+		final Map<String, Restaurant> restaurants = new HashMap<>();
+		for (int i = 0; i < numbers.size(); i += IN_CLAUSE_SIZE) {
+			final List<String> chunk = numbers.subList(i, Math.min(i + IN_CLAUSE_SIZE, numbers.size()));
+			namedParameterJdbcTemplate.query(sql, Map.of("merchantNumbers", chunk), rs -> {
+				final Restaurant restaurant = mapRestaurant(rs);
+				restaurants.put(restaurant.getNumber(), restaurant);
+			});
+		}
+		return restaurants;
+	}
+
 	/**
 	 * Maps a row returned from a query of T_RESTAURANT to a Restaurant object.
 	 *
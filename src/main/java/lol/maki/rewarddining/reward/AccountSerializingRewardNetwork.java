@@ -0,0 +1,116 @@
+package lol.maki.rewarddining.reward;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
+
+import lol.maki.rewarddining.account.AccountRepository;
+import lol.maki.rewarddining.restaurant.Dining;
+import lol.maki.rewarddining.util.StripedLock;
+
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Serializes rewards per account in front of {@link RewardNetworkImpl}.
+ *
+ * Rewarding reads the savings of the beneficiaries, adds the contribution and writes the sum back. Two transactions
+ * rewarding the same account at the same time would both read the old savings and one contribution would be lost. This
+ * network looks up the accounts of the credit cards first and holds the lock stripe of each account until the
+ * transaction that rewards it has completed. Rewards of accounts on other stripes run in parallel.
+ *
+ * The locks are held in this JVM only. Instances sharing a database are not serialized against each other.
+ */
+@Service
+@Primary
+public class AccountSerializingRewardNetwork implements RewardNetwork {
+
+	private final RewardNetwork delegate;
+
+	private final AccountRepository accountRepository;
+
+	private final StripedLock locks;
+
+	public AccountSerializingRewardNetwork(RewardNetworkImpl delegate, AccountRepository accountRepository,
+			RewardProperties props) {
+		this.delegate = delegate;
+		this.accountRepository = accountRepository;
+		this.locks = new StripedLock(props.getAccountLock().getStripes());
+	}
+
+	@Override
+	public RewardConfirmation rewardAccountFor(Dining dining) {
+		final List<Lock> held = lock(Set.of(dining.getCreditCardNumber()));
+		try {
+			return delegate.rewardAccountFor(dining);
+		}
+		finally {
+			unlockAfterCompletion(held);
+		}
+	}
+
+	@Override
+	public List<RewardResult> rewardAccountsFor(List<Dining> dinings) {
+		final List<Lock> held = lock(dinings.stream().map(Dining::getCreditCardNumber).collect(Collectors.toSet()));
+		try {
+			return delegate.rewardAccountsFor(dinings);
+		}
+		finally {
+			unlockAfterCompletion(held);
+		}
+	}
+
+	/**
+	 * Acquires the stripes of the accounts of the given credit cards in stripe order, so that two callers locking
+	 * overlapping sets of accounts cannot deadlock. Unknown credit cards need no lock as they are never rewarded.
+	 */
+	private List<Lock> lock(Collection<String> creditCardNumbers) {
+		final Collection<Long> accountIds = accountRepository.findAccountIdsByCreditCards(creditCardNumbers).values();
+		final List<Lock> stripes = locks.getAll(accountIds);
+		final List<Lock> held = new ArrayList<>(stripes.size());
+		try {
+			for (Lock stripe : stripes) {
+				stripe.lockInterruptibly();
+				held.add(stripe);
+			}
+		}
+		catch (InterruptedException e) {
+			unlock(held);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for account locks", e);
+		}
+		return held;
+	}
+
+	/**
+	 * Releases the locks once the rewards are committed. When the caller has its own transaction, the rewards are not
+	 * visible to other transactions before it completes, so the locks are released then rather than now.
+	 */
+	private void unlockAfterCompletion(List<Lock> held) {
+		if (held.isEmpty()) {
+			return;
+		}
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					unlock(held);
+				}
+			});
+		}
+		else {
+			unlock(held);
+		}
+	}
+
+	private static void unlock(List<Lock> held) {
+		for (int i = held.size() - 1; i >= 0; i--) {
+			held.get(i).unlock();
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package lol.maki.rewarddining.reward;
+
+import java.util.concurrent.CompletableFuture;
+
+import lol.maki.rewarddining.restaurant.Dining;
+
+/**
+ * Rewards a member account for dining without making the caller wait for the database.
+ *
+ * A facade over the {@link RewardNetwork} for callers such as point-of-sale gateways whose latency must not depend on
+ * the latency of the reward transaction.
+ */
+public interface AsyncRewardNetwork {
+
+	/**
+	 * Queue a dining to be rewarded.
+	 *
+	 * The returned future completes with the confirmation of the reward, or exceptionally with the reason the dining
+	 * could not be rewarded. When too many dinings are already waiting, the future completes exceptionally with a
+	 * {@link java.util.concurrent.RejectedExecutionException} and the caller should back off.
+	 *
+	 * @param dining a charge made to a credit card for dining at a restaurant
+	 * @return the future confirmation of the reward
+	 */
+	CompletableFuture<RewardConfirmation> rewardAccountForAsync(Dining dining);
+}
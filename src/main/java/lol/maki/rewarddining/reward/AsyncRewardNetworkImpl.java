@@ -0,0 +1,154 @@
+package lol.maki.rewarddining.reward;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lol.maki.rewarddining.restaurant.Dining;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Rewards accounts for dining on a dedicated pool of worker threads fed by a bounded queue.
+ *
+ * The queue gives backpressure: a dining that finds the queue full waits at most the configured offer timeout and is
+ * then rejected, instead of piling up unbounded work behind a slow database. Publishes the queue depth, the time
+ * dinings wait in the queue and the number of rejected dinings, which together show how to size the queue for peak
+ * load.
+ */
+@Service
+public class AsyncRewardNetworkImpl implements AsyncRewardNetwork, DisposableBean {
+
+	private final Logger log = LoggerFactory.getLogger(AsyncRewardNetworkImpl.class);
+
+	private final RewardNetwork rewardNetwork;
+
+	private final BlockingQueue<Runnable> queue;
+
+	private final ThreadPoolExecutor executor;
+
+	private final long offerTimeoutNanos;
+
+	private final long shutdownTimeoutNanos;
+
+	private final Counter rejected;
+
+	private final Timer queueWait;
+
+	public AsyncRewardNetworkImpl(RewardNetwork rewardNetwork, RewardProperties properties, MeterRegistry meterRegistry) {
+		final RewardProperties.Async async = properties.getAsync();
+		this.rewardNetwork = rewardNetwork;
+		this.queue = new ArrayBlockingQueue<>(async.getQueueCapacity());
+		this.offerTimeoutNanos = async.getOfferTimeout().toNanos();
+		this.shutdownTimeoutNanos = async.getShutdownTimeout().toNanos();
+		this.executor = new ThreadPoolExecutor(async.getWorkers(), async.getWorkers(), 0, TimeUnit.MILLISECONDS, this.queue,
+				new CustomizableThreadFactory("reward-async-"), (task, executor) -> offer(task));
+		Gauge.builder("reward.async.queue.depth", this.queue, BlockingQueue::size)
+				.description("Dinings waiting for a worker")
+				.register(meterRegistry);
+		Gauge.builder("reward.async.queue.capacity", this.queue, q -> q.size() + q.remainingCapacity())
+				.description("Maximum number of dinings waiting for a worker")
+				.register(meterRegistry);
+		this.rejected = Counter.builder("reward.async.rejected")
+				.description("Dinings rejected because the queue was full")
+				.register(meterRegistry);
+		this.queueWait = Timer.builder("reward.async.queue.wait")
+				.description("Time dinings waited for a worker")
+				.publishPercentileHistogram()
+				.register(meterRegistry);
+	}
+
+	@Override
+	public CompletableFuture<RewardConfirmation> rewardAccountForAsync(Dining dining) {
+		final RewardTask task = new RewardTask(dining);
+		try {
+			executor.execute(task);
+		}
+		catch (RejectedExecutionException e) {
+			task.future.completeExceptionally(e);
+		}
+		return task.future;
+	}
+
+	/**
+	 * Called when the executor finds the queue full: waits up to the offer timeout for room, then rejects the task.
+	 */
+	private void offer(Runnable task) {
+		if (executor.isShutdown()) {
+			throw new RejectedExecutionException("Reward network is shut down");
+		}
+		if (offerTimeoutNanos > 0) {
+			try {
+				if (queue.offer(task, offerTimeoutNanos, TimeUnit.NANOSECONDS)) {
+					// the workers may have drained the queue and exited while the task waited for room, then nobody
+					// would ever run it; unless a worker already took it, take it back like the executor does itself
+					if (executor.isShutdown() && queue.remove(task)) {
+						throw new RejectedExecutionException("Reward network is shut down");
+					}
+					return;
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		rejected.increment();
+		throw new RejectedExecutionException("Reward queue is full");
+	}
+
+	/**
+	 * Stops accepting dinings and waits for the queued ones to be rewarded. The futures of the dinings still queued
+	 * after the shutdown timeout are completed with a {@link RejectedExecutionException}.
+	 */
+	@Override
+	public void destroy() throws InterruptedException {
+		executor.shutdown();
+		if (!executor.awaitTermination(shutdownTimeoutNanos, TimeUnit.NANOSECONDS)) {
+			final List<Runnable> dropped = executor.shutdownNow();
+			for (Runnable task : dropped) {
+				((RewardTask) task).future.completeExceptionally(
+						new RejectedExecutionException("Reward network shut down before the dining was rewarded"));
+			}
+			log.warn("{} queued dinings were not rewarded before shutdown", dropped.size());
+		}
+	}
+
+	/**
+	 * Rewards a dining and completes its future with the outcome.
+	 */
+	private class RewardTask implements Runnable {
+
+		private final Dining dining;
+
+		private final CompletableFuture<RewardConfirmation> future = new CompletableFuture<>();
+
+		private final long queuedAt = System.nanoTime();
+
+		RewardTask(Dining dining) {
+			this.dining = dining;
+		}
+
+		@Override
+		public void run() {
+			queueWait.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+			try {
+				future.complete(rewardNetwork.rewardAccountFor(dining));
+			}
+			catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,189 @@
+package lol.maki.rewarddining.reward;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.money.MonetaryAmount;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lol.maki.rewarddining.account.Account;
+import lol.maki.rewarddining.account.AccountContribution;
+import lol.maki.rewarddining.account.AccountContribution.Distribution;
+import lol.maki.rewarddining.account.AccountRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Collects the contributions made to beneficiaries in memory and adds them to the savings in the database later, in one
+ * batch for many rewards.
+ *
+ * A burst of dinings on one account is written as a single increment per beneficiary instead of one update of every
+ * beneficiary per dining. Pending amounts are written when the flush interval elapses, when the number of accounts with
+ * pending amounts reaches its maximum, and on shutdown. Until then the savings read from the database lag behind the
+ * rewards; the reward records stay the system of record and are written synchronously. Amounts that fail to be written
+ * are kept and retried with the next flush.
+ */
+public class BeneficiarySavingsWriteBehind implements DisposableBean {
+
+	private final Logger log = LoggerFactory.getLogger(BeneficiarySavingsWriteBehind.class);
+
+	private final AccountRepository accountRepository;
+
+	private final ConcurrentMap<Long, PendingSavings> pending = new ConcurrentHashMap<>();
+
+	private final int maxPendingAccounts;
+
+	private final ScheduledExecutorService scheduler;
+
+	private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+	private final Counter flushedContributions;
+
+	private final Counter writtenRows;
+
+	public BeneficiarySavingsWriteBehind(AccountRepository accountRepository, RewardProperties properties,
+			MeterRegistry meterRegistry) {
+		final RewardProperties.WriteBehind writeBehind = properties.getWriteBehind();
+		this.accountRepository = accountRepository;
+		this.maxPendingAccounts = writeBehind.getMaxPendingAccounts();
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("savings-write-behind-"));
+		final long interval = writeBehind.getFlushInterval().toMillis();
+		this.scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+		Gauge.builder("reward.write-behind.pending", this.pending, Map::size)
+				.description("Accounts with savings not yet written")
+				.register(meterRegistry);
+		this.flushedContributions = Counter.builder("reward.write-behind.contributions")
+				.description("Contributions to beneficiaries written")
+				.register(meterRegistry);
+		this.writtenRows = Counter.builder("reward.write-behind.rows")
+				.description("Beneficiary rows updated to write the contributions")
+				.register(meterRegistry);
+		Gauge.builder("reward.write-behind.coalescing-ratio", this, BeneficiarySavingsWriteBehind::coalescingRatio)
+				.description("Contributions written per beneficiary row updated")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Queues the contribution made to the beneficiaries of an account. Within a transaction the contribution is queued
+	 * once the transaction has committed, so a rolled back reward never reaches the savings.
+	 */
+	public void add(Account account, AccountContribution contribution) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					merge(account.getId(), contribution);
+				}
+			});
+		}
+		else {
+			merge(account.getId(), contribution);
+		}
+	}
+
+	private void merge(Long accountId, AccountContribution contribution) {
+		pending.compute(accountId, (id, savings) -> {
+			final PendingSavings merged = savings == null ? new PendingSavings() : savings;
+			for (Distribution distribution : contribution.getDistributions()) {
+				merged.add(distribution.getBeneficiary(), distribution.getAmount());
+			}
+			return merged;
+		});
+		if (pending.size() >= maxPendingAccounts && flushRequested.compareAndSet(false, true)) {
+			scheduler.execute(this::flush);
+		}
+	}
+
+	/**
+	 * Writes all pending amounts in one batch.
+	 */
+	public synchronized void flush() {
+		flushRequested.set(false);
+		final Map<Long, PendingSavings> batch = new HashMap<>();
+		for (Long accountId : pending.keySet()) {
+			final PendingSavings savings = pending.remove(accountId);
+			if (savings != null) {
+				batch.put(accountId, savings);
+			}
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+		final Map<Long, Map<String, MonetaryAmount>> amounts = new HashMap<>();
+		int contributions = 0;
+		int rows = 0;
+		for (Map.Entry<Long, PendingSavings> entry : batch.entrySet()) {
+			amounts.put(entry.getKey(), entry.getValue().amounts);
+			contributions += entry.getValue().contributions;
+			rows += entry.getValue().amounts.size();
+		}
+		try {
+			accountRepository.addBeneficiarySavings(amounts);
+		}
+		catch (RuntimeException e) {
+			log.error("Failed to write the savings of {} accounts, retrying with the next flush", batch.size(), e);
+			batch.forEach((accountId, savings) -> pending.merge(accountId, savings, PendingSavings::addAll));
+			return;
+		}
+		flushedContributions.increment(contributions);
+		writtenRows.increment(rows);
+	}
+
+	/**
+	 * Returns the number of contributions written per beneficiary row updated so far. 1.0 means nothing was coalesced.
+	 */
+	public double coalescingRatio() {
+		final double rows = writtenRows.count();
+		return rows == 0 ? 0 : flushedContributions.count() / rows;
+	}
+
+	/**
+	 * Returns the number of accounts with amounts not yet written.
+	 */
+	public int pendingAccounts() {
+		return pending.size();
+	}
+
+	/**
+	 * Stops the periodic flush and writes what is still pending.
+	 */
+	@Override
+	public void destroy() throws InterruptedException {
+		scheduler.shutdown();
+		scheduler.awaitTermination(1, TimeUnit.MINUTES);
+		flush();
+		if (!pending.isEmpty()) {
+			log.error("The savings of {} accounts were not written before shutdown", pending.size());
+		}
+	}
+
+	private static class PendingSavings {
+		private final Map<String, MonetaryAmount> amounts = new HashMap<>();
+
+		private int contributions;
+
+		void add(String beneficiary, MonetaryAmount amount) {
+			this.amounts.merge(beneficiary, amount, MonetaryAmount::add);
+			this.contributions++;
+		}
+
+		PendingSavings addAll(PendingSavings other) {
+			other.amounts.forEach((beneficiary, amount) -> this.amounts.merge(beneficiary, amount, MonetaryAmount::add));
+			this.contributions += other.contributions;
+			return this;
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package lol.maki.rewarddining.reward;
+
+import java.util.List;
+
+/**
+ * Generates the unique numbers that confirm reward transactions. A strategy.
+ */
+public interface ConfirmationNumberGenerator {
+
+	/**
+	 * Returns a new confirmation number that has never been returned before.
+	 */
+	String nextConfirmationNumber();
+
+	/**
+	 * Returns many new confirmation numbers at once.
+	 * @param count the number of confirmation numbers
+	 * @return the confirmation numbers
+	 */
+	List<String> nextConfirmationNumbers(int count);
+}
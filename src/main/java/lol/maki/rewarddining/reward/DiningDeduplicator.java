@@ -0,0 +1,190 @@
+package lol.maki.rewarddining.reward;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lol.maki.rewarddining.restaurant.Dining;
+import lol.maki.rewarddining.util.BloomFilter;
+import lol.maki.rewarddining.util.FileLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tells whether a dining was already rewarded, by its {@link Dining#getIdempotencyKey() idempotency key}.
+ *
+ * The unique idempotency key of T_REWARD is the authority, but looking it up for every dining costs a query. In front
+ * of it this deduplicator keeps a Bloom filter of the keys of each dining date within the retention window. A key the
+ * filter has never seen cannot be in T_REWARD and skips the query; only keys the filter might have seen are looked up.
+ * Lookups that find nothing are counted as false positives. Dinings dated outside the retention window are always
+ * looked up. The filters are rebuilt from T_REWARD on start.
+ *
+ * Rewards recorded in the reward journal reach T_REWARD only when the journal is loaded. Until then their keys are held
+ * as pending, claimed by the journal when it confirms a reward, and count as duplicates too.
+ */
+@Component
+public class DiningDeduplicator implements InitializingBean {
+
+	private final Logger log = LoggerFactory.getLogger(DiningDeduplicator.class);
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final int retentionDays;
+
+	private final long expectedDiningsPerDay;
+
+	private final double falsePositiveProbability;
+
+	private final ConcurrentMap<LocalDate, BloomFilter> filters = new ConcurrentHashMap<>();
+
+	private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+	private final Counter skipped;
+
+	private final Counter lookups;
+
+	private final Counter falsePositives;
+
+	private final Counter duplicates;
+
+	public DiningDeduplicator(JdbcTemplate jdbcTemplate, RewardProperties properties, MeterRegistry meterRegistry) {
+		final RewardProperties.Dedup dedup = properties.getDedup();
+		this.jdbcTemplate = jdbcTemplate;
+		this.retentionDays = (int) dedup.getRetention().toDays();
+		this.expectedDiningsPerDay = dedup.getExpectedDiningsPerDay();
+		this.falsePositiveProbability = dedup.getFalsePositiveProbability();
+		this.skipped = Counter.builder("reward.dedup.skipped")
+				.description("Dinings known to be new without a database lookup")
+				.register(meterRegistry);
+		this.lookups = Counter.builder("reward.dedup.lookups")
+				.description("Dinings looked up in the database")
+				.register(meterRegistry);
+		this.falsePositives = Counter.builder("reward.dedup.false-positives")
+				.description("Lookups of dinings the filter might have seen that turned out to be new")
+				.register(meterRegistry);
+		this.duplicates = Counter.builder("reward.dedup.duplicates")
+				.description("Dinings that were already rewarded")
+				.register(meterRegistry);
+		Gauge.builder("reward.dedup.filter.size", this.filters,
+						f -> f.values().stream().mapToLong(BloomFilter::sizeInBytes).sum())
+				.description("Memory used by the filters")
+				.baseUnit("bytes")
+				.register(meterRegistry);
+		Gauge.builder("reward.dedup.pending", this.pending, Set::size)
+				.description("Dinings rewarded but not in T_REWARD yet")
+				.register(meterRegistry);
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		rebuild();
+	}
+
+	/**
+	 * Reloads the filters with the keys of the dinings in T_REWARD dated within the retention window.
+	 */
+	public void rebuild() {
+		final String sql = FileLoader.load("lol/maki/rewarddining/reward/DiningDeduplicator/findRecentIdempotencyKeys.sql");
+		filters.clear();
+		final long[] count = { 0 };
+		jdbcTemplate.query(sql, rs -> {
+			remember(rs.getString("IDEMPOTENCY_KEY"), rs.getDate("DINING_DATE").toLocalDate());
+			count[0]++;
+		}, Date.valueOf(LocalDate.now().minusDays(retentionDays)));
+		log.info("Loaded {} recent dinings into the deduplication filters", count[0]);
+	}
+
+	/**
+	 * Returns whether a dining with the given key and date was already rewarded.
+	 */
+	public boolean isDuplicate(String idempotencyKey, LocalDate date) {
+		if (pending.contains(idempotencyKey)) {
+			duplicates.increment();
+			return true;
+		}
+		final BloomFilter filter = filterFor(date);
+		if (filter != null && !filter.mightContain(hash1(idempotencyKey), hash2(idempotencyKey))) {
+			skipped.increment();
+			return false;
+		}
+		lookups.increment();
+		final String sql = FileLoader.load("lol/maki/rewarddining/reward/DiningDeduplicator/countByIdempotencyKey.sql");
+		final boolean duplicate = jdbcTemplate.queryForObject(sql, Integer.class, idempotencyKey) > 0;
+		if (duplicate) {
+			duplicates.increment();
+		}
+		else if (filter != null) {
+			falsePositives.increment();
+		}
+		return duplicate;
+	}
+
+	/**
+	 * Remembers that a dining with the given key and date was rewarded, once its transaction has committed. Remembering
+	 * a dining that ends up not rewarded only costs a lookup when it is sent again.
+	 */
+	public void remember(String idempotencyKey, LocalDate date) {
+		final BloomFilter filter = filterFor(date);
+		if (filter != null) {
+			filter.put(hash1(idempotencyKey), hash2(idempotencyKey));
+		}
+	}
+
+	/**
+	 * Claims the key of a dining that is recorded somewhere other than T_REWARD for now, such as the reward journal, so
+	 * that it counts as a duplicate until {@link #loaded(String, LocalDate) loaded} or {@link #release(String)
+	 * released}.
+	 * @return false if the key is claimed already
+	 */
+	public boolean claim(String idempotencyKey) {
+		return pending.add(idempotencyKey);
+	}
+
+	/**
+	 * Releases the claim of a dining that ended up not rewarded.
+	 */
+	public void release(String idempotencyKey) {
+		pending.remove(idempotencyKey);
+	}
+
+	/**
+	 * Releases the claim of a dining now in T_REWARD, and remembers it.
+	 */
+	public void loaded(String idempotencyKey, LocalDate date) {
+		remember(idempotencyKey, date);
+		pending.remove(idempotencyKey);
+	}
+
+	/**
+	 * Returns the filter of a dining date, or <code>null</code> if the date is outside the retention window.
+	 */
+	private BloomFilter filterFor(LocalDate date) {
+		final LocalDate today = LocalDate.now();
+		final LocalDate oldest = today.minusDays(retentionDays);
+		if (date.isBefore(oldest) || date.isAfter(today.plusDays(1))) {
+			return null;
+		}
+		if (filters.size() > retentionDays + 2) {
+			filters.keySet().removeIf(d -> d.isBefore(oldest));
+		}
+		return filters.computeIfAbsent(date, d -> new BloomFilter(expectedDiningsPerDay, falsePositiveProbability));
+	}
+
+	// idempotency keys are hex SHA-256 digests, so any 64 bits of them are a good hash
+	private static long hash1(String idempotencyKey) {
+		return Long.parseUnsignedLong(idempotencyKey, 0, 16, 16);
+	}
+
+	private static long hash2(String idempotencyKey) {
+		return Long.parseUnsignedLong(idempotencyKey, 16, 32, 16);
+	}
+}
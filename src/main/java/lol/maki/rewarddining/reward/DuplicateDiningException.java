@@ -0,0 +1,15 @@
+package lol.maki.rewarddining.reward;
+
+import lol.maki.rewarddining.restaurant.Dining;
+
+import org.springframework.dao.DuplicateKeyException;
+
+/**
+ * Thrown when a dining with the same idempotency key as an already rewarded one is to be rewarded again, typically
+ * because the card network resent it.
+ */
+public class DuplicateDiningException extends DuplicateKeyException {
+	public DuplicateDiningException(Dining dining) {
+		super("Already rewarded: " + dining);
+	}
+}
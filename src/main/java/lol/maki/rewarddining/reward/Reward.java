@@ -0,0 +1,21 @@
+package lol.maki.rewarddining.reward;
+
+import java.time.LocalDate;
+
+import javax.money.MonetaryAmount;
+
+/**
+ * The record of a confirmed reward, as looked up by its confirmation number.
+ *
+ * A value object. Immutable.
+ * @param confirmationNumber the confirmation number given when the reward was confirmed
+ * @param amount the amount contributed to the account
+ * @param date the date the reward was confirmed
+ * @param accountNumber the number of the rewarded account
+ * @param merchantNumber the merchant number of the restaurant dined at
+ * @param diningAmount the total amount of the dining bill
+ * @param diningDate the date of the dining
+ */
+public record Reward(String confirmationNumber, MonetaryAmount amount, LocalDate date, String accountNumber,
+		String merchantNumber, MonetaryAmount diningAmount, LocalDate diningDate) {
+}
@@ -0,0 +1,47 @@
+package lol.maki.rewarddining.reward;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * The position of a reward in the reward history of an account, which is ordered by reward date and confirmation
+ * number, newest first. The next page of the history starts right after the cursor of the last reward of the previous
+ * page, however many rewards were confirmed in between.
+ * @param date the reward date
+ * @param confirmationNumber the confirmation number
+ */
+public record RewardCursor(LocalDate date, String confirmationNumber) {
+
+	/**
+	 * Returns the cursor of a reward.
+	 */
+	public static RewardCursor of(Reward reward) {
+		return new RewardCursor(reward.date(), reward.confirmationNumber());
+	}
+
+	/**
+	 * Parses a cursor formatted by {@link #toString()}.
+	 * @throws IllegalArgumentException if the text is not a cursor
+	 */
+	public static RewardCursor parse(String text) {
+		final int separator = text.indexOf(':');
+		if (separator < 0 || separator == text.length() - 1) {
+			throw new IllegalArgumentException("Invalid cursor '" + text + "'");
+		}
+		try {
+			return new RewardCursor(LocalDate.parse(text.substring(0, separator)), text.substring(separator + 1));
+		}
+		catch (DateTimeParseException e) {
+			throw new IllegalArgumentException("Invalid cursor '" + text + "'", e);
+		}
+	}
+
+	/**
+	 * Returns the cursor as <code>date:confirmationNumber</code>, for example
+	 * <code>2022-05-01:0000123456789012345</code>.
+	 */
+	@Override
+	public String toString() {
+		return date + ":" + confirmationNumber;
+	}
+}
@@ -0,0 +1,75 @@
+package lol.maki.rewarddining.reward;
+
+import java.util.List;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lol.maki.rewarddining.util.LruCache;
+
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.stereotype.Service;
+
+/**
+ * Looks up rewards by confirmation number through a cache of the most recently looked up ones, and pages through the
+ * reward history of accounts.
+ *
+ * Rewards never change once confirmed, so cached rewards are never stale. Almost all lookups are for rewards of the
+ * last few days, so a bounded cache of recent lookups answers most of them. Confirmation numbers that are not found are
+ * not cached, as a reward may still be on its way to T_REWARD.
+ */
+@Service
+public class RewardLookup {
+
+	private final RewardRepository rewardRepository;
+
+	private final LruCache<String, Reward> cache;
+
+	public RewardLookup(RewardRepository rewardRepository, RewardProperties properties, MeterRegistry meterRegistry) {
+		this.rewardRepository = rewardRepository;
+		this.cache = new LruCache<>(properties.getLookup().getCacheSize());
+		Gauge.builder("reward.lookup.cache.size", this.cache, LruCache::size)
+				.description("Rewards in the lookup cache")
+				.register(meterRegistry);
+		FunctionCounter.builder("reward.lookup.cache.hits", this.cache, LruCache::hits)
+				.description("Lookups answered from the cache")
+				.register(meterRegistry);
+		FunctionCounter.builder("reward.lookup.cache.misses", this.cache, LruCache::misses)
+				.description("Lookups answered from the database")
+				.register(meterRegistry);
+		Gauge.builder("reward.lookup.cache.hit-rate", this.cache, LruCache::hitRate)
+				.description("Share of lookups answered from the cache")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Find a reward by its confirmation number.
+	 * @throws EmptyResultDataAccessException if no reward has the confirmation number
+	 */
+	public Reward findByConfirmationNumber(String confirmationNumber) {
+		return cache.get(confirmationNumber, rewardRepository::findByConfirmationNumber);
+	}
+
+	/**
+	 * Returns a page of the rewards of an account, newest first.
+	 * @param accountNumber the number of the account
+	 * @param after the cursor returned with the previous page, or <code>null</code> for the first page
+	 * @param limit the maximum number of rewards on the page
+	 */
+	public RewardPage findByAccountNumber(String accountNumber, RewardCursor after, int limit) {
+		// one extra row tells whether there is a next page without another query
+		final List<Reward> rewards = rewardRepository.findByAccountNumber(accountNumber, after, limit + 1);
+		if (rewards.size() <= limit) {
+			return new RewardPage(rewards, null);
+		}
+		final List<Reward> page = rewards.subList(0, limit);
+		return new RewardPage(List.copyOf(page), RewardCursor.of(page.get(limit - 1)).toString());
+	}
+
+	/**
+	 * Returns the share of lookups answered from the cache.
+	 */
+	public double hitRate() {
+		return cache.hitRate();
+	}
+}
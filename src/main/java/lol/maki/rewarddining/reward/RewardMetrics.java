@@ -0,0 +1,83 @@
+package lol.maki.rewarddining.reward;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+/**
+ * Times the stages of rewarding a dining, as <code>reward.stage</code> with a <code>stage</code> tag, and counts the
+ * outcomes of dinings, as <code>reward.outcomes</code> with an <code>outcome</code> tag. A dining confirmed without a
+ * benefit, e.g. at a restaurant with the <code>NeverAvailable</code> policy, counts as <code>zero-benefit</code> rather
+ * than <code>rewarded</code>.
+ *
+ * The meters are registered once, so that recording is no more than reading the clock and updating a meter.
+ */
+final class RewardMetrics {
+
+	/**
+	 * Metrics that record nothing, for a reward network without a meter registry.
+	 */
+	static final RewardMetrics NONE = new RewardMetrics(new CompositeMeterRegistry());
+
+	enum Stage {
+		ACCOUNT("account"), RESTAURANT("restaurant"), BENEFIT("benefit"), BENEFICIARIES("beneficiaries"),
+		CONFIRMATION("confirmation");
+
+		final String tag;
+
+		Stage(String tag) {
+			this.tag = tag;
+		}
+	}
+
+	enum Outcome {
+		REWARDED("rewarded"), ZERO_BENEFIT("zero-benefit"), UNKNOWN_CARD("unknown-card"),
+		UNKNOWN_MERCHANT("unknown-merchant"), INVALID_ALLOCATION("invalid-allocation");
+
+		final String tag;
+
+		Outcome(String tag) {
+			this.tag = tag;
+		}
+	}
+
+	private final Timer[] stages = new Timer[Stage.values().length];
+
+	private final Counter[] outcomes = new Counter[Outcome.values().length];
+
+	RewardMetrics(MeterRegistry meterRegistry) {
+		for (Stage stage : Stage.values()) {
+			stages[stage.ordinal()] = Timer.builder("reward.stage")
+					.description("Time spent in a stage of rewarding a dining")
+					.tag("stage", stage.tag)
+					.publishPercentileHistogram()
+					.minimumExpectedValue(Duration.ofNanos(100_000))
+					.maximumExpectedValue(Duration.ofSeconds(10))
+					.register(meterRegistry);
+		}
+		for (Outcome outcome : Outcome.values()) {
+			outcomes[outcome.ordinal()] = Counter.builder("reward.outcomes")
+					.description("Dinings by the outcome of rewarding them")
+					.tag("outcome", outcome.tag)
+					.register(meterRegistry);
+		}
+	}
+
+	/**
+	 * Records the time of a stage that started at the given {@link System#nanoTime()}.
+	 * @return the time the stage ended, i.e. the start of the next stage
+	 */
+	long stage(Stage stage, long startNanos) {
+		final long endNanos = System.nanoTime();
+		stages[stage.ordinal()].record(endNanos - startNanos, TimeUnit.NANOSECONDS);
+		return endNanos;
+	}
+
+	void outcome(Outcome outcome) {
+		outcomes[outcome.ordinal()].increment();
+	}
+}
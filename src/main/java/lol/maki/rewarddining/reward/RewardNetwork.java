@@ -1,5 +1,7 @@
 package lol.maki.rewarddining.reward;
 
+import java.util.List;
+
 import lol.maki.rewarddining.restaurant.Dining;
 
 /**
@@ -27,4 +29,15 @@ public interface RewardNetwork {
 	 * @return confirmation of the reward
 	 */
 	RewardConfirmation rewardAccountFor(Dining dining);
+
+	/**
+	 * Reward accounts for many dinings at once, such as the dinings of a settlement feed.
+	 *
+	 * The same eligibility rules as {@link #rewardAccountFor(Dining)} apply to each dining. A dining that is not
+	 * eligible does not fail the batch; its result carries the reason instead.
+	 *
+	 * @param dinings the charges made to credit cards for dining at restaurants
+	 * @return one result per dining, in the same order as the dinings
+	 */
+	List<RewardResult> rewardAccountsFor(List<Dining> dinings);
 }
\ No newline at end of file
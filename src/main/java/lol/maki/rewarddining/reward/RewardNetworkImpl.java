@@ -1,15 +1,36 @@
 package lol.maki.rewarddining.reward;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 import javax.money.MonetaryAmount;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lol.maki.rewarddining.account.Account;
 import lol.maki.rewarddining.account.AccountContribution;
 import lol.maki.rewarddining.account.AccountRepository;
 import lol.maki.rewarddining.restaurant.Dining;
 import lol.maki.rewarddining.restaurant.Restaurant;
 import lol.maki.rewarddining.restaurant.RestaurantRepository;
+import lol.maki.rewarddining.reward.RewardMetrics.Outcome;
+import lol.maki.rewarddining.reward.RewardMetrics.Stage;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * Rewards an Account for Dining at a Restaurant.
@@ -19,14 +40,30 @@ import org.springframework.transaction.annotation.Transactional;
  *
  * Said in other words, this class implements the "reward account for dining" use case.
  */
+@Service
 public class RewardNetworkImpl implements RewardNetwork {
 
+	/**
+	 * The default number of dinings resolved and written together by {@link #rewardAccountsFor(List)}.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 500;
+
 	private final AccountRepository accountRepository;
 
 	private final RestaurantRepository restaurantRepository;
 
 	private final RewardRepository rewardRepository;
 
+	private final DiningDeduplicator diningDeduplicator;
+
+	private final BeneficiarySavingsWriteBehind savingsWriteBehind;
+
+	private final RewardMetrics metrics;
+
+	private final TransactionTemplate chunkTemplate;
+
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+
 	/**
 	 * Creates a new reward network.
 	 * @param accountRepository the repository for loading accounts to reward
@@ -35,18 +72,250 @@ public class RewardNetworkImpl implements RewardNetwork {
 	 */
 	public RewardNetworkImpl(AccountRepository accountRepository, RestaurantRepository restaurantRepository,
 			RewardRepository rewardRepository) {
+		this(accountRepository, restaurantRepository, rewardRepository, null, null, null, null);
+	}
+
+	/**
+	 * Creates a new reward network that may reject resent dinings and write beneficiary savings behind.
+	 * @param accountRepository the repository for loading accounts to reward
+	 * @param restaurantRepository the repository for loading restaurants that determine how much to reward
+	 * @param rewardRepository the repository for recording a record of successful reward transactions
+	 * @param diningDeduplicator tells dinings that were already rewarded, or <code>null</code> to leave that to the
+	 * unique idempotency key of the reward records
+	 * @param savingsWriteBehind collects the contributions to write later, or <code>null</code> to update the
+	 * beneficiaries within each reward transaction
+	 * @param meterRegistry the registry for the timers of the stages of a reward and the counters of outcomes, see
+	 * {@link RewardMetrics}, or <code>null</code> to record none
+	 * @param transactionTemplate the template whose transaction manager runs each chunk of
+	 * {@link #rewardAccountsFor(List)} in its own transaction, or <code>null</code> to run the chunks in the
+	 * transaction of the caller, if any
+	 */
+	@Autowired
+	public RewardNetworkImpl(AccountRepository accountRepository, RestaurantRepository restaurantRepository,
+			RewardRepository rewardRepository, @Nullable DiningDeduplicator diningDeduplicator,
+			@Nullable BeneficiarySavingsWriteBehind savingsWriteBehind, @Nullable MeterRegistry meterRegistry,
+			@Nullable TransactionTemplate transactionTemplate) {
 		this.accountRepository = accountRepository;
 		this.restaurantRepository = restaurantRepository;
 		this.rewardRepository = rewardRepository;
+		this.diningDeduplicator = diningDeduplicator;
+		this.savingsWriteBehind = savingsWriteBehind;
+		this.metrics = meterRegistry == null ? RewardMetrics.NONE : new RewardMetrics(meterRegistry);
+		if (transactionTemplate != null) {
+			this.chunkTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+			this.chunkTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+		}
+		else {
+			this.chunkTemplate = null;
+		}
+	}
+
+	/**
+	 * Sets the number of dinings resolved and written together by {@link #rewardAccountsFor(List)}.
+	 * @param chunkSize the chunk size, must be positive
+	 */
+	public void setChunkSize(int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("chunkSize must be positive but was " + chunkSize);
+		}
+		this.chunkSize = chunkSize;
 	}
 
 	@Transactional
 	public RewardConfirmation rewardAccountFor(Dining dining) {
-		Account account = accountRepository.findByCreditCard(dining.getCreditCardNumber());
-		Restaurant restaurant = restaurantRepository.findByMerchantNumber(dining.getMerchantNumber());
-		MonetaryAmount amount = restaurant.calculateBenefitFor(account, dining);
-		AccountContribution contribution = account.makeContribution(amount);
-		accountRepository.updateBeneficiaries(account);
-		return rewardRepository.confirmReward(contribution, dining);
-	}
-}
\ No newline at end of file
+		if (diningDeduplicator != null) {
+			final String idempotencyKey = dining.getIdempotencyKey();
+			if (diningDeduplicator.isDuplicate(idempotencyKey, dining.getDate())) {
+				throw new DuplicateDiningException(dining);
+			}
+		}
+		long start = System.nanoTime();
+		final Account account;
+		try {
+			account = accountRepository.findByCreditCard(dining.getCreditCardNumber());
+		}
+		catch (EmptyResultDataAccessException e) {
+			metrics.outcome(Outcome.UNKNOWN_CARD);
+			throw e;
+		}
+		start = metrics.stage(Stage.ACCOUNT, start);
+		final Restaurant restaurant;
+		try {
+			restaurant = restaurantRepository.findByMerchantNumber(dining.getMerchantNumber());
+		}
+		catch (EmptyResultDataAccessException e) {
+			metrics.outcome(Outcome.UNKNOWN_MERCHANT);
+			throw e;
+		}
+		start = metrics.stage(Stage.RESTAURANT, start);
+		final MonetaryAmount amount = restaurant.calculateBenefitFor(account, dining);
+		final AccountContribution contribution;
+		try {
+			contribution = account.makeContribution(amount);
+		}
+		catch (IllegalStateException e) {
+			metrics.outcome(Outcome.INVALID_ALLOCATION);
+			throw e;
+		}
+		start = metrics.stage(Stage.BENEFIT, start);
+		if (savingsWriteBehind != null) {
+			savingsWriteBehind.add(account, contribution);
+		}
+		else {
+			accountRepository.updateBeneficiaries(account);
+		}
+		start = metrics.stage(Stage.BENEFICIARIES, start);
+		final RewardConfirmation confirmation = rewardRepository.confirmReward(contribution, dining);
+		rememberAfterCommit(List.of(dining));
+		metrics.stage(Stage.CONFIRMATION, start);
+		metrics.outcome(amount.isZero() ? Outcome.ZERO_BENEFIT : Outcome.REWARDED);
+		return confirmation;
+	}
+
+	/**
+	 * Rewards the dinings a chunk at a time. Each chunk commits in its own transaction, so a transaction never holds
+	 * more than a chunk of rows. Called within a transaction, such as the one a settlement import commits its
+	 * checkpoint in, the chunks are part of that transaction instead.
+	 */
+	public List<RewardResult> rewardAccountsFor(List<Dining> dinings) {
+		final List<RewardResult> results = new ArrayList<>(dinings.size());
+		for (int i = 0; i < dinings.size(); i += chunkSize) {
+			results.addAll(rewardChunkOnce(dinings.subList(i, Math.min(i + chunkSize, dinings.size()))));
+		}
+		return results;
+	}
+
+	/**
+	 * Rewards a chunk of dinings, once more if a concurrent transaction recorded one of them between its check and its
+	 * insert. That transaction has committed by the time the insert fails, so the second time the insert skips the
+	 * dining, which fails alone. The chunk runs in a nested transaction: a transaction of its own, or a savepoint of
+	 * the transaction of the caller that the first try is rolled back to, so that it stays usable on every database.
+	 * The outcomes are counted, and the rewarded dinings remembered, only for the try that succeeds.
+	 */
+	private List<RewardResult> rewardChunkOnce(List<Dining> dinings) {
+		ChunkResult chunk;
+		if (chunkTemplate == null) {
+			chunk = rewardChunk(dinings);
+		}
+		else {
+			try {
+				chunk = chunkTemplate.execute(status -> rewardChunk(dinings));
+			}
+			catch (DuplicateKeyException e) {
+				chunk = chunkTemplate.execute(status -> rewardChunk(dinings));
+			}
+		}
+		chunk.outcomes().forEach(metrics::outcome);
+		rememberAfterCommit(chunk.results().stream()
+				.filter(RewardResult::isConfirmed)
+				.map(RewardResult::getDining)
+				.toList());
+		return chunk.results();
+	}
+
+	/**
+	 * Remembers rewarded dinings once their transaction has committed, or now if they were rewarded outside one.
+	 * Remembered before, a dining whose transaction then rolls back would cost a lookup every time it is sent again.
+	 */
+	private void rememberAfterCommit(List<Dining> dinings) {
+		if (diningDeduplicator == null || dinings.isEmpty()) {
+			return;
+		}
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			dinings.forEach(dining -> diningDeduplicator.remember(dining.getIdempotencyKey(), dining.getDate()));
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				dinings.forEach(dining -> diningDeduplicator.remember(dining.getIdempotencyKey(), dining.getDate()));
+			}
+		});
+	}
+
+	/**
+	 * Rewards a chunk of dinings with one lookup of all accounts, one lookup of all restaurants, one batch of
+	 * beneficiary updates and one batch of reward records. Dinings on the same account are applied to the same account
+	 * object one after another, so each beneficiary is written once with its final savings. The rewards are recorded
+	 * before the savings are written, so that the contribution of a dining that turns out to be recorded already is
+	 * taken back instead.
+	 */
+	private ChunkResult rewardChunk(List<Dining> dinings) {
+		final Set<String> creditCardNumbers = dinings.stream().map(Dining::getCreditCardNumber).collect(Collectors.toSet());
+		final Set<String> merchantNumbers = dinings.stream().map(Dining::getMerchantNumber).collect(Collectors.toSet());
+		final Map<String, Account> accounts = accountRepository.findByCreditCards(creditCardNumbers);
+		final Map<String, Restaurant> restaurants = restaurantRepository.findByMerchantNumbers(merchantNumbers);
+
+		final RewardResult[] results = new RewardResult[dinings.size()];
+		final List<Integer> rewardedIndexes = new ArrayList<>(dinings.size());
+		final List<AccountContribution> contributions = new ArrayList<>(dinings.size());
+		final List<Dining> rewardedDinings = new ArrayList<>(dinings.size());
+		final List<Account> contributedAccounts = new ArrayList<>(dinings.size());
+		final Set<String> idempotencyKeys = new HashSet<>();
+		final List<Outcome> outcomes = new ArrayList<>(dinings.size());
+		for (int i = 0; i < dinings.size(); i++) {
+			final Dining dining = dinings.get(i);
+			final String idempotencyKey = dining.getIdempotencyKey();
+			if (!idempotencyKeys.add(idempotencyKey)
+					|| (diningDeduplicator != null && diningDeduplicator.isDuplicate(idempotencyKey, dining.getDate()))) {
+				results[i] = RewardResult.failed(dining, "Already rewarded");
+				continue;
+			}
+			final Account account = accounts.get(dining.getCreditCardNumber());
+			if (account == null) {
+				outcomes.add(Outcome.UNKNOWN_CARD);
+				results[i] = RewardResult.failed(dining, "No account for credit card '" + dining.getCreditCardNumber() + "'");
+				continue;
+			}
+			final Restaurant restaurant = restaurants.get(dining.getMerchantNumber());
+			if (restaurant == null) {
+				outcomes.add(Outcome.UNKNOWN_MERCHANT);
+				results[i] = RewardResult.failed(dining, "No restaurant for merchant number '" + dining.getMerchantNumber() + "'");
+				continue;
+			}
+			final AccountContribution contribution;
+			try {
+				contribution = account.makeContribution(restaurant.calculateBenefitFor(account, dining));
+			}
+			catch (IllegalStateException e) {
+				outcomes.add(Outcome.INVALID_ALLOCATION);
+				results[i] = RewardResult.failed(dining, e.getMessage());
+				continue;
+			}
+			rewardedIndexes.add(i);
+			contributions.add(contribution);
+			rewardedDinings.add(dining);
+			contributedAccounts.add(account);
+		}
+		if (!contributions.isEmpty()) {
+			final List<RewardConfirmation> confirmations = rewardRepository.confirmRewards(contributions, rewardedDinings);
+			final Set<Account> rewardedAccounts = new LinkedHashSet<>();
+			for (int i = 0; i < confirmations.size(); i++) {
+				final int index = rewardedIndexes.get(i);
+				final RewardConfirmation confirmation = confirmations.get(i);
+				final Account account = contributedAccounts.get(i);
+				if (confirmation == null) {
+					account.revertContribution(contributions.get(i));
+					results[index] = RewardResult.failed(dinings.get(index), "Already rewarded");
+					continue;
+				}
+				rewardedAccounts.add(account);
+				if (savingsWriteBehind != null) {
+					savingsWriteBehind.add(account, contributions.get(i));
+				}
+				results[index] = RewardResult.confirmed(dinings.get(index), confirmation);
+				outcomes.add(contributions.get(i).getAmount().isZero() ? Outcome.ZERO_BENEFIT : Outcome.REWARDED);
+			}
+			if (savingsWriteBehind == null && !rewardedAccounts.isEmpty()) {
+				accountRepository.updateBeneficiarySavings(rewardedAccounts);
+			}
+		}
+		return new ChunkResult(Arrays.asList(results), outcomes);
+	}
+
+	/**
+	 * The results of one try at rewarding a chunk, with the outcomes to count if it succeeds.
+	 */
+	private record ChunkResult(List<RewardResult> results, List<Outcome> outcomes) {
+	}
+}
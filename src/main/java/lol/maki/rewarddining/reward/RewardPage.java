@@ -0,0 +1,11 @@
+package lol.maki.rewarddining.reward;
+
+import java.util.List;
+
+/**
+ * A page of the reward history of an account.
+ * @param rewards the rewards of the page, newest first
+ * @param next the cursor to pass to fetch the next page, or <code>null</code> on the last page
+ */
+public record RewardPage(List<Reward> rewards, String next) {
+}
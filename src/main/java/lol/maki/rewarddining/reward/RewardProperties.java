@@ -0,0 +1,566 @@
+package lol.maki.rewarddining.reward;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Tunables of the reward network, bound from the <code>reward.*</code> properties.
+ */
+@ConfigurationProperties(prefix = "reward")
+public class RewardProperties {
+
+	private final Bulk bulk = new Bulk();
+
+	private final ConfirmationNumber confirmationNumber = new ConfirmationNumber();
+
+	private final Settlement settlement = new Settlement();
+
+	private final Async async = new Async();
+
+	private final AccountLock accountLock = new AccountLock();
+
+	private final WriteBehind writeBehind = new WriteBehind();
+
+	private final Journal journal = new Journal();
+
+	private final Dedup dedup = new Dedup();
+
+	private final Lookup lookup = new Lookup();
+
+	private final Rollup rollup = new Rollup();
+
+	private final Export export = new Export();
+
+	private final Replay replay = new Replay();
+
+	public Bulk getBulk() {
+		return bulk;
+	}
+
+	public ConfirmationNumber getConfirmationNumber() {
+		return confirmationNumber;
+	}
+
+	public Settlement getSettlement() {
+		return settlement;
+	}
+
+	public Async getAsync() {
+		return async;
+	}
+
+	public AccountLock getAccountLock() {
+		return accountLock;
+	}
+
+	public WriteBehind getWriteBehind() {
+		return writeBehind;
+	}
+
+	public Journal getJournal() {
+		return journal;
+	}
+
+	public Dedup getDedup() {
+		return dedup;
+	}
+
+	public Lookup getLookup() {
+		return lookup;
+	}
+
+	public Rollup getRollup() {
+		return rollup;
+	}
+
+	public Export getExport() {
+		return export;
+	}
+
+	public Replay getReplay() {
+		return replay;
+	}
+
+	public static class Bulk {
+
+		/**
+		 * Number of dinings read from a bulk upload before they are rewarded together in one transaction.
+		 */
+		private int chunkSize = RewardNetworkImpl.DEFAULT_CHUNK_SIZE;
+
+		/**
+		 * Maximum number of characters of a line of a bulk upload. Longer lines are not buffered but fail.
+		 */
+		private int maxLineLength = 8192;
+
+		public int getChunkSize() {
+			return chunkSize;
+		}
+
+		public void setChunkSize(int chunkSize) {
+			this.chunkSize = chunkSize;
+		}
+
+		public int getMaxLineLength() {
+			return maxLineLength;
+		}
+
+		public void setMaxLineLength(int maxLineLength) {
+			this.maxLineLength = maxLineLength;
+		}
+	}
+
+	public static class ConfirmationNumber {
+
+		/**
+		 * How confirmation numbers are generated.
+		 */
+		private Generator generator = Generator.SEQUENCE;
+
+		/**
+		 * Id of this instance for the snowflake generator, between 0 and 1023. Must be unique among all running
+		 * instances, so it has no default and must be set when the snowflake generator is used.
+		 */
+		private Long nodeId;
+
+		public Generator getGenerator() {
+			return generator;
+		}
+
+		public void setGenerator(Generator generator) {
+			this.generator = generator;
+		}
+
+		public Long getNodeId() {
+			return nodeId;
+		}
+
+		public void setNodeId(Long nodeId) {
+			this.nodeId = nodeId;
+		}
+
+		public enum Generator {
+			/**
+			 * Time-ordered numbers generated in memory from a timestamp, the node id and a counter.
+			 */
+			SNOWFLAKE,
+			/**
+			 * Numbers taken from the S_REWARD_CONFIRMATION_NUMBER database sequence.
+			 */
+			SEQUENCE
+		}
+	}
+
+	public static class Settlement {
+
+		/**
+		 * Number of settlement file lines rewarded and checkpointed together in one transaction.
+		 */
+		private int chunkSize = 1000;
+
+		/**
+		 * Size in bytes of the buffer settlement files are read through. Must be larger than the longest line.
+		 */
+		private int bufferSize = 1024 * 1024;
+
+		public int getChunkSize() {
+			return chunkSize;
+		}
+
+		public void setChunkSize(int chunkSize) {
+			this.chunkSize = chunkSize;
+		}
+
+		public int getBufferSize() {
+			return bufferSize;
+		}
+
+		public void setBufferSize(int bufferSize) {
+			this.bufferSize = bufferSize;
+		}
+	}
+
+	public static class Async {
+
+		/**
+		 * Number of worker threads rewarding queued dinings. Each busy worker holds a database connection, so keep this
+		 * below the size of the connection pool.
+		 */
+		private int workers = 8;
+
+		/**
+		 * Maximum number of dinings waiting for a worker.
+		 */
+		private int queueCapacity = 1000;
+
+		/**
+		 * How long a caller waits for room in a full queue before the dining is rejected. Zero rejects at once.
+		 */
+		private Duration offerTimeout = Duration.ZERO;
+
+		/**
+		 * How long shutdown waits for queued dinings to be rewarded.
+		 */
+		private Duration shutdownTimeout = Duration.ofSeconds(30);
+
+		public int getWorkers() {
+			return workers;
+		}
+
+		public void setWorkers(int workers) {
+			this.workers = workers;
+		}
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+
+		public Duration getOfferTimeout() {
+			return offerTimeout;
+		}
+
+		public void setOfferTimeout(Duration offerTimeout) {
+			this.offerTimeout = offerTimeout;
+		}
+
+		public Duration getShutdownTimeout() {
+			return shutdownTimeout;
+		}
+
+		public void setShutdownTimeout(Duration shutdownTimeout) {
+			this.shutdownTimeout = shutdownTimeout;
+		}
+	}
+
+	public static class AccountLock {
+
+		/**
+		 * Number of locks the accounts being rewarded are spread over. More stripes mean fewer unrelated accounts
+		 * waiting for each other.
+		 */
+		private int stripes = 1024;
+
+		public int getStripes() {
+			return stripes;
+		}
+
+		public void setStripes(int stripes) {
+			this.stripes = stripes;
+		}
+	}
+
+	public static class WriteBehind {
+
+		/**
+		 * Whether beneficiary savings are collected in memory and written in batches instead of within each reward
+		 * transaction.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Maximum time contributions stay in memory before they are written.
+		 */
+		private Duration flushInterval = Duration.ofMillis(100);
+
+		/**
+		 * Number of accounts with pending contributions that triggers a write before the flush interval elapses.
+		 */
+		private int maxPendingAccounts = 1000;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public Duration getFlushInterval() {
+			return flushInterval;
+		}
+
+		public void setFlushInterval(Duration flushInterval) {
+			this.flushInterval = flushInterval;
+		}
+
+		public int getMaxPendingAccounts() {
+			return maxPendingAccounts;
+		}
+
+		public void setMaxPendingAccounts(int maxPendingAccounts) {
+			this.maxPendingAccounts = maxPendingAccounts;
+		}
+	}
+
+	public static class Journal {
+
+		/**
+		 * Whether rewards are confirmed once written to a local journal and loaded into the database in the background.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Directory of the journal segments. Must survive restarts, as segments not yet loaded are replayed on start.
+		 */
+		private Path directory = Path.of("reward-journal");
+
+		/**
+		 * Size in bytes after which a new segment is started.
+		 */
+		private long segmentSize = 64 * 1024 * 1024;
+
+		/**
+		 * Maximum number of appends written with one fsync.
+		 */
+		private int maxGroupSize = 1000;
+
+		/**
+		 * Number of journal entries loaded into the database per transaction.
+		 */
+		private int drainBatchSize = 1000;
+
+		/**
+		 * Delay between two loads of the journal into the database.
+		 */
+		private Duration drainInterval = Duration.ofSeconds(1);
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public Path getDirectory() {
+			return directory;
+		}
+
+		public void setDirectory(Path directory) {
+			this.directory = directory;
+		}
+
+		public long getSegmentSize() {
+			return segmentSize;
+		}
+
+		public void setSegmentSize(long segmentSize) {
+			this.segmentSize = segmentSize;
+		}
+
+		public int getMaxGroupSize() {
+			return maxGroupSize;
+		}
+
+		public void setMaxGroupSize(int maxGroupSize) {
+			this.maxGroupSize = maxGroupSize;
+		}
+
+		public int getDrainBatchSize() {
+			return drainBatchSize;
+		}
+
+		public void setDrainBatchSize(int drainBatchSize) {
+			this.drainBatchSize = drainBatchSize;
+		}
+
+		public Duration getDrainInterval() {
+			return drainInterval;
+		}
+
+		public void setDrainInterval(Duration drainInterval) {
+			this.drainInterval = drainInterval;
+		}
+	}
+
+	public static class Dedup {
+
+		/**
+		 * How far back from today dining dates are kept in the in-memory filters. Older dinings are always looked up in
+		 * the database.
+		 */
+		private Duration retention = Duration.ofDays(7);
+
+		/**
+		 * Number of dinings per dining date each filter is sized for.
+		 */
+		private long expectedDiningsPerDay = 100_000;
+
+		/**
+		 * Probability that a filter holding the expected number of dinings sends a new dining to the database.
+		 */
+		private double falsePositiveProbability = 0.01;
+
+		public Duration getRetention() {
+			return retention;
+		}
+
+		public void setRetention(Duration retention) {
+			this.retention = retention;
+		}
+
+		public long getExpectedDiningsPerDay() {
+			return expectedDiningsPerDay;
+		}
+
+		public void setExpectedDiningsPerDay(long expectedDiningsPerDay) {
+			this.expectedDiningsPerDay = expectedDiningsPerDay;
+		}
+
+		public double getFalsePositiveProbability() {
+			return falsePositiveProbability;
+		}
+
+		public void setFalsePositiveProbability(double falsePositiveProbability) {
+			this.falsePositiveProbability = falsePositiveProbability;
+		}
+	}
+
+	public static class Lookup {
+
+		/**
+		 * Maximum number of rewards kept in the cache of lookups by confirmation number.
+		 */
+		private int cacheSize = 10_000;
+
+		/**
+		 * Number of rewards on a page of the reward history of an account when the request does not say.
+		 */
+		private int defaultPageSize = 20;
+
+		/**
+		 * Maximum number of rewards on a page of the reward history of an account.
+		 */
+		private int maxPageSize = 100;
+
+		public int getCacheSize() {
+			return cacheSize;
+		}
+
+		public void setCacheSize(int cacheSize) {
+			this.cacheSize = cacheSize;
+		}
+
+		public int getDefaultPageSize() {
+			return defaultPageSize;
+		}
+
+		public void setDefaultPageSize(int defaultPageSize) {
+			this.defaultPageSize = defaultPageSize;
+		}
+
+		public int getMaxPageSize() {
+			return maxPageSize;
+		}
+
+		public void setMaxPageSize(int maxPageSize) {
+			this.maxPageSize = maxPageSize;
+		}
+	}
+
+	public static class Rollup {
+
+		/**
+		 * Number of date ranges the rollups are rebuilt for at the same time.
+		 */
+		private int rebuildParallelism = Runtime.getRuntime().availableProcessors();
+
+		/**
+		 * Number of days rebuilt together in one transaction.
+		 */
+		private int rebuildRangeDays = 7;
+
+		public int getRebuildParallelism() {
+			return rebuildParallelism;
+		}
+
+		public void setRebuildParallelism(int rebuildParallelism) {
+			this.rebuildParallelism = rebuildParallelism;
+		}
+
+		public int getRebuildRangeDays() {
+			return rebuildRangeDays;
+		}
+
+		public void setRebuildRangeDays(int rebuildRangeDays) {
+			this.rebuildRangeDays = rebuildRangeDays;
+		}
+	}
+
+	public static class Export {
+
+		/**
+		 * Number of rewards fetched from the database at a time during an export.
+		 */
+		private int fetchSize = 1000;
+
+		/**
+		 * Size in bytes of the buffer between the export and its output.
+		 */
+		private int bufferSize = 64 * 1024;
+
+		public int getFetchSize() {
+			return fetchSize;
+		}
+
+		public void setFetchSize(int fetchSize) {
+			this.fetchSize = fetchSize;
+		}
+
+		public int getBufferSize() {
+			return bufferSize;
+		}
+
+		public void setBufferSize(int bufferSize) {
+			this.bufferSize = bufferSize;
+		}
+	}
+
+	public static class Replay {
+
+		/**
+		 * Number of threads replaying ranges of accounts at the same time.
+		 */
+		private int parallelism = Runtime.getRuntime().availableProcessors();
+
+		/**
+		 * Most accounts replayed together; larger sets of accounts are split in halves until they are no larger.
+		 */
+		private int rangeSize = 1000;
+
+		/**
+		 * Number of corrected savings written in one batch.
+		 */
+		private int batchSize = 500;
+
+		public int getParallelism() {
+			return parallelism;
+		}
+
+		public void setParallelism(int parallelism) {
+			this.parallelism = parallelism;
+		}
+
+		public int getRangeSize() {
+			return rangeSize;
+		}
+
+		public void setRangeSize(int rangeSize) {
+			this.rangeSize = rangeSize;
+		}
+
+		public int getBatchSize() {
+			return batchSize;
+		}
+
+		public void setBatchSize(int batchSize) {
+			this.batchSize = batchSize;
+		}
+	}
+}
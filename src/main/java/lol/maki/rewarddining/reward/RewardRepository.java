@@ -1,8 +1,12 @@
 package lol.maki.rewarddining.reward;
 
+import java.util.List;
+
 import lol.maki.rewarddining.account.AccountContribution;
 import lol.maki.rewarddining.restaurant.Dining;
 
+import org.springframework.dao.EmptyResultDataAccessException;
+
 /**
  * Handles creating records of reward transactions to track contributions made to accounts for dining at restaurants.
  */
@@ -14,6 +18,36 @@ public interface RewardRepository {
 	 * @param dining the dining event that resulted in the account contribution
 	 * @return a reward confirmation object that can be used for reporting and to lookup the reward details at a later
 	 * date
+	 * @throws DuplicateDiningException if a reward of a dining with the same idempotency key is recorded already
 	 */
 	RewardConfirmation confirmReward(AccountContribution contribution, Dining dining);
-}
\ No newline at end of file
+
+	/**
+	 * Create the records of many rewards at once. A dining whose idempotency key is recorded already, say by a
+	 * concurrent reward of the same dining, is not recorded again, without failing the others.
+	 * @param contributions the account contributions that were made
+	 * @param dinings the dining events that resulted in the account contributions, in the same order as the
+	 * contributions
+	 * @return the reward confirmations, in the same order as the contributions, with <code>null</code> for each dining
+	 * that was recorded already
+	 */
+	List<RewardConfirmation> confirmRewards(List<AccountContribution> contributions, List<Dining> dinings);
+
+	/**
+	 * Find the record of a reward by the confirmation number given when it was confirmed.
+	 * @param confirmationNumber the confirmation number
+	 * @return the reward
+	 * @throws EmptyResultDataAccessException if no reward has the confirmation number
+	 */
+	Reward findByConfirmationNumber(String confirmationNumber);
+
+	/**
+	 * Find the rewards of an account, newest first, by keyset pagination: the page starts right after the given cursor
+	 * rather than at an offset, so every page costs the same to find however deep it is.
+	 * @param accountNumber the number of the account
+	 * @param after the cursor of the last reward of the previous page, or <code>null</code> for the first page
+	 * @param limit the maximum number of rewards to return
+	 * @return the rewards ordered by reward date and confirmation number, both descending
+	 */
+	List<Reward> findByAccountNumber(String accountNumber, RewardCursor after, int limit);
+}
@@ -0,0 +1,74 @@
+package lol.maki.rewarddining.reward;
+
+import lol.maki.rewarddining.restaurant.Dining;
+
+/**
+ * The outcome of rewarding a single dining as part of a batch. Either carries the confirmation of the reward or the
+ * reason why the dining could not be rewarded, so one bad dining does not fail the whole batch.
+ *
+ * A value object. Immutable.
+ */
+public class RewardResult {
+
+	private final Dining dining;
+
+	private final RewardConfirmation confirmation;
+
+	private final String error;
+
+	private RewardResult(Dining dining, RewardConfirmation confirmation, String error) {
+		this.dining = dining;
+		this.confirmation = confirmation;
+		this.error = error;
+	}
+
+	/**
+	 * Creates the result of a dining that was rewarded.
+	 * @param dining the dining that was rewarded
+	 * @param confirmation confirmation of the reward
+	 */
+	public static RewardResult confirmed(Dining dining, RewardConfirmation confirmation) {
+		return new RewardResult(dining, confirmation, null);
+	}
+
+	/**
+	 * Creates the result of a dining that could not be rewarded.
+	 * @param dining the dining that was not rewarded
+	 * @param error why the dining was not rewarded
+	 */
+	public static RewardResult failed(Dining dining, String error) {
+		return new RewardResult(dining, null, error);
+	}
+
+	/**
+	 * Returns the dining this result is for.
+	 */
+	public Dining getDining() {
+		return dining;
+	}
+
+	/**
+	 * Returns the confirmation of the reward, or <code>null</code> if the dining was not rewarded.
+	 */
+	public RewardConfirmation getConfirmation() {
+		return confirmation;
+	}
+
+	/**
+	 * Returns why the dining was not rewarded, or <code>null</code> if it was.
+	 */
+	public String getError() {
+		return error;
+	}
+
+	/**
+	 * Returns true if the dining was rewarded.
+	 */
+	public boolean isConfirmed() {
+		return confirmation != null;
+	}
+
+	public String toString() {
+		return isConfirmed() ? dining + " confirmed as " + confirmation : dining + " failed: " + error;
+	}
+}
@@ -0,0 +1,25 @@
+package lol.maki.rewarddining.reward.export;
+
+import java.time.LocalDate;
+
+/**
+ * Selects the rewards to export.
+ *
+ * A value object. Immutable.
+ * @param from the first reward date, inclusive, or <code>null</code> for no lower bound
+ * @param to the last reward date, inclusive, or <code>null</code> for no upper bound
+ * @param merchantNumber the merchant number of the restaurant dined at, or <code>null</code> for all merchants
+ */
+public record RewardExportFilter(LocalDate from, LocalDate to, String merchantNumber) {
+
+	static final LocalDate MIN_DATE = LocalDate.of(1, 1, 1);
+
+	static final LocalDate MAX_DATE = LocalDate.of(9999, 12, 31);
+
+	/**
+	 * Returns a filter selecting every reward.
+	 */
+	public static RewardExportFilter all() {
+		return new RewardExportFilter(null, null, null);
+	}
+}
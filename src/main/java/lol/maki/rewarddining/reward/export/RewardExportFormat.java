@@ -0,0 +1,51 @@
+package lol.maki.rewarddining.reward.export;
+
+/**
+ * The formats rewards can be exported in.
+ */
+public enum RewardExportFormat {
+	/**
+	 * Comma-separated values with a header line.
+	 */
+	CSV("csv", "text/csv"),
+	/**
+	 * One JSON object per line.
+	 */
+	JSON_LINES("jsonl", "application/x-ndjson");
+
+	private final String extension;
+
+	private final String contentType;
+
+	RewardExportFormat(String extension, String contentType) {
+		this.extension = extension;
+		this.contentType = contentType;
+	}
+
+	/**
+	 * Returns the file name extension of the format, without the dot.
+	 */
+	public String getExtension() {
+		return extension;
+	}
+
+	/**
+	 * Returns the media type of the format.
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * Returns the format with the given file name extension.
+	 * @throws IllegalArgumentException if no format has the extension
+	 */
+	public static RewardExportFormat ofExtension(String extension) {
+		for (RewardExportFormat format : values()) {
+			if (format.extension.equalsIgnoreCase(extension)) {
+				return format;
+			}
+		}
+		throw new IllegalArgumentException("Unknown export format '" + extension + "', expected csv or jsonl");
+	}
+}
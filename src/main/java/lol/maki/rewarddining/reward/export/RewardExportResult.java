@@ -0,0 +1,21 @@
+package lol.maki.rewarddining.reward.export;
+
+import java.time.Duration;
+
+/**
+ * The outcome of an export of rewards.
+ *
+ * A value object. Immutable.
+ * @param rows the number of rewards exported
+ * @param elapsed the time the export took
+ */
+public record RewardExportResult(long rows, Duration elapsed) {
+
+	/**
+	 * Returns the number of rewards exported per second.
+	 */
+	public double rowsPerSecond() {
+		final long nanos = elapsed.toNanos();
+		return nanos == 0 ? 0 : rows * 1_000_000_000.0 / nanos;
+	}
+}
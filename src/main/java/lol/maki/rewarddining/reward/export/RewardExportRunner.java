@@ -0,0 +1,66 @@
+package lol.maki.rewarddining.reward.export;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exports rewards to the files given as <code>--export-rewards</code> options on startup, for example:
+ *
+ * <pre>
+ * java -jar reward-dining.jar --spring.main.web-application-type=none --export-rewards=/data/rewards-2022-05.csv.gz \
+ *     --export-from=2022-05-01 --export-to=2022-05-31 --export-merchant=1234567890
+ * </pre>
+ *
+ * The format is chosen by the extension of the file, <code>.csv</code> or <code>.jsonl</code>, and a further
+ * <code>.gz</code> compresses it. The date and merchant filters are optional. Without a web server the application
+ * exits once the files are written.
+ */
+@Component
+public class RewardExportRunner implements ApplicationRunner {
+
+	static final String OPTION = "export-rewards";
+
+	private final RewardExporter exporter;
+
+	public RewardExportRunner(RewardExporter exporter) {
+		this.exporter = exporter;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) throws Exception {
+		final List<String> files = args.getOptionValues(OPTION);
+		if (files == null) {
+			return;
+		}
+		final RewardExportFilter filter = new RewardExportFilter(date(args, "export-from"), date(args, "export-to"),
+				value(args, "export-merchant"));
+		for (String file : files) {
+			String name = Path.of(file).getFileName().toString();
+			final boolean gzip = name.endsWith(".gz");
+			if (gzip) {
+				name = name.substring(0, name.length() - ".gz".length());
+			}
+			final RewardExportFormat format = RewardExportFormat.ofExtension(name.substring(name.lastIndexOf('.') + 1));
+			try (OutputStream output = Files.newOutputStream(Path.of(file))) {
+				exporter.export(filter, format, gzip, output);
+			}
+		}
+	}
+
+	private static LocalDate date(ApplicationArguments args, String option) {
+		final String value = value(args, option);
+		return value == null ? null : LocalDate.parse(value);
+	}
+
+	private static String value(ApplicationArguments args, String option) {
+		final List<String> values = args.getOptionValues(option);
+		return values == null || values.isEmpty() ? null : values.get(0);
+	}
+}
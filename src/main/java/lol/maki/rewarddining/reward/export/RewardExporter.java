@@ -0,0 +1,240 @@
+package lol.maki.rewarddining.reward.export;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lol.maki.rewarddining.reward.RewardProperties;
+import lol.maki.rewarddining.util.FileLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Exports rewards from T_REWARD as CSV or JSON Lines with constant memory use, however many rows there are.
+ *
+ * Rows are read from a forward-only, read-only result set fetching the configured number of rows at a time, and each
+ * row is written out as soon as it is read, without building an object for it. The export runs in a read-only
+ * transaction, which some drivers need to fetch rows incrementally instead of all at once. Rows are exported in no
+ * particular order, as sorting all of them would defeat the purpose.
+ */
+@Component
+public class RewardExporter {
+
+	static final String CSV_HEADER = "confirmationNumber,rewardAmount,rewardDate,accountNumber,merchantNumber,diningAmount,diningDate";
+
+	private final Logger log = LoggerFactory.getLogger(RewardExporter.class);
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final JsonFactory jsonFactory;
+
+	private final int fetchSize;
+
+	private final int bufferSize;
+
+	private final Counter exported;
+
+	private final Timer exports;
+
+	public RewardExporter(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, RewardProperties properties,
+			MeterRegistry meterRegistry) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.jsonFactory = objectMapper.getFactory();
+		this.fetchSize = properties.getExport().getFetchSize();
+		this.bufferSize = properties.getExport().getBufferSize();
+		this.exported = Counter.builder("reward.export.rows")
+				.description("Rewards exported")
+				.register(meterRegistry);
+		this.exports = Timer.builder("reward.export")
+				.description("Time taken by exports of rewards")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Writes the rewards selected by the filter to the output. The output is flushed but not closed.
+	 * @param filter the rewards to export
+	 * @param format the format to write
+	 * @param gzip whether to compress the output with gzip
+	 * @param output where to write the rewards
+	 * @return the number of rewards exported and the time it took
+	 */
+	@Transactional(readOnly = true)
+	public RewardExportResult export(RewardExportFilter filter, RewardExportFormat format, boolean gzip,
+			OutputStream output) throws IOException {
+		final long start = System.nanoTime();
+		final OutputStream target = new NonClosingOutputStream(output);
+		final OutputStream out = gzip ? new GZIPOutputStream(target, bufferSize) : target;
+		final long rows;
+		// closing the writer finishes the gzip stream and flushes the output
+		try (RowWriter writer = format == RewardExportFormat.CSV ? new CsvRowWriter(out, bufferSize)
+				: new JsonLinesRowWriter(jsonFactory.createGenerator(out))) {
+			rows = query(filter, writer);
+		}
+		final RewardExportResult result = new RewardExportResult(rows, Duration.ofNanos(System.nanoTime() - start));
+		exported.increment(rows);
+		exports.record(result.elapsed());
+		log.info("Exported {} rewards as {}{} in {} ms ({} rows/s)", rows, format.getExtension(), gzip ? ".gz" : "",
+				result.elapsed().toMillis(), Math.round(result.rowsPerSecond()));
+		return result;
+	}
+
+	private long query(RewardExportFilter filter, RowWriter writer) throws IOException {
+		final String sql = FileLoader.load(filter.merchantNumber() == null
+				? "lol/maki/rewarddining/reward/RewardExporter/exportRewards.sql"
+				: "lol/maki/rewarddining/reward/RewardExporter/exportRewardsByMerchant.sql");
+		final long[] rows = { 0 };
+		try {
+			writer.writeHeader();
+			jdbcTemplate.query(connection -> {
+				final PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+						ResultSet.CONCUR_READ_ONLY);
+				statement.setFetchSize(fetchSize);
+				statement.setDate(1, Date.valueOf(filter.from() == null ? RewardExportFilter.MIN_DATE : filter.from()));
+				statement.setDate(2, Date.valueOf(filter.to() == null ? RewardExportFilter.MAX_DATE : filter.to()));
+				if (filter.merchantNumber() != null) {
+					statement.setString(3, filter.merchantNumber());
+				}
+				return statement;
+			}, rs -> {
+				try {
+					writer.write(rs);
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				rows[0]++;
+			});
+		}
+		catch (UncheckedIOException e) {
+			// most likely the client went away
+			throw e.getCause();
+		}
+		return rows[0];
+	}
+
+	private interface RowWriter extends AutoCloseable {
+		void writeHeader() throws IOException;
+
+		void write(ResultSet rs) throws SQLException, IOException;
+
+		@Override
+		void close() throws IOException;
+	}
+
+	private static class CsvRowWriter implements RowWriter {
+		private final Writer writer;
+
+		CsvRowWriter(OutputStream output, int bufferSize) {
+			this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), bufferSize);
+		}
+
+		@Override
+		public void writeHeader() throws IOException {
+			writer.write(CSV_HEADER);
+			writer.write('\n');
+		}
+
+		@Override
+		public void write(ResultSet rs) throws SQLException, IOException {
+			for (int column = 1; column <= 7; column++) {
+				if (column > 1) {
+					writer.write(',');
+				}
+				writeField(rs.getString(column));
+			}
+			writer.write('\n');
+		}
+
+		private void writeField(String value) throws IOException {
+			if (value == null) {
+				return;
+			}
+			if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+				writer.write(value);
+				return;
+			}
+			writer.write('"');
+			writer.write(value.replace("\"", "\"\""));
+			writer.write('"');
+		}
+
+		@Override
+		public void close() throws IOException {
+			writer.close();
+		}
+	}
+
+	private static class JsonLinesRowWriter implements RowWriter {
+		private final JsonGenerator generator;
+
+		JsonLinesRowWriter(JsonGenerator generator) {
+			this.generator = generator;
+			this.generator.setRootValueSeparator(null);
+		}
+
+		@Override
+		public void writeHeader() {
+		}
+
+		@Override
+		public void write(ResultSet rs) throws SQLException, IOException {
+			generator.writeStartObject();
+			generator.writeStringField("confirmationNumber", rs.getString(1));
+			generator.writeFieldName("rewardAmount");
+			generator.writeNumber(rs.getString(2));
+			generator.writeStringField("rewardDate", rs.getString(3));
+			generator.writeStringField("accountNumber", rs.getString(4));
+			generator.writeStringField("merchantNumber", rs.getString(5));
+			generator.writeFieldName("diningAmount");
+			generator.writeNumber(rs.getString(6));
+			generator.writeStringField("diningDate", rs.getString(7));
+			generator.writeEndObject();
+			generator.writeRaw('\n');
+		}
+
+		@Override
+		public void close() throws IOException {
+			generator.close();
+		}
+	}
+
+	/**
+	 * Leaves closing the output to whoever opened it, while the writers on top of it are closed to flush them.
+	 */
+	private static class NonClosingOutputStream extends FilterOutputStream {
+		NonClosingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+	}
+}
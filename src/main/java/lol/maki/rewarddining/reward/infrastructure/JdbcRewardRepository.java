@@ -2,12 +2,22 @@ package lol.maki.rewarddining.reward.infrastructure;
 
 import java.math.BigDecimal;
 import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 
 import lol.maki.rewarddining.account.AccountContribution;
+import lol.maki.rewarddining.account.USD;
 import lol.maki.rewarddining.restaurant.Dining;
+import lol.maki.rewarddining.reward.ConfirmationNumberGenerator;
+import lol.maki.rewarddining.reward.DuplicateDiningException;
+import lol.maki.rewarddining.reward.Reward;
+import lol.maki.rewarddining.reward.RewardCursor;
 import lol.maki.rewarddining.reward.RewardConfirmation;
 import lol.maki.rewarddining.reward.RewardRepository;
+import lol.maki.rewarddining.reward.rollup.RewardRollups;
 import lol.maki.rewarddining.util.FileLoader;
 
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -16,29 +26,107 @@ import org.springframework.transaction.annotation.Transactional;
 
 /**
  * JDBC implementation of a reward repository that records the result of a reward transaction by inserting a reward
- * confirmation record.
+ * confirmation record, and adds it to the daily reward rollups in the same transaction. The insert skips a dining whose
+ * idempotency key is recorded already, so a duplicate costs no failed statement.
  */
 @Repository
 public class JdbcRewardRepository implements RewardRepository {
 
 	private final JdbcTemplate jdbcTemplate;
 
-	public JdbcRewardRepository(JdbcTemplate jdbcTemplate) {
+	private final ConfirmationNumberGenerator confirmationNumberGenerator;
+
+	private final RewardRollups rewardRollups;
+
+	public JdbcRewardRepository(JdbcTemplate jdbcTemplate, ConfirmationNumberGenerator confirmationNumberGenerator,
+			RewardRollups rewardRollups) {
 		this.jdbcTemplate = jdbcTemplate;
+		this.confirmationNumberGenerator = confirmationNumberGenerator;
+		this.rewardRollups = rewardRollups;
 	}
 
 	@Transactional
 	public RewardConfirmation confirmReward(AccountContribution contribution, Dining dining) {
 		final String sql = FileLoader.load("lol/maki/rewarddining/reward/JdbcRewardRepository/confirmReward.sql");
-		final String confirmationNumber = nextConfirmationNumber();
-		jdbcTemplate.update(sql, confirmationNumber, contribution.getAmount().getNumber().numberValue(BigDecimal.class),
-				Date.valueOf(LocalDate.now()), contribution.getAccountNumber(), dining.getMerchantNumber(),
-				Date.valueOf(dining.getDate()), dining.getAmount().getNumber().numberValue(BigDecimal.class));
+		final String confirmationNumber = confirmationNumberGenerator.nextConfirmationNumber();
+		final LocalDate rewardDate = LocalDate.now();
+		final int inserted = jdbcTemplate.update(sql, confirmationNumber,
+				contribution.getAmount().getNumber().numberValue(BigDecimal.class), Date.valueOf(rewardDate),
+				contribution.getAccountNumber(), dining.getMerchantNumber(), Date.valueOf(dining.getDate()),
+				dining.getAmount().getNumber().numberValue(BigDecimal.class), dining.getIdempotencyKey(),
+				dining.getIdempotencyKey());
+		if (inserted == 0) {
+			throw new DuplicateDiningException(dining);
+		}
+		rewardRollups.add(List.of(toReward(confirmationNumber, contribution, dining, rewardDate)));
 		return new RewardConfirmation(confirmationNumber, contribution);
 	}
 
-	private String nextConfirmationNumber() {
-		final String sql = FileLoader.load("lol/maki/rewarddining/reward/JdbcRewardRepository/nextConfirmationNumber.sql");
-		return jdbcTemplate.queryForObject(sql, String.class);
+	@Transactional
+	public List<RewardConfirmation> confirmRewards(List<AccountContribution> contributions, List<Dining> dinings) {
+		if (contributions.size() != dinings.size()) {
+			throw new IllegalArgumentException("Expected one dining per contribution but got " + contributions.size()
+					+ " contributions and " + dinings.size() + " dinings");
+		}
+		final String sql = FileLoader.load("lol/maki/rewarddining/reward/JdbcRewardRepository/confirmReward.sql");
+		final List<String> confirmationNumbers = confirmationNumberGenerator.nextConfirmationNumbers(contributions.size());
+		final LocalDate rewardDate = LocalDate.now();
+		final List<Object[]> args = new ArrayList<>(contributions.size());
+		for (int i = 0; i < contributions.size(); i++) {
+			final AccountContribution contribution = contributions.get(i);
+			final Dining dining = dinings.get(i);
+			args.add(new Object[] { confirmationNumbers.get(i), contribution.getAmount().getNumber().numberValue(BigDecimal.class),
+					Date.valueOf(rewardDate), contribution.getAccountNumber(), dining.getMerchantNumber(),
+					Date.valueOf(dining.getDate()), dining.getAmount().getNumber().numberValue(BigDecimal.class),
+					dining.getIdempotencyKey(), dining.getIdempotencyKey() });
+		}
+		if (args.isEmpty()) {
+			return List.of();
+		}
+		final int[] counts = jdbcTemplate.batchUpdate(sql, args);
+		final List<Reward> rewards = new ArrayList<>(contributions.size());
+		final List<RewardConfirmation> confirmations = new ArrayList<>(contributions.size());
+		for (int i = 0; i < contributions.size(); i++) {
+			if (counts[i] == 0) {
+				confirmations.add(null);
+				continue;
+			}
+			rewards.add(toReward(confirmationNumbers.get(i), contributions.get(i), dinings.get(i), rewardDate));
+			confirmations.add(new RewardConfirmation(confirmationNumbers.get(i), contributions.get(i)));
+		}
+		rewardRollups.add(rewards);
+		return confirmations;
+	}
+
+	@Override
+	public Reward findByConfirmationNumber(String confirmationNumber) {
+		final String sql = FileLoader.load("lol/maki/rewarddining/reward/JdbcRewardRepository/findByConfirmationNumber.sql");
+		return jdbcTemplate.queryForObject(sql, this::mapReward, confirmationNumber);
+	}
+
+	@Override
+	public List<Reward> findByAccountNumber(String accountNumber, RewardCursor after, int limit) {
+		// ordering by the constant account number too lets the database read IX_REWARD_ACCOUNT_HISTORY in index order
+		// and stop after the limit, instead of sorting every reward of the account
+		if (after == null) {
+			final String sql = FileLoader.load("lol/maki/rewarddining/reward/JdbcRewardRepository/findByAccountNumber.sql");
+			return jdbcTemplate.query(sql, this::mapReward, accountNumber, limit);
+		}
+		final String sql = FileLoader.load("lol/maki/rewarddining/reward/JdbcRewardRepository/findByAccountNumberAfter.sql");
+		final Date date = Date.valueOf(after.date());
+		return jdbcTemplate.query(sql, this::mapReward, accountNumber, date, date, after.confirmationNumber(), limit);
+	}
+
+	private static Reward toReward(String confirmationNumber, AccountContribution contribution, Dining dining,
+			LocalDate rewardDate) {
+		return new Reward(confirmationNumber, contribution.getAmount(), rewardDate, contribution.getAccountNumber(),
+				dining.getMerchantNumber(), dining.getAmount(), dining.getDate());
+	}
+
+	private Reward mapReward(ResultSet rs, int rowNum) throws SQLException {
+		return new Reward(rs.getString("CONFIRMATION_NUMBER"), USD.valueOf(rs.getString("REWARD_AMOUNT")),
+				rs.getDate("REWARD_DATE").toLocalDate(), rs.getString("ACCOUNT_NUMBER"),
+				rs.getString("DINING_MERCHANT_NUMBER"), USD.valueOf(rs.getString("DINING_AMOUNT")),
+				rs.getDate("DINING_DATE").toLocalDate());
 	}
-}
\ No newline at end of file
+}
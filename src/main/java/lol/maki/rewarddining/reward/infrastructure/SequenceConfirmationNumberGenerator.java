@@ -0,0 +1,36 @@
+package lol.maki.rewarddining.reward.infrastructure;
+
+import java.util.List;
+
+import lol.maki.rewarddining.reward.ConfirmationNumberGenerator;
+import lol.maki.rewarddining.util.FileLoader;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Takes confirmation numbers from the <code>S_REWARD_CONFIRMATION_NUMBER</code> database sequence. Costs a round trip
+ * per call and serializes every instance on the one sequence, but the numbers are dense and start at 1.
+ */
+public class SequenceConfirmationNumberGenerator implements ConfirmationNumberGenerator {
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public SequenceConfirmationNumberGenerator(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	@Override
+	public String nextConfirmationNumber() {
+		final String sql = FileLoader.load("lol/maki/rewarddining/reward/JdbcRewardRepository/nextConfirmationNumber.sql");
+		return jdbcTemplate.queryForObject(sql, String.class);
+	}
+
+	@Override
+	public List<String> nextConfirmationNumbers(int count) {
+		if (count == 0) {
+			return List.of();
+		}
+		final String sql = FileLoader.load("lol/maki/rewarddining/reward/JdbcRewardRepository/nextConfirmationNumbers.sql");
+		return jdbcTemplate.queryForList(sql, String.class, count);
+	}
+}
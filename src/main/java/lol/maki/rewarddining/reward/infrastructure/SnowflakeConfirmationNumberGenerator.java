@@ -0,0 +1,125 @@
+package lol.maki.rewarddining.reward.infrastructure;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lol.maki.rewarddining.reward.ConfirmationNumberGenerator;
+
+/**
+ * Generates time-ordered confirmation numbers in memory, without any database round trip.
+ *
+ * Each number is a 63-bit value made of 41 bits of milliseconds since {@link #EPOCH}, 10 bits of node id and 12 bits
+ * of a per-node counter, written as a zero-padded 19 digit decimal string. That fits the
+ * <code>CONFIRMATION_NUMBER varchar(25)</code> column and sorts the same as a string and as a number. Numbers are
+ * unique as long as no two running instances share a node id.
+ *
+ * A node can generate 4096 numbers per millisecond. When the counter runs out, the node waits for the next millisecond.
+ * When the clock steps back, the node waits for it to catch up with the last timestamp it used, for at most
+ * {@value #MAX_CLOCK_BACKWARDS_MILLIS} ms; a larger step fails. So a node never uses a timestamp ahead of its clock,
+ * and a node restarted with the same id does not reissue the numbers it generated before.
+ */
+public class SnowflakeConfirmationNumberGenerator implements ConfirmationNumberGenerator {
+
+	/**
+	 * The start of the timestamps, 2022-01-01T00:00:00Z. 41 bits of milliseconds last until 2091.
+	 */
+	public static final Instant EPOCH = Instant.parse("2022-01-01T00:00:00Z");
+
+	static final int NODE_ID_BITS = 10;
+
+	static final int COUNTER_BITS = 12;
+
+	public static final long MAX_NODE_ID = (1L << NODE_ID_BITS) - 1;
+
+	private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+
+	private static final int LENGTH = 19;
+
+	static final long MAX_CLOCK_BACKWARDS_MILLIS = 10;
+
+	private final long nodeId;
+
+	private final Clock clock;
+
+	private final long epochMillis = EPOCH.toEpochMilli();
+
+	/**
+	 * The last timestamp and counter, packed as <code>timestamp &lt;&lt; COUNTER_BITS | counter</code> so both advance
+	 * together with a single compare-and-set. Incrementing a full counter carries over into the timestamp.
+	 */
+	private final AtomicLong lastTimestampAndCounter = new AtomicLong();
+
+	/**
+	 * Creates a new generator.
+	 * @param nodeId the id of this node, unique among all running instances, between 0 and {@link #MAX_NODE_ID}
+	 * @param clock the clock that provides the timestamps
+	 */
+	public SnowflakeConfirmationNumberGenerator(long nodeId, Clock clock) {
+		if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+			throw new IllegalArgumentException("nodeId must be between 0 and " + MAX_NODE_ID + " but was " + nodeId);
+		}
+		this.nodeId = nodeId;
+		this.clock = clock;
+	}
+
+	public SnowflakeConfirmationNumberGenerator(long nodeId) {
+		this(nodeId, Clock.systemUTC());
+	}
+
+	@Override
+	public String nextConfirmationNumber() {
+		return format(nextId());
+	}
+
+	@Override
+	public List<String> nextConfirmationNumbers(int count) {
+		final List<String> confirmationNumbers = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			confirmationNumbers.add(format(nextId()));
+		}
+		return confirmationNumbers;
+	}
+
+	/**
+	 * Returns the next id of this node as a number.
+	 * @throws IllegalStateException if the clock stepped back more than {@value #MAX_CLOCK_BACKWARDS_MILLIS} ms
+	 */
+	long nextId() {
+		while (true) {
+			final long last = lastTimestampAndCounter.get();
+			final long lastTimestamp = last >>> COUNTER_BITS;
+			final long now = clock.millis() - epochMillis;
+			final long next;
+			if (now > lastTimestamp) {
+				next = now << COUNTER_BITS;
+			}
+			else if (now == lastTimestamp && (last & COUNTER_MASK) != COUNTER_MASK) {
+				next = last + 1;
+			}
+			else if (lastTimestamp - now > MAX_CLOCK_BACKWARDS_MILLIS) {
+				throw new IllegalStateException("Clock moved backwards by " + (lastTimestamp - now)
+						+ " ms, refusing to generate confirmation numbers");
+			}
+			else {
+				// the counter ran out or the clock stepped back a little: wait for the clock to pass the last timestamp
+				Thread.onSpinWait();
+				continue;
+			}
+			if (lastTimestampAndCounter.compareAndSet(last, next)) {
+				return (next >>> COUNTER_BITS) << (NODE_ID_BITS + COUNTER_BITS) | nodeId << COUNTER_BITS | (next & COUNTER_MASK);
+			}
+		}
+	}
+
+	static String format(long id) {
+		final char[] digits = new char[LENGTH];
+		for (int i = LENGTH - 1; i >= 0; i--) {
+			digits[i] = (char) ('0' + id % 10);
+			id /= 10;
+		}
+		return new String(digits);
+	}
+}
@@ -0,0 +1,163 @@
+package lol.maki.rewarddining.reward.journal;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+import lol.maki.rewarddining.account.AccountContribution;
+import lol.maki.rewarddining.restaurant.Dining;
+import lol.maki.rewarddining.reward.ConfirmationNumberGenerator;
+import lol.maki.rewarddining.reward.DiningDeduplicator;
+import lol.maki.rewarddining.reward.DuplicateDiningException;
+import lol.maki.rewarddining.reward.Reward;
+import lol.maki.rewarddining.reward.RewardCursor;
+import lol.maki.rewarddining.reward.RewardConfirmation;
+import lol.maki.rewarddining.reward.RewardRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Reward repository that records rewards in the {@link RewardJournal} instead of inserting them into T_REWARD.
+ *
+ * A reward is confirmed once its journal entry is on disk, which under concurrent load costs a share of one fsync
+ * rather than a database commit. The {@link RewardJournalDrainer} loads the entries into T_REWARD shortly after, so
+ * rewards show up there with a small delay. Lookups are answered from T_REWARD and do not find rewards that are not
+ * loaded yet.
+ *
+ * Within a transaction the entries are appended once it has committed, so that a reward whose transaction rolls back,
+ * with the savings it credited, is never loaded, and the transaction is not held open while waiting for the fsync. The
+ * caller still returns only once the entries are on disk. Should the append fail, the savings are committed without a
+ * record of the reward: the entries are logged as an error so that they can be recovered, and the caller fails.
+ *
+ * As T_REWARD cannot tell a dining rewarded but not loaded yet, the idempotency key of every journaled dining is
+ * {@link DiningDeduplicator#claim(String) claimed} until the drainer loads it. A dining whose key is claimed already is
+ * not journaled again. A claim is released when the reward transaction rolls back, but kept when the append fails after
+ * the commit, as the savings of the dining were credited.
+ */
+public class JournalingRewardRepository implements RewardRepository {
+
+	private final Logger log = LoggerFactory.getLogger(JournalingRewardRepository.class);
+
+	private final RewardJournal journal;
+
+	private final ConfirmationNumberGenerator confirmationNumberGenerator;
+
+	private final RewardRepository loadedRewards;
+
+	private final DiningDeduplicator diningDeduplicator;
+
+	/**
+	 * @param journal the journal rewards are recorded in
+	 * @param confirmationNumberGenerator generates the confirmation numbers
+	 * @param loadedRewards the repository of the rewards loaded into T_REWARD, used for lookups
+	 * @param diningDeduplicator holds the idempotency keys of the dinings journaled but not loaded yet
+	 */
+	public JournalingRewardRepository(RewardJournal journal, ConfirmationNumberGenerator confirmationNumberGenerator,
+			RewardRepository loadedRewards, DiningDeduplicator diningDeduplicator) {
+		this.journal = journal;
+		this.confirmationNumberGenerator = confirmationNumberGenerator;
+		this.loadedRewards = loadedRewards;
+		this.diningDeduplicator = diningDeduplicator;
+	}
+
+	@Override
+	public RewardConfirmation confirmReward(AccountContribution contribution, Dining dining) {
+		if (!diningDeduplicator.claim(dining.getIdempotencyKey())) {
+			throw new DuplicateDiningException(dining);
+		}
+		final String confirmationNumber = confirmationNumberGenerator.nextConfirmationNumber();
+		append(List.of(RewardJournalEntry.of(confirmationNumber, contribution, dining, LocalDate.now()).toBytes()),
+				List.of(dining.getIdempotencyKey()));
+		return new RewardConfirmation(confirmationNumber, contribution);
+	}
+
+	@Override
+	public List<RewardConfirmation> confirmRewards(List<AccountContribution> contributions, List<Dining> dinings) {
+		if (contributions.size() != dinings.size()) {
+			throw new IllegalArgumentException("Expected one dining per contribution but got " + contributions.size()
+					+ " contributions and " + dinings.size() + " dinings");
+		}
+		final List<String> confirmationNumbers = confirmationNumberGenerator.nextConfirmationNumbers(contributions.size());
+		final LocalDate rewardDate = LocalDate.now();
+		final List<byte[]> records = new ArrayList<>(contributions.size());
+		final List<String> claimed = new ArrayList<>(contributions.size());
+		final List<RewardConfirmation> confirmations = new ArrayList<>(contributions.size());
+		for (int i = 0; i < contributions.size(); i++) {
+			final String idempotencyKey = dinings.get(i).getIdempotencyKey();
+			if (!diningDeduplicator.claim(idempotencyKey)) {
+				confirmations.add(null);
+				continue;
+			}
+			claimed.add(idempotencyKey);
+			records.add(RewardJournalEntry.of(confirmationNumbers.get(i), contributions.get(i), dinings.get(i), rewardDate).toBytes());
+			confirmations.add(new RewardConfirmation(confirmationNumbers.get(i), contributions.get(i)));
+		}
+		if (!records.isEmpty()) {
+			append(records, claimed);
+		}
+		return confirmations;
+	}
+
+	@Override
+	public Reward findByConfirmationNumber(String confirmationNumber) {
+		return loadedRewards.findByConfirmationNumber(confirmationNumber);
+	}
+
+	@Override
+	public List<Reward> findByAccountNumber(String accountNumber, RewardCursor after, int limit) {
+		return loadedRewards.findByAccountNumber(accountNumber, after, limit);
+	}
+
+	private void append(List<byte[]> records, List<String> claimed) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			try {
+				write(records);
+			}
+			catch (RuntimeException e) {
+				claimed.forEach(diningDeduplicator::release);
+				throw e;
+			}
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				try {
+					write(records);
+				}
+				catch (RuntimeException e) {
+					log.error("Rewards committed but not journaled, to be recovered by hand:\n{}",
+							records.stream().map(r -> new String(r, StandardCharsets.US_ASCII)).collect(Collectors.joining()));
+					throw e;
+				}
+			}
+
+			@Override
+			public void afterCompletion(int status) {
+				if (status == STATUS_ROLLED_BACK) {
+					claimed.forEach(diningDeduplicator::release);
+				}
+			}
+		});
+	}
+
+	private void write(List<byte[]> records) {
+		try {
+			journal.append(records).get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DataAccessResourceFailureException("Interrupted while writing to the reward journal", e);
+		}
+		catch (ExecutionException e) {
+			throw new DataAccessResourceFailureException("Could not write to the reward journal", e.getCause());
+		}
+	}
+}
@@ -0,0 +1,265 @@
+package lol.maki.rewarddining.reward.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * An append-only file of rewards with group commit.
+ *
+ * Appends from many threads are queued and written by a single writer thread. The writer takes everything queued at
+ * once, writes it with one gathering write, forces it to disk with one fsync and only then completes the appends. Under
+ * load a whole group of rewards costs one fsync, while a lone append is written right away. A group that fails to be
+ * written or forced is cut off the segment again, so that its appends, which fail, are never loaded, and the next group
+ * does not follow a torn record.
+ *
+ * The journal is split into segments named <code>rewards-&lt;number&gt;.journal</code>. A new segment is started on
+ * every start and whenever the active one exceeds the segment size, so that the {@link RewardJournalDrainer} can delete
+ * segments once they are loaded into the database.
+ */
+public class RewardJournal implements DisposableBean {
+
+	static final String SEGMENT_PREFIX = "rewards-";
+
+	static final String SEGMENT_SUFFIX = ".journal";
+
+	private final Logger log = LoggerFactory.getLogger(RewardJournal.class);
+
+	private final Path directory;
+
+	private final long segmentSize;
+
+	private final int maxGroupSize;
+
+	private final BlockingQueue<Append> queue = new LinkedBlockingQueue<>();
+
+	private final Thread writer;
+
+	private final DistributionSummary groupSize;
+
+	private final Timer fsync;
+
+	private volatile boolean open = true;
+
+	private volatile Segment active;
+
+	// the end of the last complete group of segments left behind with the remains of a failed write
+	private final Map<Path, Long> abandoned = new ConcurrentHashMap<>();
+
+	// only touched by the writer thread once started
+	private FileChannel channel;
+
+	private long nextSegmentNumber;
+
+	public RewardJournal(Path directory, long segmentSize, int maxGroupSize, MeterRegistry meterRegistry) throws IOException {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.maxGroupSize = maxGroupSize;
+		this.groupSize = DistributionSummary.builder("reward.journal.group.size")
+				.description("Rewards written with one fsync")
+				.register(meterRegistry);
+		this.fsync = Timer.builder("reward.journal.fsync")
+				.description("Time spent forcing reward groups to disk")
+				.publishPercentileHistogram()
+				.register(meterRegistry);
+		Files.createDirectories(directory);
+		this.nextSegmentNumber = segments().stream().mapToLong(RewardJournal::segmentNumber).max().orElse(0) + 1;
+		roll();
+		this.writer = new Thread(this::writeLoop, "reward-journal-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Appends records, each a complete line. The returned future completes once the records are on disk.
+	 */
+	public CompletableFuture<Void> append(List<byte[]> records) {
+		final Append append = new Append(records);
+		if (!open) {
+			append.done.completeExceptionally(new IllegalStateException("Reward journal is closed"));
+			return append.done;
+		}
+		queue.add(append);
+		return append.done;
+	}
+
+	/**
+	 * Returns all segments, oldest first.
+	 */
+	public List<Path> segments() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(f -> f.getFileName().toString().startsWith(SEGMENT_PREFIX)
+							&& f.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+					.sorted(Comparator.comparingLong(RewardJournal::segmentNumber))
+					.collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Returns whether records are still appended to the segment.
+	 */
+	public boolean isActive(Path segment) {
+		return active.path().equals(segment);
+	}
+
+	/**
+	 * Returns the number of bytes of the segment that are on disk. Only complete groups are counted for the active
+	 * segment and for segments a failed write could not be cut off.
+	 */
+	public long durableSize(Path segment) throws IOException {
+		final Segment current = active;
+		if (current.path().equals(segment)) {
+			return current.durableSize();
+		}
+		final Long limit = abandoned.get(segment);
+		return limit != null ? limit : Files.size(segment);
+	}
+
+	private void writeLoop() {
+		final List<Append> group = new ArrayList<>();
+		while (open || !queue.isEmpty()) {
+			try {
+				final Append first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				group.add(first);
+			}
+			catch (InterruptedException e) {
+				continue;
+			}
+			queue.drainTo(group, maxGroupSize - 1);
+			try {
+				write(group);
+				group.forEach(append -> append.done.complete(null));
+			}
+			catch (IOException | RuntimeException e) {
+				log.error("Failed to write {} reward groups to the journal", group.size(), e);
+				group.forEach(append -> append.done.completeExceptionally(e));
+			}
+			group.clear();
+			if (active.durableSize() >= segmentSize) {
+				try {
+					roll();
+				}
+				catch (IOException e) {
+					log.error("Failed to start a new journal segment, appending to {} meanwhile", active.path(), e);
+				}
+			}
+		}
+	}
+
+	private void write(List<Append> group) throws IOException {
+		final List<ByteBuffer> buffers = new ArrayList<>();
+		for (Append append : group) {
+			for (byte[] record : append.records) {
+				buffers.add(ByteBuffer.wrap(record));
+			}
+		}
+		final ByteBuffer[] array = buffers.toArray(ByteBuffer[]::new);
+		final long length = buffers.stream().mapToLong(ByteBuffer::remaining).sum();
+		final long position = channel.position();
+		try {
+			long written = 0;
+			while (written < length) {
+				written += channel.write(array);
+			}
+			final long start = System.nanoTime();
+			channel.force(false);
+			fsync.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+		catch (IOException | RuntimeException e) {
+			cutOff(position);
+			throw e;
+		}
+		groupSize.record(array.length);
+		active = new Segment(active.path(), position + length);
+	}
+
+	/**
+	 * Removes whatever a failed write left after the given position. If that fails too, a new segment is started and
+	 * the old one is only loaded up to the position. Only this process knows that: after a restart the complete entries
+	 * of the remains are loaded too.
+	 */
+	private void cutOff(long position) {
+		try {
+			channel.truncate(position);
+			channel.position(position);
+			channel.force(false);
+		}
+		catch (IOException | RuntimeException e) {
+			log.error("Failed to cut a failed write off {}, starting a new segment", active.path(), e);
+			abandoned.put(active.path(), position);
+			try {
+				roll();
+			}
+			catch (IOException rollFailure) {
+				log.error("Failed to start a new journal segment", rollFailure);
+			}
+		}
+	}
+
+	private void roll() throws IOException {
+		final Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSegmentNumber++, SEGMENT_SUFFIX));
+		final FileChannel previous = this.channel;
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		this.active = new Segment(path, 0);
+		if (previous != null) {
+			previous.close();
+		}
+	}
+
+	/**
+	 * Writes the queued appends and closes the journal. Appends arriving afterwards fail.
+	 */
+	@Override
+	public void destroy() throws IOException, InterruptedException {
+		open = false;
+		writer.join();
+		Append append;
+		while ((append = queue.poll()) != null) {
+			append.done.completeExceptionally(new IllegalStateException("Reward journal is closed"));
+		}
+		channel.close();
+	}
+
+	static long segmentNumber(Path segment) {
+		final String name = segment.getFileName().toString();
+		return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+	}
+
+	private record Segment(Path path, long durableSize) {
+	}
+
+	private static class Append {
+		private final List<byte[]> records;
+
+		private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+		Append(List<byte[]> records) {
+			this.records = records;
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package lol.maki.rewarddining.reward.journal;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lol.maki.rewarddining.reward.DiningDeduplicator;
+import lol.maki.rewarddining.reward.Reward;
+import lol.maki.rewarddining.reward.rollup.RewardRollups;
+import lol.maki.rewarddining.util.FileLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Loads the reward journal into T_REWARD in the background.
+ *
+ * Segments are read from the byte offset checkpointed for them in T_REWARD_JOURNAL. Each batch of entries is inserted
+ * into T_REWARD and committed together with the new offset. Entries whose confirmation number or idempotency key is
+ * already in T_REWARD are skipped, which makes loading idempotent: entries loaded before a crash are harmless when a
+ * segment is loaded again, and a resent dining that reached the journal twice is recorded once. The entries actually
+ * inserted are added to the daily reward rollups in the same transaction. Segments that are no longer active and
+ * completely loaded are deleted. Segments left by a previous run are loaded the same way, which replays the journal on
+ * restart. The journal is loaded once when the drainer starts, before rewards are taken, and then in the background.
+ *
+ * The idempotency keys of the loaded entries are handed to the {@link DiningDeduplicator}, which holds them as pending
+ * until they are in T_REWARD.
+ */
+public class RewardJournalDrainer implements InitializingBean, DisposableBean {
+
+	private final Logger log = LoggerFactory.getLogger(RewardJournalDrainer.class);
+
+	private final RewardJournal journal;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final RewardRollups rewardRollups;
+
+	private final DiningDeduplicator diningDeduplicator;
+
+	private final int batchSize;
+
+	private final ScheduledExecutorService scheduler;
+
+	private final Counter loaded;
+
+	public RewardJournalDrainer(RewardJournal journal, JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+			RewardRollups rewardRollups, DiningDeduplicator diningDeduplicator, int batchSize, Duration interval,
+			MeterRegistry meterRegistry) {
+		this.journal = journal;
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = transactionTemplate;
+		this.rewardRollups = rewardRollups;
+		this.diningDeduplicator = diningDeduplicator;
+		this.batchSize = batchSize;
+		this.loaded = Counter.builder("reward.journal.loaded")
+				.description("Journal entries inserted into T_REWARD")
+				.register(meterRegistry);
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("reward-journal-drainer-"));
+		this.scheduler.scheduleWithFixedDelay(() -> {
+			try {
+				drain();
+			}
+			catch (IOException | RuntimeException e) {
+				log.error("Failed to load the reward journal, retrying later", e);
+			}
+		}, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Loads the segments left by a previous run, whose dinings the deduplicator would not know otherwise.
+	 */
+	@Override
+	public void afterPropertiesSet() throws IOException {
+		drain();
+	}
+
+	/**
+	 * Loads everything on disk into T_REWARD.
+	 * @return the number of entries inserted, not counting those already in T_REWARD
+	 */
+	public synchronized long drain() throws IOException {
+		long count = 0;
+		for (Path segment : journal.segments()) {
+			count += drainSegment(segment);
+		}
+		return count;
+	}
+
+	private long drainSegment(Path segment) throws IOException {
+		final String name = segment.getFileName().toString();
+		// decide before reading the size: a segment that was active may have grown until then, but never after
+		final boolean active = journal.isActive(segment);
+		final long limit = journal.durableSize(segment);
+		final List<Long> checkpoints = jdbcTemplate.queryForList(
+				FileLoader.load("lol/maki/rewarddining/reward/RewardJournalDrainer/findCheckpoint.sql"), Long.class, name);
+		long offset = checkpoints.isEmpty() ? 0 : checkpoints.get(0);
+		long count = 0;
+		if (offset < limit) {
+			try (InputStream in = new BufferedInputStream(Files.newInputStream(segment))) {
+				in.skipNBytes(offset);
+				final List<RewardJournalEntry> batch = new ArrayList<>(batchSize);
+				final ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+				for (long position = offset; position < limit; position++) {
+					final int b = in.read();
+					if (b != '\n') {
+						line.write(b);
+						continue;
+					}
+					try {
+						batch.add(RewardJournalEntry.parse(line.toString(StandardCharsets.US_ASCII)));
+					}
+					catch (IllegalArgumentException e) {
+						log.error("Skipping corrupt entry at offset {} of {}", offset, name, e);
+					}
+					line.reset();
+					if (batch.size() == batchSize) {
+						count += commit(name, batch, position + 1);
+						batch.clear();
+					}
+					offset = position + 1;
+				}
+				count += commit(name, batch, offset);
+			}
+		}
+		if (!active) {
+			if (offset < limit) {
+				// an append interrupted by a crash, never acknowledged
+				log.warn("Discarding {} bytes of an incomplete entry at the end of {}", limit - offset, name);
+			}
+			Files.delete(segment);
+			jdbcTemplate.update(FileLoader.load("lol/maki/rewarddining/reward/RewardJournalDrainer/deleteCheckpoint.sql"), name);
+		}
+		return count;
+	}
+
+	private int commit(String segment, List<RewardJournalEntry> batch, long offset) {
+		final int inserted = transactionTemplate.execute(status -> {
+			int count = 0;
+			if (!batch.isEmpty()) {
+				final int[] counts = jdbcTemplate.batchUpdate(
+						FileLoader.load("lol/maki/rewarddining/reward/RewardJournalDrainer/insertRewards.sql"),
+						batch.stream().map(RewardJournalEntry::toSqlArgs).toList());
+				final List<Reward> rewards = new ArrayList<>(batch.size());
+				for (int i = 0; i < counts.length; i++) {
+					if (counts[i] > 0) {
+						rewards.add(batch.get(i).toReward());
+					}
+				}
+				rewardRollups.add(rewards);
+				count = rewards.size();
+			}
+			jdbcTemplate.update(FileLoader.load("lol/maki/rewarddining/reward/RewardJournalDrainer/saveCheckpoint.sql"),
+					segment, offset);
+			return count;
+		});
+		for (RewardJournalEntry entry : batch) {
+			diningDeduplicator.loaded(entry.idempotencyKey(), entry.diningDate());
+		}
+		loaded.increment(inserted);
+		return inserted;
+	}
+
+	/**
+	 * Stops loading in the background and loads what is on disk once more. Whatever is left is replayed on the next
+	 * start.
+	 */
+	@Override
+	public void destroy() throws InterruptedException {
+		scheduler.shutdown();
+		scheduler.awaitTermination(1, TimeUnit.MINUTES);
+		try {
+			drain();
+		}
+		catch (IOException | RuntimeException e) {
+			log.warn("Failed to load the reward journal before shutdown, it will be replayed on the next start", e);
+		}
+	}
+}
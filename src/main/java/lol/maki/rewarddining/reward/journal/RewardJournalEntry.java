@@ -0,0 +1,71 @@
+package lol.maki.rewarddining.reward.journal;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.time.LocalDate;
+
+import lol.maki.rewarddining.account.AccountContribution;
+import lol.maki.rewarddining.account.USD;
+import lol.maki.rewarddining.restaurant.Dining;
+import lol.maki.rewarddining.reward.Reward;
+
+/**
+ * A reward as recorded in the reward journal: one line of
+ * <code>confirmationNumber,rewardAmount,rewardDate,accountNumber,merchantNumber,diningDate,diningAmount,idempotencyKey</code>
+ * holding
+ * the columns of a T_REWARD row.
+ */
+public record RewardJournalEntry(String confirmationNumber, BigDecimal rewardAmount, LocalDate rewardDate,
+		String accountNumber, String merchantNumber, LocalDate diningDate, BigDecimal diningAmount, String idempotencyKey) {
+
+	public static RewardJournalEntry of(String confirmationNumber, AccountContribution contribution, Dining dining,
+			LocalDate rewardDate) {
+		return new RewardJournalEntry(confirmationNumber, contribution.getAmount().getNumber().numberValue(BigDecimal.class),
+				rewardDate, contribution.getAccountNumber(), dining.getMerchantNumber(), dining.getDate(),
+				dining.getAmount().getNumber().numberValue(BigDecimal.class), dining.getIdempotencyKey());
+	}
+
+	/**
+	 * Parses a line without its trailing newline.
+	 * @throws IllegalArgumentException if the line is not a journal entry
+	 */
+	public static RewardJournalEntry parse(String line) {
+		final String[] fields = line.split(",", -1);
+		if (fields.length != 8) {
+			throw new IllegalArgumentException("Expected 8 fields but got " + fields.length + " in '" + line + "'");
+		}
+		try {
+			return new RewardJournalEntry(fields[0], new BigDecimal(fields[1]), LocalDate.parse(fields[2]), fields[3],
+					fields[4], LocalDate.parse(fields[5]), new BigDecimal(fields[6]), fields[7]);
+		}
+		catch (RuntimeException e) {
+			throw new IllegalArgumentException("Invalid journal entry '" + line + "'", e);
+		}
+	}
+
+	/**
+	 * Returns the line of this entry including the trailing newline.
+	 */
+	public byte[] toBytes() {
+		return (confirmationNumber + ',' + rewardAmount.toPlainString() + ',' + rewardDate + ',' + accountNumber + ','
+				+ merchantNumber + ',' + diningDate + ',' + diningAmount.toPlainString() + ',' + idempotencyKey + '\n')
+				.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Returns the reward recorded by this entry.
+	 */
+	Reward toReward() {
+		return new Reward(confirmationNumber, USD.valueOf(rewardAmount.toPlainString()), rewardDate, accountNumber,
+				merchantNumber, USD.valueOf(diningAmount.toPlainString()), diningDate);
+	}
+
+	/**
+	 * Returns the values bound to the T_REWARD insert: the columns in order, then the keys of the existence check.
+	 */
+	Object[] toSqlArgs() {
+		return new Object[] { confirmationNumber, rewardAmount, Date.valueOf(rewardDate), accountNumber,
+				merchantNumber, Date.valueOf(diningDate), diningAmount, idempotencyKey, confirmationNumber, idempotencyKey };
+	}
+}
@@ -0,0 +1,24 @@
+package lol.maki.rewarddining.reward.replay;
+
+import javax.money.MonetaryAmount;
+
+/**
+ * A beneficiary whose recorded savings disagree with the savings replayed from T_REWARD.
+ *
+ * A value object. Immutable.
+ * @param accountNumber the number of the account of the beneficiary
+ * @param beneficiary the name of the beneficiary
+ * @param recorded the savings in T_ACCOUNT_BENEFICIARY
+ * @param replayed the savings the rewards of the account add up to
+ * @param applied whether the recorded savings were replaced by the replayed savings
+ */
+public record SavingsCorrection(String accountNumber, String beneficiary, MonetaryAmount recorded,
+		MonetaryAmount replayed, boolean applied) {
+
+	/**
+	 * Returns what the replay adds to the recorded savings, negative if the beneficiary was credited too much.
+	 */
+	public MonetaryAmount difference() {
+		return replayed.subtract(recorded);
+	}
+}
@@ -0,0 +1,37 @@
+package lol.maki.rewarddining.reward.replay;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The outcome of replaying the savings of the beneficiaries from T_REWARD.
+ *
+ * A value object. Immutable.
+ * @param dryRun whether the corrections were only reported, not applied
+ * @param ranges the number of ranges of accounts replayed on their own
+ * @param accounts the number of accounts replayed
+ * @param rewards the number of rewards replayed
+ * @param corrections the beneficiaries whose savings were wrong, ordered by account number and name
+ * @param invalidAccounts the numbers of the accounts with rewards that were skipped because their beneficiary
+ * allocations do not add up to 100%
+ * @param elapsed the time the replay took
+ */
+public record SavingsReplay(boolean dryRun, int ranges, long accounts, long rewards,
+		List<SavingsCorrection> corrections, List<String> invalidAccounts, Duration elapsed) {
+
+	/**
+	 * Returns the number of corrections written. Corrections are not applied in a dry run, nor when the savings of the
+	 * beneficiary changed while the account was replayed.
+	 */
+	public long applied() {
+		return corrections.stream().filter(SavingsCorrection::applied).count();
+	}
+
+	/**
+	 * Returns the number of rewards replayed per second.
+	 */
+	public double rewardsPerSecond() {
+		final long nanos = elapsed.toNanos();
+		return nanos == 0 ? 0 : rewards * 1_000_000_000.0 / nanos;
+	}
+}
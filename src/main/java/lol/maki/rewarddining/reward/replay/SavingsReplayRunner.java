@@ -0,0 +1,65 @@
+package lol.maki.rewarddining.reward.replay;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Replays the savings of all beneficiaries from T_REWARD when the <code>--replay-savings</code> option is given on
+ * startup, for example:
+ *
+ * <pre>
+ * java -jar reward-dining.jar --spring.main.web-application-type=none --replay-savings=dry-run \
+ *     --replay-savings-report=/data/savings-corrections.csv
+ * </pre>
+ *
+ * With <code>dry-run</code> the corrections are only reported. The optional report lists every correction as CSV;
+ * without it only a summary is logged. Without a web server the application exits once the replay is done.
+ */
+@Component
+public class SavingsReplayRunner implements ApplicationRunner {
+
+	static final String OPTION = "replay-savings";
+
+	static final String REPORT_OPTION = "replay-savings-report";
+
+	static final String REPORT_HEADER = "accountNumber,beneficiary,recorded,replayed,difference,applied";
+
+	private final SavingsReplayer replayer;
+
+	public SavingsReplayRunner(SavingsReplayer replayer) {
+		this.replayer = replayer;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) throws Exception {
+		final List<String> values = args.getOptionValues(OPTION);
+		if (values == null) {
+			return;
+		}
+		final SavingsReplay replay = replayer.replay(values.contains("dry-run"));
+		final List<String> reports = args.getOptionValues(REPORT_OPTION);
+		if (reports != null && !reports.isEmpty()) {
+			writeReport(replay, Path.of(reports.get(0)));
+		}
+	}
+
+	static void writeReport(SavingsReplay replay, Path file) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+			writer.write(REPORT_HEADER);
+			writer.newLine();
+			for (SavingsCorrection correction : replay.corrections()) {
+				writer.write(String.join(",", correction.accountNumber(), correction.beneficiary(),
+						correction.recorded().getNumber().toString(), correction.replayed().getNumber().toString(),
+						correction.difference().getNumber().toString(), String.valueOf(correction.applied())));
+				writer.newLine();
+			}
+		}
+	}
+}
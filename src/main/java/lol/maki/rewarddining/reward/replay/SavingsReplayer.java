@@ -0,0 +1,285 @@
+package lol.maki.rewarddining.reward.replay;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import javax.money.MonetaryAmount;
+
+import lol.maki.rewarddining.account.Account;
+import lol.maki.rewarddining.account.AccountContribution.Distribution;
+import lol.maki.rewarddining.account.Percentage;
+import lol.maki.rewarddining.account.USD;
+import lol.maki.rewarddining.account.infrastructure.CachingAccountRepository;
+import lol.maki.rewarddining.reward.RewardProperties;
+import lol.maki.rewarddining.util.FileLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Recomputes the savings of every beneficiary from the rewards in T_REWARD, and corrects the savings in
+ * T_ACCOUNT_BENEFICIARY that have drifted from them.
+ *
+ * The accounts are split in halves until no more than the configured number of accounts are left, and these ranges of
+ * accounts are replayed in parallel on a fork/join pool. The rewards of a range are added up by the database per
+ * account and reward amount, and each distinct amount is contributed once to an account with the current beneficiary
+ * allocations by {@link Account#makeContribution(MonetaryAmount)}, so that savings are replayed exactly as they were
+ * credited, rounded to cents as T_ACCOUNT_BENEFICIARY stores them, without reading every reward into memory.
+ *
+ * The replay assumes that beneficiaries started with no savings and that allocations have not changed since the
+ * rewards were confirmed, as neither is recorded anywhere. The savings of a range are read before its rewards, and a
+ * correction is only written if the savings are still what was read, so rewards confirmed during a replay are never
+ * lost; their beneficiaries are reported but left alone. Savings held back by the write-behind are not seen by the
+ * replay, so it is best run while no rewards are confirmed. The accounts whose savings are corrected are evicted from
+ * the account cache, if there is one.
+ */
+@Component
+public class SavingsReplayer {
+
+	private final Logger log = LoggerFactory.getLogger(SavingsReplayer.class);
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final int parallelism;
+
+	private final int rangeSize;
+
+	private final int batchSize;
+
+	private final CachingAccountRepository accountCache;
+
+	/**
+	 * @param accountCache the account cache to evict corrected accounts from, or <code>null</code> if accounts are not
+	 * cached
+	 */
+	public SavingsReplayer(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+			RewardProperties properties, @Nullable CachingAccountRepository accountCache) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = transactionTemplate;
+		this.accountCache = accountCache;
+		this.parallelism = properties.getReplay().getParallelism();
+		this.rangeSize = properties.getReplay().getRangeSize();
+		this.batchSize = properties.getReplay().getBatchSize();
+	}
+
+	/**
+	 * Replays the savings of all beneficiaries.
+	 * @param dryRun whether to only report the corrections instead of applying them
+	 * @return the corrections and how long the replay took
+	 */
+	public SavingsReplay replay(boolean dryRun) {
+		final long start = System.nanoTime();
+		final List<String> accountNumbers = jdbcTemplate.queryForList(load("findAccountNumbers"), String.class);
+		final Tally tally;
+		if (accountNumbers.isEmpty()) {
+			tally = new Tally();
+		}
+		else {
+			final ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				tally = pool.invoke(new ReplayTask(accountNumbers, 0, accountNumbers.size(), dryRun));
+			}
+			finally {
+				pool.shutdownNow();
+			}
+		}
+		tally.corrections.sort(Comparator.comparing(SavingsCorrection::accountNumber)
+				.thenComparing(SavingsCorrection::beneficiary));
+		tally.invalidAccounts.sort(Comparator.naturalOrder());
+		final SavingsReplay replay = new SavingsReplay(dryRun, tally.ranges, accountNumbers.size(), tally.rewards,
+				List.copyOf(tally.corrections), List.copyOf(tally.invalidAccounts),
+				Duration.ofNanos(System.nanoTime() - start));
+		log.info("Replayed {} rewards of {} accounts in {} ranges in {} ms ({} rewards/s): {} corrections, {} applied{}",
+				replay.rewards(), replay.accounts(), replay.ranges(), replay.elapsed().toMillis(),
+				Math.round(replay.rewardsPerSecond()), replay.corrections().size(), replay.applied(),
+				dryRun ? " (dry run)" : "");
+		if (!replay.invalidAccounts().isEmpty()) {
+			log.warn("Skipped {} accounts with invalid beneficiary allocations: {}", replay.invalidAccounts().size(),
+					replay.invalidAccounts());
+		}
+		return replay;
+	}
+
+	private Tally replayRange(String firstAccountNumber, String lastAccountNumber, boolean dryRun) {
+		final Tally tally = new Tally();
+		tally.ranges = 1;
+		final Map<String, List<RecordedSavings>> beneficiaries = new HashMap<>();
+		jdbcTemplate.query(load("findBeneficiaries"), rs -> {
+			beneficiaries.computeIfAbsent(rs.getString("ACCOUNT_NUMBER"), number -> new ArrayList<>())
+					.add(new RecordedSavings(rs.getLong("ACCOUNT_ID"), rs.getLong("BENEFICIARY_ID"), rs.getString("BENEFICIARY_NAME"),
+							Percentage.valueOf(rs.getString("BENEFICIARY_ALLOCATION_PERCENTAGE")),
+							rs.getBigDecimal("BENEFICIARY_SAVINGS")));
+		}, firstAccountNumber, lastAccountNumber);
+		final Map<String, List<RewardAmount>> rewards = new HashMap<>();
+		jdbcTemplate.query(load("sumRewards"), rs -> {
+			final RewardAmount amount = new RewardAmount(USD.valueOf(rs.getString("REWARD_AMOUNT")),
+					rs.getLong("REWARD_COUNT"));
+			rewards.computeIfAbsent(rs.getString("ACCOUNT_NUMBER"), number -> new ArrayList<>()).add(amount);
+			tally.rewards += amount.count();
+		}, firstAccountNumber, lastAccountNumber);
+
+		final List<Correction> corrections = new ArrayList<>();
+		for (Map.Entry<String, List<RecordedSavings>> entry : beneficiaries.entrySet()) {
+			final Map<String, BigDecimal> replayed = replay(entry.getKey(), entry.getValue(),
+					rewards.getOrDefault(entry.getKey(), List.of()));
+			if (replayed == null) {
+				tally.invalidAccounts.add(entry.getKey());
+				continue;
+			}
+			for (RecordedSavings recorded : entry.getValue()) {
+				final BigDecimal savings = replayed.getOrDefault(recorded.name(), BigDecimal.ZERO);
+				if (savings.compareTo(recorded.savings()) != 0) {
+					corrections.add(new Correction(entry.getKey(), recorded, savings));
+				}
+			}
+		}
+		final boolean[] applied = dryRun ? new boolean[corrections.size()] : apply(corrections);
+		for (int i = 0; i < corrections.size(); i++) {
+			final Correction correction = corrections.get(i);
+			tally.corrections.add(new SavingsCorrection(correction.accountNumber(), correction.recorded().name(),
+					USD.valueOf(correction.recorded().savings().toPlainString()),
+					USD.valueOf(correction.savings().toPlainString()), applied[i]));
+		}
+		return tally;
+	}
+
+	/**
+	 * Contributes each reward amount of an account to it, and adds up the distributions per beneficiary.
+	 * @return the savings per beneficiary name, or <code>null</code> if the account has rewards but its allocations do
+	 * not add up to 100%
+	 */
+	private Map<String, BigDecimal> replay(String accountNumber, List<RecordedSavings> beneficiaries,
+			List<RewardAmount> rewards) {
+		final Map<String, BigDecimal> savings = new HashMap<>();
+		if (rewards.isEmpty()) {
+			return savings;
+		}
+		final Account account = new Account(null, accountNumber, null);
+		for (RecordedSavings beneficiary : beneficiaries) {
+			account.addBeneficiary(beneficiary.name(), beneficiary.allocationPercentage());
+		}
+		if (!account.isValid()) {
+			return null;
+		}
+		for (RewardAmount reward : rewards) {
+			for (Distribution distribution : account.makeContribution(reward.amount()).getDistributions()) {
+				// each distribution was rounded to cents when it was added to the savings column
+				final BigDecimal amount = distribution.getAmount().getNumber().numberValue(BigDecimal.class)
+						.setScale(2, RoundingMode.HALF_UP)
+						.multiply(BigDecimal.valueOf(reward.count()));
+				savings.merge(distribution.getBeneficiary(), amount, BigDecimal::add);
+			}
+		}
+		return savings;
+	}
+
+	private boolean[] apply(List<Correction> corrections) {
+		final boolean[] applied = new boolean[corrections.size()];
+		if (corrections.isEmpty()) {
+			return applied;
+		}
+		final List<Object[]> args = corrections.stream()
+				.map(correction -> new Object[] { correction.savings(), correction.recorded().id(),
+						correction.recorded().savings() })
+				.toList();
+		transactionTemplate.executeWithoutResult(status -> {
+			for (int from = 0; from < args.size(); from += batchSize) {
+				final int[] counts = jdbcTemplate.batchUpdate(load("correctSavings"),
+						args.subList(from, Math.min(from + batchSize, args.size())));
+				for (int i = 0; i < counts.length; i++) {
+					applied[from + i] = counts[i] != 0;
+				}
+			}
+			if (accountCache != null) {
+				final Set<Long> correctedAccountIds = new HashSet<>();
+				for (int i = 0; i < applied.length; i++) {
+					if (applied[i]) {
+						correctedAccountIds.add(corrections.get(i).recorded().accountId());
+					}
+				}
+				accountCache.evict(correctedAccountIds);
+			}
+		});
+		return applied;
+	}
+
+	private static String load(String statement) {
+		return FileLoader.load("lol/maki/rewarddining/reward/SavingsReplayer/" + statement + ".sql");
+	}
+
+	/**
+	 * Replays a range of the sorted account numbers, splitting it in halves while it is larger than the range size.
+	 */
+	private class ReplayTask extends RecursiveTask<Tally> {
+
+		private final List<String> accountNumbers;
+
+		private final int from;
+
+		private final int to;
+
+		private final boolean dryRun;
+
+		ReplayTask(List<String> accountNumbers, int from, int to, boolean dryRun) {
+			this.accountNumbers = accountNumbers;
+			this.from = from;
+			this.to = to;
+			this.dryRun = dryRun;
+		}
+
+		@Override
+		protected Tally compute() {
+			if (to - from <= rangeSize) {
+				return replayRange(accountNumbers.get(from), accountNumbers.get(to - 1), dryRun);
+			}
+			final int middle = (from + to) >>> 1;
+			final ReplayTask left = new ReplayTask(accountNumbers, from, middle, dryRun);
+			left.fork();
+			final Tally tally = new ReplayTask(accountNumbers, middle, to, dryRun).compute();
+			return tally.add(left.join());
+		}
+	}
+
+	private static final class Tally {
+		int ranges;
+
+		long rewards;
+
+		final List<SavingsCorrection> corrections = new ArrayList<>();
+
+		final List<String> invalidAccounts = new ArrayList<>();
+
+		Tally add(Tally other) {
+			ranges += other.ranges;
+			rewards += other.rewards;
+			corrections.addAll(other.corrections);
+			invalidAccounts.addAll(other.invalidAccounts);
+			return this;
+		}
+	}
+
+	private record RecordedSavings(long accountId, long id, String name, Percentage allocationPercentage, BigDecimal savings) {
+	}
+
+	private record RewardAmount(MonetaryAmount amount, long count) {
+	}
+
+	private record Correction(String accountNumber, RecordedSavings recorded, BigDecimal savings) {
+	}
+}
@@ -0,0 +1,27 @@
+package lol.maki.rewarddining.reward.rollup;
+
+import java.time.LocalDate;
+
+import javax.money.MonetaryAmount;
+
+/**
+ * The totals of the rewards confirmed on one day for one merchant or one account.
+ *
+ * A value object. Immutable.
+ * @param number the merchant number or account number the rewards are totalled for
+ * @param date the date the rewards were confirmed
+ * @param rewards the number of rewards
+ * @param rewardAmount the total amount contributed to accounts
+ * @param diningAmount the total amount of the dining bills
+ */
+public record DailyRewardTotal(String number, LocalDate date, long rewards, MonetaryAmount rewardAmount,
+		MonetaryAmount diningAmount) {
+
+	/**
+	 * Returns whether the totals are the same, whatever the scale of the amounts.
+	 */
+	boolean matches(DailyRewardTotal other) {
+		return other != null && rewards == other.rewards && rewardAmount.isEqualTo(other.rewardAmount)
+				&& diningAmount.isEqualTo(other.diningAmount);
+	}
+}
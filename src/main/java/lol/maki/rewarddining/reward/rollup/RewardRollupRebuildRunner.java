@@ -0,0 +1,59 @@
+package lol.maki.rewarddining.reward.rollup;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rebuilds the reward rollups for the dates given as <code>--rebuild-reward-rollups=from,to</code> option on startup,
+ * then checks them against T_REWARD, for example:
+ *
+ * <pre>
+ * java -jar reward-dining.jar --spring.main.web-application-type=none --rebuild-reward-rollups=2022-01-01,2022-05-31
+ * </pre>
+ *
+ * Without a web server the application exits once the rollups are rebuilt.
+ */
+@Component
+public class RewardRollupRebuildRunner implements ApplicationRunner {
+
+	static final String OPTION = "rebuild-reward-rollups";
+
+	private final Logger log = LoggerFactory.getLogger(RewardRollupRebuildRunner.class);
+
+	private final RewardRollups rewardRollups;
+
+	public RewardRollupRebuildRunner(RewardRollups rewardRollups) {
+		this.rewardRollups = rewardRollups;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) throws Exception {
+		final List<String> ranges = args.getOptionValues(OPTION);
+		if (ranges == null) {
+			return;
+		}
+		for (String range : ranges) {
+			final String[] dates = range.split(",", -1);
+			if (dates.length != 2) {
+				throw new IllegalArgumentException("Expected --" + OPTION + "=from,to but got '" + range + "'");
+			}
+			final LocalDate from = LocalDate.parse(dates[0].trim());
+			final LocalDate to = LocalDate.parse(dates[1].trim());
+			rewardRollups.rebuild(from, to);
+			final List<RollupMismatch> mismatches = rewardRollups.check(from, to);
+			if (mismatches.isEmpty()) {
+				log.info("Reward rollups from {} to {} are consistent", from, to);
+			}
+			else {
+				mismatches.forEach(mismatch -> log.warn("Inconsistent reward rollup: {}", mismatch));
+			}
+		}
+	}
+}
@@ -0,0 +1,287 @@
+package lol.maki.rewarddining.reward.rollup;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import lol.maki.rewarddining.account.USD;
+import lol.maki.rewarddining.reward.Reward;
+import lol.maki.rewarddining.reward.RewardProperties;
+import lol.maki.rewarddining.util.FileLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Daily totals of the rewards per merchant in T_REWARD_DAILY_MERCHANT and per account in T_REWARD_DAILY_ACCOUNT, so
+ * that dashboards read one row per day instead of grouping T_REWARD.
+ *
+ * The rollups are kept current by {@link #add(List)} in the transaction that inserts the rewards. The rewards of a
+ * transaction are added up first, so that a batch touches each rollup row once, and each row is added to with one
+ * MERGE, which inserts the first rewards of a day. Two transactions may both insert the first rewards of the same day,
+ * and the one failing on the duplicate key merges again, in a savepoint, into the row of the other. The rows are merged
+ * in key order, so that transactions waiting for the same busy merchant row cannot deadlock. Should the rollups ever
+ * drift, they can be checked against T_REWARD and rebuilt from it for a range of dates.
+ *
+ * A transaction holds the lock on the rollup row of its merchant until it commits, so rewards for dining at the same
+ * merchant commit one at a time. With the reward journal enabled, the rewards are rolled up when the journal is loaded
+ * instead, a batch at a time with one merge per merchant and day, which suits merchants too busy for that.
+ */
+@Repository
+public class RewardRollups {
+
+	private static final int MAX_MERGE_ATTEMPTS = 3;
+
+	private final Logger log = LoggerFactory.getLogger(RewardRollups.class);
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final TransactionTemplate savepointTemplate;
+
+	private final int rebuildParallelism;
+
+	private final int rebuildRangeDays;
+
+	public RewardRollups(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, RewardProperties properties) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = transactionTemplate;
+		this.savepointTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+		this.savepointTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+		this.rebuildParallelism = properties.getRollup().getRebuildParallelism();
+		this.rebuildRangeDays = properties.getRollup().getRebuildRangeDays();
+	}
+
+	/**
+	 * Adds newly inserted rewards to the rollups. Must be called in the transaction inserting the rewards.
+	 * @param rewards the rewards inserted into T_REWARD
+	 */
+	public void add(List<Reward> rewards) {
+		if (rewards.isEmpty()) {
+			return;
+		}
+		for (Rollup rollup : Rollup.values()) {
+			add(rollup, rewards);
+		}
+	}
+
+	private void add(Rollup rollup, List<Reward> rewards) {
+		final SortedMap<Key, Totals> totals = new TreeMap<>();
+		for (Reward reward : rewards) {
+			totals.computeIfAbsent(new Key(rollup.number.apply(reward), reward.date()), key -> new Totals()).add(reward);
+		}
+		final List<Object[]> args = totals.entrySet().stream()
+				.map(entry -> entry.getValue().toMergeArgs(entry.getKey()))
+				.toList();
+		for (int attempt = 1; ; attempt++) {
+			try {
+				// in a savepoint, so that a failed merge leaves the transaction usable on every database
+				savepointTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(rollup.load("merge"), args));
+				return;
+			}
+			catch (DuplicateKeyException e) {
+				// another transaction inserted the first rewards of a day in the meantime, which the merge finds now
+				if (attempt == MAX_MERGE_ATTEMPTS) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find the daily totals of the rewards for dining at a merchant.
+	 * @param merchantNumber the merchant number of the restaurant
+	 * @param from the first reward date, inclusive
+	 * @param to the last reward date, inclusive
+	 * @return the totals of the days with rewards, ordered by date
+	 */
+	public List<DailyRewardTotal> findByMerchantNumber(String merchantNumber, LocalDate from, LocalDate to) {
+		return jdbcTemplate.query(Rollup.MERCHANT.load("find"), RewardRollups::mapTotal, merchantNumber,
+				Date.valueOf(from), Date.valueOf(to));
+	}
+
+	/**
+	 * Find the daily totals of the rewards of an account.
+	 * @param accountNumber the number of the account
+	 * @param from the first reward date, inclusive
+	 * @param to the last reward date, inclusive
+	 * @return the totals of the days with rewards, ordered by date
+	 */
+	public List<DailyRewardTotal> findByAccountNumber(String accountNumber, LocalDate from, LocalDate to) {
+		return jdbcTemplate.query(Rollup.ACCOUNT.load("find"), RewardRollups::mapTotal, accountNumber,
+				Date.valueOf(from), Date.valueOf(to));
+	}
+
+	/**
+	 * Recomputes the rollups from T_REWARD. The dates are split into ranges of the configured number of days, which are
+	 * rebuilt in parallel, each in its own transaction. Rewards confirmed for a date while it is rebuilt may be counted
+	 * twice or not at all, so today is best rebuilt once no more rewards arrive, and checked afterwards.
+	 * @param from the first reward date, inclusive
+	 * @param to the last reward date, inclusive
+	 * @return the outcome of the rebuild
+	 * @throws InterruptedException if interrupted while waiting for the ranges to be rebuilt; the ranges already
+	 * rebuilt stay rebuilt
+	 */
+	public RollupRebuild rebuild(LocalDate from, LocalDate to) throws InterruptedException {
+		final long start = System.nanoTime();
+		final List<Callable<Long>> ranges = new ArrayList<>();
+		for (LocalDate first = from; !first.isAfter(to); first = first.plusDays(rebuildRangeDays)) {
+			final LocalDate rangeFrom = first;
+			final LocalDate last = first.plusDays(rebuildRangeDays - 1);
+			final LocalDate rangeTo = last.isAfter(to) ? to : last;
+			ranges.add(() -> rebuildRange(rangeFrom, rangeTo));
+		}
+		if (ranges.isEmpty()) {
+			return new RollupRebuild(from, to, 0, 0, Duration.ZERO);
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.min(rebuildParallelism, ranges.size()),
+				new CustomizableThreadFactory("reward-rollup-rebuild-"));
+		long rows = 0;
+		try {
+			for (Future<Long> future : executor.invokeAll(ranges)) {
+				rows += future.get();
+			}
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		final RollupRebuild rebuild = new RollupRebuild(from, to, ranges.size(), rows,
+				Duration.ofNanos(System.nanoTime() - start));
+		log.info("Rebuilt {} rollup rows from {} to {} in {} ranges in {} ms", rows, from, to, rebuild.ranges(),
+				rebuild.elapsed().toMillis());
+		return rebuild;
+	}
+
+	private long rebuildRange(LocalDate from, LocalDate to) {
+		return transactionTemplate.execute(status -> {
+			long rows = 0;
+			for (Rollup rollup : Rollup.values()) {
+				jdbcTemplate.update(rollup.load("delete"), Date.valueOf(from), Date.valueOf(to));
+				rows += jdbcTemplate.update(rollup.load("rebuild"), Date.valueOf(from), Date.valueOf(to));
+			}
+			return rows;
+		});
+	}
+
+	/**
+	 * Compares the rollups with totals computed from T_REWARD.
+	 * @param from the first reward date, inclusive
+	 * @param to the last reward date, inclusive
+	 * @return the rollup rows that are wrong or missing, empty if the rollups are consistent
+	 */
+	public List<RollupMismatch> check(LocalDate from, LocalDate to) {
+		final List<RollupMismatch> mismatches = new ArrayList<>();
+		for (Rollup rollup : Rollup.values()) {
+			final Map<Key, DailyRewardTotal> expected = findTotals(rollup.load("sum"), from, to);
+			final Map<Key, DailyRewardTotal> actual = findTotals(rollup.load("findAll"), from, to);
+			final SortedSet<Key> keys = new TreeSet<>(expected.keySet());
+			keys.addAll(actual.keySet());
+			for (Key key : keys) {
+				final DailyRewardTotal expectedTotal = expected.get(key);
+				final DailyRewardTotal actualTotal = actual.get(key);
+				if (expectedTotal == null || !expectedTotal.matches(actualTotal)) {
+					mismatches.add(new RollupMismatch(rollup.table, expectedTotal, actualTotal));
+				}
+			}
+		}
+		return mismatches;
+	}
+
+	private Map<Key, DailyRewardTotal> findTotals(String sql, LocalDate from, LocalDate to) {
+		final Map<Key, DailyRewardTotal> totals = new TreeMap<>();
+		jdbcTemplate.query(sql, rs -> {
+			final DailyRewardTotal total = mapTotal(rs, 0);
+			totals.put(new Key(total.number(), total.date()), total);
+		}, Date.valueOf(from), Date.valueOf(to));
+		return totals;
+	}
+
+	private static DailyRewardTotal mapTotal(ResultSet rs, int rowNum) throws SQLException {
+		return new DailyRewardTotal(rs.getString("NUMBER"), rs.getDate("REWARD_DATE").toLocalDate(),
+				rs.getLong("REWARD_COUNT"), USD.valueOf(rs.getString("REWARD_AMOUNT")),
+				USD.valueOf(rs.getString("DINING_AMOUNT")));
+	}
+
+	/**
+	 * The rollup tables, with the suffix of the names of their SQL files and the column of a reward they group by.
+	 */
+	enum Rollup {
+		MERCHANT("T_REWARD_DAILY_MERCHANT", "DailyMerchant", Reward::merchantNumber),
+		ACCOUNT("T_REWARD_DAILY_ACCOUNT", "DailyAccount", Reward::accountNumber);
+
+		final String table;
+
+		final String suffix;
+
+		final Function<Reward, String> number;
+
+		Rollup(String table, String suffix, Function<Reward, String> number) {
+			this.table = table;
+			this.suffix = suffix;
+			this.number = number;
+		}
+
+		String load(String statement) {
+			return FileLoader.load("lol/maki/rewarddining/reward/RewardRollups/" + statement + suffix + ".sql");
+		}
+	}
+
+	private record Key(String number, LocalDate date) implements Comparable<Key> {
+		private static final Comparator<Key> ORDER = Comparator.comparing(Key::number).thenComparing(Key::date);
+
+		@Override
+		public int compareTo(Key other) {
+			return ORDER.compare(this, other);
+		}
+	}
+
+	private static final class Totals {
+		long rewards;
+
+		BigDecimal rewardAmount = BigDecimal.ZERO;
+
+		BigDecimal diningAmount = BigDecimal.ZERO;
+
+		void add(Reward reward) {
+			rewards++;
+			rewardAmount = rewardAmount.add(reward.amount().getNumber().numberValue(BigDecimal.class));
+			diningAmount = diningAmount.add(reward.diningAmount().getNumber().numberValue(BigDecimal.class));
+		}
+
+		Object[] toMergeArgs(Key key) {
+			final Date date = Date.valueOf(key.date());
+			return new Object[] { key.number(), date, rewards, rewardAmount, diningAmount, key.number(), date, rewards,
+					rewardAmount, diningAmount };
+		}
+	}
+}
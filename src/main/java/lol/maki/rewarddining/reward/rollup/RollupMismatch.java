@@ -0,0 +1,12 @@
+package lol.maki.rewarddining.reward.rollup;
+
+/**
+ * A rollup row that disagrees with the rewards in T_REWARD.
+ *
+ * A value object. Immutable.
+ * @param rollup the name of the rollup table
+ * @param expected the totals computed from T_REWARD, or <code>null</code> if there are no rewards for the row
+ * @param actual the totals in the rollup table, or <code>null</code> if the row is missing
+ */
+public record RollupMismatch(String rollup, DailyRewardTotal expected, DailyRewardTotal actual) {
+}
@@ -0,0 +1,17 @@
+package lol.maki.rewarddining.reward.rollup;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+/**
+ * The outcome of rebuilding the rollups for a range of dates.
+ *
+ * A value object. Immutable.
+ * @param from the first date rebuilt
+ * @param to the last date rebuilt
+ * @param ranges the number of date ranges rebuilt in their own transaction
+ * @param rows the number of rollup rows written
+ * @param elapsed the time the rebuild took
+ */
+public record RollupRebuild(LocalDate from, LocalDate to, int ranges, long rows, Duration elapsed) {
+}
@@ -0,0 +1,333 @@
+package lol.maki.rewarddining.reward.settlement;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+import javax.money.CurrencyUnit;
+import javax.money.Monetary;
+
+import lol.maki.rewarddining.restaurant.Dining;
+import lol.maki.rewarddining.reward.RewardNetwork;
+import lol.maki.rewarddining.reward.RewardProperties;
+import lol.maki.rewarddining.reward.RewardResult;
+import lol.maki.rewarddining.util.FileLoader;
+import org.javamoney.moneta.Money;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Imports end-of-day settlement files into the reward network.
+ *
+ * A settlement file is a CSV of <code>amount,creditCard,merchant,date</code> lines, for example
+ * <code>100.00,1234123412341234,1234567890,2022-05-01</code>, with an optional header line. The file is read through a
+ * large buffer from a {@link FileChannel} and each line is parsed straight from the bytes; only the credit card and
+ * merchant numbers become strings.
+ *
+ * Dinings are rewarded in chunks. Each chunk is committed in its own transaction together with a checkpoint of the byte
+ * offset after its last line, so an import that crashed resumes right after the last committed chunk and never rewards
+ * a committed line twice. Lines that cannot be parsed or rewarded are logged, counted and skipped.
+ *
+ * A settlement line carries no transaction id of the card network, so each dining is given the id of the file and its
+ * line number as one. Identical lines, such as two rounds of the same price at the same table, are rewarded each, and
+ * an import that is run again on the same file, from any path, still rewards none of its lines twice. The same dining
+ * sent again in another file is not recognized as a duplicate, though.
+ *
+ * Checkpoints are kept per absolute path and a hash of the start of the file, so that files of the same name in
+ * different directories, or a new file put in place of an imported one, are imported from their own start.
+ */
+@Component
+public class SettlementFileImporter {
+
+	private static final CurrencyUnit USD = Monetary.getCurrency("USD");
+
+	/**
+	 * The number of bytes at the start of a file that identify it, beyond its path.
+	 */
+	static final int IDENTITY_BYTES = 64 * 1024;
+
+	private final Logger log = LoggerFactory.getLogger(SettlementFileImporter.class);
+
+	private final RewardNetwork rewardNetwork;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final int chunkSize;
+
+	private final int bufferSize;
+
+	public SettlementFileImporter(RewardNetwork rewardNetwork, JdbcTemplate jdbcTemplate,
+			TransactionTemplate transactionTemplate, RewardProperties properties) {
+		this.rewardNetwork = rewardNetwork;
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = transactionTemplate;
+		this.chunkSize = properties.getSettlement().getChunkSize();
+		this.bufferSize = properties.getSettlement().getBufferSize();
+	}
+
+	/**
+	 * Imports a settlement file, resuming from its last checkpoint if it has been imported before.
+	 * @param file the settlement file
+	 * @return a summary of the import
+	 * @throws IOException the file could not be read
+	 */
+	public SettlementImportResult importFile(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final Import run = new Import(file.toAbsolutePath().normalize(), identify(channel));
+			if (run.startOffset > channel.size()) {
+				throw new IllegalStateException("Checkpoint of " + file + " at byte offset " + run.startOffset
+						+ " is past its end at " + channel.size() + ", the file must have been truncated");
+			}
+			log.info("Importing {} from byte offset {}", file, run.startOffset);
+			channel.position(run.startOffset);
+			final ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+			final byte[] bytes = buffer.array();
+			long bufferOffset = run.startOffset;
+			boolean eof = false;
+			while (!eof) {
+				eof = channel.read(buffer) == -1;
+				final int limit = buffer.position();
+				int lineStart = 0;
+				for (int i = 0; i < limit; i++) {
+					if (bytes[i] == '\n') {
+						run.line(bytes, lineStart, i, bufferOffset + i + 1);
+						lineStart = i + 1;
+					}
+				}
+				if (eof && lineStart < limit) {
+					run.line(bytes, lineStart, limit, bufferOffset + limit);
+					lineStart = limit;
+				}
+				if (lineStart == 0 && limit == bytes.length) {
+					throw new IllegalStateException("Line at byte offset " + bufferOffset + " of " + file
+							+ " is longer than the buffer of " + bytes.length + " bytes");
+				}
+				bufferOffset += lineStart;
+				buffer.flip().position(lineStart);
+				buffer.compact();
+			}
+			run.commit();
+			final SettlementImportResult result = run.result();
+			log.info("Imported {}: {} lines, {} rewarded, {} failed in {} ({} lines/s)", result.fileName(), result.lines(),
+					result.rewarded(), result.failed(), result.elapsed(), Math.round(result.linesPerSecond()));
+			return result;
+		}
+	}
+
+	/**
+	 * Returns the hex SHA-256 digest of the first {@link #IDENTITY_BYTES} of a file, or of all of it if it is shorter.
+	 */
+	static String identify(FileChannel channel) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(IDENTITY_BYTES, channel.size()));
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, buffer.position()) == -1) {
+				break;
+			}
+		}
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(buffer.flip());
+			return HexFormat.of().formatHex(digest.digest());
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Parses a single line of a settlement file.
+	 * @param bytes the bytes holding the line
+	 * @param start the index of the first byte of the line
+	 * @param end the index after the last byte of the line, excluding any line terminator
+	 * @param transactionId the id to identify the dining by
+	 * @return the dining
+	 * @throws IllegalArgumentException the line is not a valid settlement line
+	 */
+	static Dining parseDining(byte[] bytes, int start, int end, String transactionId) {
+		final int amountEnd = indexOf(bytes, ',', start, end);
+		final int creditCardEnd = indexOf(bytes, ',', amountEnd + 1, end);
+		final int merchantEnd = indexOf(bytes, ',', creditCardEnd + 1, end);
+		if (merchantEnd == end) {
+			throw new IllegalArgumentException("Expected 4 fields");
+		}
+		final long cents = parseCents(bytes, start, amountEnd);
+		final String creditCardNumber = new String(bytes, amountEnd + 1, creditCardEnd - amountEnd - 1, StandardCharsets.US_ASCII);
+		final String merchantNumber = new String(bytes, creditCardEnd + 1, merchantEnd - creditCardEnd - 1, StandardCharsets.US_ASCII);
+		final LocalDate date = parseDate(bytes, merchantEnd + 1, end);
+		return new Dining(Money.of(BigDecimal.valueOf(cents, 2), USD), creditCardNumber, merchantNumber, date,
+				transactionId);
+	}
+
+	private static int indexOf(byte[] bytes, char c, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (bytes[i] == c) {
+				return i;
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * Parses a non-negative decimal amount with at most two fraction digits, e.g. <code>100</code>,
+	 * <code>100.5</code> or <code>100.50</code>, into cents.
+	 */
+	private static long parseCents(byte[] bytes, int start, int end) {
+		long cents = 0;
+		int fractionDigits = -1;
+		for (int i = start; i < end; i++) {
+			final byte b = bytes[i];
+			if (b == '.' && fractionDigits < 0) {
+				fractionDigits = 0;
+			}
+			else if (b >= '0' && b <= '9' && fractionDigits < 2 && cents < Long.MAX_VALUE / 100) {
+				cents = cents * 10 + (b - '0');
+				if (fractionDigits >= 0) {
+					fractionDigits++;
+				}
+			}
+			else {
+				throw new IllegalArgumentException("Invalid amount");
+			}
+		}
+		if (end == start || fractionDigits == 0) {
+			throw new IllegalArgumentException("Invalid amount");
+		}
+		for (int i = Math.max(fractionDigits, 0); i < 2; i++) {
+			cents *= 10;
+		}
+		return cents;
+	}
+
+	/**
+	 * Parses an ISO date such as <code>2022-05-01</code>.
+	 */
+	private static LocalDate parseDate(byte[] bytes, int start, int end) {
+		if (end - start != 10 || bytes[start + 4] != '-' || bytes[start + 7] != '-') {
+			throw new IllegalArgumentException("Invalid date");
+		}
+		return LocalDate.of(parseInt(bytes, start, start + 4), parseInt(bytes, start + 5, start + 7),
+				parseInt(bytes, start + 8, end));
+	}
+
+	private static int parseInt(byte[] bytes, int start, int end) {
+		int value = 0;
+		for (int i = start; i < end; i++) {
+			final byte b = bytes[i];
+			if (b < '0' || b > '9') {
+				throw new IllegalArgumentException("Invalid date");
+			}
+			value = value * 10 + (b - '0');
+		}
+		return value;
+	}
+
+	/**
+	 * The state of one run over one file.
+	 */
+	private class Import {
+
+		private final String fileName;
+
+		private final String filePath;
+
+		private final String fileId;
+
+		private final long startOffset;
+
+		private final long startNanos = System.nanoTime();
+
+		private final List<Dining> chunk = new ArrayList<>(chunkSize);
+
+		private long lineCount;
+
+		private long offset;
+
+		private long lines;
+
+		private long rewarded;
+
+		private long failed;
+
+		Import(Path file, String fileId) {
+			this.fileName = file.getFileName().toString();
+			this.filePath = file.toString();
+			this.fileId = fileId;
+			final String sql = FileLoader.load("lol/maki/rewarddining/reward/SettlementFileImporter/findCheckpoint.sql");
+			final List<long[]> checkpoints = jdbcTemplate.query(sql, (rs, i) -> new long[] { rs.getLong(1), rs.getLong(2) },
+					filePath, fileId);
+			this.startOffset = checkpoints.isEmpty() ? 0 : checkpoints.get(0)[0];
+			this.lineCount = checkpoints.isEmpty() ? 0 : checkpoints.get(0)[1];
+			this.offset = this.startOffset;
+		}
+
+		/**
+		 * Handles the line between <code>start</code> and <code>end</code> that ends at file offset
+		 * <code>nextOffset</code>, including its terminator.
+		 */
+		void line(byte[] bytes, int start, int end, long nextOffset) {
+			lineCount++;
+			lines++;
+			offset = nextOffset;
+			if (end > start && bytes[end - 1] == '\r') {
+				end--;
+			}
+			final boolean header = lineCount == 1 && end > start && (bytes[start] < '0' || bytes[start] > '9');
+			if (end > start && !header) {
+				try {
+					chunk.add(parseDining(bytes, start, end, fileId + ':' + lineCount));
+				}
+				catch (RuntimeException e) {
+					failed++;
+					log.warn("Skipping line {} of {}: {}", lineCount, fileName, e.getMessage());
+				}
+			}
+			if (chunk.size() >= chunkSize) {
+				commit();
+			}
+		}
+
+		/**
+		 * Rewards the current chunk and saves the checkpoint in one transaction.
+		 */
+		void commit() {
+			final String sql = FileLoader.load("lol/maki/rewarddining/reward/SettlementFileImporter/saveCheckpoint.sql");
+			final List<RewardResult> results = transactionTemplate.execute(status -> {
+				final List<RewardResult> r = chunk.isEmpty() ? List.of() : rewardNetwork.rewardAccountsFor(chunk);
+				jdbcTemplate.update(sql, filePath, fileId, offset, lineCount);
+				return r;
+			});
+			for (RewardResult result : results) {
+				if (result.isConfirmed()) {
+					rewarded++;
+				}
+				else {
+					failed++;
+					log.warn("Dining in {} not rewarded: {}", fileName, result);
+				}
+			}
+			chunk.clear();
+		}
+
+		SettlementImportResult result() {
+			return new SettlementImportResult(fileName, startOffset, offset, lines, rewarded, failed,
+					Duration.ofNanos(System.nanoTime() - startNanos));
+		}
+	}
+}
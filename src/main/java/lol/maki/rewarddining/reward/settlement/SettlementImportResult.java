@@ -0,0 +1,26 @@
+package lol.maki.rewarddining.reward.settlement;
+
+import java.time.Duration;
+
+/**
+ * A summary of one run of the {@link SettlementFileImporter}.
+ *
+ * @param fileName the name of the imported settlement file
+ * @param startOffset the byte offset the run resumed from, 0 for a fresh import
+ * @param endOffset the byte offset of the end of the last line committed by the run
+ * @param lines the number of lines read by the run, including lines that were not rewarded
+ * @param rewarded the number of dinings that were rewarded
+ * @param failed the number of lines that could not be parsed or rewarded
+ * @param elapsed how long the run took
+ */
+public record SettlementImportResult(String fileName, long startOffset, long endOffset, long lines, long rewarded,
+									 long failed, Duration elapsed) {
+
+	/**
+	 * Returns how many lines per second the run read.
+	 */
+	public double linesPerSecond() {
+		final long nanos = elapsed.toNanos();
+		return nanos == 0 ? 0 : lines * 1_000_000_000.0 / nanos;
+	}
+}
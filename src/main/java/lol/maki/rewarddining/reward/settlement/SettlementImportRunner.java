@@ -0,0 +1,41 @@
+package lol.maki.rewarddining.reward.settlement;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Imports the settlement files given as <code>--settlement-file</code> options on startup, for example:
+ *
+ * <pre>
+ * java -jar reward-dining.jar --spring.main.web-application-type=none --settlement-file=/data/settlement-2022-05-01.csv
+ * </pre>
+ *
+ * Without a web server the application exits once the files are imported. Running the same command again after a
+ * crash resumes each file from its last checkpoint.
+ */
+@Component
+public class SettlementImportRunner implements ApplicationRunner {
+
+	static final String OPTION = "settlement-file";
+
+	private final SettlementFileImporter importer;
+
+	public SettlementImportRunner(SettlementFileImporter importer) {
+		this.importer = importer;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) throws Exception {
+		final List<String> files = args.getOptionValues(OPTION);
+		if (files == null) {
+			return;
+		}
+		for (String file : files) {
+			importer.importFile(Path.of(file));
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package lol.maki.rewarddining.reward.web;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads lines terminated by <code>\n</code> or <code>\r\n</code>, holding no more than a maximum number of characters
+ * of a line. The rest of a longer line is skipped rather than buffered, and the line is reported as too long, so that a
+ * client cannot exhaust the memory with a line that never ends.
+ */
+class BoundedLineReader implements Closeable {
+
+	private final Reader reader;
+
+	private final int maxLength;
+
+	private final StringBuilder line = new StringBuilder();
+
+	private boolean tooLong;
+
+	BoundedLineReader(Reader reader, int maxLength) {
+		if (maxLength <= 0) {
+			throw new IllegalArgumentException("maxLength must be positive but was " + maxLength);
+		}
+		this.reader = new BufferedReader(reader);
+		this.maxLength = maxLength;
+	}
+
+	/**
+	 * Reads the next line.
+	 * @return the line without its terminator, the part of it up to the maximum length if it is {@link #isTooLong()
+	 * too long}, or <code>null</code> at the end of the input
+	 */
+	String readLine() throws IOException {
+		line.setLength(0);
+		tooLong = false;
+		int c;
+		while ((c = reader.read()) != -1 && c != '\n') {
+			if (line.length() < maxLength) {
+				line.append((char) c);
+			}
+			else if (c != '\r') {
+				tooLong = true;
+			}
+		}
+		if (c == -1 && line.isEmpty() && !tooLong) {
+			return null;
+		}
+		if (!line.isEmpty() && line.charAt(line.length() - 1) == '\r') {
+			line.setLength(line.length() - 1);
+		}
+		return line.toString();
+	}
+
+	/**
+	 * Returns whether the last line read was longer than the maximum length.
+	 */
+	boolean isTooLong() {
+		return tooLong;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
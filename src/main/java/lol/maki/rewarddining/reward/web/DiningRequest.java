@@ -0,0 +1,26 @@
+package lol.maki.rewarddining.reward.web;
+
+import java.time.LocalDate;
+
+import am.ik.yavi.builder.ValidatorBuilder;
+import am.ik.yavi.core.ConstraintViolationsException;
+import am.ik.yavi.core.Validator;
+import lol.maki.rewarddining.account.USD;
+import lol.maki.rewarddining.restaurant.Dining;
+
+public record DiningRequest(String amount, String creditCardNumber, String merchantNumber, LocalDate date,
+		String transactionId) {
+	static final Validator<DiningRequest> validator = ValidatorBuilder.<DiningRequest>of()
+			.constraint(DiningRequest::creditCardNumber, "creditCardNumber", c -> c.notBlank())
+			.constraint(DiningRequest::merchantNumber, "merchantNumber", c -> c.notBlank())
+			.build();
+
+	/**
+	 * @throws ConstraintViolationsException if the credit card or merchant number is missing or the amount is invalid
+	 */
+	public Dining toDining() {
+		validator.validate(this).throwIfInvalid(ConstraintViolationsException::new);
+		return new Dining(USD.valueOf(amount), creditCardNumber, merchantNumber, date == null ? LocalDate.now() : date,
+				transactionId);
+	}
+}
@@ -0,0 +1,58 @@
+package lol.maki.rewarddining.reward.web;
+
+import java.time.LocalDate;
+
+import lol.maki.rewarddining.reward.export.RewardExportFilter;
+import lol.maki.rewarddining.reward.export.RewardExportFormat;
+import lol.maki.rewarddining.reward.export.RewardExporter;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * A controller streaming full extracts of the confirmed rewards as a file download.
+ */
+@RestController
+public class RewardExportRestController {
+
+	private final RewardExporter rewardExporter;
+
+	public RewardExportRestController(RewardExporter rewardExporter) {
+		this.rewardExporter = rewardExporter;
+	}
+
+	/**
+	 * Streams the rewards confirmed between two dates, both inclusive and both optional, optionally only those of one
+	 * merchant, as <code>csv</code> or <code>jsonl</code>, gzipped if asked to.
+	 */
+	@GetMapping(path = "/rewards:export")
+	public ResponseEntity<StreamingResponseBody> exportRewards(@RequestParam(defaultValue = "csv") String format,
+			@RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate from,
+			@RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate to,
+			@RequestParam(required = false) String merchantNumber,
+			@RequestParam(defaultValue = "false") boolean gzip) {
+		final RewardExportFormat exportFormat;
+		try {
+			exportFormat = RewardExportFormat.ofExtension(format);
+		}
+		catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+		}
+		final RewardExportFilter filter = new RewardExportFilter(from, to, merchantNumber);
+		final String fileName = "rewards." + exportFormat.getExtension() + (gzip ? ".gz" : "");
+		return ResponseEntity.ok()
+				.contentType(MediaType.parseMediaType(gzip ? "application/gzip" : exportFormat.getContentType()))
+				.header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+				.body(output -> rewardExporter.export(filter, exportFormat, gzip, output));
+	}
+}
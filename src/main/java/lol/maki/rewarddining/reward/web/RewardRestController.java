@@ -0,0 +1,252 @@
+package lol.maki.rewarddining.reward.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import am.ik.yavi.core.ConstraintViolationsException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lol.maki.rewarddining.account.Account;
+import lol.maki.rewarddining.account.AccountManager;
+import lol.maki.rewarddining.restaurant.Dining;
+import lol.maki.rewarddining.reward.Reward;
+import lol.maki.rewarddining.reward.RewardConfirmation;
+import lol.maki.rewarddining.reward.RewardCursor;
+import lol.maki.rewarddining.reward.RewardLookup;
+import lol.maki.rewarddining.reward.RewardPage;
+import lol.maki.rewarddining.reward.RewardNetwork;
+import lol.maki.rewarddining.reward.RewardProperties;
+import lol.maki.rewarddining.reward.RewardResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * A controller handling requests to reward accounts for dining, either one dining at a time or as a stream of
+ * newline-delimited JSON dinings such as a settlement upload, and to look up confirmed rewards one by one or as the
+ * reward history of an account.
+ */
+@RestController
+public class RewardRestController {
+
+	static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+	private final Logger log = LoggerFactory.getLogger(RewardRestController.class);
+
+	private final RewardNetwork rewardNetwork;
+
+	private final RewardLookup rewardLookup;
+
+	private final AccountManager accountManager;
+
+	private final ObjectMapper objectMapper;
+
+	private final ObjectReader requestReader;
+
+	private final ObjectWriter resultWriter;
+
+	private final int chunkSize;
+
+	private final int maxLineLength;
+
+	private final int defaultPageSize;
+
+	private final int maxPageSize;
+
+	public RewardRestController(RewardNetwork rewardNetwork, RewardLookup rewardLookup, AccountManager accountManager,
+			ObjectMapper objectMapper, RewardProperties properties) {
+		this.rewardNetwork = rewardNetwork;
+		this.rewardLookup = rewardLookup;
+		this.accountManager = accountManager;
+		this.objectMapper = objectMapper;
+		this.requestReader = objectMapper.readerFor(DiningRequest.class);
+		this.resultWriter = objectMapper.writerFor(RewardResult.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		this.chunkSize = properties.getBulk().getChunkSize();
+		this.maxLineLength = properties.getBulk().getMaxLineLength();
+		this.defaultPageSize = properties.getLookup().getDefaultPageSize();
+		this.maxPageSize = properties.getLookup().getMaxPageSize();
+	}
+
+	/**
+	 * Rewards an account for a single dining.
+	 */
+	@PostMapping(path = "/rewards", consumes = MediaType.APPLICATION_JSON_VALUE)
+	public RewardConfirmation rewardAccountFor(@RequestBody DiningRequest request) {
+		return rewardNetwork.rewardAccountFor(request.toDining());
+	}
+
+	/**
+	 * Looks up a confirmed reward by its confirmation number.
+	 */
+	@GetMapping(path = "/rewards/{confirmationNumber}")
+	public Reward reward(@PathVariable String confirmationNumber) {
+		try {
+			return rewardLookup.findByConfirmationNumber(confirmationNumber);
+		}
+		catch (EmptyResultDataAccessException e) {
+			// without the cause, which handleNotRewardable would otherwise turn into a 422
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No reward with confirmation number '" + confirmationNumber + "'");
+		}
+	}
+
+	/**
+	 * Provides a page of the rewards of an account, newest first. The next page is fetched by passing the
+	 * <code>next</code> cursor of this page as <code>after</code>.
+	 */
+	@GetMapping(path = "/accounts/{accountId}/rewards")
+	public RewardPage accountRewards(@PathVariable long accountId, @RequestParam(required = false) String after,
+			@RequestParam(required = false) Integer limit) {
+		final int pageSize = limit == null ? defaultPageSize : limit;
+		if (pageSize < 1 || pageSize > maxPageSize) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + maxPageSize);
+		}
+		final RewardCursor cursor;
+		try {
+			cursor = after == null ? null : RewardCursor.parse(after);
+		}
+		catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+		}
+		final Account account = accountManager.getAccount(accountId);
+		if (account == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No such account with id " + accountId);
+		}
+		return rewardLookup.findByAccountNumber(account.getNumber(), cursor, pageSize);
+	}
+
+	/**
+	 * Rewards accounts for a stream of dinings, one JSON object per line. The body is parsed incrementally and the
+	 * dinings are rewarded in chunks, each in its own transaction. One result per line is streamed back as soon as its
+	 * chunk completes, so memory use does not grow with the size of the upload. A line that is not valid JSON, misses
+	 * a field or is longer than the configured maximum gets a failed result of its own and the following lines are
+	 * still rewarded. A chunk that fails as a whole, for example because the database is unavailable, gets a failed
+	 * result for each of its lines.
+	 */
+	@PostMapping(path = "/rewards:bulk", consumes = APPLICATION_NDJSON_VALUE, produces = APPLICATION_NDJSON_VALUE)
+	public StreamingResponseBody rewardAccountsFor(InputStream body) {
+		return output -> rewardAccountsFor(body, output);
+	}
+
+	void rewardAccountsFor(InputStream body, OutputStream output) throws IOException {
+		// read line by line rather than as one stream of values, so that a malformed line fails alone
+		try (BoundedLineReader lines = new BoundedLineReader(new InputStreamReader(body, StandardCharsets.UTF_8), maxLineLength);
+			 JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			generator.setRootValueSeparator(null);
+			final List<Dining> chunk = new ArrayList<>(chunkSize);
+			String line;
+			while ((line = lines.readLine()) != null) {
+				if (lines.isTooLong()) {
+					// keep the results in the order of the lines
+					rewardChunk(generator, chunk);
+					writeResults(generator, List.of(RewardResult.failed(null, "Line longer than " + maxLineLength + " characters")));
+					continue;
+				}
+				if (line.isBlank()) {
+					continue;
+				}
+				final Dining dining;
+				try {
+					dining = requestReader.<DiningRequest>readValue(line).toDining();
+				}
+				catch (JsonProcessingException | ConstraintViolationsException e) {
+					rewardChunk(generator, chunk);
+					writeResults(generator, List.of(RewardResult.failed(null, e.getMessage())));
+					continue;
+				}
+				chunk.add(dining);
+				if (chunk.size() == chunkSize) {
+					rewardChunk(generator, chunk);
+				}
+			}
+			rewardChunk(generator, chunk);
+		}
+	}
+
+	/**
+	 * Rewards the dinings of a chunk, writes their results and clears the chunk.
+	 */
+	private void rewardChunk(JsonGenerator generator, List<Dining> chunk) throws IOException {
+		if (chunk.isEmpty()) {
+			return;
+		}
+		List<RewardResult> results;
+		try {
+			results = rewardNetwork.rewardAccountsFor(chunk);
+		}
+		catch (RuntimeException e) {
+			// the results of the previous chunks are streamed already, so this chunk fails line by line instead
+			log.warn("Failed to reward a chunk of {} dinings", chunk.size(), e);
+			results = chunk.stream().map(dining -> RewardResult.failed(dining, String.valueOf(e.getMessage()))).toList();
+		}
+		writeResults(generator, results);
+		chunk.clear();
+	}
+
+	private void writeResults(JsonGenerator generator, List<RewardResult> results) throws IOException {
+		if (results.isEmpty()) {
+			return;
+		}
+		for (RewardResult result : results) {
+			resultWriter.writeValue(generator, result);
+			generator.writeRaw('\n');
+		}
+		generator.flush();
+	}
+
+	/**
+	 * Maps a dining on an unknown credit card or at an unknown restaurant to a 422 Unprocessable Entity HTTP status
+	 * code.
+	 */
+	@ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+	@ExceptionHandler({ EmptyResultDataAccessException.class, IllegalStateException.class })
+	public Object handleNotRewardable(Exception ex) {
+		log.error("Exception is: ", ex);
+		return Map.of(
+				"status", HttpStatus.UNPROCESSABLE_ENTITY.value(),
+				"error", HttpStatus.UNPROCESSABLE_ENTITY.getReasonPhrase(),
+				"message", String.valueOf(ex.getMessage()));
+	}
+
+	@ResponseStatus(HttpStatus.CONFLICT)
+	@ExceptionHandler({ DuplicateKeyException.class })
+	public Object handleDuplicate(DuplicateKeyException ex) {
+		return Map.of(
+				"status", HttpStatus.CONFLICT.value(),
+				"error", HttpStatus.CONFLICT.getReasonPhrase(),
+				"message", String.valueOf(ex.getMessage()));
+	}
+
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	@ExceptionHandler({ ConstraintViolationsException.class })
+	public Object handleConstraintViolations(ConstraintViolationsException ex) {
+		return Map.of(
+				"status", HttpStatus.BAD_REQUEST.value(),
+				"error", HttpStatus.BAD_REQUEST.getReasonPhrase(),
+				"details", ex.violations().details());
+	}
+}
@@ -0,0 +1,70 @@
+package lol.maki.rewarddining.reward.web;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import lol.maki.rewarddining.account.Account;
+import lol.maki.rewarddining.account.AccountManager;
+import lol.maki.rewarddining.reward.rollup.DailyRewardTotal;
+import lol.maki.rewarddining.reward.rollup.RewardRollups;
+import lol.maki.rewarddining.reward.rollup.RollupMismatch;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * A controller serving the daily reward totals per merchant and per account from the reward rollups, and checking the
+ * rollups against the rewards they total.
+ */
+@RestController
+public class RewardRollupRestController {
+
+	private final RewardRollups rewardRollups;
+
+	private final AccountManager accountManager;
+
+	public RewardRollupRestController(RewardRollups rewardRollups, AccountManager accountManager) {
+		this.rewardRollups = rewardRollups;
+		this.accountManager = accountManager;
+	}
+
+	/**
+	 * Provides the daily reward totals of a merchant between two reward dates, both inclusive.
+	 */
+	@GetMapping(path = "/merchants/{merchantNumber}/rewards/daily")
+	public List<DailyRewardTotal> merchantDailyTotals(@PathVariable String merchantNumber,
+			@RequestParam @DateTimeFormat(iso = ISO.DATE) LocalDate from,
+			@RequestParam @DateTimeFormat(iso = ISO.DATE) LocalDate to) {
+		return rewardRollups.findByMerchantNumber(merchantNumber, from, to);
+	}
+
+	/**
+	 * Provides the daily reward totals of an account between two reward dates, both inclusive.
+	 */
+	@GetMapping(path = "/accounts/{accountId}/rewards/daily")
+	public List<DailyRewardTotal> accountDailyTotals(@PathVariable long accountId,
+			@RequestParam @DateTimeFormat(iso = ISO.DATE) LocalDate from,
+			@RequestParam @DateTimeFormat(iso = ISO.DATE) LocalDate to) {
+		final Account account = accountManager.getAccount(accountId);
+		if (account == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No such account with id " + accountId);
+		}
+		return rewardRollups.findByAccountNumber(account.getNumber(), from, to);
+	}
+
+	/**
+	 * Lists the rollup rows between two reward dates that disagree with the rewards in T_REWARD; an empty list means
+	 * the rollups are consistent.
+	 */
+	@GetMapping(path = "/rewards/rollups:check")
+	public List<RollupMismatch> checkRollups(@RequestParam @DateTimeFormat(iso = ISO.DATE) LocalDate from,
+			@RequestParam @DateTimeFormat(iso = ISO.DATE) LocalDate to) {
+		return rewardRollups.check(from, to);
+	}
+}
@@ -0,0 +1,227 @@
+package lol.maki.rewarddining.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.JDBCType;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * A data source whose statements report their executions to {@link SqlStatementMetrics}: the time of every execution,
+ * the rows a query returned once its result set is closed, the rows an update affected, and the size of batches.
+ *
+ * The connections, statements and result sets are dynamic proxies of the ones of the target data source, which only
+ * intercept the methods that are measured.
+ */
+public class MeteredDataSource extends DelegatingDataSource {
+
+	private final SqlStatementMetrics metrics;
+
+	public MeteredDataSource(DataSource targetDataSource, SqlStatementMetrics metrics) {
+		super(targetDataSource);
+		this.metrics = metrics;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return proxy(Connection.class, new ConnectionHandler(super.getConnection()));
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return proxy(Connection.class, new ConnectionHandler(super.getConnection(username, password)));
+	}
+
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(MeteredDataSource.class.getClassLoader(), new Class<?>[] { type }, handler));
+	}
+
+	private static Object invoke(Object proxy, Object target, Method method, Object[] args) throws Throwable {
+		// the target does not know its proxy, so it cannot tell that it equals the proxy
+		if (method.getName().equals("equals") && args.length == 1) {
+			return proxy == args[0];
+		}
+		if (method.getName().equals("hashCode") && args == null) {
+			return System.identityHashCode(proxy);
+		}
+		try {
+			return method.invoke(target, args);
+		}
+		catch (InvocationTargetException e) {
+			throw e.getTargetException();
+		}
+	}
+
+	private final class ConnectionHandler implements InvocationHandler {
+		private final Connection target;
+
+		ConnectionHandler(Connection target) {
+			this.target = target;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			final Object result = MeteredDataSource.invoke(proxy, target, method, args);
+			switch (method.getName()) {
+			case "createStatement":
+				return proxy(Statement.class, new StatementHandler((Statement) result, null));
+			case "prepareStatement":
+				return proxy(PreparedStatement.class, new StatementHandler((Statement) result, (String) args[0]));
+			case "prepareCall":
+				return proxy(CallableStatement.class, new StatementHandler((Statement) result, (String) args[0]));
+			default:
+				return result;
+			}
+		}
+	}
+
+	private final class StatementHandler implements InvocationHandler {
+		private final Statement target;
+
+		// null for a plain statement, which gets its SQL with each execution
+		private final String sql;
+
+		private final List<String> parameterTypes = new ArrayList<>();
+
+		private int batchSize;
+
+		private String batchSql;
+
+		StatementHandler(Statement target, String sql) {
+			this.target = target;
+			this.sql = sql;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			final String name = method.getName();
+			if (name.startsWith("execute")) {
+				return execute(proxy, method, args);
+			}
+			if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+				parameterType((Integer) args[0], name, args);
+			}
+			else if (name.equals("addBatch")) {
+				batchSize++;
+				if (args != null && args.length == 1) {
+					batchSql = (String) args[0];
+				}
+			}
+			else if (name.equals("clearBatch")) {
+				batchSize = 0;
+			}
+			else if (name.equals("clearParameters")) {
+				parameterTypes.clear();
+			}
+			return MeteredDataSource.invoke(proxy, target, method, args);
+		}
+
+		private Object execute(Object proxy, Method method, Object[] args) throws Throwable {
+			final String name = method.getName();
+			final boolean batch = name.equals("executeBatch") || name.equals("executeLargeBatch");
+			final String executed = args != null && args.length > 0 ? (String) args[0] : batch && sql == null ? batchSql : sql;
+			final SqlStatementMetrics.Statement statement = metrics.statement(executed);
+			final int batchSizeOfExecution = batch ? batchSize : 0;
+			final long start = System.nanoTime();
+			final Object result;
+			try {
+				result = MeteredDataSource.invoke(proxy, target, method, args);
+			}
+			finally {
+				statement.executed(System.nanoTime() - start, batchSizeOfExecution, parameterTypes);
+				if (batch) {
+					batchSize = 0;
+				}
+			}
+			if (result instanceof ResultSet) {
+				return proxy(ResultSet.class, new ResultSetHandler((ResultSet) result, statement));
+			}
+			if (result instanceof Integer || result instanceof Long) {
+				statement.rows(((Number) result).longValue());
+			}
+			else if (result instanceof int[]) {
+				statement.rows(Arrays.stream((int[]) result).filter(count -> count >= 0).asLongStream().sum());
+			}
+			else if (result instanceof long[]) {
+				statement.rows(Arrays.stream((long[]) result).filter(count -> count >= 0).sum());
+			}
+			return result;
+		}
+
+		private void parameterType(int index, String method, Object[] args) {
+			final String type;
+			if (method.equals("setNull")) {
+				type = "null " + sqlTypeName((Integer) args[1]);
+			}
+			else if (method.equals("setObject")) {
+				type = args[1] == null ? "null" : args[1].getClass().getSimpleName();
+			}
+			else {
+				type = method.substring("set".length());
+			}
+			while (parameterTypes.size() < index) {
+				parameterTypes.add("unset");
+			}
+			parameterTypes.set(index - 1, type);
+		}
+
+		private String sqlTypeName(int sqlType) {
+			try {
+				return JDBCType.valueOf(sqlType).getName();
+			}
+			catch (IllegalArgumentException e) {
+				// a type specific to the driver
+				return String.valueOf(sqlType);
+			}
+		}
+	}
+
+	private static final class ResultSetHandler implements InvocationHandler {
+		private final ResultSet target;
+
+		private final SqlStatementMetrics.Statement statement;
+
+		private long rows;
+
+		private boolean closed;
+
+		ResultSetHandler(ResultSet target, SqlStatementMetrics.Statement statement) {
+			this.target = target;
+			this.statement = statement;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			final Object result = MeteredDataSource.invoke(proxy, target, method, args);
+			switch (method.getName()) {
+			case "next":
+				if ((Boolean) result) {
+					rows++;
+				}
+				break;
+			case "close":
+				if (!closed) {
+					closed = true;
+					statement.rows(rows);
+				}
+				break;
+			default:
+				break;
+			}
+			return result;
+		}
+	}
+}
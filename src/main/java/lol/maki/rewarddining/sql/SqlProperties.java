@@ -0,0 +1,70 @@
+package lol.maki.rewarddining.sql;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Tunables of the SQL statement metrics, bound from the <code>sql.*</code> properties.
+ */
+@ConfigurationProperties(prefix = "sql")
+public class SqlProperties {
+
+	private final Metrics metrics = new Metrics();
+
+	private final SlowQuery slowQuery = new SlowQuery();
+
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	public SlowQuery getSlowQuery() {
+		return slowQuery;
+	}
+
+	public static class Metrics {
+
+		/**
+		 * Whether the executions of SQL statements are timed and counted per SQL file.
+		 */
+		private boolean enabled = true;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+	}
+
+	public static class SlowQuery {
+
+		/**
+		 * Executions taking at least this long are logged as slow.
+		 */
+		private Duration threshold = Duration.ofMillis(100);
+
+		/**
+		 * Minimum time between two slow executions of the same statement being logged. The slow executions in between
+		 * are only counted, and the count is logged with the next one.
+		 */
+		private Duration logInterval = Duration.ofMinutes(1);
+
+		public Duration getThreshold() {
+			return threshold;
+		}
+
+		public void setThreshold(Duration threshold) {
+			this.threshold = threshold;
+		}
+
+		public Duration getLogInterval() {
+			return logInterval;
+		}
+
+		public void setLogInterval(Duration logInterval) {
+			this.logInterval = logInterval;
+		}
+	}
+}
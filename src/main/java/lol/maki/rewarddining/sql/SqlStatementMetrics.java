@@ -0,0 +1,228 @@
+package lol.maki.rewarddining.sql;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import lol.maki.rewarddining.util.FileLoader;
+import lol.maki.rewarddining.util.LruCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Times and counts the executions of SQL statements per SQL file, as <code>sql.statement</code>,
+ * <code>sql.statement.rows</code> and <code>sql.statement.batch.size</code> with a <code>statement</code> tag naming
+ * the file the statement was loaded from by {@link FileLoader}, e.g.
+ * <code>account/AccountRepository/findByCreditCard</code>. Statements from elsewhere share the tag
+ * {@value #UNATTRIBUTED}, so that the number of meters stays bounded.
+ *
+ * Slow executions are logged, at most one per statement and log interval, with the types of their bind parameters but
+ * never their values.
+ *
+ * The meters are registered once bound to a registry. Binding late keeps the data source, which the registry may
+ * depend on, independent of the registry; statements executed before, e.g. to initialize the database, are not metered.
+ */
+public class SqlStatementMetrics implements MeterBinder {
+
+	public static final String UNATTRIBUTED = "unattributed";
+
+	private static final String PREFIX = "lol/maki/rewarddining/";
+
+	private static final String SUFFIX = ".sql";
+
+	private static final Pattern NAMED_PARAMETER = Pattern.compile(":\\w+");
+
+	private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+
+	private static final MeterRegistry UNBOUND = new CompositeMeterRegistry();
+
+	private final Logger log = LoggerFactory.getLogger(SqlStatementMetrics.class);
+
+	private volatile MeterRegistry meterRegistry;
+
+	private final long slowThresholdNanos;
+
+	private final long logIntervalNanos;
+
+	private final Map<String, Statement> statements = new ConcurrentHashMap<>();
+
+	// statements that are not the content of a file as is, e.g. with a list of named parameters expanded
+	private final LruCache<String, String> expandedNames = new LruCache<>(1_000);
+
+	public SqlStatementMetrics(Duration slowThreshold, Duration logInterval) {
+		this.slowThresholdNanos = slowThreshold.toNanos();
+		this.logIntervalNanos = logInterval.toNanos();
+	}
+
+	/**
+	 * Returns the metrics of a statement, by the file it was loaded from.
+	 */
+	public Statement statement(String sql) {
+		final MeterRegistry registry = meterRegistry;
+		if (registry == null) {
+			return new Statement(nameOf(sql), UNBOUND);
+		}
+		return statements.computeIfAbsent(nameOf(sql), name -> new Statement(name, registry));
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		this.meterRegistry = registry;
+	}
+
+	/**
+	 * Returns the statements executed so far, the slowest on average first.
+	 */
+	public List<Statement> slowest(int limit) {
+		return statements.values().stream()
+				.filter(s -> s.timer.count() > 0)
+				.sorted(Comparator.comparingDouble(Statement::meanMillis).reversed())
+				.limit(limit)
+				.collect(Collectors.toList());
+	}
+
+	String nameOf(String sql) {
+		final String file = FileLoader.fileOf(sql);
+		if (file != null) {
+			return name(file);
+		}
+		return expandedNames.get(sql, s -> {
+			final String normalized = normalize(s);
+			for (Map.Entry<String, String> loaded : FileLoader.loaded().entrySet()) {
+				if (loaded.getValue().endsWith(SUFFIX) && normalize(loaded.getKey()).equals(normalized)) {
+					return name(loaded.getValue());
+				}
+			}
+			return UNATTRIBUTED;
+		});
+	}
+
+	/**
+	 * Replaces named parameters and lists of parameters with a single <code>?</code>, so that a statement with a list
+	 * of named parameters expanded for the values at hand matches the file it came from.
+	 */
+	static String normalize(String sql) {
+		return PARAMETER_LIST.matcher(NAMED_PARAMETER.matcher(sql).replaceAll("?")).replaceAll("?");
+	}
+
+	static String name(String file) {
+		final int start = file.startsWith(PREFIX) ? PREFIX.length() : 0;
+		final int end = file.endsWith(SUFFIX) ? file.length() - SUFFIX.length() : file.length();
+		return file.substring(start, end);
+	}
+
+	/**
+	 * The metrics of the executions of one statement.
+	 */
+	public final class Statement {
+		private final String name;
+
+		private final Timer timer;
+
+		private final DistributionSummary rows;
+
+		private final DistributionSummary batchSize;
+
+		private final AtomicLong lastLogged;
+
+		private final LongAdder unloggedSlowExecutions = new LongAdder();
+
+		Statement(String name, MeterRegistry meterRegistry) {
+			this.name = name;
+			this.timer = Timer.builder("sql.statement")
+					.description("Time spent executing a SQL statement")
+					.tag("statement", name)
+					.publishPercentileHistogram()
+					.minimumExpectedValue(Duration.ofNanos(10_000))
+					.maximumExpectedValue(Duration.ofSeconds(30))
+					.register(meterRegistry);
+			this.rows = DistributionSummary.builder("sql.statement.rows")
+					.description("Rows returned or affected by an execution of a SQL statement")
+					.tag("statement", name)
+					.register(meterRegistry);
+			this.batchSize = DistributionSummary.builder("sql.statement.batch.size")
+					.description("Parameter sets of a batch execution of a SQL statement")
+					.tag("statement", name)
+					.register(meterRegistry);
+			this.lastLogged = new AtomicLong(System.nanoTime() - logIntervalNanos);
+		}
+
+		/**
+		 * Records an execution.
+		 * @param nanos how long it took
+		 * @param batch the number of parameter sets, or 0 for an execution that is not a batch
+		 * @param parameterTypes the types of the bind parameters, of the last parameter set for a batch
+		 */
+		void executed(long nanos, int batch, List<String> parameterTypes) {
+			timer.record(nanos, TimeUnit.NANOSECONDS);
+			if (batch > 0) {
+				batchSize.record(batch);
+			}
+			if (nanos >= slowThresholdNanos) {
+				slow(nanos, batch, parameterTypes);
+			}
+		}
+
+		/**
+		 * Records the rows returned or affected by an execution.
+		 */
+		void rows(long count) {
+			rows.record(count);
+		}
+
+		private void slow(long nanos, int batch, List<String> parameterTypes) {
+			final long now = System.nanoTime();
+			final long last = lastLogged.get();
+			if (now - last < logIntervalNanos || !lastLogged.compareAndSet(last, now)) {
+				unloggedSlowExecutions.increment();
+				return;
+			}
+			log.warn("Slow SQL statement {} took {} ms{} with parameters of types {} ({} slow executions not logged since the last one)",
+					name, TimeUnit.NANOSECONDS.toMillis(nanos), batch > 0 ? " for a batch of " + batch : "",
+					parameterTypes, unloggedSlowExecutions.sumThenReset());
+		}
+
+		public String name() {
+			return name;
+		}
+
+		public long count() {
+			return timer.count();
+		}
+
+		public double meanMillis() {
+			return timer.mean(TimeUnit.MILLISECONDS);
+		}
+
+		/**
+		 * Returns the maximum time of an execution in the last few minutes.
+		 */
+		public double maxMillis() {
+			return timer.max(TimeUnit.MILLISECONDS);
+		}
+
+		public double totalMillis() {
+			return timer.totalTime(TimeUnit.MILLISECONDS);
+		}
+
+		public double meanRows() {
+			return rows.mean();
+		}
+
+		public double meanBatchSize() {
+			return batchSize.mean();
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package lol.maki.rewarddining.sql;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+/**
+ * Lists the SQL statements executed so far, the slowest on average first, at <code>/actuator/sqlstatements</code>.
+ */
+@Endpoint(id = "sqlstatements")
+public class SqlStatementsEndpoint {
+
+	static final int DEFAULT_LIMIT = 10;
+
+	private final SqlStatementMetrics metrics;
+
+	public SqlStatementsEndpoint(SqlStatementMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@ReadOperation
+	public List<StatementSummary> slowest(@Nullable Integer limit) {
+		return metrics.slowest(limit == null ? DEFAULT_LIMIT : limit).stream()
+				.map(s -> new StatementSummary(s.name(), s.count(), s.meanMillis(), s.maxMillis(), s.totalMillis(),
+						s.meanRows(), s.meanBatchSize()))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * The executions of a statement, with times in milliseconds. The maximum only covers the last few minutes.
+	 */
+	public record StatementSummary(String statement, long executions, double meanMillis, double maxMillis,
+			double totalMillis, double meanRows, double meanBatchSize) {
+	}
+}
@@ -0,0 +1,71 @@
+package lol.maki.rewarddining.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe Bloom filter over keys that are already uniformly distributed hashes. Answers whether a key might have
+ * been added: never wrongly "no", and wrongly "yes" with about the probability the filter was sized for.
+ *
+ * Callers pass two independent 64-bit hashes of the key; the probe positions are derived from them by double hashing.
+ */
+public class BloomFilter {
+	private final AtomicLongArray words;
+
+	private final long bits;
+
+	private final int hashes;
+
+	/**
+	 * @param expectedInsertions the number of keys the filter is sized for
+	 * @param falsePositiveProbability the probability of a false "yes" once that many keys are added
+	 */
+	public BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+		if (expectedInsertions <= 0) {
+			throw new IllegalArgumentException("expectedInsertions must be positive but was " + expectedInsertions);
+		}
+		if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+			throw new IllegalArgumentException("falsePositiveProbability must be between 0 and 1 but was " + falsePositiveProbability);
+		}
+		final double ln2 = Math.log(2);
+		final long requiredBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (ln2 * ln2));
+		final long wordCount = Math.max(1, (requiredBits + 63) / 64);
+		if (wordCount > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Filter for " + expectedInsertions + " keys is too large");
+		}
+		this.words = new AtomicLongArray((int) wordCount);
+		this.bits = wordCount * 64;
+		this.hashes = Math.max(1, (int) Math.round((double) this.bits / expectedInsertions * ln2));
+	}
+
+	public void put(long hash1, long hash2) {
+		for (int i = 0; i < hashes; i++) {
+			final long bit = index(hash1, hash2, i);
+			final int word = (int) (bit >>> 6);
+			final long mask = 1L << bit;
+			if ((words.get(word) & mask) == 0) {
+				words.getAndAccumulate(word, mask, (current, m) -> current | m);
+			}
+		}
+	}
+
+	public boolean mightContain(long hash1, long hash2) {
+		for (int i = 0; i < hashes; i++) {
+			final long bit = index(hash1, hash2, i);
+			if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the memory used by the bits in bytes.
+	 */
+	public long sizeInBytes() {
+		return bits / 8;
+	}
+
+	private long index(long hash1, long hash2, int i) {
+		return ((hash1 + i * hash2) & Long.MAX_VALUE) % bits;
+	}
+}
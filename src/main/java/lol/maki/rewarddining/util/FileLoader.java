@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -13,14 +14,33 @@ import org.springframework.util.StreamUtils;
 public class FileLoader {
 	private static final Map<String, String> cache = new ConcurrentHashMap<>();
 
+	// the reverse of the cache, to tell which file a statement was loaded from
+	private static final Map<String, String> files = new ConcurrentHashMap<>();
+
 	public static String load(String file) {
 		return cache.computeIfAbsent(file, f -> {
 			try (final InputStream stream = new ClassPathResource(file).getInputStream()) {
-				return StreamUtils.copyToString(stream, StandardCharsets.UTF_8);
+				final String content = StreamUtils.copyToString(stream, StandardCharsets.UTF_8);
+				files.putIfAbsent(content, f);
+				return content;
 			}
 			catch (IOException e) {
 				throw new UncheckedIOException(e);
 			}
 		});
 	}
+
+	/**
+	 * Returns the file some content was loaded from, or <code>null</code> if no file loaded so far has that content.
+	 */
+	public static String fileOf(String content) {
+		return files.get(content);
+	}
+
+	/**
+	 * Returns the files loaded so far, keyed by content.
+	 */
+	public static Map<String, String> loaded() {
+		return Collections.unmodifiableMap(files);
+	}
 }
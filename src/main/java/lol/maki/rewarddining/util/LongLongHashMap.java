@@ -0,0 +1,157 @@
+package lol.maki.rewarddining.util;
+
+/**
+ * A map from <code>long</code> to <code>long</code> without boxing, using open addressing with linear probing over a
+ * single array of interleaved keys and values. Costs 16 bytes per slot, and at most 75% of the slots are used before
+ * the table doubles. Key <code>0</code> marks an empty slot and cannot be stored.
+ *
+ * Not thread-safe. A {@link #get(long, long)} racing a writer never fails nor loops forever, but may return a wrong
+ * value, so concurrent readers must check that no write happened meanwhile, for example with an optimistic read of a
+ * {@link java.util.concurrent.locks.StampedLock}.
+ */
+public class LongLongHashMap {
+	private static final int MAX_CAPACITY = 1 << 29;
+
+	private static final long EMPTY = 0;
+
+	private long[] table;
+
+	private int size;
+
+	/**
+	 * @param expectedSize the number of entries the map is sized for without growing
+	 */
+	public LongLongHashMap(int expectedSize) {
+		if (expectedSize < 0) {
+			throw new IllegalArgumentException("expectedSize must not be negative but was " + expectedSize);
+		}
+		this.table = new long[2 * capacityFor(expectedSize)];
+	}
+
+	/**
+	 * Returns the value of a key, or the given value if the key is absent.
+	 */
+	public long get(long key, long absent) {
+		final long[] table = this.table;
+		final int mask = table.length / 2 - 1;
+		int slot = slot(key, mask);
+		// bounded, as a table being written concurrently may have no empty slot left
+		for (int probes = 0; probes <= mask; probes++) {
+			final long k = table[2 * slot];
+			if (k == key) {
+				return table[2 * slot + 1];
+			}
+			if (k == EMPTY) {
+				return absent;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return absent;
+	}
+
+	/**
+	 * Maps a key to a value, replacing the value it had.
+	 */
+	public void put(long key, long value) {
+		if (key == EMPTY) {
+			throw new IllegalArgumentException("key must not be " + EMPTY);
+		}
+		if ((size + 1) > capacity() / 4 * 3) {
+			resize(2 * capacity());
+		}
+		if (insert(table, key, value)) {
+			size++;
+		}
+	}
+
+	/**
+	 * Removes a key. The entries probed after it are shifted back, so that no tombstones are left behind.
+	 * @return whether the key was present
+	 */
+	public boolean remove(long key) {
+		final int mask = capacity() - 1;
+		int slot = slot(key, mask);
+		while (table[2 * slot] != key) {
+			if (table[2 * slot] == EMPTY) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		int hole = slot;
+		for (int next = (hole + 1) & mask; table[2 * next] != EMPTY; next = (next + 1) & mask) {
+			final int home = slot(table[2 * next], mask);
+			// the entry may move back into the hole if its home slot is not between the hole and where it is
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				table[2 * hole] = table[2 * next];
+				table[2 * hole + 1] = table[2 * next + 1];
+				hole = next;
+			}
+		}
+		table[2 * hole] = EMPTY;
+		table[2 * hole + 1] = 0;
+		size--;
+		return true;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the memory used by the table in bytes.
+	 */
+	public long sizeInBytes() {
+		return (long) table.length * Long.BYTES;
+	}
+
+	private int capacity() {
+		return table.length / 2;
+	}
+
+	private void resize(int capacity) {
+		if (capacity > MAX_CAPACITY) {
+			throw new IllegalStateException("Map cannot hold more than " + (MAX_CAPACITY / 4 * 3) + " entries");
+		}
+		final long[] resized = new long[2 * capacity];
+		for (int i = 0; i < table.length; i += 2) {
+			if (table[i] != EMPTY) {
+				insert(resized, table[i], table[i + 1]);
+			}
+		}
+		table = resized;
+	}
+
+	/**
+	 * @return whether the key was new
+	 */
+	private static boolean insert(long[] table, long key, long value) {
+		final int mask = table.length / 2 - 1;
+		int slot = slot(key, mask);
+		while (table[2 * slot] != EMPTY) {
+			if (table[2 * slot] == key) {
+				table[2 * slot + 1] = value;
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		table[2 * slot + 1] = value;
+		table[2 * slot] = key;
+		return true;
+	}
+
+	private static int capacityFor(int expectedSize) {
+		int capacity = 16;
+		while (capacity / 4 * 3 < expectedSize) {
+			if (capacity == MAX_CAPACITY) {
+				throw new IllegalArgumentException("Map cannot hold " + expectedSize + " entries");
+			}
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	// Fibonacci hashing spreads keys that differ in their low digits only, such as card numbers issued in sequence
+	private static int slot(long key, int mask) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+	}
+}
@@ -0,0 +1,122 @@
+package lol.maki.rewarddining.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A thread-safe cache holding at most a fixed number of entries, evicting the least recently used one to make room.
+ * Counts hits, misses and evictions.
+ */
+public class LruCache<K, V> {
+	private final int capacity;
+
+	private final Map<K, V> entries;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	public LruCache(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive but was " + capacity);
+		}
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				final boolean evict = size() > LruCache.this.capacity;
+				if (evict) {
+					evictions.increment();
+				}
+				return evict;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached value of a key, or <code>null</code> on a miss.
+	 */
+	public V get(K key) {
+		final V value;
+		synchronized (entries) {
+			value = entries.get(key);
+		}
+		if (value != null) {
+			hits.increment();
+		}
+		else {
+			misses.increment();
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the cached value of a key, or loads and caches it on a miss. The loader runs without holding the lock, so
+	 * two threads missing the same key may both load it.
+	 */
+	public V get(K key, Function<? super K, ? extends V> loader) {
+		V value;
+		synchronized (entries) {
+			value = entries.get(key);
+		}
+		if (value != null) {
+			hits.increment();
+			return value;
+		}
+		misses.increment();
+		value = loader.apply(key);
+		if (value != null) {
+			put(key, value);
+		}
+		return value;
+	}
+
+	public void put(K key, V value) {
+		synchronized (entries) {
+			entries.put(key, value);
+		}
+	}
+
+	public void remove(K key) {
+		synchronized (entries) {
+			entries.remove(key);
+		}
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public long hits() {
+		return hits.sum();
+	}
+
+	public long misses() {
+		return misses.sum();
+	}
+
+	public long evictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Returns the share of lookups that were hits, or 0 before the first lookup.
+	 */
+	public double hitRate() {
+		final long h = hits.sum();
+		final long total = h + misses.sum();
+		return total == 0 ? 0 : (double) h / total;
+	}
+}
@@ -0,0 +1,112 @@
+package lol.maki.rewarddining.util;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Runs work again when it fails because the data it read was changed concurrently, as signalled by an
+ * {@link OptimisticLockingFailureException}. Retries wait a random time of up to an exponentially growing backoff
+ * ("full jitter"), so that the writers that conflicted once do not conflict again in lockstep.
+ *
+ * The work must read what it changes anew on every attempt, so it is only retried when it runs its own transaction: in
+ * a transaction that is already active, the data read before the conflict would be read again unchanged, and the work
+ * is run once.
+ */
+public class OptimisticRetry {
+	private final int maxAttempts;
+
+	private final long initialBackoffNanos;
+
+	private final long maxBackoffNanos;
+
+	private final LongAdder conflicts = new LongAdder();
+
+	private final LongAdder retries = new LongAdder();
+
+	private final LongAdder exhausted = new LongAdder();
+
+	/**
+	 * @param maxAttempts the maximum number of times the work is run
+	 * @param initialBackoff the maximum wait before the first retry, doubled for every further retry
+	 * @param maxBackoff the maximum wait before any retry
+	 */
+	public OptimisticRetry(int maxAttempts, Duration initialBackoff, Duration maxBackoff) {
+		if (maxAttempts <= 0) {
+			throw new IllegalArgumentException("maxAttempts must be positive but was " + maxAttempts);
+		}
+		this.maxAttempts = maxAttempts;
+		this.initialBackoffNanos = initialBackoff.toNanos();
+		this.maxBackoffNanos = Math.max(maxBackoff.toNanos(), this.initialBackoffNanos);
+	}
+
+	public void run(Runnable work) {
+		this.get(() -> {
+			work.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Returns the result of the work, running it again after every optimistic locking failure until it succeeds or the
+	 * maximum number of attempts is reached.
+	 * @throws OptimisticLockingFailureException the failure of the last attempt
+	 */
+	public <T> T get(Supplier<T> work) {
+		final int attempts = TransactionSynchronizationManager.isActualTransactionActive() ? 1 : this.maxAttempts;
+		for (int attempt = 1;; attempt++) {
+			try {
+				return work.get();
+			}
+			catch (OptimisticLockingFailureException e) {
+				this.conflicts.increment();
+				if (attempt >= attempts) {
+					this.exhausted.increment();
+					throw e;
+				}
+			}
+			this.retries.increment();
+			backoff(attempt);
+		}
+	}
+
+	/**
+	 * Returns the number of optimistic locking failures.
+	 */
+	public long conflicts() {
+		return this.conflicts.sum();
+	}
+
+	/**
+	 * Returns the number of times work was run again.
+	 */
+	public long retries() {
+		return this.retries.sum();
+	}
+
+	/**
+	 * Returns the number of times work failed on its last attempt.
+	 */
+	public long exhausted() {
+		return this.exhausted.sum();
+	}
+
+	private void backoff(int attempt) {
+		final long bound = Math.min(this.maxBackoffNanos, this.initialBackoffNanos << Math.min(attempt - 1, 30));
+		if (bound <= 0) {
+			return;
+		}
+		final long nanos = ThreadLocalRandom.current().nextLong(bound + 1);
+		try {
+			Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting to retry", e);
+		}
+	}
+}
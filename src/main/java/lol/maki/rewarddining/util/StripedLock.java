@@ -0,0 +1,72 @@
+package lol.maki.rewarddining.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed number of locks shared by an unbounded number of keys. Equal keys always map to the same lock, so work on one
+ * key is serialized while work on most other keys runs in parallel, without keeping a lock object per key.
+ */
+public class StripedLock {
+	private final ReentrantLock[] locks;
+
+	private final int mask;
+
+	/**
+	 * @param stripes the minimum number of locks, rounded up to a power of two
+	 */
+	public StripedLock(int stripes) {
+		if (stripes <= 0) {
+			throw new IllegalArgumentException("stripes must be positive but was " + stripes);
+		}
+		int size = 1;
+		while (size < stripes) {
+			size <<= 1;
+		}
+		this.locks = new ReentrantLock[size];
+		for (int i = 0; i < size; i++) {
+			this.locks[i] = new ReentrantLock();
+		}
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Returns the lock of a key.
+	 */
+	public Lock get(Object key) {
+		return locks[indexOf(key)];
+	}
+
+	/**
+	 * Returns the distinct locks of many keys in a fixed global order. Threads that always acquire them in this order
+	 * cannot deadlock each other.
+	 */
+	public List<Lock> getAll(Collection<?> keys) {
+		final TreeSet<Integer> indexes = new TreeSet<>();
+		for (Object key : keys) {
+			indexes.add(indexOf(key));
+		}
+		final List<Lock> result = new ArrayList<>(indexes.size());
+		for (int index : indexes) {
+			result.add(locks[index]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of locks.
+	 */
+	public int size() {
+		return locks.length;
+	}
+
+	private int indexOf(Object key) {
+		final int h = key.hashCode();
+		// spread the high bits, as keys such as consecutive ids differ mostly in the low ones
+		return (h ^ (h >>> 16)) & mask;
+	}
+}
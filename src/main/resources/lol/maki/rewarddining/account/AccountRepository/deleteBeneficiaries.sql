@@ -1,4 +1,4 @@
-DELETE
-FROM t_account_beneficiary
-WHERE account_id = :accountId
-  AND name NOT IN (:beneficiaryNames)
\ No newline at end of file
+delete
+from t_account_beneficiary
+where account_id = ?
+  and name = ?
\ No newline at end of file
@@ -0,0 +1,4 @@
+select c.number     as credit_card_number,
+       c.account_id as account_id
+from t_account_credit_card c
+where c.number in (:creditCardNumbers)
\ No newline at end of file
@@ -1,11 +1,6 @@
 select a.id                    as id,
        a.number                as account_number,
        a.name                  as account_name,
-       c.number                as credit_card_number,
-       b.id                    as beneficiary_id,
-       b.name                  as beneficiary_name,
-       b.allocation_percentage as beneficiary_allocation_percentage,
-       b.savings               as beneficiary_savings
+       a.version               as account_version
 from t_account a
-         left outer join t_account_beneficiary b ON a.id = b.account_id
-         left join t_account_credit_card c ON a.id = c.account_id
\ No newline at end of file
+order by a.id
\ No newline at end of file
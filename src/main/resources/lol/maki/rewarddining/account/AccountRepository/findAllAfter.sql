@@ -0,0 +1,8 @@
+select a.id                    as id,
+       a.number                as account_number,
+       a.name                  as account_name,
+       a.version               as account_version
+from t_account a
+where a.id > ?
+order by a.id
+limit ?
\ No newline at end of file
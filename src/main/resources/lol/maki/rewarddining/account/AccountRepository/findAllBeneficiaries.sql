@@ -0,0 +1,6 @@
+select b.account_id            as account_id,
+       b.id                    as beneficiary_id,
+       b.name                  as beneficiary_name,
+       b.allocation_percentage as beneficiary_allocation_percentage,
+       b.savings               as beneficiary_savings
+from t_account_beneficiary b
\ No newline at end of file
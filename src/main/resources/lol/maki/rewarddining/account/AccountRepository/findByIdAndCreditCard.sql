@@ -0,0 +1,9 @@
+select a.id                    as id,
+       a.number                as account_number,
+       a.name                  as account_name,
+       a.version               as account_version,
+       c.number                as credit_card_number
+from t_account a
+         inner join t_account_credit_card c ON a.id = c.account_id
+where a.id = ?
+  and c.number = ?
\ No newline at end of file
@@ -0,0 +1,10 @@
+select a.id                    as id,
+       a.number                as account_number,
+       a.name                  as account_name,
+       (select count(*)
+        from t_account_beneficiary b
+        where b.account_id = a.id) as beneficiary_count
+from t_account a
+where a.id > ?
+order by a.id
+limit ?
\ No newline at end of file
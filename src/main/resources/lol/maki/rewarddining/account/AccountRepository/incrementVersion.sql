@@ -0,0 +1,4 @@
+update t_account
+set version = version + 1
+where id = ?
+  and version = ?
\ No newline at end of file
@@ -1,4 +1,5 @@
-UPDATE t_account
-set number = ?,
-    name   =?
-where id = ?
+update t_account
+set number  = ?,
+    name    = ?,
+    version = version + 1
+where id = ?
\ No newline at end of file
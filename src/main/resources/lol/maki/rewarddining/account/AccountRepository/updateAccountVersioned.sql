@@ -0,0 +1,6 @@
+update t_account
+set number  = ?,
+    name    = ?,
+    version = version + 1
+where id = ?
+  and version = ?
\ No newline at end of file
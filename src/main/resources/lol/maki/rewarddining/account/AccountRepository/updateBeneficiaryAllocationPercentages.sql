@@ -0,0 +1,4 @@
+update t_account_beneficiary
+set allocation_percentage = ?
+where account_id = ?
+  and name = ?
\ No newline at end of file
@@ -0,0 +1,2 @@
+select count(*)
+from t_account_credit_card
\ No newline at end of file
@@ -0,0 +1,3 @@
+select c.number     as credit_card_number,
+       c.account_id as account_id
+from t_account_credit_card c
\ No newline at end of file
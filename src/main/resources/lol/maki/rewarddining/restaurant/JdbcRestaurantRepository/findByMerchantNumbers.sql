@@ -0,0 +1,3 @@
+select merchant_number, name, benefit_percentage, benefit_availability_policy
+from t_restaurant
+where merchant_number in (:merchantNumbers)
\ No newline at end of file
@@ -0,0 +1,3 @@
+select count(*)
+from t_reward
+where idempotency_key = ?
\ No newline at end of file
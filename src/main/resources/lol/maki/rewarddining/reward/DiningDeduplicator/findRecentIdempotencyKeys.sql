@@ -0,0 +1,4 @@
+select idempotency_key, dining_date
+from t_reward
+where dining_date >= ?
+  and idempotency_key is not null
\ No newline at end of file
@@ -1,3 +1,5 @@
 insert into t_reward (confirmation_number, reward_amount, reward_date, account_number,
-                      dining_merchant_number, dining_date, dining_amount)
-values (?, ?, ?, ?, ?, ?, ?)
\ No newline at end of file
+                      dining_merchant_number, dining_date, dining_amount, idempotency_key)
+select ?, ?, ?, ?, ?, ?, ?, ?
+from dual
+where not exists(select 1 from t_reward where idempotency_key = ?)
\ No newline at end of file
@@ -0,0 +1,13 @@
+select confirmation_number,
+       reward_amount,
+       reward_date,
+       account_number,
+       dining_merchant_number,
+       dining_amount,
+       dining_date
+from t_reward
+where account_number = ?
+  and reward_date <= ?
+  and (reward_date < ? or confirmation_number < ?)
+order by account_number desc, reward_date desc, confirmation_number desc
+limit ?
\ No newline at end of file
@@ -0,0 +1,9 @@
+select confirmation_number,
+       reward_amount,
+       reward_date,
+       account_number,
+       dining_merchant_number,
+       dining_amount,
+       dining_date
+from t_reward
+where confirmation_number = ?
\ No newline at end of file
@@ -0,0 +1,2 @@
+select next value for S_REWARD_CONFIRMATION_NUMBER
+from system_range(1, ?)
\ No newline at end of file
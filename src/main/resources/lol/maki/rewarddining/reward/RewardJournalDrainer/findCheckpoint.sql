@@ -0,0 +1,3 @@
+select byte_offset
+from t_reward_journal
+where segment = ?
\ No newline at end of file
@@ -0,0 +1,3 @@
+merge into t_reward_journal (segment, byte_offset)
+key (segment)
+values (?, ?)
\ No newline at end of file
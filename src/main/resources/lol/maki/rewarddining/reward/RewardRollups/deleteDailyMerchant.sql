@@ -0,0 +1,3 @@
+delete
+from t_reward_daily_merchant
+where reward_date between ? and ?
\ No newline at end of file
@@ -0,0 +1,7 @@
+select account_number as number,
+       reward_date,
+       reward_count,
+       reward_amount,
+       dining_amount
+from t_reward_daily_account
+where reward_date between ? and ?
\ No newline at end of file
@@ -0,0 +1,7 @@
+select merchant_number as number,
+       reward_date,
+       reward_count,
+       reward_amount,
+       dining_amount
+from t_reward_daily_merchant
+where reward_date between ? and ?
\ No newline at end of file
@@ -0,0 +1,9 @@
+select account_number as number,
+       reward_date,
+       reward_count,
+       reward_amount,
+       dining_amount
+from t_reward_daily_account
+where account_number = ?
+  and reward_date between ? and ?
+order by reward_date
\ No newline at end of file
@@ -0,0 +1,9 @@
+merge into t_reward_daily_account d
+using dual
+on d.account_number = ? and d.reward_date = ?
+when matched then update
+    set reward_count  = d.reward_count + ?,
+        reward_amount = d.reward_amount + ?,
+        dining_amount = d.dining_amount + ?
+when not matched then insert (account_number, reward_date, reward_count, reward_amount, dining_amount)
+    values (?, ?, ?, ?, ?)
\ No newline at end of file
@@ -0,0 +1,5 @@
+insert into t_reward_daily_merchant (merchant_number, reward_date, reward_count, reward_amount, dining_amount)
+select dining_merchant_number, reward_date, count(*), sum(reward_amount), sum(dining_amount)
+from t_reward
+where reward_date between ? and ?
+group by dining_merchant_number, reward_date
\ No newline at end of file
@@ -0,0 +1,8 @@
+select account_number as number,
+       reward_date,
+       count(*)           as reward_count,
+       sum(reward_amount) as reward_amount,
+       sum(dining_amount) as dining_amount
+from t_reward
+where reward_date between ? and ?
+group by account_number, reward_date
\ No newline at end of file
@@ -0,0 +1,4 @@
+update t_account_beneficiary
+set savings = ?
+where id = ?
+  and savings = ?
\ No newline at end of file
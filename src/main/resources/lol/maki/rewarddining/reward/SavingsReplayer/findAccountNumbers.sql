@@ -0,0 +1,3 @@
+select number
+from t_account
+order by number
\ No newline at end of file
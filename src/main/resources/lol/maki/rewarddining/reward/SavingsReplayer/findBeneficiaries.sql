@@ -0,0 +1,9 @@
+select a.id                    as account_id,
+       a.number                as account_number,
+       b.id                    as beneficiary_id,
+       b.name                  as beneficiary_name,
+       b.allocation_percentage as beneficiary_allocation_percentage,
+       b.savings               as beneficiary_savings
+from t_account a
+         inner join t_account_beneficiary b ON a.id = b.account_id
+where a.number between ? and ?
\ No newline at end of file
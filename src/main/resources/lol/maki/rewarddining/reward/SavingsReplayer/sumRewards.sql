@@ -0,0 +1,6 @@
+select account_number,
+       reward_amount,
+       count(*) as reward_count
+from t_reward
+where account_number between ? and ?
+group by account_number, reward_amount
\ No newline at end of file
@@ -0,0 +1,4 @@
+select byte_offset, line_count
+from t_settlement_import
+where file_path = ?
+  and file_id = ?
\ No newline at end of file
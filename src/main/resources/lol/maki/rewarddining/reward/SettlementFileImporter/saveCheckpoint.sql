@@ -0,0 +1,3 @@
+merge into t_settlement_import (file_path, file_id, byte_offset, line_count)
+key (file_path, file_id)
+values (?, ?, ?, ?)
\ No newline at end of file
@@ -5,12 +5,24 @@ drop table T_RESTAURANT if exists;
 drop table T_REWARD if exists;
 drop sequence S_REWARD_CONFIRMATION_NUMBER if exists;
 drop table DUAL_REWARD_CONFIRMATION_NUMBER if exists;
+drop table T_SETTLEMENT_IMPORT if exists;
+drop table T_REWARD_JOURNAL if exists;
+drop table T_REWARD_DAILY_MERCHANT if exists;
+drop table T_REWARD_DAILY_ACCOUNT if exists;
 
-create table T_ACCOUNT (ID integer identity primary key, NUMBER varchar(9), NAME varchar(50) not null, unique(NUMBER));
+create table T_ACCOUNT (ID integer identity primary key, NUMBER varchar(9), NAME varchar(50) not null, VERSION integer default 0 not null, unique(NUMBER));
 create table T_ACCOUNT_CREDIT_CARD (ID integer identity primary key, ACCOUNT_ID integer, NUMBER varchar(16), unique(ACCOUNT_ID, NUMBER));
 create table T_ACCOUNT_BENEFICIARY (ID integer identity primary key, ACCOUNT_ID integer, NAME varchar(50), ALLOCATION_PERCENTAGE decimal(3,2) not null, SAVINGS decimal(8,2) not null, unique(ACCOUNT_ID, NAME));
 create table T_RESTAURANT (ID integer identity primary key, MERCHANT_NUMBER varchar(10) not null, NAME varchar(80) not null, BENEFIT_PERCENTAGE decimal(3,2) not null, BENEFIT_AVAILABILITY_POLICY varchar(1) not null, unique(MERCHANT_NUMBER));
-create table T_REWARD (ID integer identity primary key, CONFIRMATION_NUMBER varchar(25) not null, REWARD_AMOUNT decimal(8,2) not null, REWARD_DATE date not null, ACCOUNT_NUMBER varchar(9) not null, DINING_AMOUNT decimal not null, DINING_MERCHANT_NUMBER varchar(10) not null, DINING_DATE date not null, unique(CONFIRMATION_NUMBER));
+create table T_REWARD (ID integer identity primary key, CONFIRMATION_NUMBER varchar(25) not null, REWARD_AMOUNT decimal(8,2) not null, REWARD_DATE date not null, ACCOUNT_NUMBER varchar(9) not null, DINING_AMOUNT decimal not null, DINING_MERCHANT_NUMBER varchar(10) not null, DINING_DATE date not null, IDEMPOTENCY_KEY char(64), unique(CONFIRMATION_NUMBER), unique(IDEMPOTENCY_KEY));
+create index IX_REWARD_ACCOUNT_HISTORY on T_REWARD (ACCOUNT_NUMBER desc, REWARD_DATE desc, CONFIRMATION_NUMBER desc);
+create index IX_REWARD_DATE on T_REWARD (REWARD_DATE);
+create table T_REWARD_DAILY_MERCHANT (MERCHANT_NUMBER varchar(10) not null, REWARD_DATE date not null, REWARD_COUNT bigint not null, REWARD_AMOUNT decimal(14,2) not null, DINING_AMOUNT decimal(16,2) not null, primary key (MERCHANT_NUMBER, REWARD_DATE));
+create index IX_REWARD_DAILY_MERCHANT_DATE on T_REWARD_DAILY_MERCHANT (REWARD_DATE);
+create table T_REWARD_DAILY_ACCOUNT (ACCOUNT_NUMBER varchar(9) not null, REWARD_DATE date not null, REWARD_COUNT bigint not null, REWARD_AMOUNT decimal(14,2) not null, DINING_AMOUNT decimal(16,2) not null, primary key (ACCOUNT_NUMBER, REWARD_DATE));
+create index IX_REWARD_DAILY_ACCOUNT_DATE on T_REWARD_DAILY_ACCOUNT (REWARD_DATE);
+create table T_SETTLEMENT_IMPORT (FILE_PATH varchar(1024) not null, FILE_ID varchar(64) not null, BYTE_OFFSET bigint not null, LINE_COUNT bigint not null, primary key (FILE_PATH, FILE_ID));
+create table T_REWARD_JOURNAL (SEGMENT varchar(255) primary key, BYTE_OFFSET bigint not null);
 
 create sequence S_REWARD_CONFIRMATION_NUMBER start with 1;
 create table DUAL_REWARD_CONFIRMATION_NUMBER (ZERO integer);
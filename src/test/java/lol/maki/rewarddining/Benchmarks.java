@@ -0,0 +1,150 @@
+package lol.maki.rewarddining;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Runs the JMH benchmarks of a class from a test of the benchmark profile, with the allocation of every operation
+ * measured by the GC profiler, and writes their results as JSON to <code>target/jmh/&lt;class&gt;.json</code>.
+ *
+ * To compare two runs, keep the results of the first, and pass their directory to the second:
+ *
+ * <pre>
+ * ./mvnw test -Pbenchmark -Dtest=AccountValueBenchmark
+ * cp -r target/jmh /tmp/jmh-before
+ * # change the code
+ * ./mvnw test -Pbenchmark -Dtest=AccountValueBenchmark -Dbenchmark.baseline=/tmp/jmh-before
+ * </pre>
+ *
+ * Each benchmark is then printed with its score and allocation in both runs, and the change of the score. A change
+ * within the error of both scores is printed as noise.
+ */
+public final class Benchmarks {
+	static final String ALLOCATION = "gc.alloc.rate.norm";
+
+	private Benchmarks() {
+	}
+
+	/**
+	 * Runs the benchmarks of a class, with the settings of its JMH annotations.
+	 * @return the results keyed by benchmark method name
+	 */
+	public static Map<String, RunResult> run(Class<?> benchmarks) {
+		final Path json = Path.of("target", "jmh", benchmarks.getSimpleName() + ".json");
+		final Map<String, RunResult> results = new LinkedHashMap<>();
+		try {
+			Files.createDirectories(json.getParent());
+			for (RunResult result : new Runner(new OptionsBuilder()
+					.include(benchmarks.getName() + "\\.")
+					.addProfiler(GCProfiler.class)
+					.resultFormat(ResultFormatType.JSON)
+					.result(json.toString())
+					.build()).run()) {
+				results.put(methodName(result.getParams().getBenchmark()), result);
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		catch (RunnerException e) {
+			throw new IllegalStateException(e);
+		}
+		final String baseline = System.getProperty("benchmark.baseline");
+		if (baseline == null) {
+			print(results);
+		}
+		else {
+			compare(Path.of(baseline).resolve(json.getFileName()), results);
+		}
+		return results;
+	}
+
+	/**
+	 * Starts the application on a random port with its embedded database, for benchmarks of its beans. Logs no more
+	 * than warnings, so that the measurements are not mixed up with logs.
+	 */
+	public static ConfigurableApplicationContext startApplication() {
+		return new SpringApplicationBuilder(RewardDiningApplication.class)
+				.properties("server.port=0", "logging.level.root=WARN", "logging.level.lol.maki.rewarddining=WARN",
+						"logging.level.org.springframework.web.filter.CommonsRequestLoggingFilter=WARN",
+						"logging.level.org.springframework.security.web.csrf.CsrfFilter=WARN",
+						"spring.output.ansi.enabled=never", "spring.main.banner-mode=off")
+				.logStartupInfo(false)
+				.run();
+	}
+
+	/**
+	 * Returns the bytes allocated per operation of a benchmark.
+	 */
+	public static double allocatedBytes(RunResult result) {
+		for (Map.Entry<String, Result> entry : result.getSecondaryResults().entrySet()) {
+			// older versions of JMH prefix the names of profiler results
+			if (entry.getKey().endsWith(ALLOCATION)) {
+				return entry.getValue().getScore();
+			}
+		}
+		throw new IllegalStateException("No allocation measured for " + result.getParams().getBenchmark());
+	}
+
+	private static void print(Map<String, RunResult> results) {
+		System.out.printf("%-32s %16s %12s %-10s %12s%n", "benchmark", "score", "error", "unit", "bytes/op");
+		results.forEach((name, result) -> {
+			final Result<?> primary = result.getPrimaryResult();
+			System.out.printf("%-32s %,16.3f %,12.3f %-10s %,12.0f%n", name, primary.getScore(), primary.getScoreError(),
+					primary.getScoreUnit(), allocatedBytes(result));
+		});
+	}
+
+	private static void compare(Path baseline, Map<String, RunResult> results) {
+		final Map<String, JsonNode> before = new LinkedHashMap<>();
+		try {
+			for (JsonNode node : new ObjectMapper().readTree(baseline.toFile())) {
+				before.put(methodName(node.get("benchmark").asText()), node);
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("Cannot read the baseline " + baseline, e);
+		}
+		System.out.printf("%-32s %16s %16s %-10s %9s %12s %12s%n", "benchmark", "before", "after", "unit", "change",
+				"bytes/op", "before");
+		results.forEach((name, result) -> {
+			final Result<?> primary = result.getPrimaryResult();
+			final JsonNode node = before.get(name);
+			if (node == null) {
+				System.out.printf("%-32s %16s %,16.3f %-10s %9s %,12.0f %12s%n", name, "-", primary.getScore(),
+						primary.getScoreUnit(), "new", allocatedBytes(result), "-");
+				return;
+			}
+			final JsonNode metric = node.get("primaryMetric");
+			final double score = metric.get("score").asDouble();
+			final double error = metric.get("scoreError").asDouble();
+			final JsonNode allocation = node.path("secondaryMetrics").path(ALLOCATION).path("score");
+			final boolean noise = Math.abs(primary.getScore() - score) <= error + primary.getScoreError();
+			System.out.printf("%-32s %,16.3f %,16.3f %-10s %9s %,12.0f %,12.0f%n", name, score, primary.getScore(),
+					primary.getScoreUnit(),
+					noise ? "noise" : String.format("%+.1f%%", (primary.getScore() - score) / score * 100),
+					allocatedBytes(result), allocation.asDouble(Double.NaN));
+		});
+	}
+
+	private static String methodName(String benchmark) {
+		return benchmark.substring(benchmark.lastIndexOf('.') + 1);
+	}
+}
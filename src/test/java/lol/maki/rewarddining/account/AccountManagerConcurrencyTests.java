@@ -0,0 +1,85 @@
+package lol.maki.rewarddining.account;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lol.maki.rewarddining.account.infrastructure.CachingAccountRepository;
+import lol.maki.rewarddining.account.infrastructure.CreditCardIndex;
+import lol.maki.rewarddining.account.infrastructure.JdbcAccountRepository;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@JdbcTest
+// the changes of the threads must be committed to conflict
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext
+class AccountManagerConcurrencyTests {
+	static final int THREADS = 8;
+
+	static final int CHANGES_PER_THREAD = 10;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	@Test
+	void testConcurrentChangesAreNotLost() throws Exception {
+		final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		final AccountRepository repository = new CachingAccountRepository(new JdbcAccountRepository(jdbcTemplate,
+				namedParameterJdbcTemplate, new CreditCardIndex(jdbcTemplate)), 100, meterRegistry);
+		final AccountProperties properties = new AccountProperties();
+		// every change of a thread conflicts with the others at first, so allow for many attempts
+		properties.getRetry().setMaxAttempts(THREADS * CHANGES_PER_THREAD);
+		final AccountManager accountManager = new AccountManagerImpl(repository, transactionTemplate, properties,
+				meterRegistry);
+		final Account before = accountManager.getAccount(1L);
+
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			final CountDownLatch start = new CountDownLatch(1);
+			final List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				final int thread = t;
+				futures.add(executor.submit(() -> {
+					start.await();
+					for (int i = 0; i < CHANGES_PER_THREAD; i++) {
+						accountManager.addBeneficiary(1L, "Beneficiary " + thread + "-" + i);
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		final Account after = accountManager.getAccount(1L);
+		assertEquals(before.getBeneficiaries().size() + THREADS * CHANGES_PER_THREAD, after.getBeneficiaries().size());
+		assertEquals(before.getVersion() + THREADS * CHANGES_PER_THREAD, after.getVersion());
+		assertEquals(0, meterRegistry.get("account.update.exhausted").functionCounter().count());
+	}
+}
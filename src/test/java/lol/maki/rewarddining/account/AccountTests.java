@@ -45,4 +45,15 @@ class AccountTests {
 		assertEquals(USD.valueOf("50.00"), contribution.getDistribution("Annabelle").getAmount());
 		assertEquals(USD.valueOf("50.00"), contribution.getDistribution("Corgan").getAmount());
 	}
-}
\ No newline at end of file
+
+	@Test
+	void makeContributionLosesNoCent() {
+		account.addBeneficiary("Corgan", Percentage.valueOf("50%"));
+		account.addBeneficiary("Annabelle", Percentage.valueOf("50%"));
+		AccountContribution contribution = account.makeContribution(USD.valueOf("1.23"));
+		// the cent left over goes to the first name, whatever the order the beneficiaries were added in
+		assertEquals(USD.valueOf("0.62"), contribution.getDistribution("Annabelle").getAmount());
+		assertEquals(USD.valueOf("0.61"), contribution.getDistribution("Corgan").getAmount());
+		assertEquals(USD.valueOf("0.61"), account.getBeneficiary("Corgan").getSavings());
+	}
+}
@@ -0,0 +1,85 @@
+package lol.maki.rewarddining.account;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.money.MonetaryAmount;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lol.maki.rewarddining.Benchmarks;
+import lol.maki.rewarddining.config.JacksonConfig;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the value objects of accounts with JMH: parsing percentages and amounts, making a contribution to an account
+ * of three beneficiaries, and serializing an account to JSON the way the REST API does. Run with
+ * <code>./mvnw test -Pbenchmark</code>; see {@link Benchmarks} for the results.
+ *
+ * JMH generates code that refers to the benchmark, so this class and its state must be public.
+ */
+@Tag("benchmark")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountValueBenchmark {
+
+	@Test
+	void benchmarkAccountValues() {
+		Benchmarks.run(AccountValueBenchmark.class);
+	}
+
+	@State(Scope.Thread)
+	public static class Values {
+		String percentage = "33%";
+
+		String amount = "100.07";
+
+		MonetaryAmount contribution = USD.valueOf("8.01");
+
+		Account account;
+
+		ObjectMapper objectMapper;
+
+		@Setup
+		public void setUp() {
+			account = new Account(0L, "123456789", "Keith and Keri Donald");
+			account.addBeneficiary("Annabelle", Percentage.valueOf("33%"));
+			account.addBeneficiary("Corgan", Percentage.valueOf("33%"));
+			account.addBeneficiary("Ernst", Percentage.valueOf("34%"));
+			objectMapper = new ObjectMapper().registerModule(new JacksonConfig().moneyModule());
+		}
+	}
+
+	@Benchmark
+	public Percentage percentageValueOf(Values values) {
+		return Percentage.valueOf(values.percentage);
+	}
+
+	@Benchmark
+	public MonetaryAmount usdValueOf(Values values) {
+		return USD.valueOf(values.amount);
+	}
+
+	@Benchmark
+	public AccountContribution makeContribution(Values values) {
+		return values.account.makeContribution(values.contribution);
+	}
+
+	@Benchmark
+	public String serializeAccount(Values values) throws JsonProcessingException {
+		return values.objectMapper.writeValueAsString(values.account);
+	}
+}
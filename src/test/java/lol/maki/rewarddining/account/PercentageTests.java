@@ -1,5 +1,10 @@
 package lol.maki.rewarddining.account;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -34,4 +39,17 @@ class PercentageTests {
 		Percentage p = new Percentage(.255555);
 		assertEquals("26%", p.toString());
 	}
+
+	@Test
+	void testSerialization() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(Percentage.valueOf("45%"));
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			Percentage p = (Percentage) in.readObject();
+			assertEquals(Percentage.valueOf("45%"), p);
+			assertEquals(4500, p.asBasisPoints());
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+package lol.maki.rewarddining.account;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RewardArithmeticTests {
+
+	@Test
+	void percentOfRoundsHalfUp() {
+		assertEquals(800, RewardArithmetic.percentOf(10_000, 800));
+		// 8% of 100.07 is 8.0056
+		assertEquals(801, RewardArithmetic.percentOf(10_007, 800));
+		// 50% of 0.01 is half a cent
+		assertEquals(1, RewardArithmetic.percentOf(1, 5_000));
+		assertEquals(-1, RewardArithmetic.percentOf(-1, 5_000));
+		assertEquals(0, RewardArithmetic.percentOf(12_345, 0));
+	}
+
+	@Test
+	void allocateGivesLeftOverCentsToLargestRemainders() {
+		long[] shares = new long[3];
+		RewardArithmetic.allocate(100, new int[] { 3_300, 3_300, 3_400 }, shares);
+		assertArrayEquals(new long[] { 33, 33, 34 }, shares);
+
+		// 0.3333... each, and the cent left over goes to the first on a tie
+		RewardArithmetic.allocate(100, new int[] { 3_334, 3_333, 3_333 }, shares);
+		assertArrayEquals(new long[] { 34, 33, 33 }, shares);
+
+		RewardArithmetic.allocate(5, new int[] { 1_000, 4_500, 4_500 }, shares);
+		assertArrayEquals(new long[] { 1, 2, 2 }, shares);
+
+		RewardArithmetic.allocate(0, new int[] { 5_000, 5_000, 0 }, shares);
+		assertArrayEquals(new long[] { 0, 0, 0 }, shares);
+	}
+
+	@Test
+	void allocateNeverLosesACent() {
+		Random random = new Random(42);
+		for (int i = 0; i < 10_000; i++) {
+			int[] basisPoints = new int[1 + random.nextInt(6)];
+			int left = 10_000;
+			for (int b = 0; b < basisPoints.length - 1; b++) {
+				basisPoints[b] = random.nextInt(left + 1) / 100 * 100;
+				left -= basisPoints[b];
+			}
+			basisPoints[basisPoints.length - 1] = left;
+			long cents = random.nextInt(1_000_000);
+			long[] shares = new long[basisPoints.length];
+			RewardArithmetic.allocate(cents, basisPoints, shares);
+			assertEquals(cents, Arrays.stream(shares).sum());
+			for (int b = 0; b < basisPoints.length; b++) {
+				// no share is more than a cent off its exact value
+				assertEquals(cents * basisPoints[b] / 10_000.0, shares[b], 1.0);
+			}
+		}
+	}
+
+	@Test
+	void allocateRequiresOneHundredPercent() {
+		assertThrows(IllegalArgumentException.class,
+				() -> RewardArithmetic.allocate(100, new int[] { 5_000, 4_000 }, new long[2]));
+		assertThrows(IllegalArgumentException.class,
+				() -> RewardArithmetic.allocate(-1, new int[] { 10_000 }, new long[1]));
+	}
+}
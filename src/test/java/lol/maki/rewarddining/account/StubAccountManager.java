@@ -1,10 +1,13 @@
 package lol.maki.rewarddining.account;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
@@ -49,6 +52,37 @@ public class StubAccountManager implements AccountManager {
 		return new ArrayList<Account>(accountsById.values());
 	}
 
+	@Override
+	public AccountPage<Account> getAccounts(Long after, int limit) {
+		List<Account> accounts = accountsById.values().stream()
+				.filter(account -> after == null || account.getId() > after)
+				.sorted(Comparator.comparing(Account::getId))
+				.toList();
+		if (accounts.size() <= limit) {
+			return new AccountPage<>(accounts, null);
+		}
+		return new AccountPage<>(accounts.subList(0, limit), accounts.get(limit - 1).getId());
+	}
+
+	@Override
+	public AccountPage<AccountSummary> getAccountSummaries(Long after, int limit) {
+		AccountPage<Account> page = getAccounts(after, limit);
+		return new AccountPage<>(page.accounts().stream()
+				.map(account -> new AccountSummary(account.getId(), account.getNumber(), account.getName(),
+						account.getBeneficiaries().size()))
+				.toList(), page.next());
+	}
+
+	@Override
+	public List<Account> getAccounts(Collection<Long> ids) {
+		return ids.stream()
+				.distinct()
+				.sorted()
+				.map(accountsById::get)
+				.filter(Objects::nonNull)
+				.toList();
+	}
+
 	@Override
 	public Account getAccount(Long id) {
 		Account account = accountsById.get(id);
@@ -0,0 +1,121 @@
+package lol.maki.rewarddining.account.infrastructure;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import lol.maki.rewarddining.Benchmarks;
+import lol.maki.rewarddining.account.Account;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Loads wide account aggregates with JMH, each with {@value #BENEFICIARIES} beneficiaries and {@value #CARDS} credit
+ * cards, from the embedded database of the application: one by id, {@value #BATCH} by id, and {@value #BATCH} by credit
+ * card. Run with <code>./mvnw test -Pbenchmark</code>; see {@link lol.maki.rewarddining.Benchmarks} for the results.
+ *
+ * JMH generates code that refers to the benchmark, so this class and its state must be public.
+ */
+@Tag("benchmark")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountAggregateBenchmark {
+	static final int ACCOUNTS = 1_000;
+
+	static final int BENEFICIARIES = 25;
+
+	static final int CARDS = 4;
+
+	static final int BATCH = 100;
+
+	@Test
+	void benchmarkAccountAggregates() {
+		Benchmarks.run(AccountAggregateBenchmark.class);
+	}
+
+	@State(Scope.Benchmark)
+	public static class Aggregates {
+		ConfigurableApplicationContext context;
+
+		JdbcAccountRepository repository;
+
+		List<Long> ids;
+
+		List<String> creditCardNumbers;
+
+		int next;
+
+		@Setup
+		public void setUp() {
+			context = Benchmarks.startApplication();
+			final JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+			jdbcTemplate.update("""
+					insert into t_account (number, name)
+					select 'W' || lpad(x, 8, '0'), 'Wide account ' || x
+					from system_range(1, ?)""", ACCOUNTS);
+			jdbcTemplate.update("""
+					insert into t_account_beneficiary (account_id, name, allocation_percentage, savings)
+					select a.id, 'Beneficiary ' || x, 0.04, 12.34
+					from t_account a, system_range(1, ?)
+					where a.number like 'W%'""", BENEFICIARIES);
+			jdbcTemplate.update("""
+					insert into t_account_credit_card (account_id, number)
+					select a.id, '7' || lpad(a.id, 12, '0') || lpad(x, 3, '0')
+					from t_account a, system_range(1, ?)
+					where a.number like 'W%'""", CARDS);
+			repository = context.getBean(JdbcAccountRepository.class);
+			ids = jdbcTemplate.queryForList("select id from t_account where number like 'W%' order by id", Long.class);
+			creditCardNumbers = jdbcTemplate.queryForList("""
+					select c.number from t_account_credit_card c inner join t_account a on a.id = c.account_id
+					where a.number like 'W%' order by c.number""", String.class);
+		}
+
+		/**
+		 * Returns the offset of the next batch, so that consecutive batches load different accounts.
+		 */
+		int nextBatch(int size) {
+			final int offset = next;
+			next = (next + BATCH) % (size - BATCH);
+			return offset;
+		}
+
+		@TearDown
+		public void tearDown() {
+			context.close();
+		}
+	}
+
+	@Benchmark
+	public Account findById(Aggregates aggregates) {
+		return aggregates.repository.findById(aggregates.ids.get(aggregates.nextBatch(aggregates.ids.size())));
+	}
+
+	@Benchmark
+	public List<Account> findAllById(Aggregates aggregates) {
+		final int offset = aggregates.nextBatch(aggregates.ids.size());
+		return aggregates.repository.findAllById(aggregates.ids.subList(offset, offset + BATCH));
+	}
+
+	@Benchmark
+	public Map<String, Account> findByCreditCards(Aggregates aggregates) {
+		final int offset = aggregates.nextBatch(aggregates.creditCardNumbers.size());
+		return aggregates.repository.findByCreditCards(aggregates.creditCardNumbers.subList(offset, offset + BATCH));
+	}
+}
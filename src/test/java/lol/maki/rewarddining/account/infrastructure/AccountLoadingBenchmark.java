@@ -0,0 +1,151 @@
+package lol.maki.rewarddining.account.infrastructure;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lol.maki.rewarddining.account.Account;
+import lol.maki.rewarddining.account.Beneficiary;
+import lol.maki.rewarddining.account.Percentage;
+import lol.maki.rewarddining.account.USD;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Loads many synthetic accounts with 5 beneficiaries and 4 credit cards each, all of them and one by one, with the
+ * single statement joining beneficiaries and cards that was used before, and with the two phases the repository uses
+ * now, and reports the rows read and the time taken by each. Run with <code>./mvnw test -Pbenchmark</code>; the
+ * number of accounts can be changed with <code>-Dbenchmark.accounts=...</code>.
+ */
+@Tag("benchmark")
+@JdbcTest
+// a rollback of this many rows costs more than the benchmark itself, so the database is thrown away instead
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext
+class AccountLoadingBenchmark {
+	static final int BENEFICIARIES = 5;
+
+	static final int CARDS = 4;
+
+	static final String JOIN_SQL = """
+			select a.id                    as id,
+			       a.number                as account_number,
+			       a.name                  as account_name,
+			       c.number                as credit_card_number,
+			       b.id                    as beneficiary_id,
+			       b.name                  as beneficiary_name,
+			       b.allocation_percentage as beneficiary_allocation_percentage,
+			       b.savings               as beneficiary_savings
+			from t_account a
+			         left outer join t_account_beneficiary b ON a.id = b.account_id
+			         left join t_account_credit_card c ON a.id = c.account_id
+			""";
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+	@Test
+	void benchmarkLoading() {
+		final long accounts = Long.getLong("benchmark.accounts", 50_000);
+		// explicit ids would make the database bump the identity sequence one row at a time
+		jdbcTemplate.update("""
+				insert into t_account (number, name)
+				select 'L' || lpad(x, 8, '0'), 'Account holder ' || x
+				from system_range(1, ?)""", accounts);
+		jdbcTemplate.update("""
+				insert into t_account_beneficiary (account_id, name, allocation_percentage, savings)
+				select a.id, 'Beneficiary ' || x, 0.20, 12.34
+				from t_account a, system_range(1, ?)
+				where a.number like 'L%'""", BENEFICIARIES);
+		jdbcTemplate.update("""
+				insert into t_account_credit_card (account_id, number)
+				select a.id, '8' || lpad(a.id, 12, '0') || lpad(x, 3, '0')
+				from t_account a, system_range(1, ?)
+				where a.number like 'L%'""", CARDS);
+		final JdbcAccountRepository repository = new JdbcAccountRepository(jdbcTemplate, namedParameterJdbcTemplate,
+				new CreditCardIndex(jdbcTemplate));
+		final long accountRows = jdbcTemplate.queryForObject("select count(*) from t_account", Long.class);
+		final long beneficiaryRows = jdbcTemplate.queryForObject("select count(*) from t_account_beneficiary", Long.class);
+
+		System.out.printf("%-10s %10s %12s %10s%n", "loading", "accounts", "rows read", "ms");
+		for (int round = 0; round < 3; round++) {
+			final long[] joinRows = { 0 };
+			long start = System.nanoTime();
+			final List<Account> joined = findAllJoined(joinRows);
+			System.out.printf("%-10s %,10d %,12d %,10d%n", "join", joined.size(), joinRows[0],
+					(System.nanoTime() - start) / 1_000_000);
+
+			start = System.nanoTime();
+			final List<Account> loaded = repository.findAll();
+			System.out.printf("%-10s %,10d %,12d %,10d%n", "two-phase", loaded.size(), accountRows + beneficiaryRows,
+					(System.nanoTime() - start) / 1_000_000);
+			assertEquals(joined.size(), loaded.size());
+			assertEquals(beneficiaryRows, loaded.stream().mapToLong(a -> a.getBeneficiaries().size()).sum());
+		}
+
+		final List<Long> ids = jdbcTemplate.queryForList("select id from t_account where number like 'L%'", Long.class);
+		final int lookups = 5_000;
+		System.out.printf("%-10s %10s %12s %10s%n", "by id", "lookups", "rows read", "us each");
+		for (int round = 0; round < 3; round++) {
+			final long[] joinRows = { 0 };
+			long start = System.nanoTime();
+			for (int i = 0; i < lookups; i++) {
+				findJoined(JOIN_SQL + "where a.id = ?", joinRows, ids.get(i * 7 % ids.size()));
+			}
+			System.out.printf("%-10s %,10d %,12d %,10d%n", "join", lookups, joinRows[0],
+					(System.nanoTime() - start) / 1000 / lookups);
+
+			start = System.nanoTime();
+			for (int i = 0; i < lookups; i++) {
+				repository.findById(ids.get(i * 7 % ids.size()));
+			}
+			System.out.printf("%-10s %,10d %,12d %,10d%n", "two-phase", lookups, lookups * (1L + BENEFICIARIES),
+					(System.nanoTime() - start) / 1000 / lookups);
+		}
+	}
+
+	/**
+	 * Loads accounts the way the repository did before, mapping the account and beneficiary of every row, and adding
+	 * each beneficiary once.
+	 */
+	private List<Account> findAllJoined(long[] rows) {
+		return findJoined(JOIN_SQL + "order by a.id", rows);
+	}
+
+	private List<Account> findJoined(String sql, long[] rows, Object... args) {
+		return jdbcTemplate.query(sql, rs -> {
+			final Map<Long, Account> accounts = new LinkedHashMap<>();
+			final Map<Long, Beneficiary> beneficiaries = new HashMap<>();
+			while (rs.next()) {
+				rows[0]++;
+				final long accountId = rs.getLong("ID");
+				final Account account = accounts.computeIfAbsent(accountId, id -> new Account(id, null, null));
+				if (rs.getString("BENEFICIARY_NAME") != null) {
+					final Beneficiary beneficiary = new Beneficiary(rs.getString("BENEFICIARY_NAME"),
+							Percentage.valueOf(rs.getString("BENEFICIARY_ALLOCATION_PERCENTAGE")),
+							USD.valueOf(rs.getString("BENEFICIARY_SAVINGS")));
+					beneficiary.setId(rs.getLong("BENEFICIARY_ID"));
+					if (beneficiaries.putIfAbsent(beneficiary.getId(), beneficiary) == null) {
+						account.restoreBeneficiary(beneficiary);
+					}
+				}
+			}
+			return new ArrayList<>(accounts.values());
+		}, args);
+	}
+}
@@ -0,0 +1,152 @@
+package lol.maki.rewarddining.account.infrastructure;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lol.maki.rewarddining.account.Account;
+import lol.maki.rewarddining.account.Percentage;
+import lol.maki.rewarddining.account.USD;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+@JdbcTest
+// accounts found within a writing transaction are not cached, so the tests run without one
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext
+class CachingAccountRepositoryTests {
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	JdbcAccountRepository jdbcRepository;
+
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	CachingAccountRepository repository;
+
+	@BeforeEach
+	void setUp() {
+		jdbcRepository = new JdbcAccountRepository(jdbcTemplate, namedParameterJdbcTemplate,
+				new CreditCardIndex(jdbcTemplate));
+		repository = new CachingAccountRepository(jdbcRepository, 2, meterRegistry);
+	}
+
+	@Test
+	void testFindByIdFromCache() {
+		Account first = repository.findById(0L);
+		Account second = repository.findById(0L);
+		assertNotSame(first, second);
+		assertEquals(first.getName(), second.getName());
+		assertEquals(first.getBeneficiary("Corgan").getId(), second.getBeneficiary("Corgan").getId());
+		assertEquals(1, repository.size());
+
+		// changes of a caller are its own
+		second.getBeneficiary("Annabelle").credit(USD.valueOf("10.00"));
+		assertEquals(USD.valueOf("0.00"), repository.findById(0L).getBeneficiary("Annabelle").getSavings());
+
+		repository.findById(1L);
+		repository.findById(2L);
+		assertEquals(2, repository.size());
+		assertEquals(2, meterRegistry.get("account.cache.hits").functionCounter().count());
+		assertEquals(3, meterRegistry.get("account.cache.misses").functionCounter().count());
+		assertEquals(1, meterRegistry.get("account.cache.evictions").functionCounter().count());
+		assertEquals(0.4, meterRegistry.get("account.cache.hit-rate").gauge().value());
+	}
+
+	@Test
+	void testFindAllByIdFromCache() {
+		repository.findById(0L);
+		List<Account> accounts = repository.findAllById(List.of(3L, 0L, 424242L));
+		assertEquals(List.of(0L, 3L), accounts.stream().map(Account::getId).toList());
+		assertEquals(4, accounts.get(1).getBeneficiaries().size());
+		assertEquals(1, meterRegistry.get("account.cache.hits").functionCounter().count());
+
+		// the accounts loaded at once are cached as well
+		assertEquals(2, repository.size());
+		repository.findById(3L);
+		assertEquals(2, meterRegistry.get("account.cache.hits").functionCounter().count());
+	}
+
+	@Test
+	void testWritesEvict() {
+		Account inserted = new Account(null, "123450018", "Cache Test");
+		inserted.addBeneficiary("Annabelle", Percentage.valueOf("50%"));
+		inserted.addBeneficiary("Corgan", Percentage.valueOf("50%"));
+		long id = repository.insert(inserted).getId();
+		Account account = repository.findById(id);
+		account.addBeneficiary("Daphne", Percentage.zero());
+		transactionTemplate.executeWithoutResult(status -> repository.updateBeneficiaries(account));
+		assertEquals(3, repository.findById(id).getBeneficiaries().size());
+
+		repository.addBeneficiarySavings(Map.of(id, Map.of("Corgan", USD.valueOf("1.50"))));
+		assertEquals(USD.valueOf("1.50"), repository.findById(id).getBeneficiary("Corgan").getSavings());
+
+		Account found = repository.findById(id);
+		found.getBeneficiary("Corgan").credit(USD.valueOf("1.00"));
+		repository.updateBeneficiarySavings(List.of(found));
+		assertEquals(USD.valueOf("2.50"), repository.findById(id).getBeneficiary("Corgan").getSavings());
+
+		repository.update(new Account(id, "123450018", "Renamed"));
+		assertEquals("Renamed", repository.findById(id).getName());
+	}
+
+	@Test
+	void testEvictChangesMadeWithoutRepository() {
+		String name = repository.findById(3L).getName();
+		try {
+			jdbcTemplate.update("update T_ACCOUNT set NAME = 'Renamed by SQL' where ID = 3");
+			assertEquals(name, repository.findById(3L).getName());
+			repository.evict(List.of(3L));
+			assertEquals("Renamed by SQL", repository.findById(3L).getName());
+
+			jdbcTemplate.update("update T_ACCOUNT set NAME = 'Renamed by SQL again' where ID = 3");
+			repository.evictAll();
+			assertEquals(0, repository.size());
+			assertEquals("Renamed by SQL again", repository.findById(3L).getName());
+		}
+		finally {
+			jdbcTemplate.update("update T_ACCOUNT set NAME = ? where ID = 3", name);
+		}
+	}
+
+	@Test
+	void testLoadRacingWriteIsNotCached() {
+		AtomicBoolean racing = new AtomicBoolean(true);
+		repository = new CachingAccountRepository(new JdbcAccountRepository(jdbcTemplate, namedParameterJdbcTemplate,
+				new CreditCardIndex(jdbcTemplate)) {
+			@Override
+			public Account findById(Long id) {
+				Account account = super.findById(id);
+				if (racing.getAndSet(false)) {
+					// another caller renames the account after it was read
+					repository.update(new Account(id, account.getNumber(), "Renamed meanwhile"));
+				}
+				return account;
+			}
+		}, 2, meterRegistry);
+		assertEquals("Cornelia J. Andresen", repository.findById(2L).getName());
+		assertEquals("Renamed meanwhile", repository.findById(2L).getName());
+		assertEquals("Renamed meanwhile", repository.findById(2L).getName());
+		assertEquals(1, repository.size());
+	}
+}
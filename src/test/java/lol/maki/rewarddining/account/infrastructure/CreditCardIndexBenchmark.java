@@ -0,0 +1,110 @@
+package lol.maki.rewarddining.account.infrastructure;
+
+import java.util.Random;
+
+import lol.maki.rewarddining.util.FileLoader;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Loads millions of synthetic credit cards into the index, and reports the memory used per card and the time taken to
+ * find an account by card with the index and with the join on the card number it replaces. Run with
+ * <code>./mvnw test -Pbenchmark</code>; the number of cards can be changed with <code>-Dbenchmark.cards=...</code>.
+ */
+@Tag("benchmark")
+@JdbcTest
+// a rollback of millions of rows costs more than the benchmark itself, so the database is thrown away instead
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext
+class CreditCardIndexBenchmark {
+	static final int INSERT_CHUNK_SIZE = 100_000;
+
+	static final int CARDS_PER_ACCOUNT = 4;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+	@Test
+	void benchmarkFindByCreditCard() {
+		final long cards = Long.getLong("benchmark.cards", 2_000_000);
+		final long accounts = cards / CARDS_PER_ACCOUNT;
+		// explicit ids would make the database bump the identity sequence one row at a time
+		jdbcTemplate.update("""
+				insert into t_account (number, name)
+				select 'C' || lpad(x, 8, '0'), 'Card holder ' || x
+				from system_range(1, ?)""", accounts);
+		jdbcTemplate.update("""
+				insert into t_account_beneficiary (account_id, name, allocation_percentage, savings)
+				select id, 'Beneficiary', 1.00, 0.00
+				from t_account
+				where number like 'C%'""");
+		for (long from = 1; from <= cards; from += INSERT_CHUNK_SIZE) {
+			jdbcTemplate.update("""
+					insert into t_account_credit_card (account_id, number)
+					select a.id, '9' || lpad(x, 15, '0')
+					from system_range(?, ?) inner join t_account a on a.number = 'C' || lpad(mod(x, ?) + 1, 8, '0')""",
+					from, Math.min(from + INSERT_CHUNK_SIZE - 1, cards), accounts);
+		}
+
+		final CreditCardIndex index = new CreditCardIndex(jdbcTemplate);
+		final long start = System.nanoTime();
+		index.reload();
+		final long loadMillis = (System.nanoTime() - start) / 1_000_000;
+		System.out.printf("%,d cards loaded in %,d ms: %,d MiB, %.1f bytes per card, %,d MiB for 50M cards%n",
+				index.size(), loadMillis, index.sizeInBytes() / (1024 * 1024), index.bytesPerCard(),
+				LongLongHashMapSize.forEntries(50_000_000) / (1024 * 1024));
+
+		final JdbcAccountRepository repository = new JdbcAccountRepository(jdbcTemplate, namedParameterJdbcTemplate,
+				index);
+		final String joinSql = FileLoader.load("lol/maki/rewarddining/account/AccountRepository/findByCreditCard.sql");
+		System.out.printf("%-8s %10s %14s%n", "lookup", "lookups", "us per lookup");
+		final Random random = new Random(42);
+		for (int round = 0; round < 2; round++) {
+			final int joinLookups = 20;
+			long nanos = System.nanoTime();
+			for (int i = 0; i < joinLookups; i++) {
+				final String number = card(random, cards);
+				assertEquals(1, jdbcTemplate.query(joinSql, (rs, rowNum) -> rs.getLong("ID"), number).size());
+			}
+			System.out.printf("%-8s %,10d %,14d%n", "join", joinLookups, (System.nanoTime() - nanos) / 1000 / joinLookups);
+
+			final int indexLookups = 20_000;
+			nanos = System.nanoTime();
+			for (int i = 0; i < indexLookups; i++) {
+				repository.findByCreditCard(card(random, cards));
+			}
+			System.out.printf("%-8s %,10d %,14d%n", "index", indexLookups,
+					(System.nanoTime() - nanos) / 1000 / indexLookups);
+		}
+	}
+
+	private static String card(Random random, long cards) {
+		return "9" + String.format("%015d", 1 + (long) (random.nextDouble() * cards));
+	}
+
+	/**
+	 * The size of the table a map grows to for a number of entries, which doubles whenever it is 75% full.
+	 */
+	private static final class LongLongHashMapSize {
+		static long forEntries(long entries) {
+			long capacity = 16;
+			while (capacity / 4 * 3 < entries) {
+				capacity <<= 1;
+			}
+			return capacity * 2 * Long.BYTES;
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package lol.maki.rewarddining.account.infrastructure;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@JdbcTest
+class CreditCardIndexTests {
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Test
+	void testReload() {
+		CreditCardIndex index = new CreditCardIndex(jdbcTemplate);
+		index.reload();
+		int cards = jdbcTemplate.queryForObject("select count(*) from t_account_credit_card", Integer.class);
+		assertEquals(cards, index.size());
+		assertEquals(0, index.find("1234123412341234"));
+		assertEquals(3, index.find("1234123412340003"));
+		assertEquals(CreditCardIndex.ABSENT, index.find("1234123412349999"));
+		assertEquals(CreditCardIndex.ABSENT, index.find(null));
+		assertThat(index.bytesPerCard()).isEqualTo((double) index.sizeInBytes() / cards);
+
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		index.bindTo(registry);
+		assertEquals(cards, registry.get("account.credit-card-index.cards").gauge().value());
+	}
+
+	@Test
+	void testEncode() {
+		assertEquals(11234, CreditCardIndex.encode("1234"));
+		// leading zeros are kept apart
+		assertEquals(10012, CreditCardIndex.encode("0012"));
+		assertEquals(1012, CreditCardIndex.encode("012"));
+		assertEquals(1999999999999999999L, CreditCardIndex.encode("999999999999999999"));
+		assertEquals(0, CreditCardIndex.encode("9999999999999999999"));
+		assertEquals(0, CreditCardIndex.encode(""));
+		assertEquals(0, CreditCardIndex.encode(null));
+		assertEquals(0, CreditCardIndex.encode("1234-5678"));
+	}
+
+	@Test
+	void testPutAndRemoveAgreeWithHashMap() {
+		CreditCardIndex index = new CreditCardIndex(jdbcTemplate);
+		Map<String, Long> expected = new HashMap<>();
+		Random random = new Random(42);
+		// few distinct cards and many removals, so that the table grows and entries are shifted back into removed slots
+		for (int i = 0; i < 200_000; i++) {
+			String number = String.format("%016d", random.nextInt(5_000));
+			if (random.nextInt(3) == 0) {
+				index.remove(number);
+				expected.remove(number);
+			}
+			else {
+				index.put(number, i);
+				expected.put(number, (long) i);
+			}
+		}
+		assertEquals(expected.size(), index.size());
+		for (int card = 0; card < 5_000; card++) {
+			String number = String.format("%016d", card);
+			assertEquals(expected.getOrDefault(number, CreditCardIndex.ABSENT), index.find(number), number);
+		}
+	}
+}
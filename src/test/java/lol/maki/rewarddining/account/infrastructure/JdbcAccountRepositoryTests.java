@@ -1,10 +1,18 @@
 package lol.maki.rewarddining.account.infrastructure;
 
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import javax.money.MonetaryAmount;
 import javax.sql.DataSource;
 
 import lol.maki.rewarddining.account.Account;
 import lol.maki.rewarddining.account.AccountRepository;
+import lol.maki.rewarddining.account.AccountSummary;
+import lol.maki.rewarddining.account.AccountVersionConflictException;
 import lol.maki.rewarddining.account.Beneficiary;
 import lol.maki.rewarddining.account.Percentage;
 import lol.maki.rewarddining.account.USD;
@@ -16,13 +24,17 @@ import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 @JdbcTest(properties = { "logging.level.sql=TRACE" })
-@Import(JdbcAccountRepository.class)
+@Import({ JdbcAccountRepository.class, CreditCardIndex.class })
 class JdbcAccountRepositoryTests {
 
 	@Autowired
@@ -34,6 +46,9 @@ class JdbcAccountRepositoryTests {
 	@Autowired
 	JdbcTemplate jdbcTemplate;
 
+	@Autowired
+	CreditCardIndex creditCardIndex;
+
 	@Test
 	void testFindAccountByCreditCard() {
 		Account account = repository.findByCreditCard("1234123412341234");
@@ -66,6 +81,113 @@ class JdbcAccountRepositoryTests {
 		}
 	}
 
+	@Test
+	void testFindAccountsWithManyCreditCards() {
+		jdbcTemplate.update("insert into t_account_credit_card (account_id, number) values (0, '1234123412349998')");
+		jdbcTemplate.update("insert into t_account_credit_card (account_id, number) values (0, '1234123412349999')");
+		// each beneficiary once, not once per credit card
+		assertEquals(2, repository.findById(0L).getBeneficiaries().size(), "wrong beneficiary collection size");
+		assertEquals(2, repository.findByCreditCard("1234123412349999").getBeneficiaries().size(),
+				"wrong beneficiary collection size");
+		List<Account> accounts = repository.findAll();
+		assertEquals(jdbcTemplate.queryForObject("select count(*) from t_account", Integer.class), accounts.size());
+		assertEquals(0L, accounts.get(0).getId(), "wrong entity id");
+		assertEquals(2, accounts.get(0).getBeneficiaries().size(), "wrong beneficiary collection size");
+		assertEquals(jdbcTemplate.queryForObject("select count(*) from t_account_beneficiary", Integer.class),
+				accounts.stream().mapToInt(a -> a.getBeneficiaries().size()).sum());
+	}
+
+	@Test
+	void testFindAllPaged() {
+		List<Account> all = repository.findAll();
+		List<Account> paged = new ArrayList<>();
+		Long after = null;
+		for (List<Account> page = repository.findAll(null, 5); !page.isEmpty(); page = repository.findAll(after, 5)) {
+			assertTrue(page.size() <= 5);
+			paged.addAll(page);
+			after = page.get(page.size() - 1).getId();
+		}
+		assertEquals(all.stream().map(Account::getId).toList(), paged.stream().map(Account::getId).toList());
+		assertEquals(all.stream().mapToInt(a -> a.getBeneficiaries().size()).sum(),
+				paged.stream().mapToInt(a -> a.getBeneficiaries().size()).sum());
+		assertEquals(Percentage.valueOf("50%"), paged.get(0).getBeneficiary("Annabelle").getAllocationPercentage());
+	}
+
+	@Test
+	void testFindSummaries() {
+		List<AccountSummary> summaries = repository.findSummaries(null, 3);
+		assertEquals(3, summaries.size());
+		assertEquals(new AccountSummary(0L, "123456789", "Keith and Keri Donald", 2), summaries.get(0));
+		List<AccountSummary> next = repository.findSummaries(summaries.get(2).id(), 100);
+		assertEquals(jdbcTemplate.queryForObject("select count(*) from t_account", Integer.class) - 3, next.size());
+		assertTrue(next.get(0).id() > summaries.get(2).id());
+		assertEquals(jdbcTemplate.queryForObject("select count(*) from t_account_beneficiary", Integer.class),
+				summaries.stream().mapToInt(AccountSummary::beneficiaryCount).sum()
+						+ next.stream().mapToInt(AccountSummary::beneficiaryCount).sum());
+	}
+
+	@Test
+	void testFindAccountByCreditCardChangedBehindIndex() {
+		// other tests may have left cards of their rolled back changes in the index
+		creditCardIndex.reload();
+		assertEquals(0, creditCardIndex.find("1234123412341234"));
+		jdbcTemplate.update("update t_account_credit_card set account_id = 1 where number = '1234123412341234'");
+		assertEquals("123456001", repository.findByCreditCard("1234123412341234").getNumber(), "wrong account number");
+		assertEquals(1, creditCardIndex.find("1234123412341234"));
+
+		jdbcTemplate.update("delete from t_account_credit_card where number = '1234123412341234'");
+		assertThrows(EmptyResultDataAccessException.class, () -> repository.findByCreditCard("1234123412341234"));
+		assertEquals(CreditCardIndex.ABSENT, creditCardIndex.find("1234123412341234"));
+
+		jdbcTemplate.update("insert into t_account_credit_card (account_id, number) values (2, '1234123412341234')");
+		assertEquals("123456002", repository.findByCreditCard("1234123412341234").getNumber(), "wrong account number");
+		assertEquals(2, creditCardIndex.find("1234123412341234"));
+	}
+
+	@Test
+	void testFindAccountsByCreditCardsChangedBehindIndex() {
+		creditCardIndex.reload();
+		jdbcTemplate.update("update t_account_credit_card set account_id = 1 where number = '1234123412341234'");
+		jdbcTemplate.update("delete from t_account_credit_card where number = '1234123412340003'");
+		Map<String, Account> accounts = repository.findByCreditCards(List.of("1234123412341234", "1234123412340003", "1234123412340004"));
+		assertEquals(2, accounts.size(), "wrong number of credit cards found");
+		assertEquals(Long.valueOf(1), accounts.get("1234123412341234").getId(), "wrong entity id");
+		assertEquals(Long.valueOf(4), accounts.get("1234123412340004").getId(), "wrong entity id");
+		assertEquals(1, creditCardIndex.find("1234123412341234"));
+		assertEquals(CreditCardIndex.ABSENT, creditCardIndex.find("1234123412340003"));
+		assertEquals(Map.of("1234123412341234", 1L, "1234123412340004", 4L),
+				repository.findAccountIdsByCreditCards(List.of("1234123412341234", "1234123412340003", "1234123412340004")));
+	}
+
+	@Test
+	void testFindAccountsByCreditCards() {
+		jdbcTemplate.update("insert into t_account_credit_card (account_id, number) values (0, '1234123412349999')");
+		Map<String, Account> accounts = repository.findByCreditCards(List.of("1234123412341234", "1234123412349999", "1234123412340003", "bogus"));
+		assertEquals(3, accounts.size(), "wrong number of credit cards found");
+		Account account = accounts.get("1234123412341234");
+		assertEquals(Long.valueOf(0), account.getId(), "wrong entity id");
+		// both cards of the account share the same aggregate, which is not duplicated by the join
+		assertSame(account, accounts.get("1234123412349999"));
+		assertEquals(2, account.getBeneficiaries().size(), "wrong beneficiary collection size");
+		assertEquals(4, accounts.get("1234123412340003").getBeneficiaries().size(), "wrong beneficiary collection size");
+	}
+
+	@Test
+	void testFindAllById() {
+		List<Account> accounts = repository.findAllById(List.of(3L, 0L, 424242L, 3L));
+		assertEquals(List.of(0L, 3L), accounts.stream().map(Account::getId).toList());
+		assertEquals(2, accounts.get(0).getBeneficiaries().size(), "wrong beneficiary collection size");
+		assertEquals(4, accounts.get(1).getBeneficiaries().size(), "wrong beneficiary collection size");
+		assertTrue(repository.findAllById(List.of()).isEmpty());
+	}
+
+	@Test
+	void testUpdateBeneficiarySavings() {
+		Account account = repository.findByCreditCard("1234123412341234");
+		account.makeContribution(USD.valueOf("8.00"));
+		repository.updateBeneficiarySavings(List.of(account));
+		verifyBeneficiaryTableUpdated();
+	}
 
 	@Test
 	void testUpdateBeneficiaries() {
@@ -75,6 +197,72 @@ class JdbcAccountRepositoryTests {
 		verifyBeneficiaryTableUpdated();
 	}
 
+	@Test
+	void testUpdateBeneficiaryAllocationPercentages() {
+		Account account = repository.findById(0L);
+		assertEquals(0L, account.getVersion());
+		account.getBeneficiary("Annabelle").setAllocationPercentage(Percentage.valueOf("30%"));
+		account.getBeneficiary("Corgan").setAllocationPercentage(Percentage.valueOf("70%"));
+		repository.updateBeneficiaries(account);
+		assertEquals(1L, account.getVersion());
+
+		Account loaded = repository.findById(0L);
+		assertEquals(1L, loaded.getVersion());
+		assertEquals(Percentage.valueOf("30%"), loaded.getBeneficiary("Annabelle").getAllocationPercentage());
+		assertEquals(Percentage.valueOf("70%"), loaded.getBeneficiary("Corgan").getAllocationPercentage());
+	}
+
+	@Test
+	void testRemoveBeneficiary() {
+		Account account = repository.findById(0L);
+		account.removeBeneficiary("Corgan");
+		account.getBeneficiary("Annabelle").setAllocationPercentage(Percentage.oneHundred());
+		repository.updateBeneficiaries(account);
+
+		Account loaded = repository.findById(0L);
+		assertEquals(1, loaded.getBeneficiaries().size());
+		assertEquals(Percentage.oneHundred(), loaded.getBeneficiary("Annabelle").getAllocationPercentage());
+		// the beneficiaries of other accounts are left alone
+		assertEquals(4, repository.findById(3L).getBeneficiaries().size());
+	}
+
+	@Test
+	void testUpdateBeneficiariesOfChangedAccount() {
+		Account first = repository.findById(0L);
+		Account second = repository.findById(0L);
+		first.addBeneficiary("Dana");
+		repository.updateBeneficiaries(first);
+
+		second.getBeneficiary("Annabelle").setAllocationPercentage(Percentage.oneHundred());
+		second.getBeneficiary("Corgan").setAllocationPercentage(Percentage.zero());
+		assertThrows(AccountVersionConflictException.class, () -> repository.updateBeneficiaries(second));
+		assertEquals(3, repository.findById(0L).getBeneficiaries().size());
+		assertEquals(Percentage.valueOf("50%"), repository.findById(0L).getBeneficiary("Annabelle").getAllocationPercentage());
+	}
+
+	@Test
+	void testUpdateBeneficiariesWritesChangesOnly() {
+		final CountingJdbcTemplate countingJdbcTemplate = new CountingJdbcTemplate(dataSource);
+		final JdbcAccountRepository countingRepository = new JdbcAccountRepository(countingJdbcTemplate,
+				new NamedParameterJdbcTemplate(countingJdbcTemplate), creditCardIndex);
+		Account account = countingRepository.findById(0L);
+
+		countingJdbcTemplate.statements = 0;
+		countingRepository.updateBeneficiaries(account);
+		countingRepository.updateBeneficiarySavings(List.of(account));
+		assertEquals(0, countingJdbcTemplate.statements, "an unchanged account should cost no statement");
+
+		account.makeContribution(USD.valueOf("8.00"));
+		countingRepository.updateBeneficiaries(account);
+		assertEquals(1, countingJdbcTemplate.statements, "savings should be written in a single batch");
+		verifyBeneficiaryTableUpdated();
+
+		countingJdbcTemplate.statements = 0;
+		countingRepository.updateBeneficiaries(account);
+		assertEquals(0, countingJdbcTemplate.statements, "stored changes should not be written again");
+		assertEquals(0L, countingRepository.findById(0L).getVersion());
+	}
+
 	private void verifyBeneficiaryTableUpdated() {
 		String sql = "select savings from t_account_beneficiary where name = ? and account_id = ?";
 		// assert Annabelle has $4.00 savings now
@@ -84,4 +272,21 @@ class JdbcAccountRepositoryTests {
 		MonetaryAmount corganAmount = jdbcTemplate.queryForObject(sql, (rs, i) -> USD.valueOf(rs.getString(1)), "Corgan", 0L);
 		assertEquals(USD.valueOf("4.00"), corganAmount);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Counts the statements executed, each batch counting once.
+	 */
+	static class CountingJdbcTemplate extends JdbcTemplate {
+		int statements;
+
+		CountingJdbcTemplate(DataSource dataSource) {
+			super(dataSource);
+		}
+
+		@Override
+		protected void applyStatementSettings(Statement stmt) throws SQLException {
+			statements++;
+			super.applyStatementSettings(stmt);
+		}
+	}
+}
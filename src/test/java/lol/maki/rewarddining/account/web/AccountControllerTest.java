@@ -7,6 +7,7 @@ import am.ik.yavi.core.ConstraintViolations;
 import am.ik.yavi.core.Validated;
 import lol.maki.rewarddining.account.Account;
 import lol.maki.rewarddining.account.AccountManager;
+import lol.maki.rewarddining.account.AccountSummary;
 import lol.maki.rewarddining.account.StubAccountManager;
 import org.junit.jupiter.api.Test;
 
@@ -19,6 +20,7 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributesModelMap;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 class AccountControllerTest {
 	private static final long VALID_ACCOUNT_ID = 0L;
@@ -42,11 +44,13 @@ class AccountControllerTest {
 	@Test
 	void getAccountList() {
 		ExtendedModelMap model = new ExtendedModelMap();
-		controller.getAccountList(model);
-		List<Account> accounts = (List<Account>) model.get("accounts");
+		controller.getAccountList(null, model);
+		List<AccountSummary> accounts = (List<AccountSummary>) model.get("accounts");
 		assertNotNull(accounts);
 		assertEquals(getNumAccountsExpected(), accounts.size());
-		assertEquals(Long.valueOf(0), accounts.get(0).getId());
+		assertEquals(Long.valueOf(0), accounts.get(0).id());
+		assertEquals(2, accounts.get(0).beneficiaryCount());
+		assertNull(model.get("next"));
 	}
 
 
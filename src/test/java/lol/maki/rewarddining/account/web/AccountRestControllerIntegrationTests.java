@@ -51,11 +51,22 @@ class AccountRestControllerIntegrationTests {
 		assertEquals(Percentage.valueOf("50%"), account.getBeneficiary("Annabelle").getAllocationPercentage());
 	}
 
+	@Test
+	public void getAccountsById() {
+		String url = "/accounts?ids={ids}";
+		JsonNode response = restTemplate.getForObject(url, JsonNode.class, "3,0,424242");
+		assertEquals(2, response.get("accounts").size());
+		assertEquals(3, response.get("accounts").get(0).get("id").asLong());
+		assertEquals("Keith and Keri Donald", response.get("accounts").get(1).get("name").asText());
+		assertEquals(1, response.get("missing").size());
+		assertEquals(424242, response.get("missing").get(0).asLong());
+	}
+
 	@Test
 	public void createAccount() {
 		String url = "/accounts";
 		// use a unique number to avoid conflicts
-		String number = String.format("12345%4d", random.nextInt(10000));
+		String number = String.format("12345%04d", random.nextInt(10000));
 		Account account = new Account(null, number, "John Doe");
 		account.addBeneficiary("Jane Doe");
 		URI newAccountLocation = restTemplate.postForLocation(url, account);
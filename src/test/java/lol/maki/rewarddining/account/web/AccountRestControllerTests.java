@@ -8,12 +8,18 @@ import lol.maki.rewarddining.account.StubAccountManager;
 import org.junit.jupiter.api.Test;
 
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.server.ResponseStatusException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
 
 class AccountRestControllerTests {
@@ -29,10 +35,38 @@ class AccountRestControllerTests {
 
 	@Test
 	void testHandleSummaryRequest() {
-		List<Account> accounts = controller.accountSummary();
+		ResponseEntity<List<Account>> response = controller.accountSummary(null, null);
+		List<Account> accounts = response.getBody();
 		assertNotNull(accounts);
 		assertEquals(1, accounts.size());
 		assertEquals(Long.valueOf(0), accounts.get(0).getId());
+		assertNull(response.getHeaders().getFirst(HttpHeaders.LINK));
+	}
+
+	@Test
+	void testHandleSummaryRequestPaged() {
+		setupFakeRequest("http://localhost/accounts");
+		controller.createAccount(new AccountRequest("112233440", "Test", List.of()));
+
+		ResponseEntity<List<Account>> first = controller.accountSummary(null, 1);
+		assertEquals(Long.valueOf(0), first.getBody().get(0).getId());
+		assertEquals("<http://localhost/accounts?after=0&limit=1>; rel=\"next\"",
+				first.getHeaders().getFirst(HttpHeaders.LINK));
+
+		ResponseEntity<List<Account>> second = controller.accountSummary(0L, 1);
+		assertEquals(Long.valueOf(3), second.getBody().get(0).getId());
+		assertNull(second.getHeaders().getFirst(HttpHeaders.LINK));
+
+		assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class,
+				() -> controller.accountSummary(null, 0)).getStatus());
+	}
+
+	@Test
+	void testHandleAccountsByIdRequest() {
+		AccountsResponse response = controller.accountsById(List.of(42L, 0L, 0L));
+		assertEquals(1, response.accounts().size());
+		assertEquals(Long.valueOf(0), response.accounts().get(0).getId());
+		assertEquals(List.of(42L), response.missing());
 	}
 
 	@Test
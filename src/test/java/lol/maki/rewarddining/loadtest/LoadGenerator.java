@@ -0,0 +1,176 @@
+package lol.maki.rewarddining.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Sends HTTP requests at a fixed rate, whatever the latency of the responses: an open model, where a slow server does
+ * not slow down the arrival of requests the way it would slow down a fixed number of clients that wait for their
+ * responses.
+ *
+ * The latency of a request is measured from the time it was due to be sent, not from the time it was actually sent, so
+ * a request delayed by the generator itself, e.g. by a pause of its JVM, counts as delayed rather than being left out
+ * (coordinated omission).
+ */
+class LoadGenerator {
+
+	/**
+	 * How long a response is waited for. Requests that time out are counted as errors, with the timeout as latency.
+	 */
+	static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+	private final HttpClient httpClient = HttpClient.newBuilder()
+			.connectTimeout(TIMEOUT)
+			.version(HttpClient.Version.HTTP_1_1)
+			.build();
+
+	private final int requestsPerSecond;
+
+	private final Duration warmup;
+
+	private final Duration duration;
+
+	private final List<Operation> operations;
+
+	private final int totalWeight;
+
+	// the same mix of operations in every run, so that runs can be compared
+	private final Random random = new Random(42);
+
+	/**
+	 * @param requestsPerSecond the arrival rate of requests of all operations together
+	 * @param warmup how long requests are sent before latencies are recorded
+	 * @param duration how long latencies are recorded after the warmup
+	 * @param operations the operations to send, each picked in proportion to its weight
+	 */
+	LoadGenerator(int requestsPerSecond, Duration warmup, Duration duration, List<Operation> operations) {
+		if (requestsPerSecond < 1) {
+			throw new IllegalArgumentException("requestsPerSecond must be positive");
+		}
+		this.requestsPerSecond = requestsPerSecond;
+		this.warmup = warmup;
+		this.duration = duration;
+		this.operations = List.copyOf(operations);
+		this.totalWeight = operations.stream().mapToInt(Operation::weight).sum();
+	}
+
+	/**
+	 * Sends the requests and waits for the last responses.
+	 * @return the latencies and errors of each operation after the warmup
+	 */
+	LoadResults run() throws InterruptedException {
+		final Map<Operation, Recording> recordings = new LinkedHashMap<>();
+		for (Operation operation : operations) {
+			recordings.put(operation, new Recording());
+		}
+		final long intervalNanos = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+		final long start = System.nanoTime();
+		final long recordFrom = start + warmup.toNanos();
+		final long end = recordFrom + duration.toNanos();
+		final List<CompletableFuture<?>> recorded = new ArrayList<>();
+		for (long i = 0;; i++) {
+			final long due = start + i * intervalNanos;
+			if (due >= end) {
+				break;
+			}
+			// behind schedule, the requests that are due are sent at once rather than skipped
+			for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+				LockSupport.parkNanos(wait);
+			}
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			final Operation operation = pick();
+			final CompletableFuture<?> response = send(operation, due, due >= recordFrom ? recordings.get(operation) : null);
+			if (due >= recordFrom) {
+				recorded.add(response);
+			}
+		}
+		try {
+			CompletableFuture.allOf(recorded.toArray(CompletableFuture[]::new))
+					.get(TIMEOUT.toMillis() * 2, TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException | ExecutionException e) {
+			throw new IllegalStateException("Requests did not complete", e);
+		}
+		final Map<String, LoadResults.Latencies> latencies = new LinkedHashMap<>();
+		recordings.forEach((operation, recording) -> latencies.put(operation.name(),
+				new LoadResults.Latencies(recording.histogram, recording.errors.sum())));
+		return new LoadResults(latencies);
+	}
+
+	private Operation pick() {
+		int weight = random.nextInt(totalWeight);
+		for (Operation operation : operations) {
+			weight -= operation.weight();
+			if (weight < 0) {
+				return operation;
+			}
+		}
+		throw new IllegalStateException("No operation to pick");
+	}
+
+	private CompletableFuture<?> send(Operation operation, long due, Recording recording) {
+		final Call call = operation.calls().get();
+		return httpClient.sendAsync(call.request().timeout(TIMEOUT).build(), HttpResponse.BodyHandlers.discarding())
+				.handle((response, failure) -> {
+					final long latencyNanos = System.nanoTime() - due;
+					final boolean success = failure == null && response.statusCode() / 100 == 2;
+					if (success) {
+						call.onSuccess().run();
+					}
+					if (recording != null) {
+						recording.histogram.recordValue(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+						if (!success) {
+							recording.errors.increment();
+						}
+					}
+					return null;
+				});
+	}
+
+	/**
+	 * A kind of request, such as looking up an account.
+	 *
+	 * @param name the name of the operation in reports
+	 * @param weight how often the operation is sent, relative to the other operations
+	 * @param calls makes the next call, on the thread that sends the requests
+	 */
+	record Operation(String name, int weight, Supplier<Call> calls) {
+	}
+
+	/**
+	 * A request to send, and what to do when it succeeds, e.g. remember what it created.
+	 */
+	record Call(HttpRequest.Builder request, Runnable onSuccess) {
+
+		static Call of(HttpRequest.Builder request) {
+			return new Call(request, () -> {
+			});
+		}
+	}
+
+	private static final class Recording {
+		// auto-resizing, with the latency in microseconds to 3 significant digits
+		final Histogram histogram = new ConcurrentHistogram(3);
+
+		final LongAdder errors = new LongAdder();
+	}
+}
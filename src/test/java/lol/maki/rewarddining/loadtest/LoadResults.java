@@ -0,0 +1,126 @@
+package lol.maki.rewarddining.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Reports the latencies of a load test, and compares them with the report of a previous run.
+ *
+ * A report is a directory with a summary of the percentiles of every operation, <code>summary.json</code>, and the
+ * full percentile distribution of every operation, <code>&lt;operation&gt;.hgrm</code>, which HdrHistogram's plotter
+ * can chart side by side with the distribution of another run.
+ */
+class LoadResults {
+
+	static final String SUMMARY = "summary.json";
+
+	private static final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+	private final Map<String, Latencies> latencies;
+
+	LoadResults(Map<String, Latencies> latencies) {
+		this.latencies = latencies;
+	}
+
+	/**
+	 * Returns the summary of every operation, in the order of the operations.
+	 */
+	List<Summary> summaries() {
+		final List<Summary> summaries = new ArrayList<>(latencies.size());
+		latencies.forEach((operation, latency) -> summaries.add(latency.summarize(operation)));
+		return summaries;
+	}
+
+	/**
+	 * Writes the report to a directory, replacing the report already in it.
+	 */
+	void write(Path directory) {
+		try {
+			Files.createDirectories(directory);
+			objectMapper.writeValue(directory.resolve(SUMMARY).toFile(), summaries());
+			for (Map.Entry<String, Latencies> entry : latencies.entrySet()) {
+				try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(entry.getKey() + ".hgrm")))) {
+					// recorded in microseconds, reported in milliseconds
+					entry.getValue().histogram().outputPercentileDistribution(out, 1000.0);
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Prints the percentiles of every operation, in milliseconds.
+	 */
+	void print(PrintStream out) {
+		out.printf("%-20s %10s %8s %10s %10s %10s %10s%n", "operation", "requests", "errors", "p50", "p99", "p99.9", "max");
+		for (Summary summary : summaries()) {
+			out.printf("%-20s %,10d %,8d %10.2f %10.2f %10.2f %10.2f%n", summary.operation(), summary.requests(),
+					summary.errors(), summary.p50(), summary.p99(), summary.p999(), summary.max());
+		}
+	}
+
+	/**
+	 * Prints the percentiles of every operation next to those in the report of a previous run, in milliseconds, with
+	 * their change.
+	 */
+	void compare(Path baseline, PrintStream out) {
+		final Map<String, Summary> before = new LinkedHashMap<>();
+		try {
+			for (Summary summary : objectMapper.readValue(baseline.resolve(SUMMARY).toFile(), Summary[].class)) {
+				before.put(summary.operation(), summary);
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("Cannot read the baseline " + baseline, e);
+		}
+		out.printf("%-20s %-6s %10s %10s %9s%n", "operation", "", "before", "after", "change");
+		for (Summary summary : summaries()) {
+			final Summary previous = before.get(summary.operation());
+			printChange(out, summary.operation(), "p50", previous == null ? Double.NaN : previous.p50(), summary.p50());
+			printChange(out, "", "p99", previous == null ? Double.NaN : previous.p99(), summary.p99());
+			printChange(out, "", "p99.9", previous == null ? Double.NaN : previous.p999(), summary.p999());
+			printChange(out, "", "errors", previous == null ? Double.NaN : previous.errors(), summary.errors());
+		}
+	}
+
+	private static void printChange(PrintStream out, String operation, String statistic, double before, double after) {
+		final String change = Double.isNaN(before) ? "new"
+				: before == 0 ? (after == 0 ? "-" : "+inf")
+				: String.format("%+.1f%%", (after - before) / before * 100);
+		out.printf("%-20s %-6s %10.2f %10.2f %9s%n", operation, statistic, before, after, change);
+	}
+
+	/**
+	 * The latencies of an operation, in microseconds, and the number of its requests that failed.
+	 */
+	record Latencies(Histogram histogram, long errors) {
+
+		Summary summarize(String operation) {
+			return new Summary(operation, histogram.getTotalCount(), errors, millis(50), millis(99), millis(99.9),
+					histogram.getMaxValue() / 1000.0);
+		}
+
+		private double millis(double percentile) {
+			return histogram.getValueAtPercentile(percentile) / 1000.0;
+		}
+	}
+
+	/**
+	 * The percentiles of the latency of an operation, in milliseconds.
+	 */
+	record Summary(String operation, long requests, long errors, double p50, double p99, double p999, double max) {
+	}
+}
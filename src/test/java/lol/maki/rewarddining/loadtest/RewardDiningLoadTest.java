@@ -0,0 +1,167 @@
+package lol.maki.rewarddining.loadtest;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import lol.maki.rewarddining.loadtest.LoadGenerator.Call;
+import lol.maki.rewarddining.loadtest.LoadGenerator.Operation;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Load tests the REST API of the application, started on a random port with its embedded database, with a mix of
+ * account reads, beneficiary reads and writes, and reward submissions sent at a fixed rate. Run with
+ * <code>./mvnw test -Pload-test</code>, and tune with system properties:
+ *
+ * <ul>
+ * <li><code>loadtest.rate</code>: requests per second, 100 by default</li>
+ * <li><code>loadtest.warmup</code>: seconds before latencies are recorded, 10 by default</li>
+ * <li><code>loadtest.duration</code>: seconds latencies are recorded, 30 by default</li>
+ * </ul>
+ *
+ * The report is written to <code>target/loadtest</code>, see {@link LoadResults}. To compare two runs, keep the report
+ * of the first, and pass its directory to the second:
+ *
+ * <pre>
+ * ./mvnw test -Pload-test
+ * cp -r target/loadtest /tmp/loadtest-before
+ * # change the code
+ * ./mvnw test -Pload-test -Dloadtest.baseline=/tmp/loadtest-before
+ * </pre>
+ */
+@Tag("loadtest")
+@TestPropertySource(properties = { "management.metrics.export.wavefront.enabled=false", "logging.level.root=WARN",
+		"logging.level.lol.maki.rewarddining=WARN" })
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class RewardDiningLoadTest {
+	static final String MERCHANT_NUMBER = "1234567890";
+
+	@LocalServerPort
+	int port;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	// only used by the thread that sends the requests
+	final Random random = new Random(42);
+
+	// beneficiaries added by the load test, which it may remove again
+	final Queue<Beneficiary> added = new ConcurrentLinkedQueue<>();
+
+	long sequence;
+
+	@Test
+	void loadTest() throws Exception {
+		final List<Long> accountIds = jdbcTemplate.queryForList("select id from t_account order by id", Long.class);
+		final List<Beneficiary> beneficiaries = jdbcTemplate.query(
+				"select account_id, name from t_account_beneficiary order by account_id, name",
+				(rs, i) -> new Beneficiary(rs.getLong("account_id"), rs.getString("name")));
+		// cards of accounts that can be rewarded, i.e. with all of the reward allocated
+		final List<String> creditCardNumbers = jdbcTemplate.queryForList("""
+				select c.number from t_account_credit_card c
+				where c.account_id in (select b.account_id from t_account_beneficiary b
+				                       group by b.account_id having sum(b.allocation_percentage) = 1)
+				order by c.number""", String.class);
+		// so that there is something to remove from the start
+		for (int i = 0; i < 200; i++) {
+			added.add(addBeneficiary(accountIds.get(i % accountIds.size())));
+		}
+
+		final LoadGenerator loadGenerator = new LoadGenerator(Integer.getInteger("loadtest.rate", 100),
+				Duration.ofSeconds(Long.getLong("loadtest.warmup", 10)),
+				Duration.ofSeconds(Long.getLong("loadtest.duration", 30)), List.of(
+				new Operation("listAccounts", 10, () -> Call.of(get("/accounts?limit=20&after=" + pick(accountIds)))),
+				new Operation("getAccount", 35, () -> Call.of(get("/accounts/" + pick(accountIds)))),
+				new Operation("getBeneficiary", 15, () -> {
+					final Beneficiary beneficiary = pick(beneficiaries);
+					return Call.of(get("/accounts/" + beneficiary.accountId() + "/beneficiaries/" + encode(beneficiary.name())));
+				}),
+				new Operation("addBeneficiary", 10, () -> addBeneficiaryCall(pick(accountIds))),
+				// fewer removals than additions, so that there is nearly always an added beneficiary to remove
+				new Operation("removeBeneficiary", 8, () -> {
+					final Beneficiary beneficiary = added.poll();
+					if (beneficiary == null) {
+						return addBeneficiaryCall(pick(accountIds));
+					}
+					return Call.of(request("/accounts/" + beneficiary.accountId() + "/beneficiaries/"
+							+ encode(beneficiary.name())).DELETE());
+				}),
+				new Operation("rewardDining", 20, () -> Call.of(post("/rewards", "application/json", """
+						{"amount":"%d.%02d","creditCardNumber":"%s","merchantNumber":"%s","transactionId":"load-%d"}"""
+						.formatted(10 + random.nextInt(190), random.nextInt(100), pick(creditCardNumbers),
+								MERCHANT_NUMBER, sequence++))))));
+
+		final LoadResults results = loadGenerator.run();
+		results.write(Path.of("target", "loadtest"));
+		final String baseline = System.getProperty("loadtest.baseline");
+		if (baseline == null) {
+			results.print(System.out);
+		}
+		else {
+			results.compare(Path.of(baseline), System.out);
+		}
+		assertThat(results.summaries()).allSatisfy(summary -> assertThat(summary.requests()).isPositive());
+	}
+
+	Beneficiary addBeneficiary(long accountId) throws Exception {
+		final Beneficiary beneficiary = new Beneficiary(accountId, "Load-" + sequence++);
+		final HttpResponse<Void> response = HttpClient.newHttpClient().send(addBeneficiaryRequest(beneficiary).build(),
+				HttpResponse.BodyHandlers.discarding());
+		assertThat(response.statusCode()).isEqualTo(201);
+		return beneficiary;
+	}
+
+	Call addBeneficiaryCall(long accountId) {
+		final Beneficiary beneficiary = new Beneficiary(accountId, "Load-" + sequence++);
+		return new Call(addBeneficiaryRequest(beneficiary), () -> added.add(beneficiary));
+	}
+
+	HttpRequest.Builder addBeneficiaryRequest(Beneficiary beneficiary) {
+		return post("/accounts/" + beneficiary.accountId() + "/beneficiaries", "text/plain", beneficiary.name());
+	}
+
+	HttpRequest.Builder request(String path) {
+		// rewarding takes the editor role
+		return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+				.header("Authorization", "Basic " + Base64.getEncoder().encodeToString("edith:edith".getBytes(StandardCharsets.UTF_8)));
+	}
+
+	HttpRequest.Builder get(String path) {
+		return request(path).GET().header("Accept", "application/json");
+	}
+
+	HttpRequest.Builder post(String path, String contentType, String body) {
+		return request(path).POST(HttpRequest.BodyPublishers.ofString(body)).header("Content-Type", contentType);
+	}
+
+	<T> T pick(List<T> values) {
+		return values.get(random.nextInt(values.size()));
+	}
+
+	static String encode(String value) {
+		return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+	}
+
+	record Beneficiary(long accountId, String name) {
+	}
+}
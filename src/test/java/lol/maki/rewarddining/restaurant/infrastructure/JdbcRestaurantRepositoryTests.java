@@ -1,5 +1,8 @@
 package lol.maki.rewarddining.restaurant.infrastructure;
 
+import java.util.List;
+import java.util.Map;
+
 import lol.maki.rewarddining.account.Percentage;
 import lol.maki.rewarddining.restaurant.AlwaysAvailable;
 import lol.maki.rewarddining.restaurant.Restaurant;
@@ -32,6 +35,13 @@ class JdbcRestaurantRepositoryTests {
 				restaurant.getBenefitAvailabilityPolicy(), "the benefit availability policy is wrong");
 	}
 
+	@Test
+	void testFindRestaurantsByMerchantNumbers() {
+		Map<String, Restaurant> restaurants = repository.findByMerchantNumbers(List.of("1234567890", "bogus"));
+		assertEquals(1, restaurants.size(), "only the known merchant number should be found");
+		assertEquals("AppleBees", restaurants.get("1234567890").getName(), "the name is wrong");
+	}
+
 	@Test
 	void testFindRestaurantByBogusMerchantNumber() {
 		try {
@@ -0,0 +1,211 @@
+package lol.maki.rewarddining.reward;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lol.maki.rewarddining.account.AccountContribution;
+import lol.maki.rewarddining.account.USD;
+import lol.maki.rewarddining.account.infrastructure.CreditCardIndex;
+import lol.maki.rewarddining.account.infrastructure.JdbcAccountRepository;
+import lol.maki.rewarddining.config.RewardConfig;
+import lol.maki.rewarddining.restaurant.Dining;
+import lol.maki.rewarddining.restaurant.infrastructure.JdbcRestaurantRepository;
+import lol.maki.rewarddining.reward.infrastructure.JdbcRewardRepository;
+import lol.maki.rewarddining.reward.rollup.DailyRewardTotal;
+import lol.maki.rewarddining.reward.rollup.RewardRollups;
+import lol.maki.rewarddining.util.StripedLock;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@JdbcTest
+@Import({ AccountSerializingRewardNetwork.class, RewardNetworkImpl.class, JdbcAccountRepository.class,
+		CreditCardIndex.class, JdbcRestaurantRepository.class, JdbcRewardRepository.class, RewardRollups.class, RewardConfig.class })
+// the rewards race each other in their own transactions, which a test-managed transaction would hide
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AccountSerializingRewardNetworkTests {
+	@Autowired
+	RewardNetwork rewardNetwork;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	RewardRollups rewardRollups;
+
+	@Autowired
+	JdbcAccountRepository accountRepository;
+
+	@Autowired
+	JdbcRestaurantRepository restaurantRepository;
+
+	@Autowired
+	ConfirmationNumberGenerator confirmationNumberGenerator;
+
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	@Test
+	void testNoLostUpdatesOnHotAccounts() throws Exception {
+		assertThat(rewardNetwork).isInstanceOf(AccountSerializingRewardNetwork.class);
+		// accounts 0, 3 and 12; every $100.00 dining contributes $8.00 split without rounding
+		final Map<String, Long> hotCards = Map.of("1234123412341234", 0L, "1234123412340003", 3L, "1234123412340012", 12L);
+		final List<String> creditCardNumbers = new ArrayList<>(hotCards.keySet());
+		final Map<Long, BigDecimal> before = savingsByAccount();
+		final long rolledUpBefore = countRolledUpRewards();
+		final int threads = 8;
+		final int diningsPerThread = 375;
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				final int thread = t;
+				futures.add(executor.submit(() -> {
+					final List<Dining> batch = new ArrayList<>();
+					for (int i = 0; i < diningsPerThread; i++) {
+						final String creditCardNumber = creditCardNumbers.get((thread + i) % creditCardNumbers.size());
+						final Dining dining = new Dining(USD.valueOf("100.00"), creditCardNumber, "1234567890", LocalDate.of(2022, 5, 1),
+								"txn-" + thread + "-" + i);
+						// mix single rewards with batches spanning all hot accounts
+						if (thread % 2 == 0) {
+							rewardNetwork.rewardAccountFor(dining);
+						}
+						else {
+							batch.add(dining);
+							if (batch.size() == 5) {
+								rewardNetwork.rewardAccountsFor(List.copyOf(batch)).forEach(r -> assertThat(r.isConfirmed()).isTrue());
+								batch.clear();
+							}
+						}
+					}
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		final Map<Long, BigDecimal> after = savingsByAccount();
+		final int diningsPerAccount = threads * diningsPerThread / creditCardNumbers.size();
+		for (Long accountId : hotCards.values()) {
+			assertEquals(new BigDecimal("8.00").multiply(BigDecimal.valueOf(diningsPerAccount)),
+					after.get(accountId).subtract(before.get(accountId)), "account " + accountId);
+		}
+		// every transaction updated the same merchant rollup row
+		assertEquals(rolledUpBefore + threads * diningsPerThread, countRolledUpRewards());
+	}
+
+	private long countRolledUpRewards() {
+		return rewardRollups.findByMerchantNumber("1234567890", LocalDate.now(), LocalDate.now()).stream()
+				.mapToLong(DailyRewardTotal::rewards)
+				.sum();
+	}
+
+	@Test
+	void testChunksCommitInTheirOwnTransactions() {
+		final AtomicInteger chunks = new AtomicInteger();
+		final JdbcRewardRepository rewardRepository = new JdbcRewardRepository(jdbcTemplate, confirmationNumberGenerator,
+				rewardRollups) {
+			@Override
+			public List<RewardConfirmation> confirmRewards(List<AccountContribution> contributions, List<Dining> dinings) {
+				if (chunks.incrementAndGet() == 2) {
+					throw new IllegalStateException("Second chunk failed");
+				}
+				return super.confirmRewards(contributions, dinings);
+			}
+		};
+		final RewardNetworkImpl chunkedNetwork = new RewardNetworkImpl(accountRepository, restaurantRepository,
+				rewardRepository, null, null, null, transactionTemplate);
+		chunkedNetwork.setChunkSize(1);
+		final Dining first = new Dining(USD.valueOf("100.00"), "1234123412341234", "1234567890", LocalDate.of(2022, 5, 2),
+				"chunk-1");
+		final Dining second = new Dining(USD.valueOf("100.00"), "1234123412341234", "1234567890", LocalDate.of(2022, 5, 2),
+				"chunk-2");
+
+		assertThrows(IllegalStateException.class, () -> chunkedNetwork.rewardAccountsFor(List.of(first, second)));
+
+		// the first chunk committed before the second failed
+		assertEquals(1, jdbcTemplate.queryForObject("select count(*) from T_REWARD where IDEMPOTENCY_KEY in (?, ?)",
+				Integer.class, first.getIdempotencyKey(), second.getIdempotencyKey()));
+	}
+
+	@Test
+	void testRetriedChunkIsCountedAndRememberedOnce() {
+		final AtomicInteger tries = new AtomicInteger();
+		final JdbcRewardRepository rewardRepository = new JdbcRewardRepository(jdbcTemplate, confirmationNumberGenerator,
+				rewardRollups) {
+			@Override
+			public List<RewardConfirmation> confirmRewards(List<AccountContribution> contributions, List<Dining> dinings) {
+				final List<RewardConfirmation> confirmations = super.confirmRewards(contributions, dinings);
+				if (tries.incrementAndGet() == 1) {
+					throw new DuplicateKeyException("Recorded concurrently");
+				}
+				if (dinings.get(0).getTransactionId().equals("retry-rolled-back")) {
+					throw new IllegalStateException("Rolled back");
+				}
+				return confirmations;
+			}
+		};
+		final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		final DiningDeduplicator deduplicator = new DiningDeduplicator(jdbcTemplate, new RewardProperties(), meterRegistry);
+		final RewardNetworkImpl retryingNetwork = new RewardNetworkImpl(accountRepository, restaurantRepository,
+				rewardRepository, deduplicator, null, meterRegistry, transactionTemplate);
+		final Dining retried = new Dining(USD.valueOf("100.00"), "1234123412341234", "1234567890", LocalDate.now(),
+				"retry-committed");
+		final Dining rolledBack = new Dining(USD.valueOf("100.00"), "1234123412341234", "1234567890", LocalDate.now(),
+				"retry-rolled-back");
+
+		assertThat(retryingNetwork.rewardAccountsFor(List.of(retried)).get(0).isConfirmed()).isTrue();
+		assertThrows(IllegalStateException.class, () -> retryingNetwork.rewardAccountsFor(List.of(rolledBack)));
+
+		assertEquals(3, tries.get());
+		assertEquals(1, meterRegistry.get("reward.outcomes").tag("outcome", "rewarded").counter().count());
+		final double skippedBefore = meterRegistry.get("reward.dedup.skipped").counter().count();
+		// the committed dining was remembered, the rolled back one was not
+		assertThat(deduplicator.isDuplicate(retried.getIdempotencyKey(), retried.getDate())).isTrue();
+		assertThat(deduplicator.isDuplicate(rolledBack.getIdempotencyKey(), rolledBack.getDate())).isFalse();
+		assertEquals(skippedBefore + 1, meterRegistry.get("reward.dedup.skipped").counter().count());
+	}
+
+	@Test
+	void testStripedLockRoundsUpToPowerOfTwo() {
+		assertEquals(1, new StripedLock(1).size());
+		assertEquals(16, new StripedLock(10).size());
+		assertEquals(1024, new StripedLock(1024).size());
+		StripedLock locks = new StripedLock(16);
+		assertThat(locks.get(42L)).isSameAs(locks.get(42L));
+		assertThat(locks.getAll(List.of(1L, 2L, 1L))).hasSize(2);
+	}
+
+	private Map<Long, BigDecimal> savingsByAccount() {
+		final Map<Long, BigDecimal> savings = new HashMap<>();
+		jdbcTemplate.query("select ACCOUNT_ID, sum(SAVINGS) as SAVINGS from T_ACCOUNT_BENEFICIARY group by ACCOUNT_ID",
+				rs -> {
+					savings.put(rs.getLong("ACCOUNT_ID"), rs.getBigDecimal("SAVINGS"));
+				});
+		return savings;
+	}
+}
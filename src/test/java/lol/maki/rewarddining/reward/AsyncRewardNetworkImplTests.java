@@ -0,0 +1,152 @@
+package lol.maki.rewarddining.reward;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lol.maki.rewarddining.account.USD;
+import lol.maki.rewarddining.restaurant.Dining;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AsyncRewardNetworkImplTests {
+
+	MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	CountDownLatch release = new CountDownLatch(0);
+
+	RewardNetworkImpl rewardNetwork = new RewardNetworkImpl(new StubAccountRepository(), new StubRestaurantRepository(), new StubRewardRepository());
+
+	AsyncRewardNetworkImpl asyncRewardNetwork;
+
+	@AfterEach
+	void tearDown() throws Exception {
+		release.countDown();
+		asyncRewardNetwork.destroy();
+	}
+
+	@Test
+	void testRewardForDiningAsync() throws Exception {
+		asyncRewardNetwork = newAsyncRewardNetwork(rewardNetwork, 2, 10);
+		Dining dining = Dining.createDining("100.00", "1234123412341234", "1234567890");
+
+		RewardConfirmation confirmation = asyncRewardNetwork.rewardAccountForAsync(dining).get(10, TimeUnit.SECONDS);
+
+		assertEquals(USD.valueOf("8.00"), confirmation.getAccountContribution().getAmount());
+		assertEquals(1, meterRegistry.get("reward.async.queue.wait").timer().count());
+	}
+
+	@Test
+	void testFailureCompletesExceptionally() {
+		asyncRewardNetwork = newAsyncRewardNetwork(rewardNetwork, 2, 10);
+		Dining dining = Dining.createDining("100.00", "bogus", "1234567890");
+
+		CompletableFuture<RewardConfirmation> future = asyncRewardNetwork.rewardAccountForAsync(dining);
+
+		ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+		assertThat(e.getCause()).isInstanceOf(EmptyResultDataAccessException.class);
+	}
+
+	@Test
+	void testRejectWhenQueueIsFull() throws Exception {
+		release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		RewardNetwork blocking = new RewardNetwork() {
+			public RewardConfirmation rewardAccountFor(Dining dining) {
+				started.countDown();
+				try {
+					release.await();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return rewardNetwork.rewardAccountFor(dining);
+			}
+
+			public List<RewardResult> rewardAccountsFor(List<Dining> dinings) {
+				throw new UnsupportedOperationException();
+			}
+		};
+		asyncRewardNetwork = newAsyncRewardNetwork(blocking, 1, 2);
+		Dining dining = Dining.createDining("100.00", "1234123412341234", "1234567890");
+
+		// one dining keeps the only worker busy, two more fill the queue
+		CompletableFuture<RewardConfirmation> running = asyncRewardNetwork.rewardAccountForAsync(dining);
+		started.await(10, TimeUnit.SECONDS);
+		CompletableFuture<RewardConfirmation> queued1 = asyncRewardNetwork.rewardAccountForAsync(dining);
+		CompletableFuture<RewardConfirmation> queued2 = asyncRewardNetwork.rewardAccountForAsync(dining);
+		assertEquals(2.0, meterRegistry.get("reward.async.queue.depth").gauge().value());
+
+		CompletableFuture<RewardConfirmation> rejected = asyncRewardNetwork.rewardAccountForAsync(dining);
+		ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+		assertThat(e.getCause()).isInstanceOf(RejectedExecutionException.class);
+		assertEquals(1.0, meterRegistry.get("reward.async.rejected").counter().count());
+
+		release.countDown();
+		CompletableFuture.allOf(running, queued1, queued2).get(10, TimeUnit.SECONDS);
+		assertEquals(0.0, meterRegistry.get("reward.async.queue.depth").gauge().value());
+	}
+
+	@Test
+	void testShutdownCompletesDroppedDinings() throws Exception {
+		release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		RewardNetwork blocking = new RewardNetwork() {
+			public RewardConfirmation rewardAccountFor(Dining dining) {
+				started.countDown();
+				try {
+					release.await();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return rewardNetwork.rewardAccountFor(dining);
+			}
+
+			public List<RewardResult> rewardAccountsFor(List<Dining> dinings) {
+				throw new UnsupportedOperationException();
+			}
+		};
+		RewardProperties properties = new RewardProperties();
+		properties.getAsync().setWorkers(1);
+		properties.getAsync().setQueueCapacity(2);
+		properties.getAsync().setShutdownTimeout(Duration.ofMillis(100));
+		asyncRewardNetwork = new AsyncRewardNetworkImpl(blocking, properties, meterRegistry);
+		Dining dining = Dining.createDining("100.00", "1234123412341234", "1234567890");
+
+		asyncRewardNetwork.rewardAccountForAsync(dining);
+		started.await(10, TimeUnit.SECONDS);
+		CompletableFuture<RewardConfirmation> queued = asyncRewardNetwork.rewardAccountForAsync(dining);
+		asyncRewardNetwork.destroy();
+
+		// the queued dining is never rewarded, but its caller learns so
+		ExecutionException e = assertThrows(ExecutionException.class, () -> queued.get(10, TimeUnit.SECONDS));
+		assertThat(e.getCause()).isInstanceOf(RejectedExecutionException.class);
+
+		// rejected as shut down rather than as full
+		CompletableFuture<RewardConfirmation> late = asyncRewardNetwork.rewardAccountForAsync(dining);
+		e = assertThrows(ExecutionException.class, () -> late.get(10, TimeUnit.SECONDS));
+		assertThat(e.getCause()).hasMessageContaining("shut down");
+		assertEquals(0.0, meterRegistry.get("reward.async.rejected").counter().count());
+	}
+
+	private AsyncRewardNetworkImpl newAsyncRewardNetwork(RewardNetwork rewardNetwork, int workers, int queueCapacity) {
+		RewardProperties properties = new RewardProperties();
+		properties.getAsync().setWorkers(workers);
+		properties.getAsync().setQueueCapacity(queueCapacity);
+		properties.getAsync().setShutdownTimeout(Duration.ofSeconds(10));
+		return new AsyncRewardNetworkImpl(rewardNetwork, properties, meterRegistry);
+	}
+}
@@ -0,0 +1,102 @@
+package lol.maki.rewarddining.reward;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lol.maki.rewarddining.account.Account;
+import lol.maki.rewarddining.account.AccountRepository;
+import lol.maki.rewarddining.account.USD;
+import lol.maki.rewarddining.account.infrastructure.CreditCardIndex;
+import lol.maki.rewarddining.account.infrastructure.JdbcAccountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@JdbcTest
+@Import({ JdbcAccountRepository.class, CreditCardIndex.class })
+// contributions are queued after commit, which a test-managed transaction would never do
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BeneficiarySavingsWriteBehindTests {
+	@Autowired
+	AccountRepository accountRepository;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	BeneficiarySavingsWriteBehind writeBehind;
+
+	@BeforeEach
+	void setUp() {
+		RewardProperties properties = new RewardProperties();
+		// only explicit flushes in these tests
+		properties.getWriteBehind().setFlushInterval(Duration.ofHours(1));
+		properties.getWriteBehind().setMaxPendingAccounts(Integer.MAX_VALUE);
+		writeBehind = new BeneficiarySavingsWriteBehind(accountRepository, properties, new SimpleMeterRegistry());
+		jdbcTemplate.update("update T_ACCOUNT_BENEFICIARY set SAVINGS = 0 where ACCOUNT_ID = 0");
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		writeBehind.destroy();
+	}
+
+	@Test
+	void testCoalesceContributions() {
+		Account account = accountRepository.findByCreditCard("1234123412341234");
+		for (int i = 0; i < 10; i++) {
+			writeBehind.add(account, account.makeContribution(USD.valueOf("8.00")));
+		}
+		assertEquals(1, writeBehind.pendingAccounts());
+		assertEquals(new BigDecimal("0.00"), savings("Annabelle"));
+
+		writeBehind.flush();
+		assertEquals(0, writeBehind.pendingAccounts());
+		assertEquals(new BigDecimal("40.00"), savings("Annabelle"));
+		assertEquals(new BigDecimal("40.00"), savings("Corgan"));
+		// 20 contributions to two beneficiaries written as two rows
+		assertEquals(10.0, writeBehind.coalescingRatio());
+	}
+
+	@Test
+	void testRolledBackContributionIsDropped() {
+		Account account = accountRepository.findByCreditCard("1234123412341234");
+		transactionTemplate.executeWithoutResult(status -> {
+			writeBehind.add(account, account.makeContribution(USD.valueOf("8.00")));
+			status.setRollbackOnly();
+		});
+		assertEquals(0, writeBehind.pendingAccounts());
+		transactionTemplate.executeWithoutResult(status -> {
+			writeBehind.add(account, account.makeContribution(USD.valueOf("8.00")));
+			assertEquals(0, writeBehind.pendingAccounts());
+		});
+		assertEquals(1, writeBehind.pendingAccounts());
+	}
+
+	@Test
+	void testFlushOnShutdown() throws Exception {
+		Account account = accountRepository.findByCreditCard("1234123412341234");
+		writeBehind.add(account, account.makeContribution(USD.valueOf("8.00")));
+		writeBehind.destroy();
+		assertEquals(0, writeBehind.pendingAccounts());
+		assertEquals(new BigDecimal("4.00"), savings("Annabelle"));
+	}
+
+	private BigDecimal savings(String name) {
+		return jdbcTemplate.queryForObject("select SAVINGS from T_ACCOUNT_BENEFICIARY where ACCOUNT_ID = 0 and NAME = ?",
+				BigDecimal.class, name);
+	}
+}
@@ -0,0 +1,125 @@
+package lol.maki.rewarddining.reward;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lol.maki.rewarddining.account.USD;
+import lol.maki.rewarddining.restaurant.Dining;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+@JdbcTest
+class DiningDeduplicatorTests {
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	SimpleMeterRegistry meterRegistry;
+
+	DiningDeduplicator deduplicator;
+
+	@BeforeEach
+	void setUp() {
+		meterRegistry = new SimpleMeterRegistry();
+		deduplicator = new DiningDeduplicator(jdbcTemplate, new RewardProperties(), meterRegistry);
+	}
+
+	@Test
+	void testIdempotencyKey() {
+		LocalDate today = LocalDate.now();
+		Dining dining = new Dining(USD.valueOf("100.00"), "1234123412341234", "1234567890", today);
+		assertEquals(64, dining.getIdempotencyKey().length());
+		assertEquals(dining.getIdempotencyKey(),
+				new Dining(USD.valueOf("100"), "1234123412341234", "1234567890", today).getIdempotencyKey());
+		assertNotEquals(dining.getIdempotencyKey(),
+				new Dining(USD.valueOf("100.00"), "1234123412341234", "1234567890", today, "txn-1").getIdempotencyKey());
+		assertNotEquals(dining.getIdempotencyKey(),
+				new Dining(USD.valueOf("100.00"), "1234123412341234", "1234567890", today.minusDays(1)).getIdempotencyKey());
+	}
+
+	@Test
+	void testRebuildFromRewards() {
+		Dining rewarded = new Dining(USD.valueOf("100.00"), "1234123412341234", "1234567890", LocalDate.now());
+		Dining old = new Dining(USD.valueOf("100.00"), "1234123412341234", "1234567890", LocalDate.now().minusDays(30));
+		insertReward("1", rewarded);
+		insertReward("2", old);
+		deduplicator.rebuild();
+
+		assertThat(deduplicator.isDuplicate(rewarded.getIdempotencyKey(), rewarded.getDate())).isTrue();
+		// outside the retention window, found by lookup
+		assertThat(deduplicator.isDuplicate(old.getIdempotencyKey(), old.getDate())).isTrue();
+		assertEquals(2, meterRegistry.get("reward.dedup.duplicates").counter().count());
+
+		Dining fresh = new Dining(USD.valueOf("42.00"), "1234123412341234", "1234567890", LocalDate.now());
+		assertThat(deduplicator.isDuplicate(fresh.getIdempotencyKey(), fresh.getDate())).isFalse();
+		assertEquals(1, meterRegistry.get("reward.dedup.skipped").counter().count());
+		assertEquals(2, meterRegistry.get("reward.dedup.lookups").counter().count());
+	}
+
+	@Test
+	void testRememberedButNotRewardedIsFalsePositive() {
+		Dining dining = new Dining(USD.valueOf("100.00"), "1234123412341234", "1234567890", LocalDate.now(), "txn-rolled-back");
+		deduplicator.remember(dining.getIdempotencyKey(), dining.getDate());
+		assertThat(deduplicator.isDuplicate(dining.getIdempotencyKey(), dining.getDate())).isFalse();
+		assertEquals(1, meterRegistry.get("reward.dedup.false-positives").counter().count());
+	}
+
+	@Test
+	void testClaimedIsDuplicateUntilReleased() {
+		Dining dining = new Dining(USD.valueOf("100.00"), "1234123412341234", "1234567890", LocalDate.now(), "txn-journaled");
+		assertThat(deduplicator.claim(dining.getIdempotencyKey())).isTrue();
+		assertThat(deduplicator.claim(dining.getIdempotencyKey())).isFalse();
+		assertThat(deduplicator.isDuplicate(dining.getIdempotencyKey(), dining.getDate())).isTrue();
+		assertEquals(1, meterRegistry.get("reward.dedup.pending").gauge().value());
+
+		deduplicator.release(dining.getIdempotencyKey());
+		assertThat(deduplicator.isDuplicate(dining.getIdempotencyKey(), dining.getDate())).isFalse();
+		assertEquals(0, meterRegistry.get("reward.dedup.pending").gauge().value());
+	}
+
+	@Test
+	void testLoadedIsLookedUp() {
+		Dining dining = new Dining(USD.valueOf("100.00"), "1234123412341234", "1234567890", LocalDate.now(), "txn-loaded");
+		deduplicator.claim(dining.getIdempotencyKey());
+		insertReward("loaded", dining);
+		deduplicator.loaded(dining.getIdempotencyKey(), dining.getDate());
+		assertThat(deduplicator.isDuplicate(dining.getIdempotencyKey(), dining.getDate())).isTrue();
+		assertEquals(0, meterRegistry.get("reward.dedup.pending").gauge().value());
+		assertEquals(1, meterRegistry.get("reward.dedup.lookups").counter().count());
+	}
+
+	@Test
+	void testFalsePositiveRate() {
+		LocalDate today = LocalDate.now();
+		for (int i = 0; i < 100_000; i++) {
+			Dining dining = new Dining(USD.valueOf("1.00"), "1234123412341234", "1234567890", today, "remembered-" + i);
+			deduplicator.remember(dining.getIdempotencyKey(), today);
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < 10_000; i++) {
+			Dining dining = new Dining(USD.valueOf("1.00"), "1234123412341234", "1234567890", today, "new-" + i);
+			if (deduplicator.isDuplicate(dining.getIdempotencyKey(), today)) {
+				falsePositives++;
+			}
+		}
+		assertEquals(0, falsePositives);
+		// sized for 1% at 100,000 dinings per day
+		assertThat(meterRegistry.get("reward.dedup.false-positives").counter().count()).isLessThan(200);
+	}
+
+	private void insertReward(String confirmationNumber, Dining dining) {
+		jdbcTemplate.update("insert into T_REWARD (CONFIRMATION_NUMBER, REWARD_AMOUNT, REWARD_DATE, ACCOUNT_NUMBER, "
+						+ "DINING_MERCHANT_NUMBER, DINING_DATE, DINING_AMOUNT, IDEMPOTENCY_KEY) values (?, ?, ?, ?, ?, ?, ?, ?)",
+				confirmationNumber, new BigDecimal("8.00"), Date.valueOf(LocalDate.now()), "123456789",
+				dining.getMerchantNumber(), Date.valueOf(dining.getDate()), new BigDecimal("100.00"), dining.getIdempotencyKey());
+	}
+}
@@ -0,0 +1,114 @@
+package lol.maki.rewarddining.reward;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.money.MonetaryAmount;
+
+import am.ik.yavi.core.ConstraintViolationsException;
+import lol.maki.rewarddining.Benchmarks;
+import lol.maki.rewarddining.account.Account;
+import lol.maki.rewarddining.account.AccountContribution;
+import lol.maki.rewarddining.account.AccountContribution.Distribution;
+import lol.maki.rewarddining.account.Beneficiary;
+import lol.maki.rewarddining.account.Percentage;
+import lol.maki.rewarddining.restaurant.AlwaysAvailable;
+import lol.maki.rewarddining.restaurant.Dining;
+import lol.maki.rewarddining.restaurant.Restaurant;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Computes the benefit of a dining and distributes it to three beneficiaries with JMH, with the arithmetic in cents and
+ * basis points the reward network uses now, and with the <code>BigDecimal</code> arithmetic it replaces, and reports
+ * the rewards per second and the bytes allocated per reward of each. Run with <code>./mvnw test -Pbenchmark</code>;
+ * see {@link Benchmarks} for the results.
+ *
+ * JMH generates code that refers to the benchmark, so this class and its state must be public.
+ */
+@Tag("benchmark")
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RewardArithmeticBenchmark {
+
+	@Test
+	void benchmarkReward() {
+		final Map<String, RunResult> results = Benchmarks.run(RewardArithmeticBenchmark.class);
+		assertThat(Benchmarks.allocatedBytes(results.get("rewardCents")))
+				.isLessThan(Benchmarks.allocatedBytes(results.get("rewardBigDecimal")));
+	}
+
+	@State(Scope.Thread)
+	public static class Rewards {
+		Restaurant restaurant;
+
+		Dining dining;
+
+		Account account;
+
+		@Setup
+		public void setUp() {
+			restaurant = new Restaurant("1234567890", "Apple Bees");
+			restaurant.setBenefitPercentage(Percentage.valueOf("8%"));
+			restaurant.setBenefitAvailabilityPolicy(AlwaysAvailable.INSTANCE);
+			dining = Dining.createDining("100.07", "1234123412341234", "1234567890");
+			account = new Account(0L, "123456789", "Keith and Keri Donald");
+			account.addBeneficiary("Annabelle", Percentage.valueOf("33%"));
+			account.addBeneficiary("Corgan", Percentage.valueOf("33%"));
+			account.addBeneficiary("Ernst", Percentage.valueOf("34%"));
+		}
+	}
+
+	@Benchmark
+	public AccountContribution rewardCents(Rewards rewards) {
+		final MonetaryAmount benefit = rewards.restaurant.calculateBenefitFor(rewards.account, rewards.dining);
+		return rewards.account.makeContribution(benefit);
+	}
+
+	/**
+	 * Rewards the way the account and restaurant did before.
+	 */
+	@Benchmark
+	public AccountContribution rewardBigDecimal(Rewards rewards) {
+		final MonetaryAmount benefit = rewards.dining.getAmount()
+				.multiply(rewards.restaurant.getBenefitPercentage().asBigDecimal());
+		Percentage total = new Percentage(0);
+		for (Beneficiary b : rewards.account.getBeneficiaries()) {
+			try {
+				total = total.add(b.getAllocationPercentage());
+			}
+			catch (ConstraintViolationsException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		if (!total.equals(new Percentage(1))) {
+			throw new IllegalStateException("Invalid beneficiary allocations");
+		}
+		final Set<Distribution> distributions = new HashSet<>(rewards.account.getBeneficiaries().size());
+		for (Beneficiary beneficiary : rewards.account.getBeneficiaries()) {
+			final MonetaryAmount amount = benefit.multiply(beneficiary.getAllocationPercentage().asBigDecimal());
+			beneficiary.credit(amount);
+			distributions.add(new Distribution(beneficiary.getName(), amount, beneficiary.getAllocationPercentage(),
+					beneficiary.getSavings()));
+		}
+		return new AccountContribution(rewards.account.getNumber(), benefit, distributions);
+	}
+}
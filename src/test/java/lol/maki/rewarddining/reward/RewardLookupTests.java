@@ -0,0 +1,42 @@
+package lol.maki.rewarddining.reward;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lol.maki.rewarddining.account.USD;
+import lol.maki.rewarddining.restaurant.Dining;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RewardLookupTests {
+	@Test
+	void testCacheRecentLookups() {
+		StubRewardRepository rewardRepository = new StubRewardRepository();
+		RewardNetworkImpl rewardNetwork = new RewardNetworkImpl(new StubAccountRepository(), new StubRestaurantRepository(), rewardRepository);
+		RewardProperties properties = new RewardProperties();
+		properties.getLookup().setCacheSize(2);
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		RewardLookup lookup = new RewardLookup(rewardRepository, properties, meterRegistry);
+
+		String[] confirmationNumbers = new String[3];
+		for (int i = 0; i < confirmationNumbers.length; i++) {
+			confirmationNumbers[i] = rewardNetwork.rewardAccountFor(Dining.createDining(i + "00.00", "1234123412341234", "1234567890"))
+					.getConfirmationNumber();
+		}
+		Reward first = lookup.findByConfirmationNumber(confirmationNumbers[0]);
+		assertSame(first, lookup.findByConfirmationNumber(confirmationNumbers[0]));
+		assertEquals(USD.valueOf("8.00"), lookup.findByConfirmationNumber(confirmationNumbers[1]).amount());
+		// evicts the least recently used, the first one
+		lookup.findByConfirmationNumber(confirmationNumbers[2]);
+		lookup.findByConfirmationNumber(confirmationNumbers[0]);
+		assertThrows(EmptyResultDataAccessException.class, () -> lookup.findByConfirmationNumber("bogus"));
+
+		assertEquals(1, meterRegistry.get("reward.lookup.cache.hits").functionCounter().count());
+		assertEquals(5, meterRegistry.get("reward.lookup.cache.misses").functionCounter().count());
+		assertEquals(1.0 / 6, lookup.hitRate(), 0.0001);
+		assertEquals(2, meterRegistry.get("reward.lookup.cache.size").gauge().value());
+	}
+}
@@ -0,0 +1,110 @@
+package lol.maki.rewarddining.reward;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import lol.maki.rewarddining.Benchmarks;
+import lol.maki.rewarddining.account.USD;
+import lol.maki.rewarddining.restaurant.Dining;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Rewards dinings with JMH, with {@link RewardNetworkImpl} on the stub repositories of the unit tests, which measures
+ * the domain logic alone, both without metrics and with its metrics recorded in a Prometheus registry, and with the
+ * reward network of the application on its embedded database, which adds the repositories, transactions and all the
+ * decorators of the network. Run with
+ * <code>./mvnw test -Pbenchmark</code>; see {@link Benchmarks} for the results.
+ *
+ * JMH generates code that refers to the benchmark, so this class and its state must be public.
+ */
+@Tag("benchmark")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RewardNetworkBenchmark {
+
+	@Test
+	void benchmarkRewardNetwork() {
+		Benchmarks.run(RewardNetworkBenchmark.class);
+	}
+
+	@State(Scope.Thread)
+	public static class Stubs {
+		RewardNetwork rewardNetwork;
+
+		RewardNetwork instrumentedRewardNetwork;
+
+		Dining dining;
+
+		@Setup
+		public void setUp() {
+			rewardNetwork = new RewardNetworkImpl(new StubAccountRepository(), new StubRestaurantRepository(),
+					new StubRewardRepository());
+			instrumentedRewardNetwork = new RewardNetworkImpl(new StubAccountRepository(),
+					new StubRestaurantRepository(), new StubRewardRepository(), null, null,
+					new PrometheusMeterRegistry(PrometheusConfig.DEFAULT), null);
+			dining = Dining.createDining("100.00", "1234123412341234", "1234567890");
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Database {
+		ConfigurableApplicationContext context;
+
+		RewardNetwork rewardNetwork;
+
+		long transactionId;
+
+		@Setup
+		public void setUp() {
+			context = Benchmarks.startApplication();
+			rewardNetwork = context.getBean(RewardNetwork.class);
+		}
+
+		/**
+		 * Returns a dining that was not rewarded yet, as a dining rewarded again is rejected.
+		 */
+		Dining nextDining() {
+			return new Dining(USD.valueOf("100.00"), "1234123412341234", "1234567890", LocalDate.now(),
+					Long.toString(transactionId++));
+		}
+
+		@TearDown
+		public void tearDown() {
+			context.close();
+		}
+	}
+
+	@Benchmark
+	public RewardConfirmation rewardAccountForStubs(Stubs stubs) {
+		return stubs.rewardNetwork.rewardAccountFor(stubs.dining);
+	}
+
+	@Benchmark
+	public RewardConfirmation rewardAccountForStubsInstrumented(Stubs stubs) {
+		return stubs.instrumentedRewardNetwork.rewardAccountFor(stubs.dining);
+	}
+
+	@Benchmark
+	public RewardConfirmation rewardAccountForDatabase(Database database) {
+		return database.rewardNetwork.rewardAccountFor(database.nextDining());
+	}
+}
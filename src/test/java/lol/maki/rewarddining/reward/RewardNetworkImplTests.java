@@ -1,5 +1,10 @@
 package lol.maki.rewarddining.reward;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lol.maki.rewarddining.account.Account;
 import lol.maki.rewarddining.account.AccountContribution;
 import lol.maki.rewarddining.account.AccountRepository;
 import lol.maki.rewarddining.account.USD;
@@ -8,8 +13,13 @@ import lol.maki.rewarddining.restaurant.RestaurantRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import org.springframework.dao.EmptyResultDataAccessException;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Unit tests for the RewardNetworkImpl application logic. Configures the implementation with stub repositories
@@ -65,4 +75,88 @@ class RewardNetworkImplTests {
 		assertEquals(USD.valueOf("4.00"), contribution.getDistribution("Annabelle").getAmount());
 		assertEquals(USD.valueOf("4.00"), contribution.getDistribution("Corgan").getAmount());
 	}
-}
\ No newline at end of file
+
+	@Test
+	void testRewardForDinings() {
+		List<Dining> dinings = List.of(
+				Dining.createDining("100.00", "1234123412341234", "1234567890"),
+				Dining.createDining("100.00", "bogus", "1234567890"),
+				Dining.createDining("50.00", "1234123412341234", "1234567890"),
+				Dining.createDining("100.00", "1234123412341234", "bogus"));
+
+		List<RewardResult> results = rewardNetwork.rewardAccountsFor(dinings);
+
+		// one result per dining, in the order of the dinings
+		assertEquals(4, results.size());
+		for (int i = 0; i < dinings.size(); i++) {
+			assertEquals(dinings.get(i), results.get(i).getDining());
+		}
+
+		// unknown credit cards and merchants fail only their own dining
+		assertTrue(results.get(0).isConfirmed());
+		assertFalse(results.get(1).isConfirmed());
+		assertNotNull(results.get(1).getError());
+		assertTrue(results.get(2).isConfirmed());
+		assertFalse(results.get(3).isConfirmed());
+		assertNotNull(results.get(3).getError());
+
+		// both dinings on the same account accumulate: 4.00 + 2.00 per beneficiary
+		AccountContribution contribution = results.get(2).getConfirmation().getAccountContribution();
+		assertEquals(USD.valueOf("4.00"), contribution.getAmount());
+		assertEquals(USD.valueOf("6.00"), contribution.getDistribution("Annabelle").getTotalSavings());
+		assertEquals(USD.valueOf("6.00"), contribution.getDistribution("Corgan").getTotalSavings());
+	}
+
+	@Test
+	void testRewardForDiningsAlreadyRecorded() {
+		Dining recorded = Dining.createDining("100.00", "1234123412341234", "1234567890");
+		Dining fresh = Dining.createDining("50.00", "1234123412341234", "1234567890");
+		// records all dinings but the first, as if a concurrent transaction had recorded that one
+		StubAccountRepository accountRepo = new StubAccountRepository();
+		rewardNetwork = new RewardNetworkImpl(accountRepo, new StubRestaurantRepository(),
+				new StubRewardRepository() {
+					@Override
+					public List<RewardConfirmation> confirmRewards(List<AccountContribution> contributions, List<Dining> dinings) {
+						List<RewardConfirmation> confirmations = new ArrayList<>(super.confirmRewards(contributions, dinings));
+						confirmations.set(0, null);
+						return confirmations;
+					}
+				});
+
+		List<RewardResult> results = rewardNetwork.rewardAccountsFor(List.of(recorded, fresh));
+
+		assertFalse(results.get(0).isConfirmed());
+		assertEquals("Already rewarded", results.get(0).getError());
+		assertTrue(results.get(1).isConfirmed());
+		// the savings of the recorded dining are taken back
+		Account account = accountRepo.findByCreditCard("1234123412341234");
+		assertEquals(USD.valueOf("2.00"), account.getBeneficiary("Annabelle").getSavings());
+		assertEquals(USD.valueOf("2.00"), account.getBeneficiary("Corgan").getSavings());
+	}
+
+	@Test
+	void testRecordsStagesAndOutcomes() {
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		rewardNetwork = new RewardNetworkImpl(new StubAccountRepository(), new StubRestaurantRepository(),
+				new StubRewardRepository(), null, null, meterRegistry, null);
+
+		rewardNetwork.rewardAccountFor(Dining.createDining("100.00", "1234123412341234", "1234567890"));
+		assertThrows(EmptyResultDataAccessException.class,
+				() -> rewardNetwork.rewardAccountFor(Dining.createDining("100.00", "bogus", "1234567890")));
+		assertThrows(EmptyResultDataAccessException.class,
+				() -> rewardNetwork.rewardAccountFor(Dining.createDining("100.00", "1234123412341234", "bogus")));
+		rewardNetwork.rewardAccountsFor(List.of(
+				Dining.createDining("50.00", "1234123412341234", "1234567890"),
+				Dining.createDining("50.00", "bogus", "1234567890")));
+
+		// the dining at an unknown merchant passed the account stage
+		assertEquals(2, meterRegistry.get("reward.stage").tag("stage", "account").timer().count());
+		for (String stage : List.of("restaurant", "benefit", "beneficiaries", "confirmation")) {
+			assertEquals(1, meterRegistry.get("reward.stage").tag("stage", stage).timer().count(), stage);
+		}
+		assertEquals(2, meterRegistry.get("reward.outcomes").tag("outcome", "rewarded").counter().count());
+		assertEquals(2, meterRegistry.get("reward.outcomes").tag("outcome", "unknown-card").counter().count());
+		assertEquals(1, meterRegistry.get("reward.outcomes").tag("outcome", "unknown-merchant").counter().count());
+		assertEquals(0, meterRegistry.get("reward.outcomes").tag("outcome", "zero-benefit").counter().count());
+	}
+}
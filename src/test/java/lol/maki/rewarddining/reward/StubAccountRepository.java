@@ -1,11 +1,15 @@
 package lol.maki.rewarddining.reward;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.money.MonetaryAmount;
+
 import lol.maki.rewarddining.account.Account;
 import lol.maki.rewarddining.account.AccountRepository;
+import lol.maki.rewarddining.account.AccountSummary;
 import lol.maki.rewarddining.account.Percentage;
 
 import org.springframework.dao.EmptyResultDataAccessException;
@@ -23,7 +27,7 @@ public class StubAccountRepository implements AccountRepository {
 	private Map<String, Account> accountsByCreditCard = new HashMap<String, Account>();
 
 	public StubAccountRepository() {
-		Account account = new Account(null, "123456789", "Keith and Keri Donald");
+		Account account = new Account(0L, "123456789", "Keith and Keri Donald");
 		account.addBeneficiary("Annabelle", Percentage.valueOf("50%"));
 		account.addBeneficiary("Corgan", Percentage.valueOf("50%"));
 		accountsByCreditCard.put("1234123412341234", account);
@@ -34,11 +38,26 @@ public class StubAccountRepository implements AccountRepository {
 		return null;
 	}
 
+	@Override
+	public List<Account> findAll(Long afterId, int limit) {
+		return null;
+	}
+
+	@Override
+	public List<AccountSummary> findSummaries(Long afterId, int limit) {
+		return null;
+	}
+
 	@Override
 	public Account findById(Long id) {
 		return null;
 	}
 
+	@Override
+	public List<Account> findAllById(Collection<Long> ids) {
+		return null;
+	}
+
 	public Account findByCreditCard(String creditCardNumber) {
 		Account account = accountsByCreditCard.get(creditCardNumber);
 		if (account == null) {
@@ -47,6 +66,30 @@ public class StubAccountRepository implements AccountRepository {
 		return account;
 	}
 
+	@Override
+	public Map<String, Account> findByCreditCards(Collection<String> creditCardNumbers) {
+		Map<String, Account> accounts = new HashMap<>();
+		for (String creditCardNumber : creditCardNumbers) {
+			Account account = accountsByCreditCard.get(creditCardNumber);
+			if (account != null) {
+				accounts.put(creditCardNumber, account);
+			}
+		}
+		return accounts;
+	}
+
+	@Override
+	public Map<String, Long> findAccountIdsByCreditCards(Collection<String> creditCardNumbers) {
+		Map<String, Long> accountIds = new HashMap<>();
+		for (String creditCardNumber : creditCardNumbers) {
+			Account account = accountsByCreditCard.get(creditCardNumber);
+			if (account != null) {
+				accountIds.put(creditCardNumber, account.getId());
+			}
+		}
+		return accountIds;
+	}
+
 	@Override
 	public Account insert(Account account) {
 		return null;
@@ -60,4 +103,14 @@ public class StubAccountRepository implements AccountRepository {
 	public void updateBeneficiaries(Account account) {
 		// nothing to do, everything is in memory
 	}
+
+	@Override
+	public void updateBeneficiarySavings(Collection<Account> accounts) {
+		// nothing to do, everything is in memory
+	}
+
+	@Override
+	public void addBeneficiarySavings(Map<Long, Map<String, MonetaryAmount>> savingsByAccountId) {
+		// nothing to do, everything is in memory
+	}
 }
\ No newline at end of file
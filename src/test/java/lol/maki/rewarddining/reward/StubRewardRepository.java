@@ -1,20 +1,55 @@
 package lol.maki.rewarddining.reward;
 
-import java.util.Random;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import lol.maki.rewarddining.account.AccountContribution;
 import lol.maki.rewarddining.restaurant.Dining;
 
+import org.springframework.dao.EmptyResultDataAccessException;
+
 /**
  * A dummy reward repository implementation.
  */
 public class StubRewardRepository implements RewardRepository {
 
+	private final Map<String, Reward> rewards = new ConcurrentHashMap<>();
+
 	public RewardConfirmation confirmReward(AccountContribution contribution, Dining dining) {
-		return new RewardConfirmation(confirmationNumber(), contribution);
+		String confirmationNumber = UUID.randomUUID().toString();
+		rewards.put(confirmationNumber, new Reward(confirmationNumber, contribution.getAmount(), LocalDate.now(),
+				contribution.getAccountNumber(), dining.getMerchantNumber(), dining.getAmount(), dining.getDate()));
+		return new RewardConfirmation(confirmationNumber, contribution);
+	}
+
+	public List<RewardConfirmation> confirmRewards(List<AccountContribution> contributions, List<Dining> dinings) {
+		List<RewardConfirmation> confirmations = new ArrayList<>();
+		for (int i = 0; i < contributions.size(); i++) {
+			confirmations.add(confirmReward(contributions.get(i), dinings.get(i)));
+		}
+		return confirmations;
+	}
+
+	public Reward findByConfirmationNumber(String confirmationNumber) {
+		Reward reward = rewards.get(confirmationNumber);
+		if (reward == null) {
+			throw new EmptyResultDataAccessException(1);
+		}
+		return reward;
 	}
 
-	private String confirmationNumber() {
-		return new Random().toString();
+	public List<Reward> findByAccountNumber(String accountNumber, RewardCursor after, int limit) {
+		return rewards.values().stream()
+				.filter(r -> r.accountNumber().equals(accountNumber))
+				.sorted(Comparator.comparing(Reward::date).thenComparing(Reward::confirmationNumber).reversed())
+				.filter(r -> after == null || r.date().isBefore(after.date())
+						|| (r.date().equals(after.date()) && r.confirmationNumber().compareTo(after.confirmationNumber()) < 0))
+				.limit(limit)
+				.toList();
 	}
-}
\ No newline at end of file
+}
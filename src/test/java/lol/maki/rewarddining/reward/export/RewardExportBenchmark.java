@@ -0,0 +1,101 @@
+package lol.maki.rewarddining.reward.export;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lol.maki.rewarddining.reward.RewardProperties;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Exports millions of synthetic rewards and reports rows per second and the most heap the export held on to, beyond
+ * what the in-memory database already holds. Run with <code>./mvnw test -Pbenchmark</code>; the number of rewards can
+ * be changed with <code>-Dbenchmark.rewards=...</code>.
+ */
+@Tag("benchmark")
+@JdbcTest
+// a rollback of millions of rows costs more than the benchmark itself, so the database is thrown away instead
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext
+class RewardExportBenchmark {
+	static final int INSERT_CHUNK_SIZE = 100_000;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Test
+	void benchmarkExport() throws Exception {
+		final long rewards = Long.getLong("benchmark.rewards", 2_000_000);
+		for (long from = 1; from <= rewards; from += INSERT_CHUNK_SIZE) {
+			jdbcTemplate.update("""
+					insert into t_reward (confirmation_number, reward_amount, reward_date, account_number, dining_amount,
+					                      dining_merchant_number, dining_date, idempotency_key)
+					select 'X' || lpad(x, 15, '0'), 8.00, dateadd('DAY', -mod(x, 3650), current_date), lpad(mod(x, 1000), 9, '0'),
+					       100.00, '1234567890', dateadd('DAY', -mod(x, 3650), current_date), lpad(x, 64, '0')
+					from system_range(?, ?)""", from, Math.min(from + INSERT_CHUNK_SIZE - 1, rewards));
+		}
+		final RewardExporter exporter = new RewardExporter(jdbcTemplate, new ObjectMapper(), new RewardProperties(),
+				new SimpleMeterRegistry());
+
+		System.out.printf("%-10s %12s %12s %18s%n", "format", "rows", "rows/s", "live heap (MB)");
+		for (RewardExportFormat format : RewardExportFormat.values()) {
+			for (boolean gzip : new boolean[] { false, true }) {
+				final RewardExportResult result = exporter.export(RewardExportFilter.all(), format, gzip,
+						OutputStream.nullOutputStream());
+				assertEquals(rewards, result.rows());
+				// again, collecting garbage now and then to see how much of the heap the export really holds on to
+				System.gc();
+				final HeapSamplingOutputStream sampling = new HeapSamplingOutputStream(usedHeap());
+				exporter.export(RewardExportFilter.all(), format, gzip, sampling);
+				System.out.printf("%-10s %,12d %,12d %,18d%n", format.getExtension() + (gzip ? ".gz" : ""), result.rows(),
+						Math.round(result.rowsPerSecond()), sampling.maxGrowth / (1024 * 1024));
+			}
+		}
+	}
+
+	private static long usedHeap() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	/**
+	 * Discards what is written, and measures the heap in use after a garbage collection every few megabytes.
+	 */
+	private static class HeapSamplingOutputStream extends OutputStream {
+		static final long SAMPLE_INTERVAL = 16 * 1024 * 1024;
+
+		private final long baseline;
+
+		private long written;
+
+		private long maxGrowth;
+
+		HeapSamplingOutputStream(long baseline) {
+			this.baseline = baseline;
+		}
+
+		@Override
+		public void write(int b) {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			if ((written + len) / SAMPLE_INTERVAL != written / SAMPLE_INTERVAL) {
+				System.gc();
+				maxGrowth = Math.max(maxGrowth, usedHeap() - baseline);
+			}
+			written += len;
+		}
+	}
+}
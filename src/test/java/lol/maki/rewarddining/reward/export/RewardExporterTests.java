@@ -0,0 +1,83 @@
+package lol.maki.rewarddining.reward.export;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lol.maki.rewarddining.reward.RewardProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@JdbcTest
+class RewardExporterTests {
+	static final LocalDate FROM = LocalDate.of(2001, 1, 1);
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	RewardExporter exporter;
+
+	@BeforeEach
+	void setUp() {
+		// 2,500 rewards over 5 days and 2 merchants, many times the fetch size
+		jdbcTemplate.update("""
+				insert into T_REWARD (CONFIRMATION_NUMBER, REWARD_AMOUNT, REWARD_DATE, ACCOUNT_NUMBER, DINING_AMOUNT,
+				                      DINING_MERCHANT_NUMBER, DINING_DATE)
+				select 'E' || x, 8.00, dateadd('DAY', mod(x, 5), ?), '123456001', 100.00, '123456789' || mod(x, 2), ?
+				from system_range(1, 2500)""", FROM, FROM);
+		RewardProperties properties = new RewardProperties();
+		properties.getExport().setFetchSize(100);
+		exporter = new RewardExporter(jdbcTemplate, new ObjectMapper(), properties, new SimpleMeterRegistry());
+	}
+
+	@Test
+	void testExportCsv() throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		RewardExportResult result = exporter.export(new RewardExportFilter(FROM, FROM.plusDays(1), "1234567890"),
+				RewardExportFormat.CSV, false, output);
+
+		assertEquals(500, result.rows());
+		assertThat(result.rowsPerSecond()).isPositive();
+		List<String> lines = output.toString(StandardCharsets.UTF_8).lines().toList();
+		assertEquals(501, lines.size());
+		assertEquals(RewardExporter.CSV_HEADER, lines.get(0));
+		assertThat(lines.get(1)).matches("E\\d+,8\\.00,2001-01-0[12],123456001,1234567890,100(\\.0+)?,2001-01-01");
+	}
+
+	@Test
+	void testExportGzippedJsonLines() throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		RewardExportResult result = exporter.export(new RewardExportFilter(FROM, null, null), RewardExportFormat.JSON_LINES,
+				true, output);
+
+		assertThat(result.rows()).isGreaterThanOrEqualTo(2500);
+		byte[] json = new GZIPInputStream(new ByteArrayInputStream(output.toByteArray())).readAllBytes();
+		List<String> lines = new String(json, StandardCharsets.UTF_8).lines().toList();
+		assertEquals(result.rows(), lines.size());
+		JsonNode first = new ObjectMapper().readTree(lines.get(0));
+		assertThat(first.get("confirmationNumber").asText()).isNotEmpty();
+		assertThat(first.get("rewardAmount").isNumber()).isTrue();
+	}
+
+	@Test
+	void testExportNothing() throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		RewardExportResult result = exporter.export(new RewardExportFilter(null, FROM.minusDays(1), null),
+				RewardExportFormat.JSON_LINES, false, output);
+		assertEquals(0, result.rows());
+		assertEquals(0, output.size());
+	}
+}
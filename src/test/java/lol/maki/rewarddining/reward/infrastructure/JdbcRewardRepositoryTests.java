@@ -3,27 +3,40 @@ package lol.maki.rewarddining.reward.infrastructure;
 import java.math.BigDecimal;
 import java.sql.Date;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import lol.maki.rewarddining.account.Account;
 import lol.maki.rewarddining.account.AccountContribution;
 import lol.maki.rewarddining.account.Percentage;
 import lol.maki.rewarddining.account.USD;
+import lol.maki.rewarddining.config.RewardConfig;
 import lol.maki.rewarddining.restaurant.Dining;
+import lol.maki.rewarddining.reward.DuplicateDiningException;
+import lol.maki.rewarddining.reward.Reward;
 import lol.maki.rewarddining.reward.RewardConfirmation;
+import lol.maki.rewarddining.reward.RewardCursor;
+import lol.maki.rewarddining.reward.rollup.RewardRollups;
 import org.javamoney.moneta.Money;
 import org.junit.jupiter.api.Test;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @JdbcTest(properties = { "logging.level.sql=TRACE" })
-@Import(JdbcRewardRepository.class)
+@Import({ JdbcRewardRepository.class, RewardRollups.class, RewardConfig.class })
 class JdbcRewardRepositoryTests {
 	@Autowired
 	JdbcRewardRepository repository;
@@ -47,6 +60,97 @@ class JdbcRewardRepositoryTests {
 		verifyRewardInserted(confirmation, dining);
 	}
 
+	@Test
+	public void testFindByConfirmationNumber() {
+		Dining dining = Dining.createDining("100.00", "1234123412341234", "0123456789", 5, 1, 2022);
+		Account account = new Account(0L, "1", "Keith and Keri Donald");
+		account.addBeneficiary("Annabelle", Percentage.valueOf("100%"));
+		RewardConfirmation confirmation = repository.confirmReward(account.makeContribution(USD.valueOf("8.00")), dining);
+
+		Reward reward = repository.findByConfirmationNumber(confirmation.getConfirmationNumber());
+		assertEquals(confirmation.getConfirmationNumber(), reward.confirmationNumber());
+		assertEquals(USD.valueOf("8.00"), reward.amount());
+		assertEquals("1", reward.accountNumber());
+		assertEquals("0123456789", reward.merchantNumber());
+		assertEquals(USD.valueOf("100.00"), reward.diningAmount());
+		assertEquals(LocalDate.of(2022, 5, 1), reward.diningDate());
+		assertThrows(EmptyResultDataAccessException.class, () -> repository.findByConfirmationNumber("bogus"));
+	}
+
+	@Test
+	public void testFindByAccountNumber() {
+		Account account = new Account(0L, "999999999", "Keith and Keri Donald");
+		account.addBeneficiary("Annabelle", Percentage.valueOf("100%"));
+		for (int i = 0; i < 5; i++) {
+			Dining dining = Dining.createDining(i + "1.00", "1234123412341234", "0123456789");
+			repository.confirmReward(account.makeContribution(USD.valueOf("1.00")), dining);
+		}
+		// two rewards on an earlier date
+		jdbcTemplate.update("update T_REWARD set REWARD_DATE = ? where ACCOUNT_NUMBER = '999999999' and DINING_AMOUNT < 20",
+				Date.valueOf(LocalDate.now().minusDays(1)));
+
+		List<Reward> all = repository.findByAccountNumber("999999999", null, 10);
+		assertEquals(5, all.size());
+		assertEquals(LocalDate.now(), all.get(0).date());
+		assertEquals(LocalDate.now().minusDays(1), all.get(4).date());
+
+		List<Reward> paged = new ArrayList<>(repository.findByAccountNumber("999999999", null, 2));
+		while (paged.size() < 5) {
+			List<Reward> page = repository.findByAccountNumber("999999999", RewardCursor.of(paged.get(paged.size() - 1)), 2);
+			assertThat(page).isNotEmpty();
+			paged.addAll(page);
+		}
+		assertEquals(all, paged);
+		assertThat(repository.findByAccountNumber("999999999", RewardCursor.of(all.get(4)), 2)).isEmpty();
+	}
+
+	@Test
+	public void testCreateRewards() {
+		Dining dining1 = Dining.createDining("100.00", "1234123412341234", "0123456789");
+		Dining dining2 = Dining.createDining("50.00", "1234123412341234", "0123456789");
+
+		Account account = new Account(0L, "1", "Keith and Keri Donald");
+		account.addBeneficiary("Annabelle", Percentage.valueOf("50%"));
+		account.addBeneficiary("Corgan", Percentage.valueOf("50%"));
+
+		AccountContribution contribution1 = account.makeContribution(USD.valueOf("8.00"));
+		AccountContribution contribution2 = account.makeContribution(USD.valueOf("4.00"));
+		List<RewardConfirmation> confirmations = repository.confirmRewards(List.of(contribution1, contribution2), List.of(dining1, dining2));
+		assertEquals(2, confirmations.size());
+		assertEquals(contribution1, confirmations.get(0).getAccountContribution(), "wrong contribution object");
+		assertEquals(contribution2, confirmations.get(1).getAccountContribution(), "wrong contribution object");
+		Set<String> confirmationNumbers = new HashSet<>();
+		confirmations.forEach(c -> confirmationNumbers.add(c.getConfirmationNumber()));
+		assertEquals(2, confirmationNumbers.size(), "confirmation numbers should be unique");
+
+		assertEquals(2, getRewardCount());
+		String sql = "select * from t_reward where confirmation_number = ?";
+		verifyInsertedValues(confirmations.get(0), dining1, jdbcTemplate.queryForMap(sql, confirmations.get(0).getConfirmationNumber()));
+		verifyInsertedValues(confirmations.get(1), dining2, jdbcTemplate.queryForMap(sql, confirmations.get(1).getConfirmationNumber()));
+	}
+
+	@Test
+	public void testCreateRewardsSkipsRecordedDinings() {
+		Dining recorded = Dining.createDining("100.00", "1234123412341234", "0123456789");
+		Dining fresh = Dining.createDining("50.00", "1234123412341234", "0123456789");
+
+		Account account = new Account(0L, "1", "Keith and Keri Donald");
+		account.addBeneficiary("Annabelle", Percentage.valueOf("100%"));
+
+		AccountContribution contribution1 = account.makeContribution(USD.valueOf("8.00"));
+		AccountContribution contribution2 = account.makeContribution(USD.valueOf("4.00"));
+		repository.confirmReward(contribution1, recorded);
+
+		// the recorded dining fails alone instead of failing the batch
+		List<RewardConfirmation> confirmations = repository.confirmRewards(List.of(contribution1, contribution2), List.of(recorded, fresh));
+		assertEquals(2, confirmations.size());
+		assertNull(confirmations.get(0));
+		assertEquals(contribution2, confirmations.get(1).getAccountContribution(), "wrong contribution object");
+		assertEquals(2, getRewardCount());
+		// last, as it marks the transaction rollback-only
+		assertThrows(DuplicateDiningException.class, () -> repository.confirmReward(contribution1, recorded));
+	}
+
 	private void verifyRewardInserted(RewardConfirmation confirmation, Dining dining) {
 		assertEquals(1, getRewardCount());
 		String sql = "select * from t_reward where confirmation_number = ?";
@@ -0,0 +1,114 @@
+package lol.maki.rewarddining.reward.infrastructure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import lol.maki.rewarddining.account.USD;
+import lol.maki.rewarddining.config.RewardConfig;
+import lol.maki.rewarddining.reward.Reward;
+import lol.maki.rewarddining.reward.RewardCursor;
+import lol.maki.rewarddining.reward.rollup.RewardRollups;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the latency of a page of reward history found by keyset pagination with the same page found by OFFSET,
+ * over millions of synthetic rewards. Run with <code>./mvnw test -Pbenchmark</code>; the number of rewards can be
+ * changed with <code>-Dbenchmark.rewards=...</code>.
+ */
+@Tag("benchmark")
+@JdbcTest
+@Import({ JdbcRewardRepository.class, RewardRollups.class, RewardConfig.class })
+// a rollback of millions of rows costs more than the benchmark itself, so the database is thrown away instead
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext
+class RewardHistoryPaginationBenchmark {
+	static final int ACCOUNTS = 100;
+
+	static final int PAGE_SIZE = 20;
+
+	static final int REPEATS = 25;
+
+	static final int INSERT_CHUNK_SIZE = 100_000;
+
+	@Autowired
+	JdbcRewardRepository repository;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Test
+	void benchmarkPageLatency() {
+		final long rewards = Long.getLong("benchmark.rewards", 2_000_000);
+		final long start = System.nanoTime();
+		// in chunks, as one transaction of millions of rows runs out of memory; every reward has an idempotency key, as
+		// the unique index is slow to check for many nulls
+		for (long from = 1; from <= rewards; from += INSERT_CHUNK_SIZE) {
+			jdbcTemplate.update("""
+					insert into t_reward (confirmation_number, reward_amount, reward_date, account_number, dining_amount,
+					                      dining_merchant_number, dining_date, idempotency_key)
+					select 'B' || lpad(x, 15, '0'), 8.00, dateadd('DAY', -mod(x, 3650), current_date), 'B' || lpad(mod(x, ?), 8, '0'),
+					       100.00, '1234567890', dateadd('DAY', -mod(x, 3650), current_date), lpad(x, 64, '0')
+					from system_range(?, ?)""", ACCOUNTS, from, Math.min(from + INSERT_CHUNK_SIZE - 1, rewards));
+		}
+		System.out.printf("Inserted %,d rewards for %d accounts in %,d ms%n", rewards, ACCOUNTS,
+				(System.nanoTime() - start) / 1_000_000);
+
+		final String accountNumber = "B00000042";
+		final int pages = (int) (rewards / ACCOUNTS / PAGE_SIZE);
+		final int[] depths = IntStream.of(1, 10, 100, 500).filter(depth -> depth <= pages).toArray();
+		// the cursor ending the page before each depth, found by walking the pages
+		final List<RewardCursor> cursors = new ArrayList<>();
+		RewardCursor cursor = null;
+		for (int page = 1; page <= depths[depths.length - 1]; page++) {
+			cursors.add(cursor);
+			final List<Reward> rewardsOfPage = repository.findByAccountNumber(accountNumber, cursor, PAGE_SIZE);
+			cursor = RewardCursor.of(rewardsOfPage.get(rewardsOfPage.size() - 1));
+		}
+
+		System.out.printf("%8s %14s %14s%n", "page", "keyset (us)", "offset (us)");
+		for (int depth : depths) {
+			final RewardCursor after = cursors.get(depth - 1);
+			final int offset = (depth - 1) * PAGE_SIZE;
+			assertEquals(findByOffset(accountNumber, offset), repository.findByAccountNumber(accountNumber, after, PAGE_SIZE));
+			final long keyset = median(() -> repository.findByAccountNumber(accountNumber, after, PAGE_SIZE));
+			final long offsetNanos = median(() -> findByOffset(accountNumber, offset));
+			System.out.printf("%8d %,14d %,14d%n", depth, keyset / 1_000, offsetNanos / 1_000);
+		}
+	}
+
+	private List<Reward> findByOffset(String accountNumber, int offset) {
+		return jdbcTemplate.query("""
+				select confirmation_number, reward_amount, reward_date, account_number, dining_merchant_number, dining_amount, dining_date
+				from t_reward
+				where account_number = ?
+				order by account_number desc, reward_date desc, confirmation_number desc
+				limit ? offset ?""", (rs, rowNum) -> new Reward(rs.getString(1),
+				USD.valueOf(rs.getString(2)), rs.getDate(3).toLocalDate(), rs.getString(4),
+				rs.getString(5), USD.valueOf(rs.getString(6)), rs.getDate(7).toLocalDate()),
+				accountNumber, PAGE_SIZE, offset);
+	}
+
+	private static long median(Runnable query) {
+		final long[] nanos = new long[REPEATS];
+		for (int i = 0; i < REPEATS; i++) {
+			final long start = System.nanoTime();
+			query.run();
+			nanos[i] = System.nanoTime() - start;
+		}
+		Arrays.sort(nanos);
+		return nanos[REPEATS / 2];
+	}
+}
@@ -0,0 +1,141 @@
+package lol.maki.rewarddining.reward.infrastructure;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakeConfirmationNumberGeneratorTests {
+
+	@Test
+	void testUniqueAcrossThreadsAndNodes() throws Exception {
+		int nodes = 4;
+		int threadsPerNode = 4;
+		int idsPerThread = 250_000;
+		ExecutorService executor = Executors.newFixedThreadPool(nodes * threadsPerNode);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<long[]>> futures = new ArrayList<>();
+			for (int node = 0; node < nodes; node++) {
+				SnowflakeConfirmationNumberGenerator generator = new SnowflakeConfirmationNumberGenerator(node);
+				for (int t = 0; t < threadsPerNode; t++) {
+					futures.add(executor.submit(() -> {
+						start.await();
+						long[] ids = new long[idsPerThread];
+						for (int i = 0; i < idsPerThread; i++) {
+							ids[i] = generator.nextId();
+							// ids of one node never go backwards
+							assertTrue(i == 0 || ids[i] > ids[i - 1]);
+						}
+						return ids;
+					}));
+				}
+			}
+			start.countDown();
+			long[] all = new long[nodes * threadsPerNode * idsPerThread];
+			int offset = 0;
+			for (Future<long[]> future : futures) {
+				long[] ids = future.get();
+				System.arraycopy(ids, 0, all, offset, ids.length);
+				offset += ids.length;
+			}
+			Arrays.sort(all);
+			for (int i = 1; i < all.length; i++) {
+				if (all[i] == all[i - 1]) {
+					throw new AssertionError("duplicate id " + all[i]);
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void testCounterOverflowAndClockGoingBackwards() {
+		// 10,000 reads per millisecond, so the counter runs out before the clock moves on
+		MutableClock clock = new MutableClock(SnowflakeConfirmationNumberGenerator.EPOCH.plusSeconds(60), Duration.ofNanos(100));
+		SnowflakeConfirmationNumberGenerator generator = new SnowflakeConfirmationNumberGenerator(1, clock);
+		long last = -1;
+		for (int i = 0; i < 10_000; i++) {
+			long id = generator.nextId();
+			assertThat(id).isGreaterThan(last);
+			// waits instead of running ahead of the clock
+			assertThat(timestamp(id)).isLessThanOrEqualTo(clock.millis() - SnowflakeConfirmationNumberGenerator.EPOCH.toEpochMilli());
+			last = id;
+		}
+
+		// a small step back is waited out
+		clock.instant = clock.instant.minusMillis(5);
+		assertThat(generator.nextId()).isGreaterThan(last);
+
+		clock.instant = clock.instant.minusSeconds(1);
+		assertThrows(IllegalStateException.class, generator::nextId);
+	}
+
+	@Test
+	void testFormat() {
+		String confirmationNumber = new SnowflakeConfirmationNumberGenerator(1023).nextConfirmationNumber();
+		assertEquals(19, confirmationNumber.length());
+		assertThat(confirmationNumber).containsOnlyDigits();
+		assertThat(SnowflakeConfirmationNumberGenerator.format(42L)).isEqualTo("0000000000000000042");
+		// zero-padding keeps the string order equal to the numeric order
+		assertThat(SnowflakeConfirmationNumberGenerator.format(999L)).isLessThan(SnowflakeConfirmationNumberGenerator.format(1000L));
+	}
+
+	@Test
+	void testInvalidNodeId() {
+		assertThrows(IllegalArgumentException.class, () -> new SnowflakeConfirmationNumberGenerator(-1));
+		assertThrows(IllegalArgumentException.class, () -> new SnowflakeConfirmationNumberGenerator(1024));
+	}
+
+	private static long timestamp(long id) {
+		return id >>> (SnowflakeConfirmationNumberGenerator.NODE_ID_BITS + SnowflakeConfirmationNumberGenerator.COUNTER_BITS);
+	}
+
+	/**
+	 * A clock that moves on by a fixed tick every time it is read.
+	 */
+	static class MutableClock extends Clock {
+		Instant instant;
+
+		final Duration tick;
+
+		MutableClock(Instant instant, Duration tick) {
+			this.instant = instant;
+			this.tick = tick;
+		}
+
+		@Override
+		public ZoneOffset getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+			final Instant now = instant;
+			instant = instant.plus(tick);
+			return now;
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package lol.maki.rewarddining.reward.journal;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lol.maki.rewarddining.account.Account;
+import lol.maki.rewarddining.account.AccountContribution;
+import lol.maki.rewarddining.account.Percentage;
+import lol.maki.rewarddining.account.USD;
+import lol.maki.rewarddining.restaurant.Dining;
+import lol.maki.rewarddining.reward.DiningDeduplicator;
+import lol.maki.rewarddining.reward.DuplicateDiningException;
+import lol.maki.rewarddining.reward.RewardConfirmation;
+import lol.maki.rewarddining.reward.RewardProperties;
+import lol.maki.rewarddining.reward.infrastructure.JdbcRewardRepository;
+import lol.maki.rewarddining.reward.infrastructure.SnowflakeConfirmationNumberGenerator;
+import lol.maki.rewarddining.reward.rollup.DailyRewardTotal;
+import lol.maki.rewarddining.reward.rollup.RewardRollups;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@JdbcTest
+// the drainer commits its own transactions
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RewardJournalDrainerTests {
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void testDrainAndReplay() throws Exception {
+		RewardJournal journal = new RewardJournal(dir, Long.MAX_VALUE, 1000, new SimpleMeterRegistry());
+		SnowflakeConfirmationNumberGenerator generator = new SnowflakeConfirmationNumberGenerator(1);
+		DiningDeduplicator deduplicator = deduplicator();
+		JournalingRewardRepository repository = new JournalingRewardRepository(journal, generator,
+				new JdbcRewardRepository(jdbcTemplate, generator, rewardRollups()), deduplicator);
+		RewardJournalDrainer drainer = drainer(journal, deduplicator);
+
+		Account account = new Account(0L, "1", "Keith and Keri Donald");
+		account.addBeneficiary("Annabelle", Percentage.valueOf("100%"));
+		Dining dining = new Dining(USD.valueOf("100.00"), "1234123412341234", "1234567890", LocalDate.of(2022, 5, 1));
+		AccountContribution contribution = account.makeContribution(USD.valueOf("8.00"));
+		RewardConfirmation single = repository.confirmReward(contribution, dining);
+		Dining resent = new Dining(USD.valueOf("100.00"), "1234123412341234", "1234567890", LocalDate.of(2022, 5, 1), "txn-1");
+		List<RewardConfirmation> batch = repository.confirmRewards(List.of(contribution, contribution), List.of(resent, resent));
+		// acknowledged but not loaded yet, and the resent dining is journaled once
+		assertEquals(0, countRewards(single.getConfirmationNumber()));
+		assertNull(batch.get(1));
+		assertThat(deduplicator.isDuplicate(resent.getIdempotencyKey(), resent.getDate())).isTrue();
+		assertThrows(DuplicateDiningException.class, () -> repository.confirmReward(contribution, dining));
+
+		long rolledUpBefore = countRolledUpRewards("1");
+		assertEquals(2, drainer.drain());
+		assertEquals(rolledUpBefore + 2, countRolledUpRewards("1"));
+		assertEquals(0, drainer.drain());
+		assertEquals(1, countRewards(single.getConfirmationNumber()));
+		assertEquals(1, countRewards(batch.get(0).getConfirmationNumber()));
+		// loaded, so now found in T_REWARD
+		assertThat(deduplicator.isDuplicate(resent.getIdempotencyKey(), resent.getDate())).isTrue();
+		assertEquals("1", repository.findByConfirmationNumber(single.getConfirmationNumber()).accountNumber());
+		assertEquals(new BigDecimal("8.00"), jdbcTemplate.queryForObject(
+				"select REWARD_AMOUNT from T_REWARD where CONFIRMATION_NUMBER = ?", BigDecimal.class,
+				single.getConfirmationNumber()));
+		drainer.destroy();
+		journal.destroy();
+
+		// lose the checkpoint and tear the last entry as a crash would, then restart
+		Path segment = journal.segments().get(0);
+		jdbcTemplate.update("delete from T_REWARD_JOURNAL");
+		Files.write(segment, "999,1.00".getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+		RewardJournal restarted = new RewardJournal(dir, Long.MAX_VALUE, 1000, new SimpleMeterRegistry());
+		RewardJournalDrainer replaying = drainer(restarted, deduplicator());
+		assertEquals(0, replaying.drain());
+		assertEquals(rolledUpBefore + 2, countRolledUpRewards("1"));
+		assertEquals(1, countRewards(single.getConfirmationNumber()));
+		assertEquals(1, countRewards(batch.get(0).getConfirmationNumber()));
+		assertThat(Files.exists(segment)).isFalse();
+		assertEquals(0, jdbcTemplate.queryForObject("select count(*) from T_REWARD_JOURNAL where SEGMENT = ?", Integer.class,
+				segment.getFileName().toString()));
+		replaying.destroy();
+		restarted.destroy();
+	}
+
+	@Test
+	void testJournalOnlyCommittedRewards() throws Exception {
+		RewardJournal journal = new RewardJournal(dir, Long.MAX_VALUE, 1000, new SimpleMeterRegistry());
+		SnowflakeConfirmationNumberGenerator generator = new SnowflakeConfirmationNumberGenerator(2);
+		DiningDeduplicator deduplicator = deduplicator();
+		JournalingRewardRepository repository = new JournalingRewardRepository(journal, generator,
+				new JdbcRewardRepository(jdbcTemplate, generator, rewardRollups()), deduplicator);
+		RewardJournalDrainer drainer = drainer(journal, deduplicator);
+
+		Account account = new Account(0L, "1", "Keith and Keri Donald");
+		account.addBeneficiary("Annabelle", Percentage.valueOf("100%"));
+		AccountContribution contribution = account.makeContribution(USD.valueOf("4.00"));
+		Dining rolledBack = new Dining(USD.valueOf("50.00"), "1234123412341234", "1234567890", LocalDate.of(2022, 5, 3));
+		Dining committed = new Dining(USD.valueOf("60.00"), "1234123412341234", "1234567890", LocalDate.of(2022, 5, 3));
+		Path segment = journal.segments().get(0);
+		transactionTemplate.executeWithoutResult(status -> {
+			repository.confirmRewards(List.of(contribution), List.of(rolledBack));
+			status.setRollbackOnly();
+		});
+		assertEquals(0, journal.durableSize(segment));
+		RewardConfirmation confirmation = transactionTemplate.execute(status -> repository.confirmReward(contribution, committed));
+		// written by the time the transaction returns
+		assertThat(journal.durableSize(segment)).isGreaterThan(0);
+
+		// the rolled back dining can be rewarded again
+		assertThat(deduplicator.isDuplicate(rolledBack.getIdempotencyKey(), rolledBack.getDate())).isFalse();
+
+		assertEquals(1, drainer.drain());
+		assertEquals(1, countRewards(confirmation.getConfirmationNumber()));
+		drainer.destroy();
+		journal.destroy();
+	}
+
+	private RewardJournalDrainer drainer(RewardJournal journal, DiningDeduplicator deduplicator) {
+		// only explicit drains in this test
+		return new RewardJournalDrainer(journal, jdbcTemplate, transactionTemplate, rewardRollups(), deduplicator, 2,
+				Duration.ofHours(1), new SimpleMeterRegistry());
+	}
+
+	private DiningDeduplicator deduplicator() {
+		return new DiningDeduplicator(jdbcTemplate, new RewardProperties(), new SimpleMeterRegistry());
+	}
+
+	private RewardRollups rewardRollups() {
+		return new RewardRollups(jdbcTemplate, transactionTemplate, new RewardProperties());
+	}
+
+	private long countRolledUpRewards(String accountNumber) {
+		return rewardRollups().findByAccountNumber(accountNumber, LocalDate.now(), LocalDate.now()).stream()
+				.mapToLong(DailyRewardTotal::rewards)
+				.sum();
+	}
+
+	private int countRewards(String confirmationNumber) {
+		return jdbcTemplate.queryForObject("select count(*) from T_REWARD where CONFIRMATION_NUMBER = ?", Integer.class,
+				confirmationNumber);
+	}
+}
@@ -0,0 +1,70 @@
+package lol.maki.rewarddining.reward.journal;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RewardJournalTests {
+	@TempDir
+	Path dir;
+
+	@Test
+	void testConcurrentAppendsAreGrouped() throws Exception {
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		RewardJournal journal = new RewardJournal(dir, Long.MAX_VALUE, 1000, meterRegistry);
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		try {
+			List<CompletableFuture<Void>> futures = new ArrayList<>();
+			for (int i = 0; i < 4000; i++) {
+				String line = "entry-" + i + "\n";
+				futures.add(CompletableFuture.supplyAsync(() -> journal.append(List.of(line.getBytes(StandardCharsets.US_ASCII))), executor)
+						.thenCompose(f -> f));
+			}
+			CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+		}
+		finally {
+			executor.shutdown();
+			journal.destroy();
+		}
+		List<Path> segments = journal.segments();
+		assertEquals(1, segments.size());
+		Set<String> lines = new HashSet<>(Files.readAllLines(segments.get(0)));
+		assertEquals(4000, lines.size());
+		long fsyncs = meterRegistry.get("reward.journal.fsync").timer().count();
+		assertThat(fsyncs).isLessThanOrEqualTo(4000);
+		assertEquals(4000, meterRegistry.get("reward.journal.group.size").summary().totalAmount());
+	}
+
+	@Test
+	void testRollSegments() throws Exception {
+		RewardJournal journal = new RewardJournal(dir, 10, 1000, new SimpleMeterRegistry());
+		journal.append(List.of("0123456789\n".getBytes(StandardCharsets.US_ASCII))).join();
+		journal.append(List.of("abc\n".getBytes(StandardCharsets.US_ASCII))).join();
+		List<Path> segments = journal.segments();
+		assertEquals(2, segments.size());
+		assertThat(journal.isActive(segments.get(0))).isFalse();
+		assertThat(journal.isActive(segments.get(1))).isTrue();
+		assertEquals(4, journal.durableSize(segments.get(1)));
+		journal.destroy();
+
+		// a restart starts a new segment after the existing ones
+		RewardJournal restarted = new RewardJournal(dir, 10, 1000, new SimpleMeterRegistry());
+		assertEquals(3, restarted.segments().size());
+		assertThat(restarted.isActive(restarted.segments().get(2))).isTrue();
+		restarted.destroy();
+	}
+}
@@ -0,0 +1,71 @@
+package lol.maki.rewarddining.reward.replay;
+
+import lol.maki.rewarddining.reward.RewardProperties;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Replays the savings of thousands of synthetic accounts with millions of rewards, and reports rewards per second for
+ * a dry run and a replay correcting every beneficiary. Run with <code>./mvnw test -Pbenchmark</code>; the number of
+ * rewards can be changed with <code>-Dbenchmark.rewards=...</code>.
+ */
+@Tag("benchmark")
+@JdbcTest
+// a rollback of millions of rows costs more than the benchmark itself, so the database is thrown away instead
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext
+class SavingsReplayBenchmark {
+	static final int INSERT_CHUNK_SIZE = 100_000;
+
+	static final int ACCOUNTS = 20_000;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	@Test
+	void benchmarkReplay() {
+		final long rewards = Long.getLong("benchmark.rewards", 2_000_000);
+		jdbcTemplate.update("""
+				insert into t_account (id, number, name)
+				select 1000000 + x, 'R' || lpad(x, 8, '0'), 'Replay ' || x
+				from system_range(1, ?)""", ACCOUNTS);
+		jdbcTemplate.update("""
+				insert into t_account_beneficiary (account_id, name, allocation_percentage, savings)
+				select 1000000 + x, b.name, b.allocation_percentage, 0.00
+				from system_range(1, ?), (select 'A' as name, 0.33 as allocation_percentage union all
+				                          select 'B', 0.33 union all select 'C', 0.34) b""", ACCOUNTS);
+		for (long from = 1; from <= rewards; from += INSERT_CHUNK_SIZE) {
+			jdbcTemplate.update("""
+					insert into t_reward (confirmation_number, reward_amount, reward_date, account_number, dining_amount,
+					                      dining_merchant_number, dining_date, idempotency_key)
+					select 'X' || lpad(x, 15, '0'), 1.00 + mod(x, 700) / 100.0, current_date, 'R' || lpad(mod(x, ?) + 1, 8, '0'),
+					       100.00, '1234567890', current_date, lpad(x, 64, '0')
+					from system_range(?, ?)""", ACCOUNTS, from, Math.min(from + INSERT_CHUNK_SIZE - 1, rewards));
+		}
+		final SavingsReplayer replayer = new SavingsReplayer(jdbcTemplate, transactionTemplate, new RewardProperties(), null);
+
+		System.out.printf("%-10s %12s %12s %12s %12s%n", "mode", "rewards", "rewards/s", "corrections", "ms");
+		for (boolean dryRun : new boolean[] { true, false }) {
+			final SavingsReplay replay = replayer.replay(dryRun);
+			assertEquals(rewards, replay.rewards());
+			assertThat(replay.corrections()).hasSize(3 * ACCOUNTS);
+			System.out.printf("%-10s %,12d %,12d %,12d %,12d%n", dryRun ? "dry run" : "replay", replay.rewards(),
+					Math.round(replay.rewardsPerSecond()), replay.corrections().size(), replay.elapsed().toMillis());
+		}
+		assertThat(replayer.replay(true).corrections()).isEmpty();
+	}
+}
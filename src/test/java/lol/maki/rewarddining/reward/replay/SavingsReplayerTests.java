@@ -0,0 +1,169 @@
+package lol.maki.rewarddining.reward.replay;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lol.maki.rewarddining.account.USD;
+import lol.maki.rewarddining.account.infrastructure.CachingAccountRepository;
+import lol.maki.rewarddining.account.infrastructure.CreditCardIndex;
+import lol.maki.rewarddining.account.infrastructure.JdbcAccountRepository;
+import lol.maki.rewarddining.reward.RewardProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@JdbcTest
+// the replay commits its own transactions
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SavingsReplayerTests {
+	static final LocalDate DATE = LocalDate.of(2001, 1, 1);
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	SavingsReplayer replayer;
+
+	@BeforeEach
+	void setUp() {
+		// Annabelle and Corgan get 50% each
+		reward("123456789", "8.00", 3);
+		reward("123456789", "1.23", 1);
+		// Kai and Kasper get 33%, Ernst 34%
+		reward("123456008", "1.00", 2);
+		RewardProperties properties = new RewardProperties();
+		properties.getReplay().setParallelism(2);
+		properties.getReplay().setRangeSize(2);
+		properties.getReplay().setBatchSize(2);
+		replayer = new SavingsReplayer(jdbcTemplate, transactionTemplate, properties, null);
+	}
+
+	@AfterEach
+	void tearDown() {
+		jdbcTemplate.update("delete from T_REWARD where REWARD_DATE = ?", DATE);
+		jdbcTemplate.update("update T_ACCOUNT_BENEFICIARY set SAVINGS = 0");
+		jdbcTemplate.update("update T_ACCOUNT_BENEFICIARY set ALLOCATION_PERCENTAGE = .5 where NAME = 'Corgan'");
+	}
+
+	@Test
+	void testDryRun() {
+		savings("Annabelle", "12.62");
+		SavingsReplay replay = replayer.replay(true);
+
+		assertTrue(replay.dryRun());
+		assertEquals(21, replay.accounts());
+		assertEquals(6, replay.rewards());
+		assertThat(replay.ranges()).isGreaterThan(1);
+		assertThat(replay.invalidAccounts()).isEmpty();
+		List<SavingsCorrection> corrections = replay.corrections();
+		assertEquals(List.of("Ernst", "Kai", "Kasper", "Corgan"),
+				corrections.stream().map(SavingsCorrection::beneficiary).toList());
+		assertCorrection(corrections.get(0), "123456008", "0.00", "0.68");
+		assertCorrection(corrections.get(1), "123456008", "0.00", "0.66");
+		// 3 x 4.00 + 0.61, as the cent left over by splitting 1.23 goes to Annabelle
+		assertCorrection(corrections.get(3), "123456789", "0.00", "12.61");
+		assertEquals(0, replay.applied());
+		assertEquals(0, savings("Corgan").signum());
+	}
+
+	@Test
+	void testReplay() {
+		savings("Annabelle", "99.99");
+		savings("Charles", "1.00");
+		SavingsReplay replay = replayer.replay(false);
+
+		assertFalse(replay.dryRun());
+		assertEquals(6, replay.corrections().size());
+		assertEquals(6, replay.applied());
+		SavingsCorrection annabelle = replay.corrections().get(4);
+		assertCorrection(annabelle, "123456789", "99.99", "12.62");
+		assertThat(annabelle.difference().isEqualTo(USD.valueOf("87.37").negate())).isTrue();
+		assertEquals(new BigDecimal("12.62"), savings("Annabelle"));
+		assertEquals(new BigDecimal("12.61"), savings("Corgan"));
+		assertEquals(new BigDecimal("0.68"), savings("Ernst"));
+		assertEquals(0, savings("Charles").signum());
+
+		assertThat(replayer.replay(false).corrections()).isEmpty();
+	}
+
+	@Test
+	void testReplayEvictsCorrectedAccounts() {
+		CachingAccountRepository accountCache = new CachingAccountRepository(new JdbcAccountRepository(jdbcTemplate,
+				namedParameterJdbcTemplate, new CreditCardIndex(jdbcTemplate)), 10, new SimpleMeterRegistry());
+		replayer = new SavingsReplayer(jdbcTemplate, transactionTemplate, new RewardProperties(), accountCache);
+		assertThat(accountCache.findById(0L).getBeneficiary("Annabelle").getSavings().isZero()).isTrue();
+
+		replayer.replay(false);
+		assertEquals(USD.valueOf("12.62"), accountCache.findById(0L).getBeneficiary("Annabelle").getSavings());
+	}
+
+	@Test
+	void testReplaySkipsInvalidAllocations() {
+		jdbcTemplate.update("update T_ACCOUNT_BENEFICIARY set ALLOCATION_PERCENTAGE = .4 where NAME = 'Corgan'");
+		SavingsReplay replay = replayer.replay(false);
+
+		assertEquals(List.of("123456789"), replay.invalidAccounts());
+		assertThat(replay.corrections()).extracting(SavingsCorrection::accountNumber).containsOnly("123456008");
+		assertEquals(0, savings("Annabelle").signum());
+	}
+
+	@Test
+	void testWriteReport(@TempDir Path directory) throws Exception {
+		Path report = directory.resolve("corrections.csv");
+		SavingsReplayRunner.writeReport(replayer.replay(true), report);
+
+		List<String> lines = Files.readAllLines(report);
+		assertEquals(SavingsReplayRunner.REPORT_HEADER, lines.get(0));
+		assertEquals(6, lines.size());
+		assertThat(lines.get(1)).matches("123456008,Ernst,0(\\.0+)?,0\\.68,0\\.68,false");
+	}
+
+	private static void assertCorrection(SavingsCorrection correction, String accountNumber, String recorded,
+			String replayed) {
+		assertEquals(accountNumber, correction.accountNumber());
+		assertThat(correction.recorded().isEqualTo(USD.valueOf(recorded))).isTrue();
+		assertThat(correction.replayed().isEqualTo(USD.valueOf(replayed))).isTrue();
+	}
+
+	private void reward(String accountNumber, String amount, int count) {
+		jdbcTemplate.update("""
+				insert into T_REWARD (CONFIRMATION_NUMBER, REWARD_AMOUNT, REWARD_DATE, ACCOUNT_NUMBER, DINING_AMOUNT,
+				                      DINING_MERCHANT_NUMBER, DINING_DATE)
+				select 'S' || ? || '-' || ? || '-' || x, ?, ?, ?, 100.00, '1234567890', ?
+				from system_range(1, ?)""", accountNumber, amount, new BigDecimal(amount), DATE, accountNumber, DATE,
+				count);
+	}
+
+	private void savings(String beneficiary, String savings) {
+		jdbcTemplate.update("update T_ACCOUNT_BENEFICIARY set SAVINGS = ? where NAME = ?", new BigDecimal(savings),
+				beneficiary);
+	}
+
+	private BigDecimal savings(String beneficiary) {
+		return jdbcTemplate.queryForObject("select SAVINGS from T_ACCOUNT_BENEFICIARY where NAME = ?", BigDecimal.class,
+				beneficiary);
+	}
+}
@@ -0,0 +1,113 @@
+package lol.maki.rewarddining.reward.rollup;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+import lol.maki.rewarddining.account.Account;
+import lol.maki.rewarddining.account.Percentage;
+import lol.maki.rewarddining.account.USD;
+import lol.maki.rewarddining.restaurant.Dining;
+import lol.maki.rewarddining.reward.Reward;
+import lol.maki.rewarddining.reward.RewardProperties;
+import lol.maki.rewarddining.reward.infrastructure.JdbcRewardRepository;
+import lol.maki.rewarddining.reward.infrastructure.SnowflakeConfirmationNumberGenerator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Measures what the inline rollups cost concurrent reward transactions, in particular when they all reward dining at
+ * the same merchant and so wait for the same merchant rollup row until the transaction holding it commits. Each
+ * transaction records one reward and then writes the savings of its account, as a reward transaction does. Run with
+ * <code>./mvnw test -Pbenchmark</code>; the number of rewards per thread can be changed with
+ * <code>-Dbenchmark.rollup.rewards=...</code>.
+ */
+@Tag("benchmark")
+@JdbcTest
+// the transactions have to commit to hold the row locks for as long as they do in production
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext
+class RewardRollupContentionBenchmark {
+	static final int THREADS = 8;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	@Test
+	void benchmarkMerchantContention() throws Exception {
+		final int rewards = Integer.getInteger("benchmark.rollup.rewards", 2_000);
+		final RewardRollups rollups = new RewardRollups(jdbcTemplate, transactionTemplate, new RewardProperties());
+		final RewardRollups noRollups = new RewardRollups(jdbcTemplate, transactionTemplate, new RewardProperties()) {
+			@Override
+			public void add(List<Reward> rewards) {
+			}
+		};
+		// warm up, then measure
+		run("warm-up", noRollups, rewards, thread -> "9" + thread);
+		System.out.printf("%-28s %12s %14s%n", "scenario", "rewards/s", "vs. no rollups");
+		final double baseline = run("no rollups", noRollups, rewards, thread -> "8" + thread);
+		report("no rollups", baseline, baseline);
+		report("a merchant per thread", run("merchant per thread", rollups, rewards, thread -> "7" + thread), baseline);
+		report("one merchant", run("one merchant", rollups, rewards, thread -> "6"), baseline);
+		// no reward is lost to the contention
+		assertEquals(THREADS * rewards, rollups.findByMerchantNumber("6000000000", LocalDate.now(), LocalDate.now())
+				.get(0).rewards());
+	}
+
+	private double run(String scenario, RewardRollups rollups, int rewards, IntFunction<String> merchantPrefix)
+			throws Exception {
+		final JdbcRewardRepository repository = new JdbcRewardRepository(jdbcTemplate,
+				new SnowflakeConfirmationNumberGenerator(1), rollups);
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			final List<Future<?>> futures = new ArrayList<>();
+			final long start = System.nanoTime();
+			for (int t = 0; t < THREADS; t++) {
+				final int thread = t;
+				// an account per thread, so that only the merchant rows are shared
+				final Account account = new Account((long) thread, "B0000000" + thread, "Benchmark");
+				account.addBeneficiary("Annabelle", Percentage.valueOf("100%"));
+				final String merchantNumber = String.format("%-10s", merchantPrefix.apply(thread)).replace(' ', '0');
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < rewards; i++) {
+						final Dining dining = new Dining(USD.valueOf("100.00"), "1234123412341234", merchantNumber,
+								LocalDate.now(), scenario + "-" + thread + "-" + i);
+						transactionTemplate.executeWithoutResult(status -> {
+							repository.confirmReward(account.makeContribution(USD.valueOf("8.00")), dining);
+							jdbcTemplate.update("update T_ACCOUNT_BENEFICIARY set SAVINGS = SAVINGS + 8.00 where ACCOUNT_ID = ?",
+									account.getId());
+						});
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+			return THREADS * rewards / ((System.nanoTime() - start) / 1e9);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	private static void report(String scenario, double rewardsPerSecond, double baseline) {
+		System.out.printf("%-28s %,12.0f %13.0f%%%n", scenario, rewardsPerSecond, 100 * rewardsPerSecond / baseline);
+	}
+}
@@ -0,0 +1,117 @@
+package lol.maki.rewarddining.reward.rollup;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import lol.maki.rewarddining.account.USD;
+import lol.maki.rewarddining.reward.Reward;
+import lol.maki.rewarddining.reward.RewardProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@JdbcTest
+// the rebuild commits its own transactions
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RewardRollupsTests {
+	static final LocalDate FROM = LocalDate.of(2001, 1, 1);
+
+	static final LocalDate TO = LocalDate.of(2001, 1, 10);
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	@AfterEach
+	void deleteRewards() {
+		jdbcTemplate.update("delete from T_REWARD where REWARD_DATE between ? and ?", FROM, TO);
+		jdbcTemplate.update("delete from T_REWARD_DAILY_MERCHANT where REWARD_DATE between ? and ?", FROM, TO);
+		jdbcTemplate.update("delete from T_REWARD_DAILY_ACCOUNT where REWARD_DATE between ? and ?", FROM, TO);
+	}
+
+	@Test
+	void testAdd() {
+		RewardRollups rollups = rollups(1, 7);
+		transactionTemplate.executeWithoutResult(status -> rollups.add(List.of(
+				reward("8.00", FROM, "123456001", "1234567890", "100.00"),
+				reward("4.00", FROM, "123456002", "1234567890", "50.00"),
+				reward("2.50", FROM.plusDays(1), "123456001", "1234567890", "25.00"))));
+		transactionTemplate.executeWithoutResult(status -> rollups.add(List.of(
+				reward("1.00", FROM, "123456001", "1234567891", "10.00"))));
+
+		List<DailyRewardTotal> merchant = rollups.findByMerchantNumber("1234567890", FROM, TO);
+		assertEquals(2, merchant.size());
+		assertEquals(FROM, merchant.get(0).date());
+		assertEquals(2, merchant.get(0).rewards());
+		assertThat(merchant.get(0).rewardAmount().isEqualTo(USD.valueOf("12.00"))).isTrue();
+		assertThat(merchant.get(0).diningAmount().isEqualTo(USD.valueOf("150.00"))).isTrue();
+		assertEquals(1, merchant.get(1).rewards());
+
+		List<DailyRewardTotal> account = rollups.findByAccountNumber("123456001", FROM, FROM);
+		assertEquals(1, account.size());
+		assertEquals(2, account.get(0).rewards());
+		assertThat(account.get(0).rewardAmount().isEqualTo(USD.valueOf("9.00"))).isTrue();
+	}
+
+	@Test
+	void testCheckAndRebuild() throws Exception {
+		for (int day = 0; day < 10; day++) {
+			for (int i = 0; i < 3; i++) {
+				jdbcTemplate.update("""
+						insert into T_REWARD (CONFIRMATION_NUMBER, REWARD_AMOUNT, REWARD_DATE, ACCOUNT_NUMBER, DINING_AMOUNT,
+						                      DINING_MERCHANT_NUMBER, DINING_DATE)
+						values (?, 8.00, ?, ?, 100.00, '1234567890', ?)""", "R-" + day + "-" + i, FROM.plusDays(day),
+						"12345600" + i, FROM.plusDays(day));
+			}
+		}
+		RewardRollups rollups = rollups(4, 3);
+		// 10 days with 1 merchant and 3 accounts, none rolled up
+		assertEquals(40, rollups.check(FROM, TO).size());
+
+		RollupRebuild rebuild = rollups.rebuild(FROM, TO);
+		assertEquals(4, rebuild.ranges());
+		assertEquals(40, rebuild.rows());
+		assertThat(rollups.check(FROM, TO)).isEmpty();
+		assertEquals(3, rollups.findByMerchantNumber("1234567890", TO, TO).get(0).rewards());
+
+		// a rollup row drifting and one without rewards
+		jdbcTemplate.update("update T_REWARD_DAILY_ACCOUNT set REWARD_COUNT = 5 where ACCOUNT_NUMBER = '123456001' and REWARD_DATE = ?",
+				FROM);
+		jdbcTemplate.update("insert into T_REWARD_DAILY_MERCHANT values ('1234567891', ?, 1, 1.00, 10.00)", TO);
+		List<RollupMismatch> mismatches = rollups.check(FROM, TO);
+		assertEquals(2, mismatches.size());
+		assertEquals("T_REWARD_DAILY_MERCHANT", mismatches.get(0).rollup());
+		assertNull(mismatches.get(0).expected());
+		assertEquals("T_REWARD_DAILY_ACCOUNT", mismatches.get(1).rollup());
+		assertEquals(1, mismatches.get(1).expected().rewards());
+		assertEquals(5, mismatches.get(1).actual().rewards());
+
+		rollups.rebuild(FROM, TO);
+		assertThat(rollups.check(FROM, TO)).isEmpty();
+	}
+
+	private RewardRollups rollups(int parallelism, int rangeDays) {
+		RewardProperties properties = new RewardProperties();
+		properties.getRollup().setRebuildParallelism(parallelism);
+		properties.getRollup().setRebuildRangeDays(rangeDays);
+		return new RewardRollups(jdbcTemplate, transactionTemplate, properties);
+	}
+
+	private static Reward reward(String amount, LocalDate date, String accountNumber, String merchantNumber,
+			String diningAmount) {
+		return new Reward("unused", USD.valueOf(amount), date, accountNumber, merchantNumber, USD.valueOf(diningAmount),
+				date);
+	}
+}
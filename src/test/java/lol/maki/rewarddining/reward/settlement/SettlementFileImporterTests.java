@@ -0,0 +1,211 @@
+package lol.maki.rewarddining.reward.settlement;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lol.maki.rewarddining.account.USD;
+import lol.maki.rewarddining.account.infrastructure.CreditCardIndex;
+import lol.maki.rewarddining.account.infrastructure.JdbcAccountRepository;
+import lol.maki.rewarddining.config.RewardConfig;
+import lol.maki.rewarddining.restaurant.Dining;
+import lol.maki.rewarddining.restaurant.infrastructure.JdbcRestaurantRepository;
+import lol.maki.rewarddining.reward.RewardConfirmation;
+import lol.maki.rewarddining.reward.RewardNetwork;
+import lol.maki.rewarddining.reward.RewardNetworkImpl;
+import lol.maki.rewarddining.reward.RewardProperties;
+import lol.maki.rewarddining.reward.RewardResult;
+import lol.maki.rewarddining.reward.infrastructure.JdbcRewardRepository;
+import lol.maki.rewarddining.reward.rollup.RewardRollups;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@JdbcTest(properties = { "logging.level.sql=TRACE" })
+@Import({ SettlementFileImporter.class, RewardNetworkImpl.class, JdbcAccountRepository.class,
+		CreditCardIndex.class, JdbcRestaurantRepository.class, JdbcRewardRepository.class, RewardRollups.class, RewardConfig.class })
+// every chunk commits its own transaction, which a test-managed transaction would swallow
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SettlementFileImporterTests {
+	@Autowired
+	RewardNetwork rewardNetwork;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void testParseDining() {
+		byte[] line = "100.5,1234123412341234,1234567890,2022-05-01".getBytes(StandardCharsets.US_ASCII);
+		Dining dining = SettlementFileImporter.parseDining(line, 0, line.length, "file:1");
+		assertEquals(new Dining(USD.valueOf("100.50"), "1234123412341234", "1234567890", LocalDate.of(2022, 5, 1), "file:1"),
+				dining);
+	}
+
+	@Test
+	void testParseInvalidDining() {
+		for (String line : List.of("-1.00,1234123412341234,1234567890,2022-05-01", "1.001,1234123412341234,1234567890,2022-05-01",
+				"1.00,1234123412341234,1234567890", "1.00,1234123412341234,1234567890,2022-5-1", "1.,1,1,2022-05-01")) {
+			byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+			assertThrows(IllegalArgumentException.class, () -> SettlementFileImporter.parseDining(bytes, 0, bytes.length, null), line);
+		}
+	}
+
+	@Test
+	void testImportFile() throws Exception {
+		Path file = dir.resolve("settlement-import.csv");
+		Files.writeString(file, """
+				amount,creditCard,merchant,date
+				100.00,1234123412340003,1234567890,2022-05-01
+				100.00,bogus,1234567890,2022-05-01
+				not a dining\r
+				50,1234123412340003,1234567890,2022-05-01
+
+				25.00,1234123412340003,1234567890,2022-05-02""");
+		int rewardsBefore = getRewardCount();
+
+		SettlementImportResult result = newImporter(rewardNetwork, 2, 64).importFile(file);
+
+		assertEquals(7, result.lines());
+		assertEquals(3, result.rewarded());
+		assertEquals(2, result.failed());
+		assertEquals(Files.size(file), result.endOffset());
+		assertEquals(rewardsBefore + 3, getRewardCount());
+
+		// importing the same file again finds nothing left to do
+		SettlementImportResult again = newImporter(rewardNetwork, 2, 64).importFile(file);
+		assertEquals(0, again.lines());
+		assertEquals(rewardsBefore + 3, getRewardCount());
+	}
+
+	@Test
+	void testIdenticalLinesAreRewardedEach() throws Exception {
+		Path file = dir.resolve("settlement-identical.csv");
+		Files.writeString(file, "16.16,1234123412340008,1234567890,2022-05-03\n16.16,1234123412340008,1234567890,2022-05-03\n");
+		int rewardsBefore = getRewardCount();
+
+		SettlementImportResult result = newImporter(rewardNetwork, 10, 64).importFile(file);
+		assertEquals(2, result.rewarded());
+		assertEquals(rewardsBefore + 2, getRewardCount());
+
+		// the same file at another path is recognized by its content
+		Path copy = Files.createDirectory(dir.resolve("copy")).resolve("settlement-identical.csv");
+		Files.copy(file, copy);
+		SettlementImportResult again = newImporter(rewardNetwork, 10, 64).importFile(copy);
+		assertEquals(0, again.rewarded());
+		assertEquals(2, again.failed());
+		assertEquals(rewardsBefore + 2, getRewardCount());
+	}
+
+	@Test
+	void testResumeAfterCrash() throws Exception {
+		Path file = dir.resolve("settlement-resume.csv");
+		StringBuilder lines = new StringBuilder();
+		for (int i = 0; i < 10; i++) {
+			lines.append("10.0" + i + ",1234123412340008,1234567890,2022-05-01\n");
+		}
+		Files.writeString(file, lines);
+		int rewardsBefore = getRewardCount();
+
+		// the third chunk fails as if the process crashed
+		AtomicInteger chunks = new AtomicInteger();
+		RewardNetwork crashing = new RewardNetwork() {
+			public RewardConfirmation rewardAccountFor(Dining dining) {
+				throw new UnsupportedOperationException();
+			}
+
+			public List<RewardResult> rewardAccountsFor(List<Dining> dinings) {
+				if (chunks.incrementAndGet() == 3) {
+					throw new IllegalStateException("crash");
+				}
+				return rewardNetwork.rewardAccountsFor(dinings);
+			}
+		};
+		assertThrows(IllegalStateException.class, () -> newImporter(crashing, 3, 64).importFile(file));
+		assertEquals(rewardsBefore + 6, getRewardCount());
+
+		SettlementImportResult result = newImporter(rewardNetwork, 3, 64).importFile(file);
+		assertThat(result.startOffset()).isGreaterThan(0);
+		assertEquals(4, result.lines());
+		assertEquals(4, result.rewarded());
+		assertEquals(rewardsBefore + 10, getRewardCount());
+	}
+
+	@Test
+	void testSameNameInAnotherDirectory() throws Exception {
+		Path file = dir.resolve("a").resolve("settlement.csv");
+		Path other = dir.resolve("b").resolve("settlement.csv");
+		Files.createDirectories(file.getParent());
+		Files.createDirectories(other.getParent());
+		Files.writeString(file, "11.11,1234123412340008,1234567890,2022-05-01\n");
+		Files.writeString(other, "12.12,1234123412340008,1234567890,2022-05-01\n");
+
+		assertEquals(1, newImporter(rewardNetwork, 2, 64).importFile(file).rewarded());
+		SettlementImportResult result = newImporter(rewardNetwork, 2, 64).importFile(other);
+		assertEquals(0, result.startOffset());
+		assertEquals(1, result.rewarded());
+	}
+
+	@Test
+	void testNewFileInPlaceOfAnImportedOne() throws Exception {
+		Path file = dir.resolve("settlement-reused.csv");
+		Files.writeString(file, "13.13,1234123412340008,1234567890,2022-05-01\n");
+		newImporter(rewardNetwork, 2, 64).importFile(file);
+
+		Files.writeString(file, "14.14,1234123412340008,1234567890,2022-05-02\n15.15,1234123412340008,1234567890,2022-05-02\n");
+		SettlementImportResult result = newImporter(rewardNetwork, 2, 64).importFile(file);
+		assertEquals(0, result.startOffset());
+		assertEquals(2, result.rewarded());
+	}
+
+	@Test
+	void testCheckpointPastEndOfFile() throws Exception {
+		Path file = dir.resolve("settlement-truncated.csv");
+		Files.writeString(file, "10.00,1234123412340008,1234567890,2022-05-01\n");
+		String fileId;
+		try (FileChannel channel = FileChannel.open(file)) {
+			fileId = SettlementFileImporter.identify(channel);
+		}
+		jdbcTemplate.update("insert into t_settlement_import (file_path, file_id, byte_offset, line_count) values (?, ?, ?, ?)",
+				file.toAbsolutePath().normalize().toString(), fileId, 1000, 20);
+		assertThrows(IllegalStateException.class, () -> newImporter(rewardNetwork, 2, 64).importFile(file));
+	}
+
+	@Test
+	void testLineLongerThanBuffer() throws Exception {
+		Path file = dir.resolve("settlement-long.csv");
+		Files.writeString(file, "100.00,1234123412340003,1234567890,2022-05-01\n");
+		assertThrows(IllegalStateException.class, () -> newImporter(rewardNetwork, 2, 16).importFile(file));
+	}
+
+	private SettlementFileImporter newImporter(RewardNetwork rewardNetwork, int chunkSize, int bufferSize) {
+		RewardProperties properties = new RewardProperties();
+		properties.getSettlement().setChunkSize(chunkSize);
+		properties.getSettlement().setBufferSize(bufferSize);
+		return new SettlementFileImporter(rewardNetwork, jdbcTemplate, transactionTemplate, properties);
+	}
+
+	private int getRewardCount() {
+		return jdbcTemplate.queryForObject("select count(*) from t_reward", Integer.class);
+	}
+}
@@ -0,0 +1,159 @@
+package lol.maki.rewarddining.reward.web;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@AutoConfigureMetrics
+@TestPropertySource(properties = { "management.metrics.export.wavefront.enabled=false", "logging.level.web=DEBUG", "logging.level.sql=TRACE" })
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class RewardRestControllerIntegrationTests {
+	@Autowired
+	TestRestTemplate anonymous;
+
+	TestRestTemplate restTemplate;
+
+	@BeforeEach
+	void setUp() {
+		// rewarding takes the editor role
+		restTemplate = anonymous.withBasicAuth("edith", "edith");
+	}
+
+	@Test
+	public void rewardsRequireRole() {
+		DiningRequest dining = new DiningRequest("100.00", "1234123412340003", "1234567890", null, "txn-denied");
+		assertThat(anonymous.postForEntity("/rewards", dining, JsonNode.class).getStatusCode())
+				.isEqualTo(HttpStatus.UNAUTHORIZED);
+		assertThat(anonymous.withBasicAuth("vince", "vince").postForEntity("/rewards", dining, JsonNode.class).getStatusCode())
+				.isEqualTo(HttpStatus.FORBIDDEN);
+		assertThat(anonymous.withBasicAuth("vince", "vince").getForEntity("/rewards:export", String.class).getStatusCode())
+				.isEqualTo(HttpStatus.OK);
+	}
+
+	@Test
+	public void rewardAccountFor() {
+		DiningRequest dining = new DiningRequest("100.00", "1234123412340003", "1234567890", null, "txn-single");
+		ResponseEntity<JsonNode> response = restTemplate.postForEntity("/rewards", dining, JsonNode.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getBody().get("confirmationNumber").asText()).isNotEmpty();
+		assertThat(response.getBody().get("accountContribution").get("accountNumber").asText()).isEqualTo("123456003");
+
+		String confirmationNumber = response.getBody().get("confirmationNumber").asText();
+		ResponseEntity<JsonNode> reward = restTemplate.getForEntity("/rewards/{confirmationNumber}", JsonNode.class, confirmationNumber);
+		assertThat(reward.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(reward.getBody().get("accountNumber").asText()).isEqualTo("123456003");
+		assertThat(restTemplate.getForEntity("/rewards/bogus", JsonNode.class).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+
+		ResponseEntity<JsonNode> history = restTemplate.getForEntity("/accounts/3/rewards?limit=1", JsonNode.class);
+		assertThat(history.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(history.getBody().get("rewards")).hasSize(1);
+		assertThat(restTemplate.getForEntity("/accounts/99999/rewards", JsonNode.class).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+	}
+
+	@Test
+	public void rewardRollups() {
+		DiningRequest dining = new DiningRequest("100.00", "1234123412340003", "1234567890", null, "txn-rollup");
+		assertThat(restTemplate.postForEntity("/rewards", dining, JsonNode.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+		LocalDate today = LocalDate.now();
+
+		ResponseEntity<JsonNode> account = restTemplate.getForEntity("/accounts/3/rewards/daily?from={from}&to={to}",
+				JsonNode.class, today, today);
+		assertThat(account.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(account.getBody()).hasSize(1);
+		assertThat(account.getBody().get(0).get("number").asText()).isEqualTo("123456003");
+		assertThat(account.getBody().get(0).get("rewards").asLong()).isPositive();
+		ResponseEntity<JsonNode> merchant = restTemplate.getForEntity("/merchants/1234567890/rewards/daily?from={from}&to={to}",
+				JsonNode.class, today, today);
+		assertThat(merchant.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(merchant.getBody()).hasSize(1);
+		ResponseEntity<JsonNode> check = restTemplate.getForEntity("/rewards/rollups:check?from={from}&to={to}",
+				JsonNode.class, today, today);
+		assertThat(check.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(check.getBody()).isEmpty();
+		assertThat(restTemplate.getForEntity("/accounts/99999/rewards/daily?from={from}&to={to}", JsonNode.class, today, today)
+				.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+	}
+
+	@Test
+	public void exportRewards() {
+		DiningRequest dining = new DiningRequest("100.00", "1234123412340003", "1234567890", null, "txn-export");
+		assertThat(restTemplate.postForEntity("/rewards", dining, JsonNode.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		ResponseEntity<String> export = restTemplate.getForEntity("/rewards:export?merchantNumber=1234567890", String.class);
+		assertThat(export.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(export.getHeaders().getContentType()).hasToString("text/csv");
+		assertThat(export.getHeaders().getContentDisposition().getFilename()).isEqualTo("rewards.csv");
+		assertThat(export.getBody().lines()).hasSizeGreaterThan(1).allMatch(line -> !line.contains("bogus"));
+		assertThat(restTemplate.getForEntity("/rewards:export?format=xml", String.class).getStatusCode())
+				.isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+
+	@Test
+	public void rewardAccountForResentDining() {
+		DiningRequest dining = new DiningRequest("100.00", "1234123412340003", "1234567890", null, "txn-resent");
+		assertThat(restTemplate.postForEntity("/rewards", dining, JsonNode.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+		ResponseEntity<JsonNode> response = restTemplate.postForEntity("/rewards", dining, JsonNode.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+	}
+
+	@Test
+	public void rewardAccountForUnknownCreditCard() {
+		DiningRequest dining = new DiningRequest("100.00", "bogus", "1234567890", null, null);
+		ResponseEntity<JsonNode> response = restTemplate.postForEntity("/rewards", dining, JsonNode.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+	}
+
+	@Test
+	public void rewardAccountsFor() {
+		String body = """
+				{"amount":"100.00","creditCardNumber":"1234123412340003","merchantNumber":"1234567890","transactionId":"txn-bulk"}
+				{"amount":"100.00","creditCardNumber":"1234123412340001","merchantNumber":"1234567890"}
+				""";
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.valueOf(RewardRestController.APPLICATION_NDJSON_VALUE));
+		headers.setAccept(List.of(MediaType.valueOf(RewardRestController.APPLICATION_NDJSON_VALUE)));
+		ResponseEntity<String> response = restTemplate.postForEntity("/rewards:bulk", new HttpEntity<>(body, headers), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		String[] lines = response.getBody().split("\n");
+		assertThat(lines).hasSize(2);
+		assertThat(lines[0]).contains("\"confirmed\":true");
+		// account 1 has no beneficiaries, so its allocations are invalid
+		assertThat(lines[1]).contains("\"confirmed\":false");
+	}
+
+	@Test
+	public void rewardMetrics() {
+		DiningRequest dining = new DiningRequest("100.00", "1234123412340003", "1234567890", null, "txn-metrics");
+		assertThat(restTemplate.postForEntity("/rewards", dining, JsonNode.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		ResponseEntity<String> metrics = restTemplate.getForEntity("/actuator/prometheus", String.class);
+		assertThat(metrics.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(metrics.getBody())
+				.contains("reward_stage_seconds_bucket{", "stage=\"confirmation\"")
+				.contains("reward_outcomes_total{", "outcome=\"rewarded\"")
+				.contains("sql_statement_seconds_bucket{", "statement=\"account/AccountRepository/findByCreditCard\"");
+
+		ResponseEntity<JsonNode> statements = restTemplate.getForEntity("/actuator/sqlstatements?limit=5", JsonNode.class);
+		assertThat(statements.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(statements.getBody()).hasSize(5);
+		assertThat(statements.getBody().get(0).get("meanMillis").asDouble())
+				.isGreaterThanOrEqualTo(statements.getBody().get(4).get("meanMillis").asDouble());
+	}
+}
@@ -0,0 +1,190 @@
+package lol.maki.rewarddining.reward.web;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import am.ik.yavi.core.ConstraintViolationsException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lol.maki.rewarddining.account.StubAccountManager;
+import lol.maki.rewarddining.account.USD;
+import lol.maki.rewarddining.restaurant.Dining;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lol.maki.rewarddining.reward.Reward;
+import lol.maki.rewarddining.reward.RewardConfirmation;
+import lol.maki.rewarddining.reward.RewardLookup;
+import lol.maki.rewarddining.reward.RewardPage;
+import lol.maki.rewarddining.reward.RewardNetworkImpl;
+import lol.maki.rewarddining.reward.RewardProperties;
+import lol.maki.rewarddining.reward.RewardResult;
+import lol.maki.rewarddining.reward.StubAccountRepository;
+import lol.maki.rewarddining.reward.StubRestaurantRepository;
+import lol.maki.rewarddining.reward.StubRewardRepository;
+import org.junit.jupiter.api.Test;
+import org.zalando.jackson.datatype.money.MoneyModule;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.server.ResponseStatusException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RewardRestControllerTests {
+	ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+			.modulesToInstall(new MoneyModule().withMoney())
+			.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+			.build();
+
+	RewardRestController controller = newController(2);
+
+	@Test
+	void testRewardAccountFor() {
+		RewardConfirmation confirmation = controller.rewardAccountFor(new DiningRequest("100.00", "1234123412341234", "1234567890", LocalDate.now(), null));
+		assertNotNull(confirmation.getConfirmationNumber());
+		assertEquals(USD.valueOf("8.00"), confirmation.getAccountContribution().getAmount());
+	}
+
+	@Test
+	void testReward() {
+		RewardConfirmation confirmation = controller.rewardAccountFor(new DiningRequest("100.00", "1234123412341234", "1234567890", LocalDate.of(2022, 5, 1), null));
+		Reward reward = controller.reward(confirmation.getConfirmationNumber());
+		assertEquals(confirmation.getConfirmationNumber(), reward.confirmationNumber());
+		assertEquals(USD.valueOf("8.00"), reward.amount());
+		assertEquals(LocalDate.of(2022, 5, 1), reward.diningDate());
+		ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> controller.reward("bogus"));
+		assertEquals(HttpStatus.NOT_FOUND, e.getStatus());
+	}
+
+	@Test
+	void testAccountRewards() {
+		for (int day = 1; day <= 5; day++) {
+			controller.rewardAccountFor(new DiningRequest(day + "00.00", "1234123412341234", "1234567890", LocalDate.of(2022, 5, day), null));
+		}
+		List<Reward> rewards = new ArrayList<>();
+		String after = null;
+		int pages = 0;
+		do {
+			RewardPage page = controller.accountRewards(0L, after, 2);
+			rewards.addAll(page.rewards());
+			after = page.next();
+			pages++;
+		}
+		while (after != null);
+		assertEquals(3, pages);
+		assertEquals(5, rewards.size());
+		assertEquals(5, rewards.stream().map(Reward::confirmationNumber).distinct().count());
+
+		assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class,
+				() -> controller.accountRewards(0L, "bogus", 2)).getStatus());
+		assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class,
+				() -> controller.accountRewards(0L, null, 1000)).getStatus());
+	}
+
+	@Test
+	void testRewardAccountsFor() throws Exception {
+		String body = """
+				{"amount":"100.00","creditCardNumber":"1234123412341234","merchantNumber":"1234567890","date":"2022-05-01"}
+				{"amount":"100.00","creditCardNumber":"bogus","merchantNumber":"1234567890","date":"2022-05-01"}
+				{"amount":"-1.00","creditCardNumber":"1234123412341234","merchantNumber":"1234567890","date":"2022-05-01"}
+				{"amount":"50.00","creditCardNumber":"1234123412341234","merchantNumber":"1234567890","date":"2022-05-01"}
+				{"amount":"25.00","creditCardNumber":"1234123412341234","merchantNumber":"1234567890"}
+				{"amount":"10.00","creditCardNumber":"1234123412341234",
+				{"amount":"10.00","merchantNumber":"1234567890","date":"2022-05-01"}
+				{"amount":"75.00","creditCardNumber":"1234123412341234","merchantNumber":"1234567890","date":"2022-05-01"}
+				""";
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		controller.rewardAccountsFor(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), output);
+
+		String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+		assertThat(lines).hasSize(8);
+		try (MappingIterator<JsonNode> results = objectMapper.readerFor(JsonNode.class).readValues(output.toByteArray())) {
+			JsonNode first = results.next();
+			assertThat(first.get("confirmed").asBoolean()).isTrue();
+			assertThat(first.get("confirmation").get("confirmationNumber").asText()).isNotEmpty();
+			assertThat(first.get("dining").get("date").asText()).isEqualTo("2022-05-01");
+			JsonNode unknownCard = results.next();
+			assertThat(unknownCard.get("confirmed").asBoolean()).isFalse();
+			assertThat(unknownCard.get("error").asText()).contains("bogus");
+			JsonNode invalidAmount = results.next();
+			assertThat(invalidAmount.get("confirmed").asBoolean()).isFalse();
+			assertThat(invalidAmount.get("dining").isNull()).isTrue();
+			assertThat(results.next().get("confirmed").asBoolean()).isTrue();
+			assertThat(results.next().get("confirmed").asBoolean()).isTrue();
+			JsonNode malformed = results.next();
+			assertThat(malformed.get("confirmed").asBoolean()).isFalse();
+			assertThat(malformed.get("error").asText()).isNotEmpty();
+			JsonNode missingCard = results.next();
+			assertThat(missingCard.get("confirmed").asBoolean()).isFalse();
+			assertThat(missingCard.get("error").asText()).contains("creditCardNumber");
+			assertThat(results.next().get("confirmed").asBoolean()).isTrue();
+		}
+	}
+
+	@Test
+	void testRewardAccountForWithoutCreditCard() {
+		assertThrows(ConstraintViolationsException.class,
+				() -> controller.rewardAccountFor(new DiningRequest("100.00", null, "1234567890", LocalDate.now(), null)));
+	}
+
+	@Test
+	void testRewardAccountsForWithTooLongLineAndFailingChunk() throws Exception {
+		RewardProperties properties = new RewardProperties();
+		properties.getBulk().setChunkSize(2);
+		properties.getBulk().setMaxLineLength(200);
+		StubRewardRepository rewardRepository = new StubRewardRepository();
+		RewardNetworkImpl rewardNetwork = new RewardNetworkImpl(new StubAccountRepository(), new StubRestaurantRepository(), rewardRepository) {
+			@Override
+			public List<RewardResult> rewardAccountsFor(List<Dining> dinings) {
+				if (dinings.stream().anyMatch(dining -> dining.getAmount().isEqualTo(USD.valueOf("13.00")))) {
+					throw new DataAccessResourceFailureException("Database unavailable");
+				}
+				return super.rewardAccountsFor(dinings);
+			}
+		};
+		RewardRestController controller = new RewardRestController(rewardNetwork,
+				new RewardLookup(rewardRepository, properties, new SimpleMeterRegistry()), new StubAccountManager(),
+				objectMapper, properties);
+		String body = "{\"amount\":\"100.00\",\"creditCardNumber\":\"1234123412341234\",\"merchantNumber\":\"1234567890\",\"date\":\"2022-05-01\"}\r\n"
+				+ "{\"amount\":\"" + "1".repeat(1000) + "\"}\n"
+				+ "{\"amount\":\"13.00\",\"creditCardNumber\":\"1234123412341234\",\"merchantNumber\":\"1234567890\",\"date\":\"2022-05-01\"}\n"
+				+ "{\"amount\":\"14.00\",\"creditCardNumber\":\"1234123412341234\",\"merchantNumber\":\"1234567890\",\"date\":\"2022-05-01\"}\n"
+				+ "{\"amount\":\"15.00\",\"creditCardNumber\":\"1234123412341234\",\"merchantNumber\":\"1234567890\",\"date\":\"2022-05-01\"}";
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		controller.rewardAccountsFor(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), output);
+
+		try (MappingIterator<JsonNode> results = objectMapper.readerFor(JsonNode.class).readValues(output.toByteArray())) {
+			assertThat(results.next().get("confirmed").asBoolean()).isTrue();
+			JsonNode tooLong = results.next();
+			assertThat(tooLong.get("confirmed").asBoolean()).isFalse();
+			assertThat(tooLong.get("error").asText()).isEqualTo("Line longer than 200 characters");
+			// the failing chunk fails line by line, and the lines after it are still rewarded
+			for (int i = 0; i < 2; i++) {
+				JsonNode failed = results.next();
+				assertThat(failed.get("confirmed").asBoolean()).isFalse();
+				assertThat(failed.get("error").asText()).isEqualTo("Database unavailable");
+				assertThat(failed.get("dining").isNull()).isFalse();
+			}
+			assertThat(results.next().get("confirmed").asBoolean()).isTrue();
+			assertThat(results.hasNext()).isFalse();
+		}
+	}
+
+	private RewardRestController newController(int chunkSize) {
+		RewardProperties properties = new RewardProperties();
+		properties.getBulk().setChunkSize(chunkSize);
+		StubRewardRepository rewardRepository = new StubRewardRepository();
+		RewardNetworkImpl rewardNetwork = new RewardNetworkImpl(new StubAccountRepository(), new StubRestaurantRepository(), rewardRepository);
+		return new RewardRestController(rewardNetwork, new RewardLookup(rewardRepository, properties, new SimpleMeterRegistry()),
+				new StubAccountManager(), objectMapper, properties);
+	}
+}
@@ -0,0 +1,104 @@
+package lol.maki.rewarddining.sql;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lol.maki.rewarddining.account.Account;
+import lol.maki.rewarddining.account.USD;
+import lol.maki.rewarddining.account.infrastructure.CreditCardIndex;
+import lol.maki.rewarddining.account.infrastructure.JdbcAccountRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@JdbcTest
+class MeteredDataSourceTests {
+
+	@Autowired
+	DataSource dataSource;
+
+	SimpleMeterRegistry meterRegistry;
+
+	SqlStatementMetrics metrics;
+
+	JdbcTemplate jdbcTemplate;
+
+	JdbcAccountRepository repository;
+
+	@BeforeEach
+	void setUp() {
+		meterRegistry = new SimpleMeterRegistry();
+		// every execution is slow, to go through the slow query log
+		metrics = new SqlStatementMetrics(Duration.ZERO, Duration.ofMinutes(1));
+		metrics.bindTo(meterRegistry);
+		final DataSource metered = new MeteredDataSource(dataSource, metrics);
+		jdbcTemplate = new JdbcTemplate(metered);
+		repository = new JdbcAccountRepository(jdbcTemplate, new NamedParameterJdbcTemplate(metered),
+				new CreditCardIndex(new JdbcTemplate(dataSource)));
+	}
+
+	@Test
+	void testStatementsAreNamedAfterTheirFiles() {
+		final Account account = repository.findById(0L);
+		assertEquals(1, meterRegistry.get("sql.statement").tag("statement", "account/AccountRepository/findById").timer().count());
+		assertEquals(1, meterRegistry.get("sql.statement.rows").tag("statement", "account/AccountRepository/findById")
+				.summary().totalAmount());
+		assertEquals(account.getBeneficiaries().size(), meterRegistry.get("sql.statement.rows")
+				.tag("statement", "account/AccountRepository/findBeneficiaries").summary().totalAmount());
+	}
+
+	@Test
+	void testExpandedNamedParametersAreNamedAfterTheirFile() {
+		repository.findAllById(List.of(0L, 1L, 2L));
+		repository.findAllById(List.of(0L, 1L));
+		assertEquals(2, meterRegistry.get("sql.statement").tag("statement", "account/AccountRepository/findByIds").timer().count());
+		assertEquals(5, meterRegistry.get("sql.statement.rows").tag("statement", "account/AccountRepository/findByIds")
+				.summary().totalAmount());
+	}
+
+	@Test
+	void testBatches() {
+		repository.addBeneficiarySavings(Map.of(0L, Map.of("Annabelle", USD.zero(), "Corgan", USD.zero())));
+		final String statement = "account/AccountRepository/addBeneficiarySavings";
+		assertEquals(1, meterRegistry.get("sql.statement").tag("statement", statement).timer().count());
+		assertEquals(2, meterRegistry.get("sql.statement.batch.size").tag("statement", statement).summary().totalAmount());
+		assertEquals(2, meterRegistry.get("sql.statement.rows").tag("statement", statement).summary().totalAmount());
+	}
+
+	@Test
+	void testOtherStatementsAreUnattributed() {
+		jdbcTemplate.queryForObject("select count(*) from t_account where id >= ?", Long.class, 0);
+		jdbcTemplate.queryForList("select name from t_account", String.class);
+		assertEquals(2, meterRegistry.get("sql.statement").tag("statement", SqlStatementMetrics.UNATTRIBUTED).timer().count());
+	}
+
+	@Test
+	void testSlowest() {
+		repository.findById(0L);
+		jdbcTemplate.update("update t_account set name = name where id = ?", -1L);
+		final List<SqlStatementMetrics.Statement> slowest = metrics.slowest(10);
+		assertEquals(3, slowest.size());
+		assertTrue(slowest.get(0).meanMillis() >= slowest.get(1).meanMillis());
+		assertTrue(slowest.get(1).meanMillis() >= slowest.get(2).meanMillis());
+		assertEquals(1, metrics.slowest(1).size());
+	}
+
+	@Test
+	void testNormalize() {
+		assertEquals("where a.id in (?) and b = ?", SqlStatementMetrics.normalize("where a.id in (:accountIds) and b = :b"));
+		assertEquals("where a.id in (?) and b = ?", SqlStatementMetrics.normalize("where a.id in (?, ?, ?) and b = ?"));
+		assertEquals("account/AccountRepository/findById",
+				SqlStatementMetrics.name("lol/maki/rewarddining/account/AccountRepository/findById.sql"));
+	}
+}